@@ -0,0 +1,85 @@
+package com.scienjus.smartqq.client;
+
+import lombok.Data;
+
+/**
+ * 客户端配置.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @date 2026/10/18.
+ */
+@Data
+public class ClientOptions {
+
+    //全局每秒发送消息数
+    private double sendRate = 1;
+
+    //全局允许的突发发送数
+    private int sendBurst = 5;
+
+    //单个会话（好友、群、讨论组）每秒发送消息数
+    private double targetSendRate = 0.5;
+
+    //单个会话允许的突发发送数
+    private int targetSendBurst = 3;
+
+    //自适应调整的全局发送速率下限
+    private double minSendRate = 0.2;
+
+    //自适应调整的全局发送速率上限
+    private double maxSendRate = 5;
+
+    //每次发送成功后增加的速率
+    private double sendRateIncreaseStep = 0.05;
+
+    //被限流后速率乘以的系数
+    private double sendRateDecreaseFactor = 0.5;
+
+    //发送失败重试的退避时间
+    private long retryBaseBackoffMillis = 500;
+
+    private long retryMaxBackoffMillis = 30000;
+
+    //同步发送等待发送结果的最长时间，超时后取消尚未发出的消息
+    private long sendAwaitTimeoutMillis = 60000;
+
+    //建立连接超时时间
+    private int connectTimeoutMillis = 10000;
+
+    //读超时时间，需要大于服务端长轮询的挂起时间
+    private int pollReadTimeoutMillis = 65000;
+
+    //拉取消息出错后的退避时间
+    private long pollBaseBackoffMillis = 1000;
+
+    private long pollMaxBackoffMillis = 60000;
+
+    //连续出错多少次后视为降级
+    private int pollDegradedThreshold = 3;
+
+    //请求通道（发送消息、查询）的连接池大小
+    private int maxTotal = 20;
+
+    private int maxPerRoute = 10;
+
+    //请求通道的读超时时间
+    private int requestReadTimeoutMillis = 20000;
+
+    //长轮询通道的连接池大小，每个客户端同时只占用一个
+    private int pollMaxTotal = 4;
+
+    //服务端没有返回 Keep-Alive 时连接的保活时间
+    private long keepAliveMillis = 30000;
+
+    //连接的最长存活时间，小于等于 0 表示不限制
+    private long connectionTimeToLiveMillis = 300000;
+
+    //空闲多久的连接会被关闭，以及清理的间隔
+    private long idleTimeoutMillis = 30000;
+
+    private long evictIntervalMillis = 5000;
+
+    //连接空闲多久后复用前需要校验
+    private int validateAfterInactivityMillis = 2000;
+
+}
@@ -0,0 +1,282 @@
+package com.scienjus.smartqq.client;
+
+import com.scienjus.smartqq.constant.ApiURL;
+import net.dongliu.requests.AllRedirectStrategy;
+import net.dongliu.requests.Client;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.CookieSpecs;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+import org.apache.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 共享的 Http 连接池.
+ *
+ * <p>
+ * 多个 {@link SmartQQClient} 可以共用一个传输层，每个客户端仍然使用自己的 Session（Cookie 互不影响）。
+ * 连接分为两条通道：长轮询通道只给 poll2 使用，读超时较长；请求通道给发送消息和查询使用，读超时较短。
+ * 两条通道各有自己的连接池，长轮询一直占着的连接不会挤占发送消息的连接。
+ * 空闲连接和过期连接由后台线程定期清理，服务端没有返回 Keep-Alive 时使用配置的保活时间。
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @date 2026/10/18.
+ */
+public class HttpTransport implements Closeable {
+
+    //日志
+    private static final Logger LOGGER = Logger.getLogger(HttpTransport.class);
+
+    //请求通道
+    private final PoolingHttpClientConnectionManager requestPool;
+
+    //长轮询通道
+    private final PoolingHttpClientConnectionManager pollPool;
+
+    //当前线程是否在长轮询通道上
+    private final ThreadLocal<Boolean> pollLane = new ThreadLocal<>();
+
+    private final Client client;
+
+    //空闲连接清理线程
+    private final Thread evictor;
+
+    private final long idleTimeoutMillis;
+
+    private final long evictIntervalMillis;
+
+    private volatile boolean running = true;
+
+    public HttpTransport(ClientOptions options) {
+        Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", SSLConnectionSocketFactory.getSocketFactory())
+                .build();
+        this.requestPool = newPool(registry, options.getMaxTotal(), options.getMaxPerRoute(),
+                options.getRequestReadTimeoutMillis(), options);
+        this.pollPool = newPool(registry, options.getPollMaxTotal(), options.getPollMaxTotal(),
+                options.getPollReadTimeoutMillis(), options);
+
+        //读超时由各通道的 SocketConfig 决定，这里不设置 socketTimeout
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(options.getConnectTimeoutMillis())
+                .setConnectionRequestTimeout(options.getConnectTimeoutMillis())
+                .setCookieSpec(CookieSpecs.DEFAULT)
+                .build();
+        this.client = new Client(HttpClients.custom()
+                .setUserAgent(ApiURL.USER_AGENT)
+                .setConnectionManager(new LaneConnectionManager())
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(keepAliveStrategy(options.getKeepAliveMillis()))
+                .setRedirectStrategy(new AllRedirectStrategy())
+                .build(), false);
+
+        this.idleTimeoutMillis = options.getIdleTimeoutMillis();
+        this.evictIntervalMillis = options.getEvictIntervalMillis();
+        this.evictor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                evict();
+            }
+        }, "smartqq-http-evictor");
+        this.evictor.setDaemon(true);
+        this.evictor.start();
+    }
+
+    /**
+     * 获取共享的客户端
+     * @return
+     */
+    public Client getClient() {
+        return client;
+    }
+
+    /**
+     * 当前线程之后的请求走长轮询通道，需要和 {@link #endPoll()} 成对调用
+     */
+    public void beginPoll() {
+        pollLane.set(Boolean.TRUE);
+    }
+
+    /**
+     * 当前线程之后的请求回到请求通道
+     */
+    public void endPoll() {
+        pollLane.remove();
+    }
+
+    /**
+     * 获取连接池统计信息
+     * @return
+     */
+    public Map<String, Object> getStat() {
+        Map<String, Object> ret = new LinkedHashMap<>();
+        ret.put("request", poolStat(requestPool));
+        ret.put("poll", poolStat(pollPool));
+        return ret;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        evictor.interrupt();
+        client.close();
+    }
+
+    private static PoolingHttpClientConnectionManager newPool(Registry<ConnectionSocketFactory> registry,
+                                                              int maxTotal, int maxPerRoute, int readTimeoutMillis,
+                                                              ClientOptions options) {
+        PoolingHttpClientConnectionManager ret = new PoolingHttpClientConnectionManager(registry, null, null, null,
+                options.getConnectionTimeToLiveMillis(), TimeUnit.MILLISECONDS);
+        ret.setMaxTotal(maxTotal);
+        ret.setDefaultMaxPerRoute(maxPerRoute);
+        ret.setDefaultSocketConfig(SocketConfig.custom().setSoTimeout(readTimeoutMillis).setTcpNoDelay(true).build());
+        ret.setValidateAfterInactivity(options.getValidateAfterInactivityMillis());
+        return ret;
+    }
+
+    //优先使用服务端 Keep-Alive 头中的时间
+    private static ConnectionKeepAliveStrategy keepAliveStrategy(final long keepAliveMillis) {
+        return new ConnectionKeepAliveStrategy() {
+            @Override
+            public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+                long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                return duration > 0 ? duration : keepAliveMillis;
+            }
+        };
+    }
+
+    private static Map<String, Object> poolStat(PoolingHttpClientConnectionManager pool) {
+        Map<String, Object> ret = statOf(pool.getTotalStats());
+        Map<String, Object> routes = new LinkedHashMap<>();
+        for (HttpRoute route : pool.getRoutes()) {
+            routes.put(route.getTargetHost().toHostString(), statOf(pool.getStats(route)));
+        }
+        ret.put("routes", routes);
+        return ret;
+    }
+
+    private static Map<String, Object> statOf(PoolStats stats) {
+        Map<String, Object> ret = new LinkedHashMap<>();
+        ret.put("leased", stats.getLeased());
+        ret.put("pending", stats.getPending());
+        ret.put("available", stats.getAvailable());
+        ret.put("max", stats.getMax());
+        return ret;
+    }
+
+    //定期关闭过期和空闲的连接
+    private void evict() {
+        while (running) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(evictIntervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            for (PoolingHttpClientConnectionManager pool : new PoolingHttpClientConnectionManager[]{requestPool, pollPool}) {
+                try {
+                    pool.closeExpiredConnections();
+                    pool.closeIdleConnections(idleTimeoutMillis, TimeUnit.MILLISECONDS);
+                } catch (Exception e) {
+                    LOGGER.warn("清理空闲连接失败：" + e.getMessage());
+                }
+            }
+        }
+    }
+
+    //按当前线程所在的通道选择连接池，归还连接时按借出的连接池归还
+    private class LaneConnectionManager implements HttpClientConnectionManager {
+
+        //借出的连接及其所属连接池
+        private final ConcurrentMap<HttpClientConnection, PoolingHttpClientConnectionManager> leased = new ConcurrentHashMap<>();
+
+        @Override
+        public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+            final PoolingHttpClientConnectionManager pool = Boolean.TRUE.equals(pollLane.get()) ? pollPool : requestPool;
+            final ConnectionRequest request = pool.requestConnection(route, state);
+            return new ConnectionRequest() {
+                @Override
+                public HttpClientConnection get(long timeout, TimeUnit tunit)
+                        throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+                    HttpClientConnection conn = request.get(timeout, tunit);
+                    leased.put(conn, pool);
+                    return conn;
+                }
+
+                @Override
+                public boolean cancel() {
+                    return request.cancel();
+                }
+            };
+        }
+
+        @Override
+        public void releaseConnection(HttpClientConnection conn, Object newState, long validDuration, TimeUnit timeUnit) {
+            PoolingHttpClientConnectionManager pool = leased.remove(conn);
+            (pool == null ? requestPool : pool).releaseConnection(conn, newState, validDuration, timeUnit);
+        }
+
+        @Override
+        public void connect(HttpClientConnection conn, HttpRoute route, int connectTimeout, HttpContext context) throws IOException {
+            poolOf(conn).connect(conn, route, connectTimeout, context);
+        }
+
+        @Override
+        public void upgrade(HttpClientConnection conn, HttpRoute route, HttpContext context) throws IOException {
+            poolOf(conn).upgrade(conn, route, context);
+        }
+
+        @Override
+        public void routeComplete(HttpClientConnection conn, HttpRoute route, HttpContext context) throws IOException {
+            poolOf(conn).routeComplete(conn, route, context);
+        }
+
+        @Override
+        public void closeIdleConnections(long idletime, TimeUnit tunit) {
+            requestPool.closeIdleConnections(idletime, tunit);
+            pollPool.closeIdleConnections(idletime, tunit);
+        }
+
+        @Override
+        public void closeExpiredConnections() {
+            requestPool.closeExpiredConnections();
+            pollPool.closeExpiredConnections();
+        }
+
+        @Override
+        public void shutdown() {
+            requestPool.shutdown();
+            pollPool.shutdown();
+        }
+
+        private PoolingHttpClientConnectionManager poolOf(HttpClientConnection conn) {
+            PoolingHttpClientConnectionManager pool = leased.get(conn);
+            return pool == null ? requestPool : pool;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.scienjus.smartqq.client;
+
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.log4j.Logger;
+
+import java.io.Closeable;
+import java.net.SocketTimeoutException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 消息拉取引擎.
+ *
+ * <p>
+ * 在单独的线程中循环长轮询。长轮询读超时视为一次空轮询；出错时按带随机抖动的指数退避等待后再拉取，
+ * 连续出错达到阈值后进入 DEGRADED 状态，会话失效时进入 SESSION_LOST 状态并按最大退避时间探测，
+ * 任意一次拉取成功后恢复为 HEALTHY。
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @date 2026/10/18.
+ */
+public class PollEngine implements Closeable {
+
+    //日志
+    private static final Logger LOGGER = Logger.getLogger(PollEngine.class);
+
+    //拉取动作
+    private final Poller poller;
+
+    private final long baseBackoffMillis;
+
+    private final long maxBackoffMillis;
+
+    //连续出错多少次后进入 DEGRADED
+    private final int degradedThreshold;
+
+    //拉取线程
+    private final Thread thread;
+
+    private volatile boolean running = true;
+
+    private volatile Health health = Health.HEALTHY;
+
+    //以下状态只在拉取线程中修改
+    private volatile int consecutiveFailures;
+
+    private volatile long lastBackoffMillis;
+
+    private volatile long lastSuccessTime;
+
+    private volatile String lastError;
+
+    //统计
+    private final AtomicLong pollCount = new AtomicLong();
+
+    private final AtomicLong emptyPollCount = new AtomicLong();
+
+    private final AtomicLong nonEmptyPollCount = new AtomicLong();
+
+    private final AtomicLong timeoutCount = new AtomicLong();
+
+    private final AtomicLong errorCount = new AtomicLong();
+
+    private final AtomicLong sessionLostCount = new AtomicLong();
+
+    private final AtomicLong messageCount = new AtomicLong();
+
+    private final AtomicLong maxMessagesPerPoll = new AtomicLong();
+
+    private final AtomicLong pollNanos = new AtomicLong();
+
+    public PollEngine(String name, ClientOptions options, Poller poller) {
+        this.poller = poller;
+        this.baseBackoffMillis = options.getPollBaseBackoffMillis();
+        this.maxBackoffMillis = Math.max(options.getPollBaseBackoffMillis(), options.getPollMaxBackoffMillis());
+        this.degradedThreshold = options.getPollDegradedThreshold();
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                work();
+            }
+        }, name);
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * 启动拉取线程
+     */
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * 获取当前健康状态
+     * @return
+     */
+    public Health getHealth() {
+        return health;
+    }
+
+    /**
+     * 获取统计信息
+     * @return
+     */
+    public Map<String, Object> getStat() {
+        Map<String, Object> ret = new LinkedHashMap<>();
+        long polls = pollCount.get();
+        long nonEmpty = nonEmptyPollCount.get();
+        ret.put("health", health.name());
+        ret.put("polls", polls);
+        ret.put("emptyPolls", emptyPollCount.get());
+        ret.put("timeouts", timeoutCount.get());
+        ret.put("errors", errorCount.get());
+        ret.put("sessionLost", sessionLostCount.get());
+        ret.put("messages", messageCount.get());
+        ret.put("avgMessagesPerPoll", nonEmpty == 0 ? 0 : (double) messageCount.get() / nonEmpty);
+        ret.put("maxMessagesPerPoll", maxMessagesPerPoll.get());
+        ret.put("avgPollMillis", polls == 0 ? 0 : pollNanos.get() / 1000000D / polls);
+        ret.put("consecutiveFailures", consecutiveFailures);
+        ret.put("lastBackoffMillis", lastBackoffMillis);
+        ret.put("lastSuccessTime", lastSuccessTime);
+        ret.put("lastError", lastError);
+        return ret;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        thread.interrupt();
+    }
+
+    //拉取循环
+    private void work() {
+        while (running) {
+            long start = System.nanoTime();
+            pollCount.incrementAndGet();
+            try {
+                int count = poller.poll();
+                pollNanos.addAndGet(System.nanoTime() - start);
+                onPolled(count);
+            } catch (SessionLostException e) {
+                pollNanos.addAndGet(System.nanoTime() - start);
+                sessionLostCount.incrementAndGet();
+                lastError = e.getMessage();
+                transit(Health.SESSION_LOST);
+                pause(backoff(true));
+            } catch (Exception e) {
+                pollNanos.addAndGet(System.nanoTime() - start);
+                if (!running) {
+                    return;
+                }
+                if (isTimeout(e)) {
+                    //长轮询读超时，服务端在超时时间内没有新消息
+                    timeoutCount.incrementAndGet();
+                    onPolled(0);
+                    continue;
+                }
+                errorCount.incrementAndGet();
+                lastError = e.getMessage();
+                LOGGER.error("拉取消息失败：" + e.getMessage());
+                long backoff = backoff(false);
+                if (health == Health.HEALTHY && consecutiveFailures >= degradedThreshold) {
+                    transit(Health.DEGRADED);
+                }
+                pause(backoff);
+            }
+        }
+    }
+
+    //拉取成功
+    private void onPolled(int count) {
+        if (count <= 0) {
+            emptyPollCount.incrementAndGet();
+        } else {
+            nonEmptyPollCount.incrementAndGet();
+            messageCount.addAndGet(count);
+            long max;
+            while (count > (max = maxMessagesPerPoll.get()) && !maxMessagesPerPoll.compareAndSet(max, count)) {
+                // retry
+            }
+        }
+        consecutiveFailures = 0;
+        lastBackoffMillis = 0;
+        lastSuccessTime = System.currentTimeMillis();
+        transit(Health.HEALTHY);
+    }
+
+    //切换健康状态
+    private void transit(Health to) {
+        Health from = health;
+        if (from == to) {
+            return;
+        }
+        health = to;
+        if (to == Health.HEALTHY) {
+            LOGGER.info(String.format("消息拉取状态 [%s] -> [%s]", from, to));
+        } else {
+            LOGGER.warn(String.format("消息拉取状态 [%s] -> [%s]，连续失败 %d 次", from, to, consecutiveFailures));
+        }
+    }
+
+    //指数退避，取 [一半, 全部] 之间的随机值作为抖动；会话失效时直接按最大退避时间探测
+    private long backoff(boolean sessionLost) {
+        consecutiveFailures++;
+        long cap = sessionLost ? maxBackoffMillis : baseBackoffMillis << Math.min(consecutiveFailures - 1, 20);
+        cap = Math.min(maxBackoffMillis, cap);
+        lastBackoffMillis = cap / 2 + ThreadLocalRandom.current().nextLong(cap / 2 + 1);
+        return lastBackoffMillis;
+    }
+
+    private void pause(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            running = false;
+        }
+    }
+
+    //是否为读超时，连接超时算作出错
+    private static boolean isTimeout(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof ConnectTimeoutException) {
+                return false;
+            }
+            if (t instanceof SocketTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 健康状态
+     */
+    public enum Health {
+
+        //正常
+        HEALTHY,
+
+        //连续出错，正在退避
+        DEGRADED,
+
+        //会话失效
+        SESSION_LOST
+    }
+
+    /**
+     * 一次拉取动作
+     */
+    public interface Poller {
+
+        /**
+         * 拉取一次消息并分发
+         * @return 本次拉取到的消息数
+         * @throws SessionLostException 会话失效
+         */
+        int poll() throws Exception;
+    }
+}
@@ -0,0 +1,201 @@
+package com.scienjus.smartqq.client;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONReader;
+import com.alibaba.fastjson.parser.JSONReaderScanner;
+import com.scienjus.smartqq.model.DiscussMessage;
+import com.scienjus.smartqq.model.GroupMessage;
+import com.scienjus.smartqq.model.Message;
+import com.scienjus.smartqq.model.MessageContent;
+import net.dongliu.requests.ResponseHandler;
+import net.dongliu.requests.struct.Headers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 拉取消息的返回结果解析.
+ *
+ * <p>
+ * 直接从响应流中逐个读取消息并构造 {@link Message}、{@link GroupMessage}、{@link DiscussMessage}，
+ * 不再先读成字符串、解析成 JSONObject 树再遍历一遍。消息内容保留原始片段，见 {@link MessageContent}。
+ * 服务端返回的 result 可能在 retcode 之前，所以解析出的消息先暂存在结果中，校验 retcode 之后再分发。
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @date 2026/10/18.
+ */
+public class PollResponseHandler implements ResponseHandler<PollResponseHandler.Result> {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Override
+    public Result handle(int statusCode, Headers headers, InputStream body) throws IOException {
+        Result ret = new Result();
+        if (statusCode != 200) {
+            return ret;
+        }
+
+        JSONReaderScanner lexer = new JSONReaderScanner(new InputStreamReader(body, UTF_8));
+        JSONReader reader = new JSONReader(lexer);
+        try {
+            reader.startObject();
+            while (reader.hasNext()) {
+                String key = reader.readString();
+                if ("retcode".equals(key)) {
+                    ret.retCode = reader.readInteger();
+                } else if ("result".equals(key) && isArray(lexer)) {
+                    reader.startArray();
+                    while (reader.hasNext()) {
+                        Object message = readPollItem(reader, lexer);
+                        if (message != null) {
+                            ret.messages.add(message);
+                        }
+                    }
+                    reader.endArray();
+                } else {
+                    reader.readObject();
+                }
+            }
+            reader.endObject();
+        } finally {
+            reader.close();
+        }
+        return ret;
+    }
+
+    //读取 result 数组中的一项：{"poll_type": "", "value": {}}
+    private static Object readPollItem(JSONReader reader, JSONReaderScanner lexer) {
+        String type = null;
+        RawMessage raw = null;
+        reader.startObject();
+        while (reader.hasNext()) {
+            String key = reader.readString();
+            if ("poll_type".equals(key)) {
+                type = reader.readString();
+            } else if ("value".equals(key) && isObject(lexer)) {
+                raw = readValue(reader, lexer);
+            } else {
+                reader.readObject();
+            }
+        }
+        reader.endObject();
+
+        if (raw == null) {
+            return null;
+        }
+        MessageContent content = new MessageContent(raw.font, raw.segments);
+        if ("message".equals(type)) {
+            return new Message(raw.time, raw.fromUin, content);
+        } else if ("group_message".equals(type)) {
+            return new GroupMessage(raw.groupCode, raw.time, raw.sendUin, content);
+        } else if ("discu_message".equals(type)) {
+            return new DiscussMessage(raw.did, raw.time, raw.sendUin, content);
+        }
+        return null;
+    }
+
+    //读取消息内容
+    private static RawMessage readValue(JSONReader reader, JSONReaderScanner lexer) {
+        RawMessage ret = new RawMessage();
+        reader.startObject();
+        while (reader.hasNext()) {
+            String key = reader.readString();
+            if ("content".equals(key) && isArray(lexer)) {
+                readContent(reader, ret);
+            } else if ("time".equals(key)) {
+                ret.time = readLong(reader);
+            } else if ("from_uin".equals(key)) {
+                ret.fromUin = readLong(reader);
+            } else if ("send_uin".equals(key)) {
+                ret.sendUin = readLong(reader);
+            } else if ("group_code".equals(key)) {
+                ret.groupCode = readLong(reader);
+            } else if ("did".equals(key)) {
+                ret.did = readLong(reader);
+            } else {
+                reader.readObject();
+            }
+        }
+        reader.endObject();
+        return ret;
+    }
+
+    //读取 content 数组：第一项是字体 ["font", {}]，之后是文本或表情等片段，原样保留，用到时再解析
+    private static void readContent(JSONReader reader, RawMessage raw) {
+        reader.startArray();
+        boolean first = true;
+        while (reader.hasNext()) {
+            Object segment = reader.readObject();
+            if (first) {
+                first = false;
+                if (segment instanceof JSONArray && "font".equals(((JSONArray) segment).getString(0))) {
+                    raw.font = (JSONArray) segment;
+                    continue;
+                }
+            }
+            if (segment != null) {
+                raw.segments.add(segment);
+            }
+        }
+        reader.endArray();
+    }
+
+    private static long readLong(JSONReader reader) {
+        Long value = reader.readLong();
+        return value == null ? 0 : value;
+    }
+
+    //下一个值是否为数组，JSONReader 没有 peek，需要跳过空白后查看当前字符
+    private static boolean isArray(JSONReaderScanner lexer) {
+        lexer.skipWhitespace();
+        return lexer.getCurrent() == '[';
+    }
+
+    private static boolean isObject(JSONReaderScanner lexer) {
+        lexer.skipWhitespace();
+        return lexer.getCurrent() == '{';
+    }
+
+    //消息解析的中间状态
+    private static class RawMessage {
+
+        private long time;
+
+        private long fromUin;
+
+        private long sendUin;
+
+        private long groupCode;
+
+        private long did;
+
+        private JSONArray font;
+
+        private final List<Object> segments = new ArrayList<>(2);
+    }
+
+    /**
+     * 解析结果
+     */
+    public static class Result {
+
+        //Api返回码，Http返回码不是 200 时为空
+        private Integer retCode;
+
+        //解析出的消息，按返回顺序排列
+        private final List<Object> messages = new ArrayList<>();
+
+        public Integer getRetCode() {
+            return retCode;
+        }
+
+        public List<Object> getMessages() {
+            return messages;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.scienjus.smartqq.client;
+
+import com.alibaba.fastjson.JSON;
+import com.scienjus.smartqq.model.Font;
+
+/**
+ * 发送消息的请求体模板.
+ *
+ * <p>
+ * 请求体 r 是一个 Json 对象，其中 content 字段的值又是一个 Json 数组序列化后的字符串：
+ * <pre>
+ * {"group_uin":1,"content":"[\"消息\",[\"font\",{...}]]","face":573,"clientid":53999199,"msg_id":1,"psessionid":""}
+ * </pre>
+ * 默认字体片段预先编码好（包括外层的转义），每次发送只需要把消息文本转义两次后和其他字段一起写进同一个 StringBuilder，
+ * 不再构造 JSONObject、List 以及中间的 content 字符串。
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @date 2026/10/18.
+ */
+final class SendPayload {
+
+    //content 中消息文本之后的默认字体片段：,["font",{...}]]，已经过外层转义
+    private static final String DEFAULT_FONT_FRAGMENT;
+
+    //ASCII 控制字符、引号和反斜杠的转义
+    private static final String[] REPLACEMENTS = new String[128];
+
+    static {
+        for (int c = 0; c < 0x20; c++) {
+            REPLACEMENTS[c] = String.format("\\u%04x", c);
+        }
+        REPLACEMENTS['"'] = "\\\"";
+        REPLACEMENTS['\\'] = "\\\\";
+        REPLACEMENTS['\n'] = "\\n";
+        REPLACEMENTS['\r'] = "\\r";
+        REPLACEMENTS['\t'] = "\\t";
+        REPLACEMENTS['\b'] = "\\b";
+        REPLACEMENTS['\f'] = "\\f";
+
+        StringBuilder fragment = new StringBuilder();
+        escape(fragment, ",[\"font\"," + JSON.toJSONString(Font.DEFAULT_FONT) + "]]", 1);
+        DEFAULT_FONT_FRAGMENT = fragment.toString();
+    }
+
+    private SendPayload() {
+    }
+
+    /**
+     * 构造发送消息的请求体
+     * @param targetField   目标字段名，例如 group_uin、did、to
+     * @param targetId      目标id
+     * @param msg           消息内容
+     * @param clientId      客户端id
+     * @param msgId         消息id
+     * @param psessionid    psessionid
+     * @return
+     */
+    static String build(String targetField, long targetId, String msg, long clientId, long msgId, String psessionid) {
+        StringBuilder builder = new StringBuilder(msg.length() + DEFAULT_FONT_FRAGMENT.length() + 160);
+        builder.append("{\"").append(targetField).append("\":").append(targetId);
+        builder.append(",\"content\":\"[\\\"");
+        escape(builder, msg, 2);
+        builder.append("\\\"").append(DEFAULT_FONT_FRAGMENT);
+        builder.append("\",\"face\":573,\"clientid\":").append(clientId);
+        builder.append(",\"msg_id\":").append(msgId);
+        builder.append(",\"psessionid\":\"");
+        escape(builder, psessionid, 1);
+        return builder.append("\"}").toString();
+    }
+
+    //按 Json 字符串规则转义 depth 次后写入
+    private static void escape(StringBuilder builder, String s, int depth) {
+        for (int i = 0; i < s.length(); i++) {
+            escape(builder, s.charAt(i), depth);
+        }
+    }
+
+    private static void escape(StringBuilder builder, char c, int depth) {
+        String replacement = c < REPLACEMENTS.length ? REPLACEMENTS[c] : null;
+        if (depth == 0 || replacement == null) {
+            builder.append(c);
+            return;
+        }
+        for (int i = 0; i < replacement.length(); i++) {
+            escape(builder, replacement.charAt(i), depth - 1);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.scienjus.smartqq.client;
+
+/**
+ * 消息发送优先级，发送队列中优先级高的消息先发送.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @date 2026/10/18.
+ */
+public enum SendPriority {
+
+    //聊天回复
+    REPLY,
+
+    //管理员群推
+    PUSH,
+
+    //广告、提示等
+    AD
+}
@@ -0,0 +1,423 @@
+package com.scienjus.smartqq.client;
+
+import org.apache.log4j.Logger;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 异步发送队列.
+ *
+ * <p>
+ * 消息按优先级排队，由单个发送线程依次发出。发送前需要同时拿到全局令牌和目标会话的令牌，
+ * 目标会话暂时没有令牌时，该会话的消息会被整体挂起，等到有令牌后再按原顺序重新入队，不会阻塞其他会话的消息。
+ * 发送失败需要重试（{@link SendRetryException}）时同样挂起该会话，退避时间过后再重新入队，发送线程从不等待退避。
+ * 返回的 {@link Future} 在排队或退避时可以取消，正在发送时取消返回 {@code false}。
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @date 2026/10/18.
+ */
+public class SendQueue implements Closeable {
+
+    //日志
+    private static final Logger LOGGER = Logger.getLogger(SendQueue.class);
+
+    //入队序号，保证同优先级先进先出
+    private final AtomicLong sequence = new AtomicLong();
+
+    //待发送消息
+    private final PriorityBlockingQueue<SendTask> queue = new PriorityBlockingQueue<>();
+
+    //全局令牌桶
+    private final TokenBucket globalBucket;
+
+    //会话令牌桶
+    private final ConcurrentMap<String, TokenBucket> targetBuckets = new ConcurrentHashMap<>();
+
+    //会话限速配置
+    private final double targetRate;
+
+    private final int targetBurst;
+
+    //暂时没有令牌的会话及其挂起的消息
+    private final Map<String, List<SendTask>> parked = new HashMap<>();
+
+    //延后重新入队
+    private final ScheduledExecutorService deferrer;
+
+    //发送线程
+    private final Thread sender;
+
+    //统计
+    private final AtomicLong sentCount = new AtomicLong();
+
+    private final AtomicLong failedCount = new AtomicLong();
+
+    private final AtomicLong deferredCount = new AtomicLong();
+
+    private final AtomicLong retriedCount = new AtomicLong();
+
+    private volatile boolean running = true;
+
+    public SendQueue(String name, ClientOptions options) {
+        this.globalBucket = new TokenBucket(options.getSendRate(), options.getSendBurst());
+        this.targetRate = options.getTargetSendRate();
+        this.targetBurst = options.getTargetSendBurst();
+        this.deferrer = Executors.newSingleThreadScheduledExecutor(daemon(name + "-deferrer"));
+        this.sender = daemon(name).newThread(new Runnable() {
+            @Override
+            public void run() {
+                work();
+            }
+        });
+        this.sender.start();
+    }
+
+    /**
+     * 消息入队
+     * @param target    目标会话，例如 group:123
+     * @param priority  优先级
+     * @param action    实际的发送动作，返回是否发送成功，需要重试时抛出 {@link SendRetryException}
+     * @return 发送结果
+     */
+    public Future<Boolean> submit(String target, SendPriority priority, Action action) {
+        SendTask task = new SendTask(target, priority, sequence.incrementAndGet(), action);
+        if (!running) {
+            task.cancel(false);
+            return task;
+        }
+        queue.offer(task);
+        return task;
+    }
+
+    /**
+     * 获取全局令牌桶
+     * @return
+     */
+    public TokenBucket getGlobalBucket() {
+        return globalBucket;
+    }
+
+    /**
+     * 获取统计信息
+     * @return
+     */
+    public Map<String, Object> getStat() {
+        Map<String, Object> ret = new LinkedHashMap<>();
+        int[] pending = new int[SendPriority.values().length];
+        for (SendTask task : queue) {
+            pending[task.priority.ordinal()]++;
+        }
+        for (SendPriority priority : SendPriority.values()) {
+            ret.put("pending" + priority.name(), pending[priority.ordinal()]);
+        }
+        ret.put("sent", sentCount.get());
+        ret.put("failed", failedCount.get());
+        ret.put("deferred", deferredCount.get());
+        ret.put("retried", retriedCount.get());
+        synchronized (parked) {
+            ret.put("parkedTargets", parked.size());
+        }
+        ret.put("sendRate", globalBucket.getRate());
+        ret.put("targets", targetBuckets.size());
+        return ret;
+    }
+
+    /**
+     * 关闭队列，取消所有尚未发送的消息，包括挂起等待令牌的消息
+     */
+    @Override
+    public void close() {
+        running = false;
+        sender.interrupt();
+        deferrer.shutdownNow();
+        SendTask task;
+        while ((task = queue.poll()) != null) {
+            task.cancel(false);
+        }
+        synchronized (parked) {
+            for (List<SendTask> tasks : parked.values()) {
+                for (SendTask waiting : tasks) {
+                    waiting.cancel(false);
+                }
+            }
+            parked.clear();
+        }
+    }
+
+    //发送循环
+    private void work() {
+        while (running) {
+            SendTask task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (task.isCancelled()) {
+                continue;
+            }
+
+            synchronized (parked) {
+                List<SendTask> waiting = parked.get(task.target);
+                if (waiting != null) {
+                    waiting.add(task);
+                    continue;
+                }
+            }
+
+            long wait = targetBucket(task.target).tryAcquire();
+            if (wait > 0) {
+                deferredCount.incrementAndGet();
+                park(task, wait);
+                continue;
+            }
+
+            try {
+                globalBucket.acquire();
+            } catch (InterruptedException e) {
+                task.cancel(false);
+                return;
+            }
+
+            long backoff = task.attempt();
+            if (backoff > 0) {
+                retriedCount.incrementAndGet();
+                park(task, TimeUnit.MILLISECONDS.toNanos(backoff));
+                continue;
+            }
+            try {
+                if (Boolean.TRUE.equals(task.get())) {
+                    sentCount.incrementAndGet();
+                } else {
+                    failedCount.incrementAndGet();
+                }
+            } catch (Exception e) {
+                failedCount.incrementAndGet();
+                LOGGER.error("发送消息到 [" + task.target + "] 失败：" + e.getMessage());
+            }
+        }
+    }
+
+    //目标会话暂时没有令牌或需要退避重试，挂起该会话，等待后按原顺序重新入队
+    private void park(SendTask task, long waitNanos) {
+        final String target = task.target;
+        List<SendTask> waiting = new ArrayList<>();
+        waiting.add(task);
+        synchronized (parked) {
+            parked.put(target, waiting);
+        }
+        try {
+            deferrer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    List<SendTask> tasks;
+                    synchronized (parked) {
+                        tasks = parked.remove(target);
+                    }
+                    if (tasks == null) {
+                        return;
+                    }
+                    if (!running) { //已关闭，不再重新入队
+                        for (SendTask waiting : tasks) {
+                            waiting.cancel(false);
+                        }
+                        return;
+                    }
+                    queue.addAll(tasks);
+                }
+            }, waitNanos, TimeUnit.NANOSECONDS);
+        } catch (Exception e) {
+            synchronized (parked) {
+                parked.remove(target);
+            }
+            task.cancel(false);
+        }
+    }
+
+    private TokenBucket targetBucket(String target) {
+        TokenBucket bucket = targetBuckets.get(target);
+        if (bucket == null) {
+            TokenBucket created = new TokenBucket(targetRate, targetBurst);
+            bucket = targetBuckets.putIfAbsent(target, created);
+            if (bucket == null) {
+                bucket = created;
+            }
+        }
+        return bucket;
+    }
+
+    private static ThreadFactory daemon(final String name) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * 发送动作
+     */
+    public interface Action {
+
+        /**
+         * 发送一次
+         * @param attempt   第几次发送，从 1 开始
+         * @return 是否发送成功
+         * @throws SendRetryException 需要退避后重试
+         * @throws Exception 发送失败
+         */
+        boolean send(int attempt) throws Exception;
+    }
+
+    //队列中的发送任务，由发送线程通过 attempt() 执行，结果的状态由任务本身加锁保护
+    private static class SendTask implements Future<Boolean>, Comparable<SendTask> {
+
+        private static final int NEW = 0;
+
+        //正在发送，不能取消
+        private static final int SENDING = 1;
+
+        private static final int DONE = 2;
+
+        private static final int CANCELLED = 3;
+
+        private final String target;
+
+        private final SendPriority priority;
+
+        private final long sequence;
+
+        private final Action action;
+
+        //已发送次数，只由发送线程访问
+        private int attempts;
+
+        private int state = NEW;
+
+        private Boolean result;
+
+        private Throwable error;
+
+        SendTask(String target, SendPriority priority, long sequence, Action action) {
+            this.target = target;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.action = action;
+        }
+
+        //发送一次，需要重试时返回退避的毫秒数，否则完成任务并返回 0
+        long attempt() {
+            synchronized (this) {
+                if (state != NEW) {
+                    return 0;
+                }
+                state = SENDING;
+            }
+            attempts++;
+            Boolean sent = null;
+            Throwable failure = null;
+            try {
+                sent = action.send(attempts);
+            } catch (SendRetryException e) {
+                synchronized (this) {
+                    state = NEW;
+                }
+                return Math.max(1, e.getBackoffMillis());
+            } catch (Throwable e) {
+                failure = e;
+            }
+            synchronized (this) {
+                result = sent;
+                error = failure;
+                state = DONE;
+                notifyAll();
+            }
+            return 0;
+        }
+
+        //正在发送时取消失败，消息可能已经送达，调用方据此区分超时未发与发送结果未知
+        @Override
+        public synchronized boolean cancel(boolean mayInterruptIfRunning) {
+            if (state != NEW) {
+                return false;
+            }
+            state = CANCELLED;
+            notifyAll();
+            return true;
+        }
+
+        @Override
+        public synchronized boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        @Override
+        public synchronized boolean isDone() {
+            return state >= DONE;
+        }
+
+        @Override
+        public synchronized Boolean get() throws InterruptedException, ExecutionException {
+            while (state < DONE) {
+                wait();
+            }
+            return report();
+        }
+
+        @Override
+        public synchronized Boolean get(long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            long remaining = unit.toNanos(timeout);
+            long deadline = System.nanoTime() + remaining;
+            while (state < DONE) {
+                if (remaining <= 0) {
+                    throw new TimeoutException();
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                remaining = deadline - System.nanoTime();
+            }
+            return report();
+        }
+
+        //已完成时返回结果，持有锁时调用
+        private Boolean report() throws ExecutionException {
+            if (state == CANCELLED) {
+                throw new CancellationException();
+            }
+            if (error != null) {
+                throw new ExecutionException(error);
+            }
+            return result;
+        }
+
+        @Override
+        public int compareTo(SendTask o) {
+            int ret = priority.compareTo(o.priority);
+            if (ret != 0) {
+                return ret;
+            }
+            return sequence < o.sequence ? -1 : (sequence == o.sequence ? 0 : 1);
+        }
+    }
+}
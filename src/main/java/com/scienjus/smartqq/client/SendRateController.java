@@ -0,0 +1,129 @@
+package com.scienjus.smartqq.client;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 发送速率控制（AIMD）.
+ *
+ * <p>
+ * 每次发送成功后线性增加全局令牌桶的速率，被限流（Http 返回码非 200 或 Api 返回码非 0）时按比例降低速率，
+ * 并按该消息的发送次数给出带随机抖动的指数退避时间，避免一次限流变成连续的立即重发。
+ * 退避只作用于这条消息所在的会话，整体的发送节奏由降低后的速率控制。
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @date 2026/10/18.
+ */
+public class SendRateController {
+
+    //被控制的令牌桶
+    private final TokenBucket bucket;
+
+    private final double minRate;
+
+    private final double maxRate;
+
+    //成功后每次增加的速率
+    private final double increaseStep;
+
+    //失败后速率乘以的系数
+    private final double decreaseFactor;
+
+    private final long baseBackoffMillis;
+
+    private final long maxBackoffMillis;
+
+    //连续失败次数
+    private int consecutiveFailures;
+
+    //最近一次的退避时间
+    private long lastBackoffMillis;
+
+    //最近一次失败的返回码
+    private int lastStatusCode;
+
+    private Integer lastRetCode;
+
+    //统计
+    private final AtomicLong successCount = new AtomicLong();
+
+    private final AtomicLong throttledCount = new AtomicLong();
+
+    private final AtomicLong errorCount = new AtomicLong();
+
+    public SendRateController(TokenBucket bucket, ClientOptions options) {
+        this.bucket = bucket;
+        this.minRate = options.getMinSendRate();
+        this.maxRate = Math.max(options.getMinSendRate(), options.getMaxSendRate());
+        this.increaseStep = options.getSendRateIncreaseStep();
+        this.decreaseFactor = options.getSendRateDecreaseFactor();
+        this.baseBackoffMillis = options.getRetryBaseBackoffMillis();
+        this.maxBackoffMillis = options.getRetryMaxBackoffMillis();
+    }
+
+    /**
+     * 发送成功，线性提升速率
+     */
+    public synchronized void onSuccess() {
+        successCount.incrementAndGet();
+        consecutiveFailures = 0;
+        lastBackoffMillis = 0;
+        bucket.setRate(Math.min(maxRate, bucket.getRate() + increaseStep));
+    }
+
+    /**
+     * 发送被限流，按比例降低速率
+     * @param statusCode    Http 返回码
+     * @param retCode       Api 返回码，可能为空
+     * @param attempt       该消息第几次发送，从 1 开始
+     * @return 重试前需要退避的毫秒数
+     */
+    public synchronized long onThrottled(int statusCode, Integer retCode, int attempt) {
+        throttledCount.incrementAndGet();
+        lastStatusCode = statusCode;
+        lastRetCode = retCode;
+        bucket.setRate(Math.max(minRate, bucket.getRate() * decreaseFactor));
+        return backoff(attempt);
+    }
+
+    /**
+     * 发送出错（网络异常等），速率不变，只退避
+     * @param attempt   该消息第几次发送，从 1 开始
+     * @return 重试前需要退避的毫秒数
+     */
+    public synchronized long onError(int attempt) {
+        errorCount.incrementAndGet();
+        return backoff(attempt);
+    }
+
+    /**
+     * 获取统计信息
+     * @return
+     */
+    public synchronized Map<String, Object> getStat() {
+        Map<String, Object> ret = new LinkedHashMap<>();
+        ret.put("rate", bucket.getRate());
+        ret.put("minRate", minRate);
+        ret.put("maxRate", maxRate);
+        ret.put("consecutiveFailures", consecutiveFailures);
+        ret.put("lastBackoffMillis", lastBackoffMillis);
+        ret.put("lastStatusCode", lastStatusCode);
+        ret.put("lastRetCode", lastRetCode);
+        ret.put("success", successCount.get());
+        ret.put("throttled", throttledCount.get());
+        ret.put("error", errorCount.get());
+        return ret;
+    }
+
+    //按该消息的发送次数指数退避，取 [一半, 全部] 之间的随机值作为抖动
+    private long backoff(int attempt) {
+        consecutiveFailures++;
+        long cap = baseBackoffMillis << Math.min(Math.max(attempt, 1) - 1, 20);
+        cap = Math.min(maxBackoffMillis, cap);
+        lastBackoffMillis = cap / 2 + ThreadLocalRandom.current().nextLong(cap / 2 + 1);
+        return lastBackoffMillis;
+    }
+}
@@ -0,0 +1,24 @@
+package com.scienjus.smartqq.client;
+
+/**
+ * 发送失败但可以重试，由 {@link SendQueue} 在退避时间后把消息重新入队，发送线程不等待.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @date 2026/10/18.
+ */
+public class SendRetryException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    //重试前需要退避的毫秒数
+    private final long backoffMillis;
+
+    public SendRetryException(long backoffMillis) {
+        super(String.format("发送失败，%d 毫秒后重试", backoffMillis));
+        this.backoffMillis = backoffMillis;
+    }
+
+    public long getBackoffMillis() {
+        return backoffMillis;
+    }
+}
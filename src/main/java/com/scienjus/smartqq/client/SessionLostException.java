@@ -0,0 +1,26 @@
+package com.scienjus.smartqq.client;
+
+import net.dongliu.requests.exception.RequestException;
+
+/**
+ * 会话失效异常，需要重新登录或到 w.qq.com 恢复后才能继续收发消息.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @date 2026/10/18.
+ */
+public class SessionLostException extends RequestException {
+
+    private static final long serialVersionUID = 1L;
+
+    //Api返回码
+    private final int retCode;
+
+    public SessionLostException(int retCode) {
+        super(String.format("会话失效，Api返回码[%d]", retCode));
+        this.retCode = retCode;
+    }
+
+    public int getRetCode() {
+        return retCode;
+    }
+}
@@ -6,9 +6,10 @@ import com.alibaba.fastjson.JSONObject;
 import com.scienjus.smartqq.callback.MessageCallback;
 import com.scienjus.smartqq.constant.ApiURL;
 import com.scienjus.smartqq.model.*;
-import net.dongliu.requests.Client;
 import net.dongliu.requests.HeadOnlyRequestBuilder;
+import net.dongliu.requests.PostRequestBuilder;
 import net.dongliu.requests.Response;
+import net.dongliu.requests.ResponseHandler;
 import net.dongliu.requests.Session;
 import net.dongliu.requests.exception.RequestException;
 import org.apache.log4j.Logger;
@@ -17,6 +18,9 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Api客户端.
@@ -39,8 +43,11 @@ public class SmartQQClient implements Closeable {
     //消息发送失败重发次数
     private static final long RETRY_TIMES = 5;
 
-    //客户端
-    private Client client;
+    //Http 传输层，可以由多个客户端共享
+    private HttpTransport transport;
+
+    //传输层是否由本客户端创建，是的话关闭时一起关闭
+    private boolean ownTransport;
 
     //会话
     private Session session;
@@ -48,36 +55,64 @@ public class SmartQQClient implements Closeable {
     //鉴权参数
     private String ptwebqq;
 
+    //登录后不变的 hash 和拉取消息的请求体，只计算一次
+    private String hash;
+
+    private String pollForm;
+
     private String vfwebqq;
 
     private long uin;
 
     private String psessionid;
 
-    //线程开关
-    private volatile boolean pollStarted;
+    //消息拉取引擎
+    private PollEngine pollEngine;
+
+    //异步发送队列
+    private SendQueue sendQueue;
+
+    //发送速率控制
+    private SendRateController rateController;
+
+    //同步发送等待发送结果的最长时间
+    private long sendAwaitTimeoutMillis;
 
     public SmartQQClient(final MessageCallback callback) {
-        this.client = Client.pooled().maxPerRoute(5).maxTotal(10).build();
-        this.session = client.session();
+        this(callback, new ClientOptions());
+    }
+
+    public SmartQQClient(final MessageCallback callback, final ClientOptions options) {
+        this(callback, options, new HttpTransport(options), true);
+    }
+
+    /**
+     * 使用共享的传输层创建客户端，关闭客户端时不会关闭传输层
+     * @param callback  接收消息回调，为空时不拉取消息
+     * @param options   客户端配置
+     * @param transport 共享的传输层
+     */
+    public SmartQQClient(final MessageCallback callback, final ClientOptions options, final HttpTransport transport) {
+        this(callback, options, transport, false);
+    }
+
+    private SmartQQClient(final MessageCallback callback, final ClientOptions options, final HttpTransport transport,
+                          boolean ownTransport) {
+        this.transport = transport;
+        this.ownTransport = ownTransport;
+        this.session = transport.getClient().session();
         login();
+        this.sendQueue = new SendQueue("smartqq-sender-" + uin, options);
+        this.rateController = new SendRateController(sendQueue.getGlobalBucket(), options);
+        this.sendAwaitTimeoutMillis = options.getSendAwaitTimeoutMillis();
         if (callback != null) {
-            this.pollStarted = true;
-            new Thread(new Runnable() {
+            this.pollEngine = new PollEngine("smartqq-poller-" + uin, options, new PollEngine.Poller() {
                 @Override
-                public void run() {
-                    while (true) {
-                        if (!pollStarted) {
-                            return;
-                        }
-                        try {
-                            pollMessage(callback);
-                        } catch (Exception ignore) {
-                            LOGGER.error(ignore.getMessage());
-                        }
-                    }
+                public int poll() {
+                    return pollMessage(callback);
                 }
-            }).start();
+            });
+            this.pollEngine.start();
         }
     }
 
@@ -116,6 +151,9 @@ public class SmartQQClient implements Closeable {
         //阻塞直到确认二维码认证成功
         while (true) {
             sleep(1);
+            if (Thread.currentThread().isInterrupted()) {
+                throw new IllegalStateException("等待扫描二维码时被中断");
+            }
             Response<String> response = get(ApiURL.VERIFY_QR_CODE);
             String result = response.getBody();
             if (result.contains("成功")) {
@@ -164,6 +202,14 @@ public class SmartQQClient implements Closeable {
         JSONObject result = getJsonObjectResult(response);
         this.psessionid = result.getString("psessionid");
         this.uin = result.getLongValue("uin");
+        this.hash = hash(uin, ptwebqq);
+
+        JSONObject poll = new JSONObject();
+        poll.put("ptwebqq", ptwebqq);
+        poll.put("clientid", Client_ID);
+        poll.put("psessionid", psessionid);
+        poll.put("key", "");
+        this.pollForm = poll.toJSONString();
     }
 
     /**
@@ -185,29 +231,36 @@ public class SmartQQClient implements Closeable {
     /**
      * 拉取消息
      * @param callback  获取消息后的回调
+     * @return 拉取到的消息数
      */
-    private void pollMessage(MessageCallback callback) {
+    private int pollMessage(MessageCallback callback) {
         LOGGER.debug("开始接收消息");
 
-        JSONObject r = new JSONObject();
-        r.put("ptwebqq", ptwebqq);
-        r.put("clientid", Client_ID);
-        r.put("psessionid", psessionid);
-        r.put("key", "");
-
-        Response<String> response = post(ApiURL.POLL_MESSAGE, r);
-        JSONArray array = getJsonArrayResult(response);
-        for (int i = 0; array != null && i < array.size(); i++) {
-            JSONObject message = array.getJSONObject(i);
-            String type = message.getString("poll_type");
-            if ("message".equals(type)) {
-                callback.onMessage(new Message(message.getJSONObject("value")));
-            } else if ("group_message".equals(type)) {
-                callback.onGroupMessage(new GroupMessage(message.getJSONObject("value")));
-            } else if ("discu_message".equals(type)) {
-                callback.onDiscussMessage(new DiscussMessage(message.getJSONObject("value")));
+        Response<PollResponseHandler.Result> response;
+        transport.beginPoll();
+        try {
+            response = post(ApiURL.POLL_MESSAGE, pollForm, new PollResponseHandler());
+        } finally {
+            transport.endPoll();
+        }
+        List<Object> messages = getPollResult(response);
+        int count = 0;
+        for (Object message : messages) {
+            try {
+                if (message instanceof Message) {
+                    callback.onMessage((Message) message);
+                } else if (message instanceof GroupMessage) {
+                    callback.onGroupMessage((GroupMessage) message);
+                } else if (message instanceof DiscussMessage) {
+                    callback.onDiscussMessage((DiscussMessage) message);
+                }
+                count++;
+            } catch (Exception e) {
+                //单条消息处理失败不影响同一批的其他消息
+                LOGGER.error("处理消息失败：" + e.getMessage());
             }
         }
+        return count;
     }
 
     /**
@@ -216,18 +269,19 @@ public class SmartQQClient implements Closeable {
      * @param msg       消息内容
      */
     public void sendMessageToGroup(long groupId, String msg) {
-        LOGGER.debug("开始发送群消息");
-
-        JSONObject r = new JSONObject();
-        r.put("group_uin", groupId);
-        r.put("content", JSON.toJSONString(Arrays.asList(msg, Arrays.asList("font", Font.DEFAULT_FONT))));  //注意这里虽然格式是Json，但是实际是String
-        r.put("face", 573);
-        r.put("clientid", Client_ID);
-        r.put("msg_id", MESSAGE_ID++);
-        r.put("psessionid", psessionid);
+        await(sendMessageToGroupAsync(groupId, msg, SendPriority.REPLY));
+    }
 
-        Response<String> response = postWithRetry(ApiURL.SEND_MESSAGE_TO_GROUP, r);
-        checkSendMsgResult(response);
+    /**
+     * 异步发送群消息，消息进入发送队列后立即返回
+     * @param groupId   群id
+     * @param msg       消息内容
+     * @param priority  发送优先级
+     * @return 发送结果，发送成功为 true
+     */
+    public Future<Boolean> sendMessageToGroupAsync(final long groupId, final String msg, SendPriority priority) {
+        return sendQueue.submit("group:" + groupId, priority,
+                newSendAction(ApiURL.SEND_MESSAGE_TO_GROUP, "group_uin", groupId, msg));
     }
 
     /**
@@ -236,18 +290,19 @@ public class SmartQQClient implements Closeable {
      * @param msg       消息内容
      */
     public void sendMessageToDiscuss(long discussId, String msg) {
-        LOGGER.debug("开始发送讨论组消息");
-
-        JSONObject r = new JSONObject();
-        r.put("did", discussId);
-        r.put("content", JSON.toJSONString(Arrays.asList(msg, Arrays.asList("font", Font.DEFAULT_FONT))));  //注意这里虽然格式是Json，但是实际是String
-        r.put("face", 573);
-        r.put("clientid", Client_ID);
-        r.put("msg_id", MESSAGE_ID++);
-        r.put("psessionid", psessionid);
+        await(sendMessageToDiscussAsync(discussId, msg, SendPriority.REPLY));
+    }
 
-        Response<String> response = postWithRetry(ApiURL.SEND_MESSAGE_TO_DISCUSS, r);
-        checkSendMsgResult(response);
+    /**
+     * 异步发送讨论组消息，消息进入发送队列后立即返回
+     * @param discussId 讨论组id
+     * @param msg       消息内容
+     * @param priority  发送优先级
+     * @return 发送结果，发送成功为 true
+     */
+    public Future<Boolean> sendMessageToDiscussAsync(final long discussId, final String msg, SendPriority priority) {
+        return sendQueue.submit("discuss:" + discussId, priority,
+                newSendAction(ApiURL.SEND_MESSAGE_TO_DISCUSS, "did", discussId, msg));
     }
 
     /**
@@ -256,18 +311,35 @@ public class SmartQQClient implements Closeable {
      * @param msg       消息内容
      */
     public void sendMessageToFriend(long friendId, String msg) {
-        LOGGER.debug("开始发送消息");
+        await(sendMessageToFriendAsync(friendId, msg, SendPriority.REPLY));
+    }
 
-        JSONObject r = new JSONObject();
-        r.put("to", friendId);
-        r.put("content", JSON.toJSONString(Arrays.asList(msg, Arrays.asList("font", Font.DEFAULT_FONT))));  //注意这里虽然格式是Json，但是实际是String
-        r.put("face", 573);
-        r.put("clientid", Client_ID);
-        r.put("msg_id", MESSAGE_ID++);
-        r.put("psessionid", psessionid);
+    /**
+     * 异步发送消息，消息进入发送队列后立即返回
+     * @param friendId  好友id
+     * @param msg       消息内容
+     * @param priority  发送优先级
+     * @return 发送结果，发送成功为 true
+     */
+    public Future<Boolean> sendMessageToFriendAsync(final long friendId, final String msg, SendPriority priority) {
+        return sendQueue.submit("friend:" + friendId, priority,
+                newSendAction(ApiURL.SEND_MESSAGE_TO_FRIEND, "to", friendId, msg));
+    }
+
+    //创建发送动作，第一次发送时生成请求体，重试时沿用同一个消息id
+    private SendQueue.Action newSendAction(final ApiURL url, final String toKey, final long toId, final String msg) {
+        return new SendQueue.Action() {
+            private String r;
 
-        Response<String> response = postWithRetry(ApiURL.SEND_MESSAGE_TO_FRIEND, r);
-        checkSendMsgResult(response);
+            @Override
+            public boolean send(int attempt) {
+                if (r == null) {
+                    LOGGER.debug("开始发送消息 [" + toKey + "=" + toId + "]");
+                    r = SendPayload.build(toKey, toId, msg, Client_ID, MESSAGE_ID++, psessionid);
+                }
+                return postOrRetry(url, r, attempt);
+            }
+        };
     }
 
     /**
@@ -551,23 +623,80 @@ public class SmartQQClient implements Closeable {
 
     //发送post请求
     private Response<String> post(ApiURL url, JSONObject r) {
+        return postRequest(url, r.toJSONString()).text();
+    }
+
+    //发送post请求，由handler直接处理响应流
+    private <T> Response<T> post(ApiURL url, String r, ResponseHandler<T> handler) {
+        return postRequest(url, r).handle(handler);
+    }
+
+    //r 为已经序列化好的请求体
+    private PostRequestBuilder postRequest(ApiURL url, String r) {
         return session.post(url.getUrl())
                 .addHeader("User-Agent", ApiURL.USER_AGENT)
                 .addHeader("Referer", url.getReferer())
                 .addHeader("Origin", url.getOrigin())
-                .addForm("r", r.toJSONString())
-                .text();
+                .addForm("r", r);
     }
 
-    //发送post请求，失败时重试
-    private Response<String> postWithRetry(ApiURL url, JSONObject r) {
-        int times = 0;
-        Response<String> response;
-        do {
-            response = post(url, r);
-            times++;
-        } while (times < RETRY_TIMES && response.getStatusCode() != 200);
-        return response;
+    //发送一次post请求并根据结果调整发送速率，返回是否发送成功，失败且可以重试时抛出 SendRetryException，
+    //由发送队列退避后重新入队，发送线程不在这里等待
+    private boolean postOrRetry(ApiURL url, String r, int attempt) {
+        long backoff;
+        try {
+            Response<String> response = postRequest(url, r).text();
+            if (response.getStatusCode() == 200) {
+                int retCode = getSendRetCode(response);
+                if (retCode == 0) {
+                    rateController.onSuccess();
+                    LOGGER.debug("发送成功!");
+                    return true;
+                }
+                //会话失效与限流无关，不降低发送速率，重试也没有意义
+                if (isSessionLostRetCode(retCode)) {
+                    LOGGER.error(String.format("发送失败，Api返回码[%d]", retCode));
+                    return false;
+                }
+                backoff = rateController.onThrottled(200, retCode, attempt);
+                if (attempt >= RETRY_TIMES) {
+                    LOGGER.error(String.format("发送失败，Api返回码[%d]", retCode));
+                    return false;
+                }
+            } else {
+                backoff = rateController.onThrottled(response.getStatusCode(), null, attempt);
+                if (attempt >= RETRY_TIMES) {
+                    LOGGER.error(String.format("发送失败，Http返回码[%d]", response.getStatusCode()));
+                    return false;
+                }
+            }
+        } catch (RequestException e) {
+            backoff = rateController.onError(attempt);
+            if (attempt >= RETRY_TIMES) {
+                throw e;
+            }
+        }
+        LOGGER.warn(String.format("发送失败，%d 毫秒后进行第 %d 次重试", backoff, attempt));
+        throw new SendRetryException(backoff);
+    }
+
+    //获取发送结果的 Api 返回码，errCode 为 0 时视为成功，响应体无法解析或没有 retcode 时为 -1
+    private static int getSendRetCode(Response<String> response) {
+        JSONObject json;
+        try {
+            json = JSON.parseObject(response.getBody());
+        } catch (Exception e) {
+            return -1;
+        }
+        if (json == null) {
+            return -1;
+        }
+        Integer errCode = json.getInteger("errCode");
+        if (errCode != null && errCode == 0) {
+            return 0;
+        }
+        Integer retCode = json.getInteger("retcode");
+        return retCode == null ? -1 : retCode;
     }
 
     //获取返回json的result字段（JSONObject类型）
@@ -580,18 +709,63 @@ public class SmartQQClient implements Closeable {
         return getResponseJson(response).getJSONArray("result");
     }
 
-    //检查消息是否发送成功
-    private static void checkSendMsgResult(Response<String> response) {
+    //等待异步发送结果，超时后取消尚未发出的消息，避免关闭时同步调用方永远等待
+    private void await(Future<Boolean> future) {
+        try {
+            future.get(sendAwaitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException e) {
+            if (future.cancel(false)) {
+                LOGGER.error(String.format("等待发送结果超时[%d 毫秒]，已取消发送", sendAwaitTimeoutMillis));
+            } else {
+                LOGGER.error(String.format("等待发送结果超时[%d 毫秒]，正在发送，结果未知", sendAwaitTimeoutMillis));
+            }
+        } catch (Exception e) {
+            LOGGER.error("发送失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 获取消息拉取统计信息
+     * @return 没有设置回调时返回 null
+     */
+    public Map<String, Object> getPollStat() {
+        return pollEngine == null ? null : pollEngine.getStat();
+    }
+
+    /**
+     * 获取发送队列统计信息
+     * @return
+     */
+    public Map<String, Object> getSendStat() {
+        Map<String, Object> ret = sendQueue.getStat();
+        ret.put("rateControl", rateController.getStat());
+        return ret;
+    }
+
+    //检验拉取消息的返回结果，会话失效时抛出 SessionLostException
+    private static List<Object> getPollResult(Response<PollResponseHandler.Result> response) {
         if (response.getStatusCode() != 200) {
-            LOGGER.error(String.format("发送失败，Http返回码[%d]", response.getStatusCode()));
+            throw new RequestException(String.format("请求失败，Http返回码[%d]", response.getStatusCode()));
         }
-        JSONObject json = JSON.parseObject(response.getBody());
-        Integer errCode = json.getInteger("errCode");
-        if (errCode != null && errCode == 0) {
-            LOGGER.debug("发送成功!");
-        } else {
-            LOGGER.error(String.format("发送失败，Api返回码[%d]", json.getInteger("retcode")));
+        PollResponseHandler.Result result = response.getBody();
+        Integer retCode = result.getRetCode();
+        if (retCode == null) { //没有 retcode 与 getResponseJson 一样视为失败
+            throw new RequestException("请求失败，Api返回码[null]");
+        }
+        if (retCode == 0) {
+            return result.getMessages();
         }
+        if (isSessionLostRetCode(retCode)) {
+            throw new SessionLostException(retCode);
+        }
+        throw new RequestException(String.format("请求失败，Api返回码[%d]", retCode));
+    }
+
+    //103、121 表示会话已失效
+    private static boolean isSessionLostRetCode(int retCode) {
+        return retCode == 103 || retCode == 121;
     }
 
     //检验Json返回结果
@@ -611,16 +785,22 @@ public class SmartQQClient implements Closeable {
         return json;
     }
 
-    //hash加密方法
+    //hash加密方法，登录后计算一次
     private String hash() {
-        return hash(uin, ptwebqq);
+        return hash;
     }
 
     //线程暂停
     private static void sleep(long seconds) {
+        sleepMillis(seconds * 1000);
+    }
+
+    private static void sleepMillis(long millis) {
         try {
-            Thread.sleep(seconds * 1000);
-        } catch (InterruptedException ignored) {}
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     //hash加密方法
@@ -642,20 +822,25 @@ public class SmartQQClient implements Closeable {
             U1[T] = T % 2 == 0 ? N[T >> 1] : V[T >> 1];
         }
 
-        String[] N1 = {"0", "1", "2", "3", "4", "5", "6", "7", "8", "9", "A", "B", "C", "D", "E", "F"};
-        String V1 = "";
-        for (long aU1 : U1) {
-            V1 += N1[(int) ((aU1 >> 4) & 15)];
-            V1 += N1[(int) (aU1 & 15)];
+        char[] N1 = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'};
+        char[] V1 = new char[U1.length * 2];
+        for (int T = 0; T < U1.length; T++) {
+            V1[T * 2] = N1[(int) ((U1[T] >> 4) & 15)];
+            V1[T * 2 + 1] = N1[(int) (U1[T] & 15)];
         }
-        return V1;
+        return new String(V1);
     }
 
     @Override
     public void close() throws IOException {
-        this.pollStarted = false;
-        if (this.client != null) {
-            this.client.close();
+        if (this.pollEngine != null) {
+            this.pollEngine.close();
+        }
+        if (this.sendQueue != null) {
+            this.sendQueue.close();
+        }
+        if (this.ownTransport) {
+            this.transport.close();
         }
     }
 }
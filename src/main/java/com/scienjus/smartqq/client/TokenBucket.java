@@ -0,0 +1,80 @@
+package com.scienjus.smartqq.client;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 令牌桶.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @date 2026/10/18.
+ */
+public class TokenBucket {
+
+    //每秒生成的令牌数
+    private double rate;
+
+    //桶容量（允许的突发量）
+    private final double capacity;
+
+    //当前令牌数
+    private double tokens;
+
+    //上次补充令牌的时间
+    private long lastRefill;
+
+    public TokenBucket(double rate, double capacity) {
+        this.rate = rate;
+        this.capacity = Math.max(1, capacity);
+        this.tokens = this.capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * 尝试获取一个令牌
+     * @return 获取成功返回 0，否则返回需要等待的纳秒数
+     */
+    public synchronized long tryAcquire() {
+        refill();
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) / rate * TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * 阻塞直到获取一个令牌
+     * @throws InterruptedException
+     */
+    public void acquire() throws InterruptedException {
+        long wait;
+        while ((wait = tryAcquire()) > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    /**
+     * 调整令牌生成速率
+     * @param rate  每秒生成的令牌数
+     */
+    public synchronized void setRate(double rate) {
+        refill();
+        this.rate = rate;
+    }
+
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    public synchronized double getTokens() {
+        refill();
+        return tokens;
+    }
+
+    //按流逝的时间补充令牌
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * rate / TimeUnit.SECONDS.toNanos(1));
+        lastRefill = now;
+    }
+}
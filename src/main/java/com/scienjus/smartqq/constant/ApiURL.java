@@ -1,8 +1,17 @@
 package com.scienjus.smartqq.constant;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Api的请求地址和Referer
+ *
+ * <p>
+ * 地址模板在加载时拆分成常量片段和参数序号，Origin 也只计算一次，拼接地址时只用一个 StringBuilder。
+ * </p>
+ *
  * @author ScienJus
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
  * @date 15/12/19.
  */
 public enum ApiURL {
@@ -96,9 +105,19 @@ public enum ApiURL {
 
     private String referer;
 
+    private String origin;
+
+    //地址模板拆分后的常量片段，片段 i 之后紧跟参数 {paramIndexes[i]}，最后一个片段之后没有参数
+    private String[] literals;
+
+    private int[] paramIndexes;
+
     ApiURL(String url, String referer) {
         this.url = url;
         this.referer = referer;
+        int slash = url.lastIndexOf('/');
+        this.origin = slash < 0 ? null : url.substring(0, slash);
+        compile(url);
     }
 
     public String getUrl() {
@@ -111,15 +130,61 @@ public enum ApiURL {
     }
 
     public String buildUrl(Object... params) {
-        int i = 1;
-        String url = this.url;
-        for (Object param : params) {
-            url = url.replace("{" + i++ + "}", param.toString());
+        if (paramIndexes.length == 0) {
+            return url;
         }
-        return url;
+        StringBuilder builder = new StringBuilder(url.length() + 16 * paramIndexes.length);
+        for (int i = 0; i < paramIndexes.length; i++) {
+            builder.append(literals[i]);
+            int index = paramIndexes[i];
+            if (index <= params.length) {
+                builder.append(params[index - 1]);
+            } else {
+                //没有对应的参数，保留占位符
+                builder.append('{').append(index).append('}');
+            }
+        }
+        return builder.append(literals[paramIndexes.length]).toString();
     }
 
     public String getOrigin() {
-        return this.url.substring(0, url.lastIndexOf("/"));
+        return origin;
+    }
+
+    //拆分地址模板中的 {n} 占位符
+    private void compile(String template) {
+        List<String> literalList = new ArrayList<>();
+        List<Integer> indexList = new ArrayList<>();
+        int start = 0;
+        int open = template.indexOf('{');
+        while (open >= 0) {
+            int close = template.indexOf('}', open);
+            if (close < 0) {
+                break;
+            }
+            String index = template.substring(open + 1, close);
+            if (!index.isEmpty() && isDigits(index)) {
+                literalList.add(template.substring(start, open));
+                indexList.add(Integer.valueOf(index));
+                start = close + 1;
+            }
+            open = template.indexOf('{', close);
+        }
+        literalList.add(template.substring(start));
+
+        this.literals = literalList.toArray(new String[literalList.size()]);
+        this.paramIndexes = new int[indexList.size()];
+        for (int i = 0; i < paramIndexes.length; i++) {
+            paramIndexes[i] = indexList.get(i);
+        }
+    }
+
+    private static boolean isDigits(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (!Character.isDigit(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
     }
 }
@@ -1,8 +1,10 @@
 package com.scienjus.smartqq.model;
 
-import com.alibaba.fastjson.JSONArray;
-import com.alibaba.fastjson.JSONObject;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+
+import java.util.List;
 
 /**
  * 讨论组消息
@@ -16,19 +18,48 @@ public class DiscussMessage {
 
     private long time;
 
-    private String content;
-
     private long userId;
 
-    private Font font;
+    @Getter(AccessLevel.NONE)
+    private final MessageContent messageContent;
+
+    public DiscussMessage(long discussId, long time, long userId, MessageContent messageContent) {
+        this.discussId = discussId;
+        this.time = time;
+        this.userId = userId;
+        this.messageContent = messageContent;
+    }
+
+    /**
+     * 获取拼接后的内容，表情等片段以 Json 形式保留
+     * @return
+     */
+    public String getContent() {
+        return messageContent.getContent();
+    }
+
+    /**
+     * 获取纯文本，去掉表情和图片等片段
+     * @return
+     */
+    public String getText() {
+        return messageContent.getText();
+    }
+
+    /**
+     * 获取内容片段
+     * @return
+     */
+    public List<MessageSegment> getSegments() {
+        return messageContent.getSegments();
+    }
 
-    public DiscussMessage(JSONObject json) {
-        JSONArray content = json.getJSONArray("content");
-        this.font = content.getJSONArray(0).getObject(1, Font.class);
-        this.content = content.getString(1);
-        this.time = json.getLongValue("time");
-        this.discussId = json.getLongValue("did");
-        this.userId = json.getLongValue("send_uin");
+    /**
+     * 获取字体，第一次访问时才解析
+     * @return
+     */
+    public Font getFont() {
+        return messageContent.getFont();
     }
 
 }
@@ -1,8 +1,10 @@
 package com.scienjus.smartqq.model;
 
-import com.alibaba.fastjson.JSONArray;
-import com.alibaba.fastjson.JSONObject;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+
+import java.util.List;
 
 /**
  * 消息.
@@ -16,25 +18,47 @@ public class Message {
 
     private long time;
 
-    private String content;
-
     private long userId;
 
-    private Font font;
+    @Getter(AccessLevel.NONE)
+    private final MessageContent messageContent;
+
+    public Message(long time, long userId, MessageContent messageContent) {
+        this.time = time;
+        this.userId = userId;
+        this.messageContent = messageContent;
+    }
+
+    /**
+     * 获取拼接后的内容，表情等片段以 Json 形式保留
+     * @return
+     */
+    public String getContent() {
+        return messageContent.getContent();
+    }
 
-    public Message(JSONObject json) {
-        JSONArray cont = json.getJSONArray("content");
-        this.font = cont.getJSONArray(0).getObject(1, Font.class);
+    /**
+     * 获取纯文本，去掉表情和图片等片段
+     * @return
+     */
+    public String getText() {
+        return messageContent.getText();
+    }
 
-        final int size = cont.size();
-        final StringBuilder contentBuilder = new StringBuilder();
-        for (int i = 1; i < size; i++) {
-            contentBuilder.append(cont.getString(i));
-        }
-        this.content = contentBuilder.toString();
+    /**
+     * 获取内容片段
+     * @return
+     */
+    public List<MessageSegment> getSegments() {
+        return messageContent.getSegments();
+    }
 
-        this.time = json.getLongValue("time");
-        this.userId = json.getLongValue("from_uin");
+    /**
+     * 获取字体，第一次访问时才解析
+     * @return
+     */
+    public Font getFont() {
+        return messageContent.getFont();
     }
 
 }
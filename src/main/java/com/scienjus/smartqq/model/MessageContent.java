@@ -0,0 +1,130 @@
+package com.scienjus.smartqq.model;
+
+import com.alibaba.fastjson.JSONArray;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 消息内容的延迟视图.
+ *
+ * <p>
+ * 保留服务端返回的原始片段和字体，字体、拼接后的内容、纯文本和片段列表都在第一次访问时才计算并缓存。
+ * 多数消息从来不需要字体，也只需要纯文本。计算结果只依赖原始片段，并发访问时最多重复计算一次，不需要加锁。
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @date 2026/10/18.
+ */
+public class MessageContent {
+
+    //原始字体 ["font", {}]，可能为空
+    private final JSONArray rawFont;
+
+    //原始片段，文本为 String，其他为 JSONArray
+    private final List<Object> rawSegments;
+
+    private volatile Font font;
+
+    private volatile String content;
+
+    private volatile String text;
+
+    private volatile List<MessageSegment> segments;
+
+    public MessageContent(JSONArray rawFont, List<Object> rawSegments) {
+        this.rawFont = rawFont;
+        this.rawSegments = rawSegments;
+    }
+
+    /**
+     * 获取字体
+     * @return 消息中没有字体时返回 null
+     */
+    public Font getFont() {
+        Font ret = font;
+        if (ret == null && rawFont != null && rawFont.size() > 1) {
+            ret = rawFont.getObject(1, Font.class);
+            font = ret;
+        }
+        return ret;
+    }
+
+    /**
+     * 获取拼接后的内容，文本原样保留，表情等片段以 Json 形式保留，例如 你好["face",14]
+     * @return
+     */
+    public String getContent() {
+        String ret = content;
+        if (ret == null) {
+            ret = join(true);
+            content = ret;
+        }
+        return ret;
+    }
+
+    /**
+     * 获取纯文本，去掉表情和图片等片段
+     * @return
+     */
+    public String getText() {
+        String ret = text;
+        if (ret == null) {
+            ret = join(false);
+            text = ret;
+        }
+        return ret;
+    }
+
+    /**
+     * 获取片段列表
+     * @return
+     */
+    public List<MessageSegment> getSegments() {
+        List<MessageSegment> ret = segments;
+        if (ret == null) {
+            List<MessageSegment> list = new ArrayList<>(rawSegments.size());
+            for (Object raw : rawSegments) {
+                list.add(new MessageSegment(raw));
+            }
+            ret = Collections.unmodifiableList(list);
+            segments = ret;
+        }
+        return ret;
+    }
+
+    /**
+     * 是否包含表情
+     * @return
+     */
+    public boolean hasFace() {
+        for (Object raw : rawSegments) {
+            if (MessageSegment.typeOf(raw) == MessageSegment.Type.FACE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return getContent();
+    }
+
+    //一次遍历拼接片段，只有一个文本片段时直接返回，不再复制
+    private String join(boolean all) {
+        if (rawSegments.size() == 1 && rawSegments.get(0) instanceof String) {
+            return (String) rawSegments.get(0);
+        }
+        StringBuilder builder = new StringBuilder();
+        for (Object raw : rawSegments) {
+            if (raw instanceof String) {
+                builder.append((String) raw);
+            } else if (all) {
+                builder.append(new MessageSegment(raw));
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,81 @@
+package com.scienjus.smartqq.model;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+
+/**
+ * 消息内容片段，文本、表情或其他（图片等）.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @date 2026/10/18.
+ */
+public class MessageSegment {
+
+    /**
+     * 片段类型
+     */
+    public enum Type {
+
+        //文本
+        TEXT,
+
+        //表情 ["face", 14]
+        FACE,
+
+        //其他，例如图片 ["cface", {}]
+        OTHER
+    }
+
+    private final Type type;
+
+    //原始片段，文本为 String，其他为 JSONArray
+    private final Object raw;
+
+    MessageSegment(Object raw) {
+        this.raw = raw;
+        this.type = typeOf(raw);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * 获取文本，非文本片段返回 null
+     * @return
+     */
+    public String getText() {
+        return type == Type.TEXT ? (String) raw : null;
+    }
+
+    /**
+     * 获取表情 id，非表情片段返回 -1
+     * @return
+     */
+    public int getFaceId() {
+        return type == Type.FACE ? ((JSONArray) raw).getIntValue(1) : -1;
+    }
+
+    /**
+     * 获取原始片段
+     * @return 文本为 String，其他为 JSONArray
+     */
+    public Object getRaw() {
+        return raw;
+    }
+
+    @Override
+    public String toString() {
+        return type == Type.TEXT ? (String) raw : JSON.toJSONString(raw);
+    }
+
+    static Type typeOf(Object raw) {
+        if (raw instanceof String) {
+            return Type.TEXT;
+        }
+        if (raw instanceof JSONArray && ((JSONArray) raw).size() > 1 && "face".equals(((JSONArray) raw).getString(0))) {
+            return Type.FACE;
+        }
+        return Type.OTHER;
+    }
+}
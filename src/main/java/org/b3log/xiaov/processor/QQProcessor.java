@@ -25,6 +25,7 @@ import org.b3log.latke.servlet.HTTPRequestContext;
 import org.b3log.latke.servlet.HTTPRequestMethod;
 import org.b3log.latke.servlet.annotation.RequestProcessing;
 import org.b3log.latke.servlet.annotation.RequestProcessor;
+import org.b3log.xiaov.service.PushJobQueue;
 import org.b3log.xiaov.service.QQService;
 import org.b3log.xiaov.util.XiaoVs;
 import org.json.JSONObject;
@@ -34,10 +35,12 @@ import org.json.JSONObject;
  *
  * <ul>
  * <li>Handles QQ message (/qq), POST</li>
+ * <li>Shows push job status (/qq/push), GET</li>
+ * <li>Shows QQ service status (/qq/status), GET</li>
  * </ul>
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.0.2.3, Aug 26, 2016
+ * @version 1.2.0.0, Oct 18, 2026
  * @since 1.0.0
  */
 @RequestProcessor
@@ -81,9 +84,69 @@ public class QQProcessor {
         }
 
         LOGGER.info("Push QQ groups [msg=" + msg + "]");
-        qqService.sendToPushQQGroups(msg);
+        final PushJobQueue.Job job = qqService.submitPush(msg);
 
-        final JSONObject ret = new JSONObject();
+        final JSONObject ret = job.toJSONObject(false);
+        context.renderJSON(ret);
+        ret.put(Keys.STATUS_CODE, PushJobQueue.Status.FAILED != job.getStatus());
+    }
+
+    /**
+     * Shows push job status.
+     *
+     * @param context the specified context
+     * @param request the specified request
+     * @param response the specified response
+     * @throws Exception exception
+     */
+    @RequestProcessing(value = "/qq/push", method = HTTPRequestMethod.GET)
+    public void pushStatus(final HTTPRequestContext context,
+            final HttpServletRequest request, final HttpServletResponse response) throws Exception {
+        final String key = XiaoVs.getString("qq.bot.key");
+        if (!key.equals(request.getParameter("key"))) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+
+            return;
+        }
+
+        final String id = request.getParameter("id");
+        if (StringUtils.isBlank(id) || !StringUtils.isNumeric(id) || id.length() > 18) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+
+            return;
+        }
+
+        final PushJobQueue.Job job = qqService.getPushJob(Long.parseLong(id));
+        if (null == job) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+
+            return;
+        }
+
+        final JSONObject ret = job.toJSONObject(true);
+        context.renderJSON(ret);
+        ret.put(Keys.STATUS_CODE, true);
+    }
+
+    /**
+     * Shows QQ service status.
+     *
+     * @param context the specified context
+     * @param request the specified request
+     * @param response the specified response
+     * @throws Exception exception
+     */
+    @RequestProcessing(value = "/qq/status", method = HTTPRequestMethod.GET)
+    public void status(final HTTPRequestContext context,
+            final HttpServletRequest request, final HttpServletResponse response) throws Exception {
+        final String key = XiaoVs.getString("qq.bot.key");
+        if (!key.equals(request.getParameter("key"))) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+
+            return;
+        }
+
+        final JSONObject ret = qqService.getStat();
         context.renderJSON(ret);
         ret.put(Keys.STATUS_CODE, true);
     }
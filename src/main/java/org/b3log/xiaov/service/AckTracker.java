@@ -0,0 +1,382 @@
+/*
+ * Copyright (c) 2012-2016, b3log.org & hacpai.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.xiaov.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+import org.b3log.xiaov.util.HashedTimerWheel;
+import org.json.JSONObject;
+
+/**
+ * Delivery ack tracker.
+ *
+ * <p>
+ * Tracks messages sent by XiaoV until XiaoV's listener receives them. Pending messages are keyed by (conversation,
+ * content), so lookups are O(1) and identical texts sent to different conversations do not collide. Each pending
+ * message holds a timer entry which fires the resend callback if no ack arrives in time, no thread is parked.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 18, 2026
+ * @since 2.2.0
+ */
+public class AckTracker {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(AckTracker.class.getName());
+
+    /**
+     * Pending deliveries.
+     */
+    private final ConcurrentMap<Key, Pending> pendings = new ConcurrentHashMap<>();
+
+    /**
+     * Timer.
+     */
+    private final HashedTimerWheel timer;
+
+    /**
+     * Executor which runs delivery callbacks.
+     */
+    private final Executor executor;
+
+    /**
+     * Ack check interval in milliseconds.
+     */
+    private final long checkInterval;
+
+    /**
+     * Max resend count.
+     */
+    private final int maxRetries;
+
+    /**
+     * Max pending delivery count.
+     */
+    private final int maxPending;
+
+    /**
+     * Tracked count.
+     */
+    private final AtomicLong trackedCount = new AtomicLong();
+
+    /**
+     * Acked count.
+     */
+    private final AtomicLong ackedCount = new AtomicLong();
+
+    /**
+     * Resent count.
+     */
+    private final AtomicLong resentCount = new AtomicLong();
+
+    /**
+     * Gave up count.
+     */
+    private final AtomicLong gaveUpCount = new AtomicLong();
+
+    /**
+     * Constructs an ack tracker with the specified arguments.
+     *
+     * @param timer the specified timer
+     * @param executor the specified executor which runs delivery callbacks
+     * @param checkInterval the specified ack check interval in milliseconds
+     * @param maxRetries the specified max resend count
+     * @param maxPending the specified max pending delivery count
+     */
+    public AckTracker(final HashedTimerWheel timer, final Executor executor, final long checkInterval,
+            final int maxRetries, final int maxPending) {
+        this.timer = timer;
+        this.executor = executor;
+        this.checkInterval = checkInterval;
+        this.maxRetries = maxRetries;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Tracks the delivery of the specified message.
+     *
+     * @param conversation the specified conversation
+     * @param content the specified message content
+     * @param delivery the specified delivery callback
+     */
+    public void track(final long conversation, final String content, final Delivery delivery) {
+        if (pendings.size() >= maxPending) {
+            LOGGER.log(Level.WARN, "Too many pending acks [max=" + maxPending + "], skips tracking");
+
+            return;
+        }
+
+        final Key key = new Key(conversation, content);
+        final Pending pending = new Pending(key, delivery);
+        final Pending previous = pendings.put(key, pending);
+        if (null != previous) { // The same text is sent again, the later one takes over
+            previous.cancel();
+        }
+
+        trackedCount.incrementAndGet();
+        schedule(pending);
+    }
+
+    /**
+     * Acks the specified message.
+     *
+     * @param conversation the specified conversation
+     * @param content the specified message content
+     * @return {@code true} if a pending delivery is acked, returns {@code false} otherwise
+     */
+    public boolean ack(final long conversation, final String content) {
+        final Pending pending = pendings.remove(new Key(conversation, content));
+        if (null == pending) {
+            return false;
+        }
+
+        pending.cancel();
+        ackedCount.incrementAndGet();
+
+        return true;
+    }
+
+    /**
+     * Gets the statistic of this tracker.
+     *
+     * @return statistic, for example,
+     * <pre>
+     * {
+     *     "pending": int,
+     *     "tracked": long,
+     *     "acked": long,
+     *     "resent": long,
+     *     "gaveUp": long
+     * }
+     * </pre>
+     */
+    public JSONObject getStat() {
+        final JSONObject ret = new JSONObject();
+
+        ret.put("pending", pendings.size());
+        ret.put("tracked", trackedCount.get());
+        ret.put("acked", ackedCount.get());
+        ret.put("resent", resentCount.get());
+        ret.put("gaveUp", gaveUpCount.get());
+
+        return ret;
+    }
+
+    /**
+     * Schedules the next ack check of the specified pending delivery.
+     *
+     * @param pending the specified pending delivery
+     */
+    private void schedule(final Pending pending) {
+        try {
+            pending.timeout = timer.newTimeout(new Runnable() {
+                @Override
+                public void run() {
+                    check(pending);
+                }
+            }, checkInterval, TimeUnit.MILLISECONDS);
+        } catch (final RejectedExecutionException e) {
+            pendings.remove(pending.key, pending);
+
+            LOGGER.log(Level.WARN, "Timer is full, stops tracking a message");
+        }
+    }
+
+    /**
+     * Checks the specified pending delivery, resends it if not acked yet.
+     *
+     * @param pending the specified pending delivery
+     */
+    private void check(final Pending pending) {
+        if (pending.cancelled || pendings.get(pending.key) != pending) {
+            return; // Acked or taken over
+        }
+
+        pending.retries++;
+        final int retries = pending.retries;
+        final boolean giveUp = retries >= maxRetries;
+        if (giveUp) {
+            pendings.remove(pending.key, pending);
+        } else {
+            schedule(pending);
+        }
+
+        resentCount.incrementAndGet();
+        if (giveUp) {
+            gaveUpCount.incrementAndGet();
+        }
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    pending.delivery.resend(retries);
+                    if (giveUp) {
+                        pending.delivery.giveUp();
+                    }
+                } catch (final Exception e) {
+                    LOGGER.log(Level.ERROR, "Resends message failed", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Delivery callback.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.0.0, Oct 18, 2026
+     * @since 2.2.0
+     */
+    public interface Delivery {
+
+        /**
+         * Resends the message since it has not been acked in time.
+         *
+         * @param retries the specified retry round, starts from 1
+         */
+        void resend(final int retries);
+
+        /**
+         * Called after the last resend, the listener has not received any of the sent copies.
+         */
+        void giveUp();
+    }
+
+    /**
+     * Pending delivery.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.0.0, Oct 18, 2026
+     * @since 2.2.0
+     */
+    private static final class Pending {
+
+        /**
+         * Key.
+         */
+        private final Key key;
+
+        /**
+         * Delivery callback.
+         */
+        private final Delivery delivery;
+
+        /**
+         * Resent count.
+         */
+        private volatile int retries;
+
+        /**
+         * Cancelled flag.
+         */
+        private volatile boolean cancelled;
+
+        /**
+         * Current timer entry.
+         */
+        private volatile HashedTimerWheel.Timeout timeout;
+
+        /**
+         * Constructs a pending delivery with the specified key and delivery callback.
+         *
+         * @param key the specified key
+         * @param delivery the specified delivery callback
+         */
+        private Pending(final Key key, final Delivery delivery) {
+            this.key = key;
+            this.delivery = delivery;
+        }
+
+        /**
+         * Cancels this pending delivery.
+         */
+        private void cancel() {
+            cancelled = true;
+
+            final HashedTimerWheel.Timeout t = timeout;
+            if (null != t) {
+                t.cancel();
+            }
+        }
+    }
+
+    /**
+     * Pending delivery key, (conversation, content).
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.0.0, Oct 18, 2026
+     * @since 2.2.0
+     */
+    private static final class Key {
+
+        /**
+         * Conversation.
+         */
+        private final long conversation;
+
+        /**
+         * Content.
+         */
+        private final String content;
+
+        /**
+         * Hash code.
+         */
+        private final int hash;
+
+        /**
+         * Constructs a key with the specified conversation and content.
+         *
+         * @param conversation the specified conversation
+         * @param content the specified content
+         */
+        private Key(final long conversation, final String content) {
+            this.conversation = conversation;
+            this.content = content;
+            this.hash = 31 * (int) (conversation ^ (conversation >>> 32)) + content.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+
+            final Key other = (Key) obj;
+
+            return conversation == other.conversation && hash == other.hash && content.equals(other.content);
+        }
+    }
+}
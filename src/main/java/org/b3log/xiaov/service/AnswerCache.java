@@ -0,0 +1,367 @@
+/*
+ * Copyright (c) 2012-2016, b3log.org & hacpai.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.xiaov.service;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.lang.StringUtils;
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+import org.b3log.latke.util.Strings;
+import org.b3log.xiaov.util.WeightedLruCache;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Answer cache of chat backends.
+ *
+ * <p>
+ * Answers are keyed by backend and normalized question (whitespaces collapsed, trailing terminal punctuations such
+ * as "？" and "！" stripped), so "你好" and "你好！" share one entry while "1+1" and "1-1" do not. Questions are taken
+ * from {@link ChatMessage#getQuestion()}, the bot name has been removed there. The cache is bounded by the total
+ * weight of questions and answers (in chars) and evicts the least recently used entries.
+ * </p>
+ *
+ * <p>
+ * Answers which depend on the asker or the time are not cached: questions containing a context word (following up on
+ * an earlier conversation), answers with links (news and search results go stale) and the quota
+ * exhausted answer of Turing. The cache is saved to the snapshot file on close and loaded on start, the file can also
+ * be prepared by hand to warm the cache, see <i>qq.bot.answer.cache.*</i> in xiaov.properties.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.1.0.2, Oct 18, 2026
+ * @since 2.2.0
+ */
+public class AnswerCache {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(AnswerCache.class.getName());
+
+    /**
+     * UTF-8.
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Separator of backend and question in keys.
+     */
+    private static final char KEY_SEPARATOR = '\n';
+
+    /**
+     * Terminal punctuations stripped from the end of questions.
+     */
+    private static final String TERMINALS = "?？!！.。~～…";
+
+    /**
+     * Entry overhead in chars, counted in weights.
+     */
+    private static final int ENTRY_OVERHEAD = 32;
+
+    /**
+     * Answers, {@code null} if disabled.
+     *
+     * &lt;backend + '\n' + normalized question, answer&gt;
+     */
+    private final WeightedLruCache<String, String> answers;
+
+    /**
+     * Context words.
+     */
+    private final String[] contextWords;
+
+    /**
+     * Snapshot file, {@code null} if disabled.
+     */
+    private final File snapshot;
+
+    /**
+     * Count of questions skipped because of context words.
+     */
+    private final AtomicLong contextualCount = new AtomicLong();
+
+    /**
+     * Count of answers skipped because they go stale.
+     */
+    private final AtomicLong uncacheableCount = new AtomicLong();
+
+    /**
+     * Count of entries loaded from the snapshot.
+     */
+    private volatile int loadedCount;
+
+    /**
+     * Constructs an answer cache with the specified arguments, loads the snapshot.
+     *
+     * @param maxWeight the specified max total weight in chars, {@code 0} to disable the cache
+     * @param ttl the specified TTL in milliseconds
+     * @param contextWords the specified context words, separated by comma
+     * @param snapshotPath the specified snapshot file path, blank to disable the snapshot
+     */
+    public AnswerCache(final long maxWeight, final long ttl, final String contextWords, final String snapshotPath) {
+        this.answers = 0 < maxWeight ? new WeightedLruCache<>(maxWeight, ttl,
+                new WeightedLruCache.Weigher<String, String>() {
+            @Override
+            public int weigh(final String key, final String answer) {
+                return ENTRY_OVERHEAD + key.length() + answer.length();
+            }
+        }) : null;
+        this.contextWords = Strings.trimAll(StringUtils.split(StringUtils.defaultString(contextWords), ","));
+        this.snapshot = StringUtils.isBlank(snapshotPath) ? null : new File(snapshotPath);
+
+        load();
+    }
+
+    /**
+     * Gets the cached answer of the specified question.
+     *
+     * @param backend the specified backend
+     * @param question the specified question
+     * @return answer, returns {@code null} if not cached
+     */
+    public String get(final String backend, final String question) {
+        final String key = key(backend, question, true);
+        if (null == key) {
+            return null;
+        }
+
+        return answers.get(key);
+    }
+
+    /**
+     * Caches the specified answer of the specified question if it does not go stale.
+     *
+     * @param backend the specified backend
+     * @param question the specified question
+     * @param answer the specified answer
+     */
+    public void put(final String backend, final String question, final String answer) {
+        final String key = key(backend, question, false);
+        if (null == key || StringUtils.isBlank(answer)) {
+            return;
+        }
+
+        if (StringUtils.contains(answer, "http://") || StringUtils.contains(answer, "https://")
+                || TuringQueryService.QUOTA_EXCEEDED_ANSWER.equals(answer)) {
+            uncacheableCount.incrementAndGet();
+
+            return;
+        }
+
+        answers.put(key, answer);
+    }
+
+    /**
+     * Saves the cached answers to the snapshot file.
+     */
+    public void save() {
+        if (null == answers || null == snapshot) {
+            return;
+        }
+
+        final File tmp = new File(snapshot.getPath() + ".tmp");
+        int count = 0;
+        try {
+            try (final Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), UTF_8)) {
+                for (final WeightedLruCache.Snapshot<String, String> entry : answers.snapshot()) {
+                    final String key = entry.getKey();
+                    final int separator = key.indexOf(KEY_SEPARATOR);
+                    final JSONObject record = new JSONObject();
+                    record.put("backend", key.substring(0, separator));
+                    record.put("question", key.substring(separator + 1));
+                    record.put("answer", entry.getValue());
+                    record.put("expireTime", entry.getExpireTime());
+                    writer.write(record.toString());
+                    writer.write('\n');
+                    count++;
+                }
+            }
+
+            Files.move(tmp.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            LOGGER.log(Level.INFO, "Saved [" + count + "] answers to [" + snapshot.getPath() + "]");
+        } catch (final IOException e) {
+            LOGGER.log(Level.ERROR, "Saves answer cache [" + snapshot.getPath() + "] failed", e);
+        }
+    }
+
+    /**
+     * Gets the statistic of this cache.
+     *
+     * @return statistic, for example,
+     * <pre>
+     * {
+     *     "enabled": boolean,
+     *     "size": int,
+     *     "weight": long,
+     *     "hits": long,
+     *     "misses": long,
+     *     "hitRate": double,
+     *     "evictions": long,
+     *     ....
+     *     "contextual": long,
+     *     "uncacheable": long,
+     *     "loaded": int
+     * }
+     * </pre>
+     */
+    public JSONObject getStat() {
+        final JSONObject ret = null == answers ? new JSONObject() : answers.getStat();
+
+        ret.put("enabled", null != answers);
+        ret.put("contextual", contextualCount.get());
+        ret.put("uncacheable", uncacheableCount.get());
+        ret.put("loaded", loadedCount);
+
+        return ret;
+    }
+
+    /**
+     * Loads the cached answers from the snapshot file, expired ones are skipped. A record without expire time gets
+     * the TTL.
+     */
+    private void load() {
+        if (null == answers || null == snapshot || !snapshot.isFile()) {
+            return;
+        }
+
+        int count = 0;
+        try (final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(snapshot),
+                UTF_8))) {
+            String line;
+            while (null != (line = reader.readLine())) {
+                if (StringUtils.isBlank(line)) {
+                    continue;
+                }
+
+                try {
+                    final JSONObject record = new JSONObject(line);
+                    final String backend = record.getString("backend");
+                    final String question = normalize(record.getString("question"));
+                    final String answer = record.getString("answer");
+                    if (StringUtils.isBlank(question) || StringUtils.isBlank(answer)) {
+                        continue;
+                    }
+
+                    final String key = backend + KEY_SEPARATOR + question;
+                    if (record.has("expireTime")) {
+                        answers.put(key, answer, record.getLong("expireTime"));
+                    } else {
+                        answers.put(key, answer);
+                    }
+                    count++;
+                } catch (final JSONException e) {
+                    LOGGER.log(Level.WARN, "Skips bad answer cache record [" + line + "]");
+                }
+            }
+        } catch (final IOException e) {
+            LOGGER.log(Level.ERROR, "Loads answer cache [" + snapshot.getPath() + "] failed", e);
+        }
+
+        loadedCount = count;
+        LOGGER.log(Level.INFO, "Loaded [" + count + "] answers from [" + snapshot.getPath() + "]");
+    }
+
+    /**
+     * Gets the key of the specified question.
+     *
+     * @param backend the specified backend
+     * @param question the specified question
+     * @param lookup whether the key is for a lookup, only lookups are counted as contextual so that a question
+     * which is looked up then answered is counted once
+     * @return key, returns {@code null} if the cache is disabled, the question is blank or contains a context word
+     */
+    private String key(final String backend, final String question, final boolean lookup) {
+        if (null == answers) {
+            return null;
+        }
+
+        for (final String word : contextWords) {
+            if (!word.isEmpty() && StringUtils.contains(question, word)) {
+                if (lookup) {
+                    contextualCount.incrementAndGet();
+                }
+
+                return null;
+            }
+        }
+
+        final String normalized = normalize(question);
+        if (StringUtils.isBlank(normalized)) {
+            return null;
+        }
+
+        return backend + KEY_SEPARATOR + normalized;
+    }
+
+    /**
+     * Normalizes the specified question, collapses whitespaces into one space and strips the
+     * trailing terminal punctuations. Other chars are kept as is, operators and symbols change the meaning of a
+     * question.
+     *
+     * @param question the specified question
+     * @return normalized question
+     */
+    static String normalize(final String question) {
+        final String text = StringUtils.defaultString(question);
+        final StringBuilder builder = new StringBuilder(text.length());
+        boolean space = false;
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = 0 < builder.length();
+
+                continue;
+            }
+
+            if (space) {
+                builder.append(' ');
+                space = false;
+            }
+            builder.append(c);
+        }
+
+        int end = builder.length();
+        while (0 < end && isTerminal(builder.charAt(end - 1))) {
+            end--;
+        }
+        builder.setLength(end);
+
+        return builder.toString().trim();
+    }
+
+    /**
+     * Checks whether the specified char is a terminal punctuation or a space.
+     *
+     * @param c the specified char
+     * @return {@code true} if it is terminal, returns {@code false} otherwise
+     */
+    private static boolean isTerminal(final char c) {
+        return ' ' == c || 0 <= TERMINALS.indexOf(c);
+    }
+}
@@ -15,21 +15,13 @@
  */
 package org.b3log.xiaov.service;
 
-import java.io.UnsupportedEncodingException;
-import java.net.URL;
 import java.net.URLEncoder;
-
 import org.apache.commons.lang.StringUtils;
-import org.b3log.latke.logging.Level;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.b3log.latke.logging.Logger;
-import org.b3log.latke.service.annotation.Service;
-import org.b3log.latke.servlet.HTTPRequestMethod;
-import org.b3log.latke.urlfetch.HTTPHeader;
-import org.b3log.latke.urlfetch.HTTPRequest;
-import org.b3log.latke.urlfetch.HTTPResponse;
-import org.b3log.latke.urlfetch.URLFetchService;
-import org.b3log.latke.urlfetch.URLFetchServiceFactory;
 import org.b3log.xiaov.util.XiaoVs;
+import org.json.JSONArray;
 import org.json.JSONObject;
 
 /**
@@ -37,11 +29,10 @@ import org.json.JSONObject;
  *
  * @author <a href="https://github.com/qianqingchen">qianqingchen</a>
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.0.0.0, May 31, 2016
+ * @version 1.2.0.0, Oct 18, 2026
  * @since 1.0.0
  */
-@Service
-public class BaiduQueryService {
+public class BaiduQueryService extends HttpChatBackend {
 
     /**
      * Logger.
@@ -54,70 +45,45 @@ public class BaiduQueryService {
     private static final String BAIDU_COOKIE = XiaoVs.getString("baidu.cookie");
 
     /**
-     * URL fetch service.
+     * Baidu Robot URL.
      */
-    private static final URLFetchService URL_FETCH_SVC = URLFetchServiceFactory.getURLFetchService();
+    private static final String BAIDU_URL = "https://sp0.baidu.com/yLsHczq6KgQFm2e88IuM_a/s?sample_name=bear_brain&request_query=#MSG#&bear_type=2";
 
-    /**
-     * Chat with Baidu Robot.
-     *
-     * @param msg the specified message
-     * @return robot returned message, return {@code null} if not found
-     */
-    public String chat(String msg) {
-        if (StringUtils.isBlank(msg)) {
-            return null;
-        }
+    @Override
+    public String getName() {
+        return "baidu";
+    }
 
-        if (msg.startsWith(XiaoVs.QQ_BOT_NAME + " ")) {
-            msg = msg.replace(XiaoVs.QQ_BOT_NAME + " ", "");
-        }
-        if (msg.startsWith(XiaoVs.QQ_BOT_NAME + "，")) {
-            msg = msg.replace(XiaoVs.QQ_BOT_NAME + "，", "");
-        }
-        if (msg.startsWith(XiaoVs.QQ_BOT_NAME + ",")) {
-            msg = msg.replace(XiaoVs.QQ_BOT_NAME + ",", "");
-        }
-        if (msg.startsWith(XiaoVs.QQ_BOT_NAME)) {
-            msg = msg.replace(XiaoVs.QQ_BOT_NAME, "");
+    @Override
+    protected HttpRequestBase newRequest(final String userName, final ChatMessage msg) throws Exception {
+        if (StringUtils.isBlank(msg.getText())) {
+            return null;
         }
 
-        if (StringUtils.isBlank(msg)) {
-            msg = "你好~";
+        String query = msg.getQuestion();
+        if (StringUtils.isBlank(query)) {
+            query = "你好~";
         }
 
-        String BAIDU_URL = "https://sp0.baidu.com/yLsHczq6KgQFm2e88IuM_a/s?sample_name=bear_brain&request_query=#MSG#&bear_type=2";
+        final HttpPost ret = new HttpPost(BAIDU_URL.replace("#MSG#", URLEncoder.encode(query, "UTF-8")));
+        ret.setHeader("Cookie", BAIDU_COOKIE);
 
-        final HTTPRequest request = new HTTPRequest();
-        request.setRequestMethod(HTTPRequestMethod.POST);
-        try {
+        return ret;
+    }
 
-            BAIDU_URL = BAIDU_URL.replace("#MSG#", URLEncoder.encode(msg, "UTF-8"));
-        } catch (final UnsupportedEncodingException e) {
-            LOGGER.log(Level.ERROR, "Chat with Baidu Robot failed", e);
+    @Override
+    protected String parse(final String body) throws ChatRejectedException {
+        LOGGER.info(body);
 
-            return null;
+        final JSONObject data = new JSONObject(body);
+        final JSONArray results = data.optJSONArray("result_list");
+        if (null == results) {
+            throw new ChatRejectedException("Baidu Robot returns no result, the cookie [baidu.cookie] may have expired");
         }
 
-        try {
-            final HTTPHeader header = new HTTPHeader("Cookie", BAIDU_COOKIE);
-            request.addHeader(header);
-            request.setURL(new URL(BAIDU_URL));
-
-            final HTTPResponse response = URL_FETCH_SVC.fetch(request);
-            final JSONObject data = new JSONObject(new String(response.getContent(), "UTF-8"));
-
-            LOGGER.info(new String(response.getContent(), "UTF-8"));
-
-            final String content = (String) data.getJSONArray("result_list").getJSONObject(0).get("result_content");
-            String ret = (String) new JSONObject(content).get("answer");
-            ret = ret.replaceAll("小度", XiaoVs.QQ_BOT_NAME);
-
-            return ret;
-        } catch (final Exception e) {
-            LOGGER.log(Level.ERROR, "Chat with Baidu Robot failed", e);
-        }
+        final String content = (String) results.getJSONObject(0).get("result_content");
+        final String ret = (String) new JSONObject(content).get("answer");
 
-        return null;
+        return ret.replaceAll("小度", XiaoVs.QQ_BOT_NAME);
     }
 }
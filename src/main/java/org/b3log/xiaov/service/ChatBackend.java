@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2012-2016, b3log.org & hacpai.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.xiaov.service;
+
+import java.util.concurrent.Future;
+
+/**
+ * Chat backend, answers questions asked to XiaoV.
+ *
+ * <p>
+ * Built-in backends are Turing ({@code turing}), Baidu ({@code baidu}) and ITPK ({@code itpk}), other backends plug in
+ * through {@link java.util.ServiceLoader} by listing their classes in
+ * <i>META-INF/services/org.b3log.xiaov.service.ChatBackend</i>, see {@link ChatBackends}.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.2.0.0, Oct 18, 2026
+ * @since 2.2.0
+ */
+public interface ChatBackend {
+
+    /**
+     * Gets the name of this backend, used by <i>qq.bot.backend</i> in xiaov.properties.
+     *
+     * @return name
+     */
+    String getName();
+
+    /**
+     * Asks the specified question asynchronously.
+     *
+     * <p>
+     * The call fails with a {@link java.util.concurrent.TimeoutException} once the specified timeout has elapsed, and
+     * cancelling the returned future aborts the call. The specified callback is invoked exactly once when the call is
+     * done, whether answered, failed, timed out or cancelled, possibly before this method returns.
+     * </p>
+     *
+     * @param userName the specified asker
+     * @param msg the specified preprocessed message, asks its {@link ChatMessage#getQuestion() question}
+     * @param timeout the specified timeout in milliseconds
+     * @param callback the specified callback
+     * @return answer, {@code null} if the backend has no answer
+     */
+    Future<String> chat(final String userName, final ChatMessage msg, final long timeout, final Callback callback);
+
+    /**
+     * Callback of a done call.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.0.0, Oct 18, 2026
+     * @since 2.2.0
+     */
+    interface Callback {
+
+        /**
+         * Invoked on the thread which completed the specified call, must not block.
+         *
+         * @param call the specified call, done
+         */
+        void done(final Future<String> call);
+    }
+}
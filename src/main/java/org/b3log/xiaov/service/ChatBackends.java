@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2012-2016, b3log.org & hacpai.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.xiaov.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+import org.b3log.xiaov.util.BoundedExecutor;
+import org.b3log.xiaov.util.Bulkhead;
+import org.b3log.xiaov.util.CircuitBreaker;
+import org.json.JSONObject;
+
+/**
+ * Registry of chat backends.
+ *
+ * <p>
+ * Registers the built-in backends and the ones found by {@link ServiceLoader}, and owns the executor and the
+ * connection pool shared by {@link HttpChatBackend}s, and gives each of them its own circuit breaker and bulkhead,
+ * see <i>qq.bot.chat.*</i> in xiaov.properties.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.1.0.0, Oct 18, 2026
+ * @since 2.2.0
+ */
+public class ChatBackends {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(ChatBackends.class.getName());
+
+    /**
+     * Backends by name, in registration order.
+     */
+    private final Map<String, ChatBackend> backends = new LinkedHashMap<>();
+
+    /**
+     * Executor of HTTP backend calls.
+     */
+    private final BoundedExecutor executor;
+
+    /**
+     * Connection pool of HTTP backends.
+     */
+    private final PoolingHttpClientConnectionManager pool;
+
+    /**
+     * HTTP client of HTTP backends.
+     */
+    private final CloseableHttpClient client;
+
+    /**
+     * Max connect timeout of HTTP backend calls in milliseconds.
+     */
+    private final int connectTimeout;
+
+    /**
+     * Max pending calls of an HTTP backend.
+     */
+    private final int maxConcurrent;
+
+    /**
+     * Count of the latest calls in the sliding window of circuit breakers.
+     */
+    private final int breakerWindowSize;
+
+    /**
+     * Min calls in the window to open a circuit.
+     */
+    private final int breakerMinCalls;
+
+    /**
+     * Failure rate opening a circuit.
+     */
+    private final double breakerFailureRate;
+
+    /**
+     * Time in milliseconds a circuit stays open.
+     */
+    private final long breakerOpenTime;
+
+    /**
+     * Trial calls of a half-open circuit.
+     */
+    private final int breakerHalfOpenCalls;
+
+    /**
+     * Constructs a registry with the specified arguments, registers the built-in and plug-in backends.
+     *
+     * @param threads the specified max concurrent HTTP backend calls
+     * @param queueCapacity the specified capacity of the queue of HTTP backend calls
+     * @param maxConnections the specified max connections of HTTP backends
+     * @param connectTimeout the specified max connect timeout of HTTP backend calls in milliseconds
+     * @param maxConcurrent the specified max pending calls of an HTTP backend
+     * @param breakerWindowSize the specified count of the latest calls in the sliding window of circuit breakers
+     * @param breakerMinCalls the specified min calls in the window to open a circuit
+     * @param breakerFailureRate the specified failure rate opening a circuit
+     * @param breakerOpenTime the specified time in milliseconds a circuit stays open
+     * @param breakerHalfOpenCalls the specified trial calls of a half-open circuit
+     */
+    public ChatBackends(final int threads, final int queueCapacity, final int maxConnections,
+            final int connectTimeout, final int maxConcurrent, final int breakerWindowSize, final int breakerMinCalls,
+            final double breakerFailureRate, final long breakerOpenTime, final int breakerHalfOpenCalls) {
+        this.executor = new BoundedExecutor("xiaov-chat", threads, threads, queueCapacity, "abort");
+        this.connectTimeout = connectTimeout;
+        this.maxConcurrent = maxConcurrent;
+        this.breakerWindowSize = breakerWindowSize;
+        this.breakerMinCalls = breakerMinCalls;
+        this.breakerFailureRate = breakerFailureRate;
+        this.breakerOpenTime = breakerOpenTime;
+        this.breakerHalfOpenCalls = breakerHalfOpenCalls;
+
+        pool = new PoolingHttpClientConnectionManager();
+        pool.setMaxTotal(maxConnections);
+        pool.setDefaultMaxPerRoute(maxConnections);
+        pool.setDefaultSocketConfig(SocketConfig.custom().setTcpNoDelay(true).build());
+        client = HttpClients.custom().setConnectionManager(pool).build();
+
+        register(new TuringQueryService());
+        register(new BaiduQueryService());
+        register(new ItpkQueryService());
+        try {
+            for (final ChatBackend backend : ServiceLoader.load(ChatBackend.class)) {
+                register(backend);
+            }
+        } catch (final ServiceConfigurationError e) {
+            LOGGER.log(Level.ERROR, "Loads chat backend plug-ins failed", e);
+        }
+    }
+
+    /**
+     * Registers the specified backend, replaces the registered one of the same name.
+     *
+     * @param backend the specified backend
+     */
+    public final void register(final ChatBackend backend) {
+        if (backend instanceof HttpChatBackend) {
+            ((HttpChatBackend) backend).init(executor, client, connectTimeout,
+                    new CircuitBreaker("chat-" + backend.getName(), breakerWindowSize, breakerMinCalls,
+                            breakerFailureRate, breakerOpenTime, breakerHalfOpenCalls), new Bulkhead(maxConcurrent));
+        }
+
+        synchronized (backends) {
+            if (null != backends.put(backend.getName(), backend)) {
+                LOGGER.log(Level.WARN, "Replaced chat backend [" + backend.getName() + "] with ["
+                        + backend.getClass().getName() + "]");
+            }
+        }
+    }
+
+    /**
+     * Gets the backend of the specified name.
+     *
+     * @param name the specified name
+     * @return backend, returns {@code null} if not found
+     */
+    public ChatBackend get(final String name) {
+        synchronized (backends) {
+            return backends.get(name);
+        }
+    }
+
+    /**
+     * Gets all backends in registration order.
+     *
+     * @return backends
+     */
+    public Collection<ChatBackend> getAll() {
+        synchronized (backends) {
+            return Collections.unmodifiableCollection(new ArrayList<>(backends.values()));
+        }
+    }
+
+    /**
+     * Shuts down the executor and closes the connection pool.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            client.close();
+        } catch (final IOException e) {
+            LOGGER.log(Level.WARN, "Closes chat backend client failed", e);
+        }
+    }
+
+    /**
+     * Gets the statistic of this registry.
+     *
+     * @return statistic, for example,
+     * <pre>
+     * {
+     *     "backends": ["turing", "baidu", "itpk"],
+     *     "executor": {....},
+     *     "connections": {"leased": int, "available": int},
+     *     "guards": {
+     *         "turing": {"breaker": {....}, "bulkhead": {....}},
+     *         ....
+     *     }
+     * }
+     * </pre>
+     */
+    public JSONObject getStat() {
+        final JSONObject ret = new JSONObject();
+
+        final JSONObject guards = new JSONObject();
+        synchronized (backends) {
+            ret.put("backends", backends.keySet());
+            for (final ChatBackend backend : backends.values()) {
+                if (backend instanceof HttpChatBackend) {
+                    final JSONObject guard = new JSONObject();
+                    guard.put("breaker", ((HttpChatBackend) backend).getBreaker().getStat());
+                    guard.put("bulkhead", ((HttpChatBackend) backend).getBulkhead().getStat());
+                    guards.put(backend.getName(), guard);
+                }
+            }
+        }
+        ret.put("guards", guards);
+        ret.put("executor", executor.getStat());
+        final JSONObject connections = new JSONObject();
+        connections.put("leased", pool.getTotalStats().getLeased());
+        connections.put("available", pool.getTotalStats().getAvailable());
+        ret.put("connections", connections);
+
+        return ret;
+    }
+}
@@ -0,0 +1,879 @@
+/*
+ * Copyright (c) 2012-2016, b3log.org & hacpai.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.xiaov.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.lang.StringUtils;
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+import org.b3log.xiaov.util.HashedTimerWheel;
+import org.b3log.xiaov.util.LatencyWindow;
+import org.json.JSONObject;
+
+/**
+ * Asks chat backends with hedging.
+ *
+ * <p>
+ * A question is asked to the primary backend first. If no usable answer arrives within the hedge delay of the primary
+ * backend (the configured percentile of its recent latencies), or the primary backend fails or has no answer, the
+ * question is also asked to the hedge backend. The first usable answer wins and the other call is cancelled.
+ * </p>
+ *
+ * <p>
+ * Asking never blocks: calls complete through their {@link ChatBackend.Callback}, the hedge delay and the question
+ * timeout are timer entries, and the answer is handed to the {@link Callback} of the question on the thread which
+ * decided it.
+ * </p>
+ *
+ * <p>
+ * Hedges on slowness are paid from a budget which earns a fraction of a hedge for every question, so hedging adds at
+ * most that fraction of backend traffic, see <i>qq.bot.hedge.*</i> in xiaov.properties.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 2.0.0.0, Oct 18, 2026
+ * @since 2.2.0
+ */
+public class ChatHedger {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(ChatHedger.class.getName());
+
+    /**
+     * Count of latency samples kept per backend.
+     */
+    private static final int WINDOW_SIZE = 256;
+
+    /**
+     * Min count of latency samples to derive the hedge delay from, the initial delay is used before.
+     */
+    private static final int MIN_SAMPLES = 20;
+
+    /**
+     * Max hedges kept in the budget.
+     */
+    private static final double MAX_BUDGET = 10;
+
+    /**
+     * Timer of hedge delays and question timeouts.
+     */
+    private final HashedTimerWheel timer;
+
+    /**
+     * Timeout of a question in milliseconds.
+     */
+    private final long timeout;
+
+    /**
+     * Percentile of latencies used as the hedge delay.
+     */
+    private final double percentile;
+
+    /**
+     * Hedge delay in milliseconds before a backend has enough latency samples.
+     */
+    private final long initialDelay;
+
+    /**
+     * Min hedge delay in milliseconds.
+     */
+    private final long minDelay;
+
+    /**
+     * Hedges earned by a question.
+     */
+    private final double budgetRatio;
+
+    /**
+     * Hedges left in the budget, guarded by this hedger.
+     */
+    private double budget;
+
+    /**
+     * Count of hedges denied by the budget.
+     */
+    private final AtomicLong deniedCount = new AtomicLong();
+
+    /**
+     * Statistics of backends.
+     *
+     * &lt;backend name, statistic&gt;
+     */
+    private final ConcurrentMap<String, Stat> stats = new ConcurrentHashMap<>();
+
+    /**
+     * Listener of calls, {@code null} if none.
+     */
+    private final Listener listener;
+
+    /**
+     * Constructs a hedger with the specified arguments.
+     *
+     * @param timer the specified timer of hedge delays and question timeouts, its tasks must run on its ticker
+     * @param timeout the specified timeout of a question in milliseconds
+     * @param percentile the specified percentile of latencies used as the hedge delay, for example, {@code 0.95}
+     * @param initialDelay the specified hedge delay in milliseconds before a backend has enough latency samples
+     * @param minDelay the specified min hedge delay in milliseconds
+     * @param budgetRatio the specified hedges earned by a question, for example, {@code 0.1}
+     * @param listener the specified listener of calls, {@code null} if none
+     */
+    public ChatHedger(final HashedTimerWheel timer, final long timeout, final double percentile,
+            final long initialDelay, final long minDelay, final double budgetRatio, final Listener listener) {
+        this.timer = timer;
+        this.timeout = timeout;
+        this.percentile = percentile;
+        this.initialDelay = initialDelay;
+        this.minDelay = minDelay;
+        this.budgetRatio = budgetRatio;
+        this.budget = MAX_BUDGET;
+        this.listener = listener;
+    }
+
+    /**
+     * Asks the specified question to the specified primary backend, hedged by the specified hedge backend, returns
+     * at once.
+     *
+     * @param primary the specified primary backend
+     * @param hedge the specified hedge backend, {@code null} to disable hedging
+     * @param userName the specified asker
+     * @param msg the specified message
+     * @param callback the specified callback of the answer, invoked exactly once, possibly before this method returns
+     */
+    public void chat(final ChatBackend primary, final ChatBackend hedge, final String userName,
+            final ChatMessage msg, final Callback callback) {
+        final boolean hedgeable = null != hedge && hedge != primary;
+        final Question question = new Question(primary, hedgeable ? hedge : null, userName, msg, callback);
+        earn();
+
+        question.deadlineTimeout = schedule(new Runnable() {
+            @Override
+            public void run() {
+                question.expire();
+            }
+        }, timeout);
+        if (hedgeable) {
+            question.hedgeTimeout = schedule(new Runnable() {
+                @Override
+                public void run() {
+                    question.hedge(true);
+                }
+            }, delay(question.primaryStat));
+        }
+
+        question.ask(primary, question.primaryStat, timeout);
+    }
+
+    /**
+     * Gets the statistic of this hedger.
+     *
+     * @return statistic, for example,
+     * <pre>
+     * {
+     *     "budget": double,
+     *     "denied": long,
+     *     "backends": {
+     *         "turing": {
+     *             "calls": long, // questions asked as the primary backend
+     *             "hedged": long, // questions of them also asked to the hedge backend
+     *             "hedgeRate": double,
+     *             "hedges": long, // questions asked as the hedge backend
+     *             "wins": long, // usable answers returned
+     *             "winRate": double, // wins in hedged questions
+     *             "raceWins": long,
+     *             "cancelled": long, // calls cancelled, their latencies are not sampled
+     *             "p50": long,
+     *             "p95": long,
+     *             "hedgeDelay": long
+     *         }, ....
+     *     }
+     * }
+     * </pre>
+     */
+    public JSONObject getStat() {
+        final JSONObject ret = new JSONObject();
+
+        synchronized (this) {
+            ret.put("budget", budget);
+        }
+        ret.put("denied", deniedCount.get());
+        final JSONObject backends = new JSONObject();
+        for (final Stat stat : stats.values()) {
+            final JSONObject backend = new JSONObject();
+            final long calls = stat.callCount.get();
+            final long hedged = stat.hedgedCount.get();
+            final long races = hedged + stat.hedgeCount.get();
+            backend.put("calls", calls);
+            backend.put("hedged", hedged);
+            backend.put("hedgeRate", 0 == calls ? 0D : (double) hedged / calls);
+            backend.put("hedges", stat.hedgeCount.get());
+            backend.put("wins", stat.winCount.get());
+            backend.put("raceWins", stat.raceWinCount.get());
+            backend.put("winRate", 0 == races ? 0D : (double) stat.raceWinCount.get() / races);
+            backend.put("cancelled", stat.cancelledCount.get());
+            backend.put("p50", stat.latencies.percentile(0.5));
+            backend.put("p95", stat.latencies.percentile(0.95));
+            backend.put("hedgeDelay", delay(stat));
+            backends.put(stat.name, backend);
+        }
+        ret.put("backends", backends);
+
+        return ret;
+    }
+
+    /**
+     * Gets the hedge delay of the backend of the specified statistic.
+     *
+     * @param stat the specified statistic
+     * @return hedge delay in milliseconds
+     */
+    private long delay(final Stat stat) {
+        if (MIN_SAMPLES > stat.latencies.size()) {
+            return initialDelay;
+        }
+
+        return Math.max(minDelay, stat.latencies.percentile(percentile));
+    }
+
+    /**
+     * Earns hedges for a question.
+     */
+    private synchronized void earn() {
+        budget = Math.min(MAX_BUDGET, budget + budgetRatio);
+    }
+
+    /**
+     * Spends a hedge.
+     *
+     * @return {@code true} if spent, returns {@code false} if the budget runs out
+     */
+    private synchronized boolean spend() {
+        if (1 > budget) {
+            return false;
+        }
+
+        budget--;
+
+        return true;
+    }
+
+    /**
+     * Gets the statistic of the specified backend.
+     *
+     * @param backend the specified backend
+     * @return statistic
+     */
+    private Stat stat(final ChatBackend backend) {
+        Stat ret = stats.get(backend.getName());
+        if (null == ret) {
+            final Stat stat = new Stat(backend.getName());
+            ret = stats.putIfAbsent(backend.getName(), stat);
+            if (null == ret) {
+                ret = stat;
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Schedules the specified task after the specified delay.
+     *
+     * @param task the specified task
+     * @param delay the specified delay in milliseconds
+     * @return timeout, returns {@code null} if the timer is full
+     */
+    private HashedTimerWheel.Timeout schedule(final Runnable task, final long delay) {
+        try {
+            return timer.newTimeout(task, delay, TimeUnit.MILLISECONDS);
+        } catch (final RejectedExecutionException e) {
+            LOGGER.log(Level.WARN, "Timer is full, a chat question runs without hedge delay or timeout [pending="
+                    + timer.getPendingCount() + "]");
+
+            return null;
+        }
+    }
+
+    /**
+     * Checks whether the specified answer is usable.
+     *
+     * @param text the specified answer
+     * @return {@code true} if it is usable, returns {@code false} otherwise
+     */
+    private static boolean usable(final String text) {
+        return StringUtils.isNotBlank(text) && !TuringQueryService.QUOTA_EXCEEDED_ANSWER.equals(text);
+    }
+
+    /**
+     * Callback of the answer of a question.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.0.0, Oct 18, 2026
+     * @since 2.2.0
+     */
+    public interface Callback {
+
+        /**
+         * Invoked once the question is decided, on a backend, timer or the asking thread, must not block.
+         *
+         * @param answer the specified answer, {@code null} if no backend answered in time
+         */
+        void onAnswer(final Answer answer);
+    }
+
+    /**
+     * Listener of the calls of a hedger.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.0.0, Oct 18, 2026
+     * @since 2.2.0
+     */
+    public interface Listener {
+
+        /**
+         * Invoked before a question is asked to the specified backend.
+         *
+         * @param backend the specified backend name
+         */
+        void onCall(final String backend);
+
+        /**
+         * Invoked when the specified backend answered.
+         *
+         * @param backend the specified backend name
+         * @param latency the specified latency in milliseconds
+         * @param answer the specified answer, may be {@code null}
+         */
+        void onAnswer(final String backend, final long latency, final String answer);
+
+        /**
+         * Invoked when the call of the specified backend failed or timed out. Calls cancelled because the other
+         * backend answered first are not reported.
+         *
+         * @param backend the specified backend name
+         * @param latency the specified latency in milliseconds
+         * @param error the specified error, a {@link TimeoutException} if timed out
+         */
+        void onFailure(final String backend, final long latency, final Throwable error);
+    }
+
+    /**
+     * Answer of a backend.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.0.0, Oct 18, 2026
+     * @since 2.2.0
+     */
+    public static final class Answer {
+
+        /**
+         * Backend name.
+         */
+        private final String backend;
+
+        /**
+         * Answer text.
+         */
+        private final String text;
+
+        /**
+         * Constructs an answer with the specified arguments.
+         *
+         * @param backend the specified backend name
+         * @param text the specified answer text
+         */
+        private Answer(final String backend, final String text) {
+            this.backend = backend;
+            this.text = text;
+        }
+
+        /**
+         * Gets the name of the backend which answered.
+         *
+         * @return backend name
+         */
+        public String getBackend() {
+            return backend;
+        }
+
+        /**
+         * Gets the answer text.
+         *
+         * @return answer text
+         */
+        public String getText() {
+            return text;
+        }
+    }
+
+    /**
+     * A question being asked, guarded by itself.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.0.0, Oct 18, 2026
+     * @since 2.2.0
+     */
+    private final class Question {
+
+        /**
+         * Hedge backend, {@code null} if not hedgeable.
+         */
+        private final ChatBackend hedge;
+
+        /**
+         * Statistic of the primary backend.
+         */
+        private final Stat primaryStat;
+
+        /**
+         * Asker.
+         */
+        private final String userName;
+
+        /**
+         * Message.
+         */
+        private final ChatMessage msg;
+
+        /**
+         * Callback.
+         */
+        private final Callback callback;
+
+        /**
+         * Deadline.
+         */
+        private final long deadline;
+
+        /**
+         * Legs, the primary first.
+         */
+        private final List<Leg> legs = new ArrayList<>(2);
+
+        /**
+         * Unusable answer returned if no usable answer arrives, {@code null} if none.
+         */
+        private Answer fallback;
+
+        /**
+         * Whether the answer has been decided.
+         */
+        private boolean decided;
+
+        /**
+         * Timer entry of the hedge delay, {@code null} if none.
+         */
+        private volatile HashedTimerWheel.Timeout hedgeTimeout;
+
+        /**
+         * Timer entry of the timeout, {@code null} if none.
+         */
+        private volatile HashedTimerWheel.Timeout deadlineTimeout;
+
+        /**
+         * Constructs a question with the specified arguments.
+         *
+         * @param primary the specified primary backend
+         * @param hedge the specified hedge backend, {@code null} if not hedgeable
+         * @param userName the specified asker
+         * @param msg the specified message
+         * @param callback the specified callback
+         */
+        private Question(final ChatBackend primary, final ChatBackend hedge, final String userName,
+                final ChatMessage msg, final Callback callback) {
+            this.hedge = hedge;
+            this.primaryStat = stat(primary);
+            this.userName = userName;
+            this.msg = msg;
+            this.callback = callback;
+            this.deadline = System.currentTimeMillis() + timeout;
+            primaryStat.callCount.incrementAndGet();
+        }
+
+        /**
+         * Asks the specified backend unless the answer has been decided or it has been asked.
+         *
+         * @param backend the specified backend
+         * @param stat the specified statistic of the backend
+         * @param millis the specified timeout in milliseconds
+         */
+        private void ask(final ChatBackend backend, final Stat stat, final long millis) {
+            final Leg leg = new Leg(backend, stat);
+            synchronized (this) {
+                if (decided || legs.size() == (null == hedge ? 1 : 2)) {
+                    return;
+                }
+                legs.add(leg);
+            }
+
+            if (null != listener) {
+                listener.onCall(backend.getName());
+            }
+            final Future<String> future = backend.chat(userName, msg, millis, leg);
+
+            final boolean late;
+            synchronized (this) {
+                leg.future = future;
+                late = decided;
+            }
+            if (late) { // Decided while asking, a done call ignores the cancel
+                future.cancel(true);
+            }
+        }
+
+        /**
+         * Asks the hedge backend.
+         *
+         * @param slow whether the primary backend is slow, a hedge on slowness is paid from the budget
+         */
+        private void hedge(final boolean slow) {
+            synchronized (this) {
+                if (decided || 1 != legs.size()) {
+                    return;
+                }
+            }
+
+            if (slow && !spend()) {
+                deniedCount.incrementAndGet();
+
+                return;
+            }
+
+            final Stat hedgeStat = stat(hedge);
+            primaryStat.hedgedCount.incrementAndGet();
+            hedgeStat.hedgeCount.incrementAndGet();
+            ask(hedge, hedgeStat, Math.max(1, deadline - System.currentTimeMillis()));
+        }
+
+        /**
+         * Takes the answer of the specified done leg.
+         *
+         * @param leg the specified leg
+         * @param call the specified done call of the leg
+         */
+        private void onDone(final Leg leg, final Future<String> call) {
+            synchronized (this) {
+                if (!leg.pending) { // Cancelled
+                    return;
+                }
+                leg.pending = false;
+            }
+
+            final String text = leg.take(call);
+
+            Answer decision = null;
+            boolean hedgeNow = false;
+            final List<Leg> losers;
+            synchronized (this) {
+                if (decided) {
+                    return;
+                }
+
+                if (usable(text)) {
+                    leg.stat.winCount.incrementAndGet();
+                    if (2 == legs.size()) {
+                        leg.stat.raceWinCount.incrementAndGet();
+                    }
+                    decision = new Answer(leg.backend.getName(), text);
+                    decided = true;
+                } else {
+                    if (null == fallback && null != text) {
+                        fallback = new Answer(leg.backend.getName(), text);
+                    }
+                    if (!pending()) {
+                        if (null != hedge && 1 == legs.size()) {
+                            hedgeNow = true;
+                        } else {
+                            decision = fallback;
+                            decided = true;
+                        }
+                    }
+                }
+                losers = decided ? pendingLegs() : null;
+            }
+
+            if (hedgeNow) {
+                hedge(false);
+            } else if (null != losers) {
+                cancel(losers, false);
+                answer(decision);
+            }
+        }
+
+        /**
+         * Decides the fallback answer since the question timed out.
+         */
+        private void expire() {
+            final List<Leg> pendings;
+            final Answer decision;
+            synchronized (this) {
+                if (decided) {
+                    return;
+                }
+                decided = true;
+                decision = fallback;
+                pendings = pendingLegs();
+            }
+
+            if (!pendings.isEmpty()) {
+                cancel(pendings, true);
+                LOGGER.log(Level.WARN, "Chat with " + names(pendings) + " timed out");
+            }
+            answer(decision);
+        }
+
+        /**
+         * Stops the timer entries and hands the specified answer to the callback.
+         *
+         * @param answer the specified answer, may be {@code null}
+         */
+        private void answer(final Answer answer) {
+            final HashedTimerWheel.Timeout hedging = hedgeTimeout;
+            if (null != hedging) {
+                hedging.cancel();
+            }
+            final HashedTimerWheel.Timeout expiring = deadlineTimeout;
+            if (null != expiring) {
+                expiring.cancel();
+            }
+
+            try {
+                callback.onAnswer(answer);
+            } catch (final Exception e) {
+                LOGGER.log(Level.ERROR, "Chat answer callback failed", e);
+            }
+        }
+
+        /**
+         * Checks whether any leg is pending, invoked with the lock held.
+         *
+         * @return {@code true} if pending, returns {@code false} otherwise
+         */
+        private boolean pending() {
+            for (final Leg leg : legs) {
+                if (leg.pending) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        /**
+         * Takes the pending legs, invoked with the lock held once the answer has been decided.
+         *
+         * @return pending legs, no longer pending
+         */
+        private List<Leg> pendingLegs() {
+            final List<Leg> ret = new ArrayList<>(2);
+            for (final Leg leg : legs) {
+                if (leg.pending) {
+                    leg.pending = false;
+                    ret.add(leg);
+                }
+            }
+
+            return ret;
+        }
+
+        /**
+         * Cancels the specified legs taken by {@link #pendingLegs()}. Their elapsed times are not recorded as
+         * latencies, they are shorter than the real latencies and would drag the hedge delay down.
+         *
+         * @param cancelled the specified legs
+         * @param timedOut whether the legs are cancelled because the question timed out
+         */
+        private void cancel(final List<Leg> cancelled, final boolean timedOut) {
+            for (final Leg leg : cancelled) {
+                final Future<String> future;
+                synchronized (this) {
+                    future = leg.future;
+                }
+                if (null != future) { // Otherwise cancelled by ask() once the backend returns it
+                    future.cancel(true);
+                }
+                leg.stat.cancelledCount.incrementAndGet();
+                if (timedOut && null != listener) {
+                    listener.onFailure(leg.backend.getName(), System.currentTimeMillis() - leg.start,
+                            new TimeoutException("Timed out"));
+                }
+            }
+        }
+
+        /**
+         * Gets the backend names of the specified legs.
+         *
+         * @param legs the specified legs
+         * @return backend names, for example, {@code [turing, baidu]}
+         */
+        private List<String> names(final List<Leg> legs) {
+            final List<String> ret = new ArrayList<>(legs.size());
+            for (final Leg leg : legs) {
+                ret.add(leg.backend.getName());
+            }
+
+            return ret;
+        }
+
+        /**
+         * Call of the question to a backend.
+         *
+         * @author <a href="http://88250.b3log.org">Liang Ding</a>
+         * @version 2.0.0.0, Oct 18, 2026
+         * @since 2.2.0
+         */
+        private final class Leg implements ChatBackend.Callback {
+
+            /**
+             * Backend.
+             */
+            private final ChatBackend backend;
+
+            /**
+             * Statistic of the backend.
+             */
+            private final Stat stat;
+
+            /**
+             * Start time.
+             */
+            private final long start = System.currentTimeMillis();
+
+            /**
+             * Answer, {@code null} until the backend returns it, guarded by the question.
+             */
+            private Future<String> future;
+
+            /**
+             * Whether the answer has not been taken, guarded by the question.
+             */
+            private boolean pending = true;
+
+            /**
+             * Constructs a leg with the specified arguments.
+             *
+             * @param backend the specified backend
+             * @param stat the specified statistic of the backend
+             */
+            private Leg(final ChatBackend backend, final Stat stat) {
+                this.backend = backend;
+                this.stat = stat;
+            }
+
+            @Override
+            public void done(final Future<String> call) {
+                onDone(this, call);
+            }
+
+            /**
+             * Takes the answer of the specified done call, records the latency if it succeeded.
+             *
+             * @param call the specified done call
+             * @return answer, returns {@code null} if failed or no answer
+             */
+            private String take(final Future<String> call) {
+                final long latency = System.currentTimeMillis() - start;
+                try {
+                    final String ret = call.get();
+                    stat.latencies.record(latency);
+                    if (null != listener) {
+                        listener.onAnswer(backend.getName(), latency, ret);
+                    }
+
+                    return ret;
+                } catch (final ExecutionException e) {
+                    LOGGER.log(Level.ERROR, "Chat with [" + backend.getName() + "] failed", e.getCause());
+                    if (null != listener) {
+                        listener.onFailure(backend.getName(), latency, e.getCause());
+                    }
+                } catch (final Exception e) { // Cancelled by the backend itself
+                    LOGGER.log(Level.WARN, "Chat with [" + backend.getName() + "] was cancelled");
+                }
+
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Statistic of a backend.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.0.0, Oct 18, 2026
+     * @since 2.2.0
+     */
+    private static final class Stat {
+
+        /**
+         * Backend name.
+         */
+        private final String name;
+
+        /**
+         * Count of questions asked as the primary backend.
+         */
+        private final AtomicLong callCount = new AtomicLong();
+
+        /**
+         * Count of questions asked as the primary backend and hedged.
+         */
+        private final AtomicLong hedgedCount = new AtomicLong();
+
+        /**
+         * Count of questions asked as the hedge backend.
+         */
+        private final AtomicLong hedgeCount = new AtomicLong();
+
+        /**
+         * Count of usable answers returned.
+         */
+        private final AtomicLong winCount = new AtomicLong();
+
+        /**
+         * Count of usable answers returned in hedged questions.
+         */
+        private final AtomicLong raceWinCount = new AtomicLong();
+
+        /**
+         * Count of calls cancelled, timed out or lost the race.
+         */
+        private final AtomicLong cancelledCount = new AtomicLong();
+
+        /**
+         * Latencies of completed calls.
+         */
+        private final LatencyWindow latencies = new LatencyWindow(WINDOW_SIZE);
+
+        /**
+         * Constructs a statistic of the specified backend.
+         *
+         * @param name the specified backend name
+         */
+        private Stat(final String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,386 @@
+/*
+ * Copyright (c) 2012-2016, b3log.org & hacpai.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.xiaov.service;
+
+import com.scienjus.smartqq.model.MessageSegment;
+import java.util.Arrays;
+import java.util.List;
+import org.b3log.xiaov.util.XiaoVs;
+
+/**
+ * Preprocessed inbound message, immutable.
+ *
+ * <p>
+ * Built in one scan over the segments of a message: face codes are collected, text segments are joined into the
+ * cleaned text, and while the text is scanned the bot name is matched (a KMP automaton compiled once from
+ * <i>qq.bot.name</i>) and question markers ("?", "？" and "问") are detected. The record is shared by every consumer
+ * of the message: the forum forwarder takes the text, the trigger takes the mention and the markers, chat backends
+ * take the question (the text without the leading bot name).
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 18, 2026
+ * @since 2.2.0
+ */
+public final class ChatMessage {
+
+    /**
+     * Bot name.
+     */
+    private static final String BOT_NAME = XiaoVs.QQ_BOT_NAME;
+
+    /**
+     * Failure function of the bot name.
+     */
+    private static final int[] BOT_NAME_FAILURE = failure(BOT_NAME);
+
+    /**
+     * Min text length of a message triggering a reply by question markers only.
+     */
+    private static final int TRIGGER_MIN_LENGTH = 6;
+
+    /**
+     * No face.
+     */
+    private static final int[] NO_FACE = new int[0];
+
+    /**
+     * Cleaned text, faces and other non-text segments removed.
+     */
+    private final String text;
+
+    /**
+     * Question, the text without the leading bot name and its separators.
+     */
+    private final String question;
+
+    /**
+     * Index of the first bot name in the text, {@code -1} if not mentioned.
+     */
+    private final int mentionIndex;
+
+    /**
+     * Whether the text starts with the bot name.
+     */
+    private final boolean prefixed;
+
+    /**
+     * Whether the text contains a question marker.
+     */
+    private final boolean questionMarked;
+
+    /**
+     * Face ids in order.
+     */
+    private final int[] faceIds;
+
+    /**
+     * Constructs a message with the specified arguments.
+     *
+     * @param text the specified cleaned text
+     * @param question the specified question
+     * @param mentionIndex the specified index of the first bot name
+     * @param prefixed whether the text starts with the bot name
+     * @param questionMarked whether the text contains a question marker
+     * @param faceIds the specified face ids
+     */
+    private ChatMessage(final String text, final String question, final int mentionIndex, final boolean prefixed,
+            final boolean questionMarked, final int[] faceIds) {
+        this.text = text;
+        this.question = question;
+        this.mentionIndex = mentionIndex;
+        this.prefixed = prefixed;
+        this.questionMarked = questionMarked;
+        this.faceIds = faceIds;
+    }
+
+    /**
+     * Preprocesses the specified segments of a message.
+     *
+     * @param segments the specified segments
+     * @return message
+     */
+    public static ChatMessage of(final List<MessageSegment> segments) {
+        final Scanner scanner = new Scanner();
+        String single = null;
+        int texts = 0;
+        for (final MessageSegment segment : segments) {
+            switch (segment.getType()) {
+                case TEXT:
+                    single = segment.getText();
+                    texts++;
+                    scanner.scan(single, 1 < segments.size());
+                    break;
+                case FACE:
+                    scanner.face(segment.getFaceId());
+                    break;
+                default:
+            }
+        }
+
+        return scanner.build(1 == texts && 1 == segments.size() ? single : null);
+    }
+
+    /**
+     * Preprocesses the specified plain text.
+     *
+     * @param text the specified text
+     * @return message
+     */
+    public static ChatMessage of(final String text) {
+        final Scanner scanner = new Scanner();
+        scanner.scan(null == text ? "" : text, false);
+
+        return scanner.build(null == text ? "" : text);
+    }
+
+    /**
+     * Gets the cleaned text, faces and other non-text segments removed.
+     *
+     * @return text
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Gets the question, the text without the leading bot name and the spaces and commas following it, for example,
+     * "你好" of "小薇，你好". The text is returned if it does not start with the bot name.
+     *
+     * @return question
+     */
+    public String getQuestion() {
+        return question;
+    }
+
+    /**
+     * Gets the index of the first bot name in the text.
+     *
+     * @return index, returns {@code -1} if the bot is not mentioned
+     */
+    public int getMentionIndex() {
+        return mentionIndex;
+    }
+
+    /**
+     * Whether the text mentions the bot name.
+     *
+     * @return {@code true} if mentioned, returns {@code false} otherwise
+     */
+    public boolean isMentioned() {
+        return 0 <= mentionIndex;
+    }
+
+    /**
+     * Whether the text starts with the bot name (leading spaces skipped).
+     *
+     * @return {@code true} if prefixed, returns {@code false} otherwise
+     */
+    public boolean isPrefixed() {
+        return prefixed;
+    }
+
+    /**
+     * Whether the text contains a question marker.
+     *
+     * @return {@code true} if marked, returns {@code false} otherwise
+     */
+    public boolean isQuestionMarked() {
+        return questionMarked;
+    }
+
+    /**
+     * Whether XiaoV should reply, the bot is mentioned or the text is a question long enough.
+     *
+     * @return {@code true} if triggered, returns {@code false} otherwise
+     */
+    public boolean isTrigger() {
+        return isMentioned() || (text.length() > TRIGGER_MIN_LENGTH && questionMarked);
+    }
+
+    /**
+     * Gets the face ids in order.
+     *
+     * @return face ids, a copy
+     */
+    public int[] getFaceIds() {
+        return faceIds.clone();
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    /**
+     * Computes the KMP failure function of the specified pattern.
+     *
+     * @param pattern the specified pattern
+     * @return failure function, the length of the longest proper border of each prefix
+     */
+    private static int[] failure(final String pattern) {
+        final int[] ret = new int[pattern.length()];
+        for (int i = 1, k = 0; i < pattern.length(); i++) {
+            while (0 < k && pattern.charAt(i) != pattern.charAt(k)) {
+                k = ret[k - 1];
+            }
+            if (pattern.charAt(i) == pattern.charAt(k)) {
+                k++;
+            }
+            ret[i] = k;
+        }
+
+        return ret;
+    }
+
+    /**
+     * Scanner of a message.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.0.0, Oct 18, 2026
+     * @since 2.2.0
+     */
+    private static final class Scanner {
+
+        /**
+         * Text, {@code null} until a text is joined.
+         */
+        private StringBuilder builder;
+
+        /**
+         * Length of the text scanned.
+         */
+        private int length;
+
+        /**
+         * Index of the first non-space char, {@code -1} if none.
+         */
+        private int firstNonSpace = -1;
+
+        /**
+         * Matched length of the bot name.
+         */
+        private int matched;
+
+        /**
+         * Index of the first bot name, {@code -1} if none.
+         */
+        private int mentionIndex = -1;
+
+        /**
+         * Whether a question marker is found.
+         */
+        private boolean questionMarked;
+
+        /**
+         * Face ids.
+         */
+        private int[] faceIds = NO_FACE;
+
+        /**
+         * Count of face ids.
+         */
+        private int faceCount;
+
+        /**
+         * Scans the specified text.
+         *
+         * @param text the specified text
+         * @param join whether to join the text into the builder
+         */
+        private void scan(final String text, final boolean join) {
+            if (join) {
+                if (null == builder) {
+                    builder = new StringBuilder(text.length() + 16);
+                }
+                builder.append(text);
+            }
+
+            for (int i = 0; i < text.length(); i++, length++) {
+                final char c = text.charAt(i);
+                if (0 > firstNonSpace && !Character.isWhitespace(c)) {
+                    firstNonSpace = length;
+                }
+                if ('?' == c || '？' == c || '问' == c) {
+                    questionMarked = true;
+                }
+
+                if (0 > mentionIndex && !BOT_NAME.isEmpty()) {
+                    while (0 < matched && c != BOT_NAME.charAt(matched)) {
+                        matched = BOT_NAME_FAILURE[matched - 1];
+                    }
+                    if (c == BOT_NAME.charAt(matched)) {
+                        matched++;
+                    }
+                    if (BOT_NAME.length() == matched) {
+                        mentionIndex = length - matched + 1;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Adds the specified face id.
+         *
+         * @param faceId the specified face id
+         */
+        private void face(final int faceId) {
+            if (faceCount == faceIds.length) {
+                faceIds = Arrays.copyOf(faceIds, Math.max(4, faceCount * 2));
+            }
+            faceIds[faceCount++] = faceId;
+        }
+
+        /**
+         * Builds the message.
+         *
+         * @param single the specified text if it is the only segment, {@code null} to take the joined text
+         * @return message
+         */
+        private ChatMessage build(final String single) {
+            final String text = null != single ? single : null == builder ? "" : builder.toString();
+            final boolean prefixed = 0 <= mentionIndex && mentionIndex == firstNonSpace;
+
+            String question = text;
+            if (prefixed) {
+                int start = mentionIndex + BOT_NAME.length();
+                while (start < text.length() && isSeparator(text.charAt(start))) {
+                    start++;
+                }
+                int end = text.length();
+                while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+                    end--;
+                }
+                question = text.substring(start, end);
+            } else {
+                question = question.trim();
+            }
+
+            return new ChatMessage(text, question, mentionIndex, prefixed, questionMarked,
+                    faceCount == faceIds.length ? faceIds : Arrays.copyOf(faceIds, faceCount));
+        }
+
+        /**
+         * Checks whether the specified char separates the bot name from the question.
+         *
+         * @param c the specified char
+         * @return {@code true} if it is a separator, returns {@code false} otherwise
+         */
+        private static boolean isSeparator(final char c) {
+            return Character.isWhitespace(c) || ',' == c || '，' == c;
+        }
+    }
+}
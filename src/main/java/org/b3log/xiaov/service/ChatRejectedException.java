@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2012-2016, b3log.org & hacpai.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.xiaov.service;
+
+/**
+ * Thrown when a chat backend rejects the credentials of XiaoV, for example, an expired cookie or a bad key. The
+ * backend will keep failing until the credentials are fixed, so {@link ChatRouter} takes it out of rotation at once.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 18, 2026
+ * @since 2.2.0
+ */
+public class ChatRejectedException extends Exception {
+
+    /**
+     * Default serial version uid.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs an exception with the specified message.
+     *
+     * @param msg the specified message
+     */
+    public ChatRejectedException(final String msg) {
+        super(msg);
+    }
+}
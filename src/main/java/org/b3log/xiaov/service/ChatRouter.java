@@ -0,0 +1,528 @@
+/*
+ * Copyright (c) 2012-2016, b3log.org & hacpai.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.xiaov.service;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeoutException;
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+import org.json.JSONObject;
+
+/**
+ * Routes questions across chat backends by latency, errors and daily quota.
+ *
+ * <p>
+ * Every backend has an EWMA of its latency and of its error rate (failures and timeouts count as errors, answers as
+ * successes) and a count of calls made today. A question goes to a backend picked at random by weight, the weight is
+ * the success rate over the latency, so a backend twice as fast gets twice the questions. The next heaviest backend
+ * hedges it.
+ * </p>
+ *
+ * <p>
+ * A backend is taken out of rotation when its error rate reaches the threshold or it rejects the credentials of XiaoV
+ * ({@link ChatRejectedException}), until the eject time elapses; then it is probed with one question (hedged by a
+ * healthy backend), an answer brings it back and a failure ejects it again. A backend is also taken out when its
+ * daily quota is nearly used up or Turing answers {@link TuringQueryService#QUOTA_EXCEEDED_ANSWER}, until the next
+ * day. If all backends are out, questions go to the one which will be back the soonest. See <i>qq.bot.router.*</i>
+ * in xiaov.properties.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 18, 2026
+ * @since 2.2.0
+ */
+public class ChatRouter implements ChatHedger.Listener {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(ChatRouter.class.getName());
+
+    /**
+     * Latency in milliseconds assumed for a backend without samples.
+     */
+    private static final double INITIAL_LATENCY = 1000;
+
+    /**
+     * Min latency in milliseconds counted in weights, so a few very fast answers do not take all questions.
+     */
+    private static final double MIN_LATENCY = 50;
+
+    /**
+     * Min weight of a backend in rotation.
+     */
+    private static final double MIN_WEIGHT = 0.001;
+
+    /**
+     * Reason of a backend in rotation.
+     */
+    private static final String REASON_OK = "ok";
+
+    /**
+     * Random.
+     */
+    private final Random random = new Random();
+
+    /**
+     * Backends, guarded by this router.
+     *
+     * &lt;backend name, backend&gt;
+     */
+    private final Map<String, Backend> backends = new LinkedHashMap<>();
+
+    /**
+     * Smoothing factor of EWMAs.
+     */
+    private final double alpha;
+
+    /**
+     * Error rate taking a backend out of rotation.
+     */
+    private final double errorRateThreshold;
+
+    /**
+     * Time in milliseconds a failing backend stays out of rotation before it is probed.
+     */
+    private final long ejectTime;
+
+    /**
+     * Share of the daily quota kept in reserve, a backend is taken out when only the reserve is left.
+     */
+    private final double quotaReserve;
+
+    /**
+     * Whether questions are hedged by the next heaviest backend.
+     */
+    private final boolean hedging;
+
+    /**
+     * Start time of today.
+     */
+    private long today;
+
+    /**
+     * Constructs a router with the specified arguments.
+     *
+     * @param backends the specified backends to route across
+     * @param quotas the specified daily quotas, &lt;backend name, quota&gt;, a backend without quota is unlimited
+     * @param alpha the specified smoothing factor of EWMAs, for example, {@code 0.2}
+     * @param errorRateThreshold the specified error rate taking a backend out of rotation, for example, {@code 0.5}
+     * @param ejectTime the specified time in milliseconds a failing backend stays out of rotation before it is probed
+     * @param quotaReserve the specified share of the daily quota kept in reserve, for example, {@code 0.02}
+     * @param hedging whether questions are hedged by the next heaviest backend
+     */
+    public ChatRouter(final List<ChatBackend> backends, final Map<String, Long> quotas, final double alpha,
+            final double errorRateThreshold, final long ejectTime, final double quotaReserve, final boolean hedging) {
+        for (final ChatBackend backend : backends) {
+            final Long quota = quotas.get(backend.getName());
+            this.backends.put(backend.getName(), new Backend(backend, null == quota ? 0 : quota));
+        }
+        this.alpha = alpha;
+        this.errorRateThreshold = errorRateThreshold;
+        this.ejectTime = ejectTime;
+        this.quotaReserve = quotaReserve;
+        this.hedging = hedging;
+        this.today = today(System.currentTimeMillis());
+    }
+
+    /**
+     * Routes a question.
+     *
+     * @return route
+     */
+    public synchronized Route route() {
+        final long now = System.currentTimeMillis();
+        rollOver(now);
+
+        final List<Backend> candidates = new ArrayList<>(backends.size());
+        Backend probe = null;
+        for (final Backend backend : backends.values()) {
+            if (0 == backend.outUntil) {
+                candidates.add(backend);
+            } else if (backend.outUntil <= now && (!backend.probing || backend.probeTime + ejectTime <= now)
+                    && null == probe) {
+                probe = backend;
+            }
+        }
+
+        if (null != probe) {
+            probe.probing = true;
+            probe.probeTime = now;
+            LOGGER.log(Level.INFO, "Probes chat backend [" + probe.backend.getName() + "], out of rotation for ["
+                    + probe.reason + "]");
+
+            return new Route(probe.backend, hedging ? heaviest(candidates, null) : null);
+        }
+
+        if (candidates.isEmpty()) {
+            Backend soonest = null;
+            for (final Backend backend : backends.values()) {
+                if (null == soonest || backend.outUntil < soonest.outUntil) {
+                    soonest = backend;
+                }
+            }
+
+            return new Route(soonest.backend, null);
+        }
+
+        double total = 0;
+        for (final Backend backend : candidates) {
+            total += backend.weight();
+        }
+        double point = random.nextDouble() * total;
+        Backend primary = candidates.get(candidates.size() - 1);
+        for (final Backend backend : candidates) {
+            point -= backend.weight();
+            if (0 > point) {
+                primary = backend;
+
+                break;
+            }
+        }
+
+        return new Route(primary.backend, hedging ? heaviest(candidates, primary) : null);
+    }
+
+    @Override
+    public synchronized void onCall(final String name) {
+        final Backend backend = backends.get(name);
+        if (null == backend) {
+            return;
+        }
+
+        rollOver(System.currentTimeMillis());
+        backend.used++;
+        if (0 < backend.quota && 0 == backend.outUntil && backend.used >= backend.quota * (1 - quotaReserve)) {
+            eject(backend, tomorrow(), "quota nearly used up [" + backend.used + "/" + backend.quota + "]");
+        }
+    }
+
+    @Override
+    public synchronized void onAnswer(final String name, final long latency, final String answer) {
+        final Backend backend = backends.get(name);
+        if (null == backend) {
+            return;
+        }
+
+        if (TuringQueryService.QUOTA_EXCEEDED_ANSWER.equals(answer)) {
+            backend.probing = false;
+            backend.used = Math.max(backend.used, backend.quota);
+            eject(backend, tomorrow(), "quota exhausted");
+
+            return;
+        }
+
+        backend.latency = backend.latency < 0 ? latency : alpha * latency + (1 - alpha) * backend.latency;
+        backend.errorRate = (1 - alpha) * backend.errorRate;
+        if (backend.probing) {
+            backend.probing = false;
+            backend.outUntil = 0;
+            backend.errorRate = 0;
+            backend.reason = REASON_OK;
+            LOGGER.log(Level.INFO, "Chat backend [" + name + "] is back in rotation");
+        }
+    }
+
+    @Override
+    public synchronized void onFailure(final String name, final long latency, final Throwable error) {
+        final Backend backend = backends.get(name);
+        if (null == backend) {
+            return;
+        }
+
+        if (error instanceof TimeoutException) {
+            backend.latency = backend.latency < 0 ? latency : alpha * latency + (1 - alpha) * backend.latency;
+        }
+        backend.errorRate = alpha + (1 - alpha) * backend.errorRate;
+
+        final long now = System.currentTimeMillis();
+        if (error instanceof ChatRejectedException) {
+            backend.probing = false;
+            eject(backend, now + ejectTime, "credentials rejected: " + error.getMessage());
+        } else if (backend.probing) {
+            backend.probing = false;
+            eject(backend, now + ejectTime, "probe failed: " + error);
+        } else if (0 == backend.outUntil && backend.errorRate >= errorRateThreshold) {
+            eject(backend, now + ejectTime, "error rate [" + String.format("%.2f", backend.errorRate) + "]");
+        }
+    }
+
+    /**
+     * Gets the statistic of this router.
+     *
+     * @return statistic, for example,
+     * <pre>
+     * {
+     *     "turing": {
+     *         "inRotation": boolean,
+     *         "reason": "ok", // or why it is out of rotation, for example, "quota exhausted"
+     *         "outUntil": long,
+     *         "weight": double, // share of questions
+     *         "latency": double, // EWMA in milliseconds, -1 if no sample
+     *         "errorRate": double, // EWMA
+     *         "used": long, // calls today
+     *         "quota": long, // 0 if unlimited
+     *         "remaining": long // -1 if unlimited
+     *     }, ....
+     * }
+     * </pre>
+     */
+    public synchronized JSONObject getStat() {
+        final JSONObject ret = new JSONObject();
+
+        rollOver(System.currentTimeMillis());
+        double total = 0;
+        for (final Backend backend : backends.values()) {
+            if (0 == backend.outUntil) {
+                total += backend.weight();
+            }
+        }
+        for (final Backend backend : backends.values()) {
+            final JSONObject stat = new JSONObject();
+            final boolean in = 0 == backend.outUntil;
+            stat.put("inRotation", in);
+            stat.put("reason", backend.reason);
+            stat.put("outUntil", backend.outUntil);
+            stat.put("weight", in && 0 < total ? backend.weight() / total : 0D);
+            stat.put("latency", backend.latency);
+            stat.put("errorRate", backend.errorRate);
+            stat.put("used", backend.used);
+            stat.put("quota", backend.quota);
+            stat.put("remaining", 0 < backend.quota ? Math.max(0, backend.quota - backend.used) : -1);
+            ret.put(backend.backend.getName(), stat);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Takes the specified backend out of rotation.
+     *
+     * @param backend the specified backend
+     * @param until the specified time until which the backend is out
+     * @param reason the specified reason
+     */
+    private void eject(final Backend backend, final long until, final String reason) {
+        backend.outUntil = until;
+        backend.reason = reason;
+        LOGGER.log(Level.WARN, "Chat backend [" + backend.backend.getName() + "] is out of rotation for [" + reason
+                + "] until [" + String.format("%tF %<tT", until) + "]");
+    }
+
+    /**
+     * Resets daily quotas if a new day starts at the specified time.
+     *
+     * @param now the specified time
+     */
+    private void rollOver(final long now) {
+        final long day = today(now);
+        if (day == today) {
+            return;
+        }
+
+        today = day;
+        for (final Backend backend : backends.values()) {
+            backend.used = 0;
+            if (0 != backend.outUntil && backend.outUntil <= now && backend.reason.startsWith("quota")) {
+                backend.outUntil = 0;
+                backend.errorRate = 0;
+                backend.reason = REASON_OK;
+                LOGGER.log(Level.INFO, "Chat backend [" + backend.backend.getName() + "] is back in rotation, "
+                        + "daily quota reset");
+            }
+        }
+    }
+
+    /**
+     * Gets the heaviest of the specified backends except the specified one.
+     *
+     * @param candidates the specified backends
+     * @param except the specified backend to skip, may be {@code null}
+     * @return heaviest backend, returns {@code null} if none
+     */
+    private static ChatBackend heaviest(final List<Backend> candidates, final Backend except) {
+        Backend ret = null;
+        for (final Backend backend : candidates) {
+            if (backend != except && (null == ret || backend.weight() > ret.weight())) {
+                ret = backend;
+            }
+        }
+
+        return null == ret ? null : ret.backend;
+    }
+
+    /**
+     * Gets the start time of the day of the specified time.
+     *
+     * @param time the specified time
+     * @return start time of the day
+     */
+    private static long today(final long time) {
+        final Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * Gets the start time of tomorrow.
+     *
+     * @return start time of tomorrow
+     */
+    private long tomorrow() {
+        final Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(today);
+        calendar.add(Calendar.DAY_OF_MONTH, 1);
+
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * Route of a question.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.0.0, Oct 18, 2026
+     * @since 2.2.0
+     */
+    public static final class Route {
+
+        /**
+         * Primary backend.
+         */
+        private final ChatBackend primary;
+
+        /**
+         * Hedge backend.
+         */
+        private final ChatBackend hedge;
+
+        /**
+         * Constructs a route with the specified arguments.
+         *
+         * @param primary the specified primary backend
+         * @param hedge the specified hedge backend, {@code null} if not hedged
+         */
+        public Route(final ChatBackend primary, final ChatBackend hedge) {
+            this.primary = primary;
+            this.hedge = hedge;
+        }
+
+        /**
+         * Gets the primary backend.
+         *
+         * @return primary backend
+         */
+        public ChatBackend getPrimary() {
+            return primary;
+        }
+
+        /**
+         * Gets the hedge backend.
+         *
+         * @return hedge backend, {@code null} if not hedged
+         */
+        public ChatBackend getHedge() {
+            return hedge;
+        }
+    }
+
+    /**
+     * Routing state of a backend, guarded by the router.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.0.0, Oct 18, 2026
+     * @since 2.2.0
+     */
+    private static final class Backend {
+
+        /**
+         * Backend.
+         */
+        private final ChatBackend backend;
+
+        /**
+         * Daily quota, {@code 0} if unlimited.
+         */
+        private final long quota;
+
+        /**
+         * Count of calls today.
+         */
+        private long used;
+
+        /**
+         * EWMA of latency in milliseconds, {@code -1} if no sample.
+         */
+        private double latency = -1;
+
+        /**
+         * EWMA of error rate.
+         */
+        private double errorRate;
+
+        /**
+         * Time until which the backend is out of rotation, {@code 0} if in rotation.
+         */
+        private long outUntil;
+
+        /**
+         * Whether a probe question is pending. A probe cancelled because the hedge backend answered first reports
+         * nothing, so a probe pending longer than the eject time is given up.
+         */
+        private boolean probing;
+
+        /**
+         * Start time of the pending probe.
+         */
+        private long probeTime;
+
+        /**
+         * Why the backend is out of rotation, {@link #REASON_OK} if in rotation.
+         */
+        private String reason = REASON_OK;
+
+        /**
+         * Constructs a state of the specified backend.
+         *
+         * @param backend the specified backend
+         * @param quota the specified daily quota, {@code 0} if unlimited
+         */
+        private Backend(final ChatBackend backend, final long quota) {
+            this.backend = backend;
+            this.quota = quota;
+        }
+
+        /**
+         * Gets the routing weight.
+         *
+         * @return weight
+         */
+        private double weight() {
+            final double millis = Math.max(MIN_LATENCY, latency < 0 ? INITIAL_LATENCY : latency);
+
+            return Math.max(MIN_WEIGHT, (1 - errorRate) * 1000 / millis);
+        }
+    }
+}
@@ -0,0 +1,380 @@
+/*
+ * Copyright (c) 2012-2016, b3log.org & hacpai.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.xiaov.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.lang.StringUtils;
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+import org.json.JSONObject;
+
+/**
+ * Registry of groups or discusses.
+ *
+ * <p>
+ * Holds an immutable snapshot which is replaced with one volatile write on reload, so lookups are lock-free and never
+ * see a half-filled registry. A reload computes the diff (added, removed and renamed) against the current snapshot,
+ * callers keep their per-conversation state of conversations which still exist and drop the state of removed ones.
+ * </p>
+ *
+ * <p>
+ * Reloads triggered by unknown ids are coalesced: callers which wait for a running reload check the new snapshot
+ * instead of reloading again, and such reloads are throttled by a min interval.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 18, 2026
+ * @since 2.2.0
+ * @param <T> the type of conversations, {@link com.scienjus.smartqq.model.Group} or
+ * {@link com.scienjus.smartqq.model.Discuss}
+ */
+public class ConversationRegistry<T> {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(ConversationRegistry.class.getName());
+
+    /**
+     * Registry name.
+     */
+    private final String name;
+
+    /**
+     * Conversation accessor.
+     */
+    private final Accessor<T> accessor;
+
+    /**
+     * Min interval between reloads triggered by unknown ids in milliseconds.
+     */
+    private final long minReloadInterval;
+
+    /**
+     * Reload lock.
+     */
+    private final Object reloadLock = new Object();
+
+    /**
+     * Current snapshot.
+     *
+     * &lt;id, conversation&gt;
+     */
+    private volatile Map<Long, T> snapshot = Collections.emptyMap();
+
+    /**
+     * The latest reload time.
+     */
+    private volatile long reloadTime;
+
+    /**
+     * The latest diff.
+     */
+    private volatile Diff<T> lastDiff;
+
+    /**
+     * Reload count.
+     */
+    private final AtomicLong reloadCount = new AtomicLong();
+
+    /**
+     * Reload failure count.
+     */
+    private final AtomicLong reloadFailureCount = new AtomicLong();
+
+    /**
+     * Count of unknown id lookups served by a reload of another caller.
+     */
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    /**
+     * Count of unknown id lookups which skipped reloading because of the min interval.
+     */
+    private final AtomicLong throttledCount = new AtomicLong();
+
+    /**
+     * Constructs a registry with the specified arguments.
+     *
+     * @param name the specified name
+     * @param accessor the specified conversation accessor
+     * @param minReloadInterval the specified min interval between reloads triggered by unknown ids in milliseconds
+     */
+    public ConversationRegistry(final String name, final Accessor<T> accessor, final long minReloadInterval) {
+        this.name = name;
+        this.accessor = accessor;
+        this.minReloadInterval = minReloadInterval;
+    }
+
+    /**
+     * Gets the conversation of the specified id.
+     *
+     * @param id the specified id
+     * @return conversation, returns {@code null} if not found
+     */
+    public T get(final long id) {
+        return snapshot.get(id);
+    }
+
+    /**
+     * Gets the conversation of the specified id, reloads if it is unknown.
+     *
+     * @param id the specified id
+     * @return conversation, returns {@code null} if not found after reloading or the reload is throttled
+     */
+    public T getOrReload(final long id) {
+        final Map<Long, T> seen = snapshot;
+        T ret = seen.get(id);
+        if (null != ret) {
+            return ret;
+        }
+
+        synchronized (reloadLock) {
+            if (seen != snapshot) { // Another caller has reloaded while we were waiting
+                coalescedCount.incrementAndGet();
+
+                return snapshot.get(id);
+            }
+
+            if (System.currentTimeMillis() - reloadTime < minReloadInterval) {
+                throttledCount.incrementAndGet();
+
+                return null;
+            }
+
+            reload();
+            ret = snapshot.get(id);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Gets all conversations of the current snapshot.
+     *
+     * @return conversations, unmodifiable
+     */
+    public Collection<T> values() {
+        return snapshot.values();
+    }
+
+    /**
+     * Gets the conversation count.
+     *
+     * @return conversation count
+     */
+    public int size() {
+        return snapshot.size();
+    }
+
+    /**
+     * Reloads conversations, publishes the new snapshot and notifies the accessor of the diff.
+     *
+     * @return diff against the previous snapshot, returns {@code null} if loads failed
+     */
+    public Diff<T> reload() {
+        synchronized (reloadLock) {
+            final List<T> loaded;
+            try {
+                loaded = accessor.load();
+            } catch (final Exception e) {
+                reloadFailureCount.incrementAndGet();
+                reloadTime = System.currentTimeMillis();
+                LOGGER.log(Level.ERROR, "Reloads " + name + "s failed", e);
+
+                return null;
+            }
+
+            final Map<Long, T> current = snapshot;
+            final Map<Long, T> next = new HashMap<>(loaded.size() * 4 / 3 + 1);
+            final Diff<T> diff = new Diff<>();
+            for (final T conversation : loaded) {
+                final long id = accessor.getId(conversation);
+                next.put(id, conversation);
+
+                final T previous = current.get(id);
+                if (null == previous) {
+                    diff.added.add(conversation);
+                } else if (!StringUtils.equals(accessor.getName(previous), accessor.getName(conversation))) {
+                    diff.renamed.add(conversation);
+                }
+            }
+            for (final Map.Entry<Long, T> entry : current.entrySet()) {
+                if (!next.containsKey(entry.getKey())) {
+                    diff.removed.add(entry.getValue());
+                }
+            }
+
+            snapshot = Collections.unmodifiableMap(next);
+            reloadTime = System.currentTimeMillis();
+            lastDiff = diff;
+            reloadCount.incrementAndGet();
+
+            accessor.onReloaded(diff);
+
+            LOGGER.log(Level.INFO, "Reloaded " + name + "s [total=" + next.size() + ", added=" + diff.added.size()
+                    + ", removed=" + diff.removed.size() + ", renamed=" + diff.renamed.size() + "]");
+            if (LOGGER.isDebugEnabled()) {
+                final StringBuilder msgBuilder = new StringBuilder();
+                msgBuilder.append("Reloaded ").append(name).append("s: \n");
+                for (final T conversation : loaded) {
+                    msgBuilder.append("    ").append(accessor.getName(conversation)).append(": ")
+                            .append(accessor.getId(conversation)).append("\n");
+                }
+                LOGGER.log(Level.DEBUG, msgBuilder.toString());
+            }
+
+            return diff;
+        }
+    }
+
+    /**
+     * Gets the statistic of this registry.
+     *
+     * @return statistic, for example,
+     * <pre>
+     * {
+     *     "size": int,
+     *     "reloads": long,
+     *     "reloadFailures": long,
+     *     "coalesced": long,
+     *     "throttled": long,
+     *     "reloadTime": long,
+     *     "lastAdded": int,
+     *     "lastRemoved": int,
+     *     "lastRenamed": int
+     * }
+     * </pre>
+     */
+    public JSONObject getStat() {
+        final JSONObject ret = new JSONObject();
+
+        ret.put("size", snapshot.size());
+        ret.put("reloads", reloadCount.get());
+        ret.put("reloadFailures", reloadFailureCount.get());
+        ret.put("coalesced", coalescedCount.get());
+        ret.put("throttled", throttledCount.get());
+        ret.put("reloadTime", reloadTime);
+        final Diff<T> diff = lastDiff;
+        if (null != diff) {
+            ret.put("lastAdded", diff.added.size());
+            ret.put("lastRemoved", diff.removed.size());
+            ret.put("lastRenamed", diff.renamed.size());
+        }
+
+        return ret;
+    }
+
+    /**
+     * Conversation accessor.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.0.0, Oct 18, 2026
+     * @since 2.2.0
+     * @param <T> the type of conversations
+     */
+    public interface Accessor<T> {
+
+        /**
+         * Loads all conversations from WebQQ.
+         *
+         * @return conversations
+         * @throws Exception if loads failed
+         */
+        List<T> load() throws Exception;
+
+        /**
+         * Gets the id of the specified conversation.
+         *
+         * @param conversation the specified conversation
+         * @return id
+         */
+        long getId(final T conversation);
+
+        /**
+         * Gets the name of the specified conversation.
+         *
+         * @param conversation the specified conversation
+         * @return name
+         */
+        String getName(final T conversation);
+
+        /**
+         * Invoked in the reload lock after a new snapshot has been published.
+         *
+         * @param diff the specified diff against the previous snapshot
+         */
+        void onReloaded(final Diff<T> diff);
+    }
+
+    /**
+     * Diff between two snapshots.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.0.0, Oct 18, 2026
+     * @since 2.2.0
+     * @param <T> the type of conversations
+     */
+    public static final class Diff<T> {
+
+        /**
+         * Added conversations.
+         */
+        private final List<T> added = new ArrayList<>();
+
+        /**
+         * Removed conversations.
+         */
+        private final List<T> removed = new ArrayList<>();
+
+        /**
+         * Renamed conversations, with new names.
+         */
+        private final List<T> renamed = new ArrayList<>();
+
+        /**
+         * Gets the added conversations.
+         *
+         * @return added conversations
+         */
+        public List<T> getAdded() {
+            return added;
+        }
+
+        /**
+         * Gets the removed conversations.
+         *
+         * @return removed conversations
+         */
+        public List<T> getRemoved() {
+            return removed;
+        }
+
+        /**
+         * Gets the renamed conversations.
+         *
+         * @return renamed conversations, with new names
+         */
+        public List<T> getRenamed() {
+            return renamed;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2012-2016, b3log.org & hacpai.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.xiaov.service;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.lang.StringUtils;
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+import org.b3log.xiaov.util.AhoCorasick;
+import org.b3log.xiaov.util.BoundedExecutor;
+import org.json.JSONObject;
+
+/**
+ * Keywords followed in group and discuss messages.
+ *
+ * <p>
+ * The keywords of <i>bot.follow.keywords</i> and of the keyword file (one or more comma separated keywords per line,
+ * lines starting with # are comments) are compiled into one {@link AhoCorasick} automaton, so a message is matched in
+ * one pass however many keywords there are. The keyword file is checked for changes every check interval by a
+ * watcher thread, never by the matching threads; a changed file is compiled on the watcher and swapped in atomically,
+ * matches in flight keep the old automaton. A keyword file which fails to load leaves the current keywords in place.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.1.0.0, Oct 18, 2026
+ * @since 2.2.0
+ */
+public class FollowKeywords {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(FollowKeywords.class.getName());
+
+    /**
+     * UTF-8.
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Keywords of the configuration.
+     */
+    private final List<String> inlineKeywords;
+
+    /**
+     * Keyword file, {@code null} if none.
+     */
+    private final File file;
+
+    /**
+     * Watcher of the keyword file, {@code null} if none.
+     */
+    private final ScheduledExecutorService watcher;
+
+    /**
+     * Last modified time of the loaded keyword file, {@code 0} if not loaded, only written by the watcher.
+     */
+    private volatile long fileModified;
+
+    /**
+     * Automaton.
+     */
+    private volatile AhoCorasick automaton;
+
+    /**
+     * Count of reloads.
+     */
+    private final AtomicLong reloadCount = new AtomicLong();
+
+    /**
+     * Constructs keywords with the specified arguments, compiles them and starts watching the keyword file.
+     *
+     * @param keywords the specified keywords, separated by comma
+     * @param filePath the specified keyword file path, blank if none
+     * @param checkInterval the specified interval in milliseconds between checks of the keyword file
+     */
+    public FollowKeywords(final String keywords, final String filePath, final long checkInterval) {
+        this.inlineKeywords = Arrays.asList(StringUtils.split(StringUtils.defaultString(keywords), ","));
+        this.file = StringUtils.isBlank(filePath) ? null : new File(filePath.trim());
+
+        automaton = new AhoCorasick(inlineKeywords);
+        if (null == file) {
+            watcher = null;
+
+            return;
+        }
+
+        check();
+        watcher = Executors.newSingleThreadScheduledExecutor(
+                new BoundedExecutor.NamedThreadFactory("xiaov-keywords"));
+        final long interval = Math.max(1, checkInterval);
+        watcher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    check();
+                } catch (final Exception e) {
+                    LOGGER.log(Level.ERROR, "Checks keyword file [" + file.getPath() + "] failed", e);
+                }
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Finds the longest keyword in the specified text.
+     *
+     * @param text the specified text
+     * @return keyword, returns {@code null} if not found
+     */
+    public String match(final String text) {
+        return automaton.longest(text);
+    }
+
+    /**
+     * Stops watching the keyword file.
+     */
+    public void shutdown() {
+        if (null != watcher) {
+            watcher.shutdownNow();
+        }
+    }
+
+    /**
+     * Gets the statistic of these keywords.
+     *
+     * @return statistic, for example,
+     * <pre>
+     * {
+     *     "keywords": int,
+     *     "file": "",
+     *     "fileModified": long,
+     *     "reloads": long
+     * }
+     * </pre>
+     */
+    public JSONObject getStat() {
+        final JSONObject ret = new JSONObject();
+
+        ret.put("keywords", automaton.size());
+        ret.put("file", null == file ? JSONObject.NULL : file.getPath());
+        ret.put("fileModified", fileModified);
+        ret.put("reloads", reloadCount.get());
+
+        return ret;
+    }
+
+    /**
+     * Reloads the keyword file if it has changed.
+     */
+    private void check() {
+        final long modified = file.lastModified(); // 0 if the file does not exist
+        if (modified == fileModified) {
+            return;
+        }
+
+        final List<String> keywords = new ArrayList<>(inlineKeywords);
+        if (0 != modified) {
+            try (final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+                    UTF_8))) {
+                String line;
+                while (null != (line = reader.readLine())) {
+                    if (!line.trim().startsWith("#")) {
+                        keywords.addAll(Arrays.asList(StringUtils.split(line, ",")));
+                    }
+                }
+            } catch (final IOException e) {
+                LOGGER.log(Level.ERROR, "Loads keyword file [" + file.getPath() + "] failed", e);
+
+                return;
+            }
+        }
+
+        final AhoCorasick loaded = new AhoCorasick(keywords);
+        automaton = loaded;
+        fileModified = modified;
+        reloadCount.incrementAndGet();
+        LOGGER.log(Level.INFO, "Loaded [" + loaded.size() + "] follow keywords from [" + file.getPath() + "]");
+    }
+}
@@ -0,0 +1,765 @@
+/*
+ * Copyright (c) 2012-2016, b3log.org & hacpai.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.xiaov.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.http.HttpResponse;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+import org.b3log.xiaov.util.CircuitBreaker;
+import org.json.JSONObject;
+
+/**
+ * Forwards group and discuss messages to the forum.
+ *
+ * <p>
+ * Message handlers only enqueue into a bounded queue and return immediately. A flusher thread drains the queue in
+ * batches, a batch is flushed once it reaches the batch size or the linger time of its first message has elapsed, and
+ * posts of a batch go back to back over a kept-alive connection. When the queue is full the oldest message is dropped
+ * ({@code dropOldest}), or with {@code sample} only a ratio of messages is accepted once the queue is over the high
+ * watermark, see <i>forum.*</i> in xiaov.properties.
+ * </p>
+ *
+ * <p>
+ * With a {@link ForumSpool}, nothing is dropped or sampled: a full queue is moved to the spool. While the spool has
+ * pending messages or a post has failed, new messages are spooled behind them, and the flusher drains the failed
+ * messages and then the spool in order, retrying after an interval once a post fails.
+ * </p>
+ *
+ * <p>
+ * Posts go through a circuit breaker, while the circuit is open posts fail at once instead of waiting for the
+ * timeouts of a dead forum. The single flusher thread over a single connection is the bulkhead of the forum, message
+ * handlers never wait for it.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.1.0.1, Oct 18, 2026
+ * @since 2.2.0
+ */
+public class ForumForwarder {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(ForumForwarder.class.getName());
+
+    /**
+     * Overload policy, drops the oldest message when the queue is full.
+     */
+    public static final String POLICY_DROP_OLDEST = "dropOldest";
+
+    /**
+     * Overload policy, samples messages when the queue is over the high watermark.
+     */
+    public static final String POLICY_SAMPLE = "sample";
+
+    /**
+     * Forum API.
+     */
+    private final String api;
+
+    /**
+     * Forum key.
+     */
+    private final String key;
+
+    /**
+     * Message queue.
+     */
+    private final BlockingQueue<Message> queue;
+
+    /**
+     * Queue capacity.
+     */
+    private final int queueCapacity;
+
+    /**
+     * Max messages of a batch.
+     */
+    private final int batchSize;
+
+    /**
+     * Max time in milliseconds a message waits for its batch to fill.
+     */
+    private final long linger;
+
+    /**
+     * Whether to sample under overload, drops the oldest message otherwise.
+     */
+    private final boolean sample;
+
+    /**
+     * Accepted ratio of messages when sampling.
+     */
+    private final double sampleRatio;
+
+    /**
+     * Queue size above which sampling starts.
+     */
+    private final int highWatermark;
+
+    /**
+     * Forum connection pool.
+     */
+    private final PoolingHttpClientConnectionManager pool;
+
+    /**
+     * Forum HTTP client.
+     */
+    private final CloseableHttpClient client;
+
+    /**
+     * Disk spool, {@code null} if disabled.
+     */
+    private final ForumSpool spool;
+
+    /**
+     * Lock of taking messages from the queue to the batch or the spool, keeps the spooled messages in order. Separate
+     * from the lock of the spool, the flusher waits for messages under it.
+     */
+    private final Object spillLock = new Object();
+
+    /**
+     * Interval in milliseconds between drains of the spool after a failed post.
+     */
+    private final long retryInterval;
+
+    /**
+     * Circuit breaker of posts.
+     */
+    private final CircuitBreaker breaker;
+
+    /**
+     * Messages of the batch whose post failed, retried before the spool since they are older than the messages moved
+     * to the spool while the batch was being posted. Only touched by the flusher thread.
+     */
+    private final List<Message> retrying = new ArrayList<>();
+
+    /**
+     * Time of the next drain of the spool.
+     */
+    private volatile long retryTime;
+
+    /**
+     * Flusher thread.
+     */
+    private final Thread flusher;
+
+    /**
+     * Whether this forwarder is running.
+     */
+    private volatile boolean running = true;
+
+    /**
+     * Accepted count.
+     */
+    private final AtomicLong acceptedCount = new AtomicLong();
+
+    /**
+     * Count of messages dropped because the queue is full.
+     */
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /**
+     * Count of messages moved to the spool because the queue is full.
+     */
+    private final AtomicLong spilledCount = new AtomicLong();
+
+    /**
+     * Count of messages moved to the spool because the forum is failing or the spool has pending messages.
+     */
+    private final AtomicLong spooledCount = new AtomicLong();
+
+    /**
+     * Count of messages drained from the spool.
+     */
+    private final AtomicLong drainedCount = new AtomicLong();
+
+    /**
+     * Count of messages rejected by sampling.
+     */
+    private final AtomicLong sampledOutCount = new AtomicLong();
+
+    /**
+     * Sent count.
+     */
+    private final AtomicLong sentCount = new AtomicLong();
+
+    /**
+     * Failed count.
+     */
+    private final AtomicLong failedCount = new AtomicLong();
+
+    /**
+     * Count of posts rejected by the open circuit.
+     */
+    private final AtomicLong shortCircuitedCount = new AtomicLong();
+
+    /**
+     * Batch count.
+     */
+    private final AtomicLong batchCount = new AtomicLong();
+
+    /**
+     * Count of messages in batches.
+     */
+    private final AtomicLong batchedCount = new AtomicLong();
+
+    /**
+     * Sum of post latencies in milliseconds.
+     */
+    private final AtomicLong postMillis = new AtomicLong();
+
+    /**
+     * Max post latency in milliseconds.
+     */
+    private volatile long maxPostMillis;
+
+    /**
+     * Sum of latencies from enqueuing to posted in milliseconds.
+     */
+    private final AtomicLong deliverMillis = new AtomicLong();
+
+    /**
+     * Max latency from enqueuing to posted in milliseconds.
+     */
+    private volatile long maxDeliverMillis;
+
+    /**
+     * Constructs a forum forwarder with the specified arguments.
+     *
+     * @param api the specified forum API
+     * @param key the specified forum key
+     * @param queueCapacity the specified queue capacity
+     * @param batchSize the specified max messages of a batch
+     * @param linger the specified max time in milliseconds a message waits for its batch to fill
+     * @param overloadPolicy the specified overload policy, {@value #POLICY_DROP_OLDEST} or {@value #POLICY_SAMPLE}
+     * @param sampleRatio the specified accepted ratio of messages when sampling
+     * @param connectTimeout the specified connect timeout in milliseconds
+     * @param readTimeout the specified read timeout in milliseconds
+     * @param keepAlive the specified keep-alive in milliseconds when the forum does not send one
+     * @param spool the specified disk spool, {@code null} to disable spooling
+     * @param retryInterval the specified interval in milliseconds between drains of the spool after a failed post
+     * @param breaker the specified circuit breaker of posts
+     */
+    public ForumForwarder(final String api, final String key, final int queueCapacity, final int batchSize,
+            final long linger, final String overloadPolicy, final double sampleRatio, final int connectTimeout,
+            final int readTimeout, final long keepAlive, final ForumSpool spool, final long retryInterval,
+            final CircuitBreaker breaker) {
+        if (!POLICY_DROP_OLDEST.equals(overloadPolicy) && !POLICY_SAMPLE.equals(overloadPolicy)) {
+            throw new IllegalArgumentException("Unknown overload policy [" + overloadPolicy + "]");
+        }
+
+        this.api = api;
+        this.key = key;
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.queue = new ArrayBlockingQueue<>(this.queueCapacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.linger = linger;
+        this.sample = POLICY_SAMPLE.equals(overloadPolicy);
+        this.sampleRatio = sampleRatio;
+        this.highWatermark = this.queueCapacity * 3 / 4;
+        this.spool = spool;
+        this.retryInterval = retryInterval;
+        this.breaker = breaker;
+
+        pool = new PoolingHttpClientConnectionManager();
+        pool.setMaxTotal(1);
+        pool.setDefaultMaxPerRoute(1);
+        pool.setDefaultSocketConfig(SocketConfig.custom().setSoTimeout(readTimeout).setTcpNoDelay(true).build());
+        client = HttpClients.custom()
+                .setConnectionManager(pool)
+                .setDefaultRequestConfig(RequestConfig.custom().setConnectTimeout(connectTimeout)
+                        .setConnectionRequestTimeout(connectTimeout).setSocketTimeout(readTimeout).build())
+                .setKeepAliveStrategy(new ConnectionKeepAliveStrategy() {
+                    @Override
+                    public long getKeepAliveDuration(final HttpResponse response, final HttpContext context) {
+                        final long duration = DefaultConnectionKeepAliveStrategy.INSTANCE
+                                .getKeepAliveDuration(response, context);
+
+                        return 0 < duration ? duration : keepAlive;
+                    }
+                }).build();
+
+        flusher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                flushLoop();
+            }
+        }, "xiaov-forum");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Enqueues the specified message to forward, returns immediately.
+     *
+     * @param msg the specified message
+     * @param user the specified user
+     * @return {@code true} if accepted, returns {@code false} if rejected by sampling or this forwarder is shut down
+     */
+    public boolean forward(final String msg, final String user) {
+        if (!running) {
+            return false;
+        }
+
+        if (null == spool && sample && queue.size() >= highWatermark
+                && ThreadLocalRandom.current().nextDouble() >= sampleRatio) {
+            sampledOutCount.incrementAndGet();
+
+            return false;
+        }
+
+        final Message message = new Message(msg, user);
+        acceptedCount.incrementAndGet();
+        if (queue.offer(message)) {
+            return true;
+        }
+
+        if (null != spool) {
+            final List<Message> spilled = new ArrayList<>(queueCapacity + 1);
+            synchronized (spillLock) { // Keeps the order, the queued messages are older
+                queue.drainTo(spilled);
+                spilled.add(message);
+                for (final Message m : spilled) {
+                    toSpool(m);
+                }
+            }
+            spilledCount.addAndGet(spilled.size());
+
+            return true;
+        }
+
+        while (!queue.offer(message)) {
+            if (null != queue.poll()) {
+                droppedCount.incrementAndGet();
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Shuts down this forwarder, queued messages are flushed within the specified timeout.
+     *
+     * @param timeout the specified timeout in milliseconds
+     */
+    public void shutdown(final long timeout) {
+        running = false;
+        flusher.interrupt();
+        try {
+            flusher.join(timeout);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        final int left = queue.size();
+        if (0 < left) {
+            LOGGER.log(Level.WARN, "Forum forwarder shut down with [" + left + "] messages unsent");
+        }
+        if (null != spool) {
+            spool.close();
+        }
+
+        try {
+            client.close();
+        } catch (final IOException e) {
+            LOGGER.log(Level.WARN, "Closes forum client failed", e);
+        }
+    }
+
+    /**
+     * Gets the statistic of this forwarder.
+     *
+     * @return statistic, for example,
+     * <pre>
+     * {
+     *     "queueSize": int,
+     *     "queueCapacity": int,
+     *     "accepted": long,
+     *     "dropped": long,
+     *     "sampledOut": long,
+     *     "sent": long,
+     *     "failed": long,
+     *     "shortCircuited": long, // posts rejected by the open circuit
+     *     "batches": long,
+     *     "avgBatchSize": double,
+     *     "avgPostMillis": double,
+     *     "maxPostMillis": long,
+     *     "avgDeliverMillis": double, // from enqueuing to posted
+     *     "maxDeliverMillis": long,
+     *     "spilled": long,
+     *     "spooled": long,
+     *     "drained": long,
+     *     "connections": {"leased": int, "available": int},
+     *     "breaker": {"state": "CLOSED", ....},
+     *     "spool": {
+     *         "pending": long,
+     *         "segments": int,
+     *         "diskBytes": long,
+     *         ....
+     *     }
+     * }
+     * </pre>
+     */
+    public JSONObject getStat() {
+        final JSONObject ret = new JSONObject();
+
+        final long sent = sentCount.get();
+        final long failed = failedCount.get();
+        final long batches = batchCount.get();
+        final long posts = sent + failed;
+        ret.put("queueSize", queue.size());
+        ret.put("queueCapacity", queueCapacity);
+        ret.put("accepted", acceptedCount.get());
+        ret.put("dropped", droppedCount.get());
+        ret.put("sampledOut", sampledOutCount.get());
+        ret.put("sent", sent);
+        ret.put("failed", failed);
+        ret.put("shortCircuited", shortCircuitedCount.get());
+        ret.put("batches", batches);
+        ret.put("avgBatchSize", 0 == batches ? 0D : (double) batchedCount.get() / batches);
+        ret.put("avgPostMillis", 0 == posts ? 0D : (double) postMillis.get() / posts);
+        ret.put("maxPostMillis", maxPostMillis);
+        ret.put("avgDeliverMillis", 0 == sent ? 0D : (double) deliverMillis.get() / sent);
+        ret.put("maxDeliverMillis", maxDeliverMillis);
+        final JSONObject connections = new JSONObject();
+        connections.put("leased", pool.getTotalStats().getLeased());
+        connections.put("available", pool.getTotalStats().getAvailable());
+        ret.put("connections", connections);
+        ret.put("breaker", breaker.getStat());
+        if (null != spool) {
+            ret.put("spilled", spilledCount.get());
+            ret.put("spooled", spooledCount.get());
+            ret.put("drained", drainedCount.get());
+            ret.put("spool", spool.getStat());
+        }
+
+        return ret;
+    }
+
+    /**
+     * Collects batches, flushes them and drains the spool until shut down, then flushes the queued messages.
+     */
+    private void flushLoop() {
+        final List<Message> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                collect(batch);
+            } catch (final InterruptedException e) {
+                if (running) {
+                    continue;
+                }
+            }
+
+            flush(batch);
+            drain();
+        }
+
+        queue.drainTo(batch);
+        if (null == spool) {
+            flush(batch);
+        } else { // Spools instead of posting, the forum may be failing and shutdown should not wait for it
+            batch.addAll(0, retrying);
+            retrying.clear();
+            synchronized (spillLock) {
+                for (final Message message : batch) {
+                    toSpool(message);
+                }
+            }
+            spooledCount.addAndGet(batch.size());
+            batch.clear();
+        }
+    }
+
+    /**
+     * Collects a batch from the queue, waits the linger time of the first message for the batch to fill. Messages
+     * taken while the spool has pending messages are spooled instead.
+     *
+     * @param batch the specified batch to fill
+     * @throws InterruptedException if interrupted
+     */
+    private void collect(final List<Message> batch) throws InterruptedException {
+        // Wakes up to drain the spool if there is a backlog
+        final Message first = next(batch, hasBacklog() ? Math.max(0, retryTime - System.currentTimeMillis()) : -1);
+        if (null == first) {
+            return;
+        }
+
+        final long deadline = first.time + linger;
+        for (int taken = 1; taken < batchSize; taken++) {
+            final long wait = deadline - System.currentTimeMillis();
+            if (null == next(batch, 0 < wait && !batch.isEmpty() ? wait : 0)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Takes the next message from the queue and keeps it, see {@link #keep(java.util.List, Message)}.
+     *
+     * <p>
+     * With a spool, the message is taken and kept under the spill lock. Otherwise {@link #forward(String, String)}
+     * could spill the newer queued messages to the spool between the two, and the taken message would be spooled
+     * behind them. Waiting under the lock does not hold up {@link #forward(String, String)}, which only takes the lock
+     * once the queue is full, and the wait ends as soon as the queue is not empty.
+     * </p>
+     *
+     * @param batch the specified batch
+     * @param wait the specified max time in milliseconds to wait, waits until a message arrives if negative
+     * @return the taken message, returns {@code null} if none arrives in time
+     * @throws InterruptedException if interrupted
+     */
+    private Message next(final List<Message> batch, final long wait) throws InterruptedException {
+        if (null == spool) {
+            final Message ret = 0 > wait ? queue.take() : queue.poll(wait, TimeUnit.MILLISECONDS);
+            if (null != ret) {
+                batch.add(ret);
+            }
+
+            return ret;
+        }
+
+        synchronized (spillLock) {
+            final Message ret = 0 > wait ? queue.take() : queue.poll(wait, TimeUnit.MILLISECONDS);
+            if (null != ret) {
+                keep(batch, ret);
+            }
+
+            return ret;
+        }
+    }
+
+    /**
+     * Adds the specified message to the specified batch, or to the spool if the spool has pending messages. The
+     * caller holds the spill lock.
+     *
+     * @param batch the specified batch
+     * @param message the specified message
+     */
+    private void keep(final List<Message> batch, final Message message) {
+        if (hasBacklog()) {
+            toSpool(message);
+            spooledCount.incrementAndGet();
+
+            return;
+        }
+
+        batch.add(message);
+    }
+
+    /**
+     * Posts the specified batch and clears it. If a post fails, the message and the rest of the batch are kept for
+     * retrying.
+     *
+     * @param batch the specified batch
+     */
+    private void flush(final List<Message> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        batchCount.incrementAndGet();
+        batchedCount.addAndGet(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            final Message message = batch.get(i);
+            if (post(message.msg, message.user, message.time) || null == spool) {
+                continue;
+            }
+
+            retryTime = System.currentTimeMillis() + retryInterval;
+            retrying.addAll(batch.subList(i, batch.size()));
+
+            break;
+        }
+        batch.clear();
+    }
+
+    /**
+     * Posts the failed messages and then up to a batch of spooled messages in order, stops at the first failed post
+     * and retries after the retry interval.
+     */
+    private void drain() {
+        if (null == spool || System.currentTimeMillis() < retryTime) {
+            return;
+        }
+
+        while (!retrying.isEmpty()) {
+            final Message message = retrying.get(0);
+            if (!post(message.msg, message.user, message.time)) {
+                retryTime = System.currentTimeMillis() + retryInterval;
+
+                return;
+            }
+
+            retrying.remove(0);
+        }
+
+        for (int i = 0; i < batchSize; i++) {
+            final ForumSpool.Record record = spool.peek();
+            if (null == record) {
+                return;
+            }
+
+            if (!post(record.getMsg(), record.getUser(), record.getTime())) {
+                retryTime = System.currentTimeMillis() + retryInterval;
+
+                return;
+            }
+
+            spool.commit();
+            drainedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Whether there are failed or spooled messages to post before new messages.
+     *
+     * @return {@code true} if there is a backlog
+     */
+    private boolean hasBacklog() {
+        return null != spool && (!retrying.isEmpty() || spool.hasPending());
+    }
+
+    /**
+     * Spools the specified message, counts it dropped if the spool rejects it.
+     *
+     * @param message the specified message
+     */
+    private void toSpool(final Message message) {
+        if (!spool.append(message.msg, message.user, message.time)) {
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Posts the specified message to the forum.
+     *
+     * @param msg the specified message
+     * @param user the specified user
+     * @param time the specified message time
+     * @return {@code true} if posted, returns {@code false} if failed or the circuit is open
+     */
+    private boolean post(final String msg, final String user, final long time) {
+        if (!breaker.tryAcquire()) {
+            shortCircuitedCount.incrementAndGet();
+
+            return false;
+        }
+
+        final long start = System.currentTimeMillis();
+        boolean sent = false;
+        try {
+            final HttpPost request = new HttpPost(api);
+            final List<NameValuePair> params = Arrays.<NameValuePair>asList(new BasicNameValuePair("key", key),
+                    new BasicNameValuePair("msg", msg), new BasicNameValuePair("user", user));
+            request.setEntity(new UrlEncodedFormEntity(params, "UTF-8"));
+
+            try (final CloseableHttpResponse response = client.execute(request)) {
+                EntityUtils.consume(response.getEntity()); // Returns the connection to the pool for reuse
+
+                final int sc = response.getStatusLine().getStatusCode();
+                sent = HttpServletResponse.SC_OK == sc;
+                if (!sent) {
+                    LOGGER.warn("Sends message to Forum status code is [" + sc + "]");
+                }
+            }
+        } catch (final Exception e) {
+            LOGGER.log(Level.ERROR, "Sends message to Forum failed: " + e.getMessage());
+        }
+
+        final long end = System.currentTimeMillis();
+        final long elapsed = end - start;
+        postMillis.addAndGet(elapsed);
+        if (elapsed > maxPostMillis) {
+            maxPostMillis = elapsed;
+        }
+
+        if (sent) {
+            breaker.onSuccess();
+            sentCount.incrementAndGet();
+            final long deliver = end - time;
+            deliverMillis.addAndGet(deliver);
+            if (deliver > maxDeliverMillis) {
+                maxDeliverMillis = deliver;
+            }
+        } else {
+            breaker.onFailure();
+            failedCount.incrementAndGet();
+        }
+
+        return sent;
+    }
+
+    /**
+     * Queued message.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.0.0, Oct 18, 2026
+     * @since 2.2.0
+     */
+    private static final class Message {
+
+        /**
+         * Message.
+         */
+        private final String msg;
+
+        /**
+         * User.
+         */
+        private final String user;
+
+        /**
+         * Enqueue time.
+         */
+        private final long time = System.currentTimeMillis();
+
+        /**
+         * Constructs a queued message with the specified message and user.
+         *
+         * @param msg the specified message
+         * @param user the specified user
+         */
+        private Message(final String msg, final String user) {
+            this.msg = msg;
+            this.user = user;
+        }
+    }
+}
@@ -0,0 +1,720 @@
+/*
+ * Copyright (c) 2012-2016, b3log.org & hacpai.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.xiaov.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+import org.json.JSONObject;
+
+/**
+ * Disk spool of forum messages.
+ *
+ * <p>
+ * Messages are appended to fixed size memory-mapped segment files (<i>00000000000000000001.seg</i>, ....) in the
+ * spool directory, so a long forum outage costs disk instead of heap. A record is
+ * {@code [int length][long time][int msgLength][msg][user]} in UTF-8, its length is written last so a record torn by
+ * a crash reads as the end of the segment. The read position is kept in the memory-mapped <i>cursor</i> file.
+ * </p>
+ *
+ * <p>
+ * A segment which has been read through or dropped is renamed to a spare (<i>00000000000000000001.spare</i>) and
+ * stays mapped, the next roll zeroes and renames a spare instead of creating a file. A deleted file would keep its
+ * disk space until the garbage collector unmaps it, recycling keeps the spool within the max disk usage.
+ * </p>
+ *
+ * <p>
+ * Records older than the retention are skipped on read, and the oldest segments are dropped when the spool would
+ * grow beyond the max disk usage, see <i>forum.spool.*</i> in xiaov.properties.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.1.0.0, Oct 18, 2026
+ * @since 2.2.0
+ */
+public class ForumSpool {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(ForumSpool.class.getName());
+
+    /**
+     * UTF-8.
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Segment file suffix.
+     */
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    /**
+     * Spare segment file suffix.
+     */
+    private static final String SPARE_SUFFIX = ".spare";
+
+    /**
+     * Record header length, time and message length.
+     */
+    private static final int HEADER_LENGTH = 8 + 4;
+
+    /**
+     * Spool directory.
+     */
+    private final File dir;
+
+    /**
+     * Segment size in bytes.
+     */
+    private final int segmentBytes;
+
+    /**
+     * Max segment count, derived from the max disk usage.
+     */
+    private final int maxSegments;
+
+    /**
+     * Retention in milliseconds.
+     */
+    private final long retention;
+
+    /**
+     * Segments, the oldest (being read) first and the latest (being written) last.
+     */
+    private final Deque<Segment> segments = new ArrayDeque<>();
+
+    /**
+     * Spare segments to recycle, segments and spares together never exceed the max segment count.
+     */
+    private final Deque<Segment> spares = new ArrayDeque<>();
+
+    /**
+     * Cursor file.
+     */
+    private final RandomAccessFile cursorFile;
+
+    /**
+     * Cursor, segment id and offset of the next record to read.
+     */
+    private final MappedByteBuffer cursor;
+
+    /**
+     * Id of the next segment to create.
+     */
+    private long nextSegmentId;
+
+    /**
+     * Offset of the next record to read in the head segment.
+     */
+    private int readOffset;
+
+    /**
+     * Records read in the head segment.
+     */
+    private int readRecords;
+
+    /**
+     * Length of the peeked record, {@code 0} if no record is peeked.
+     */
+    private int peekedLength;
+
+    /**
+     * Spooled count.
+     */
+    private long spooledCount;
+
+    /**
+     * Drained count.
+     */
+    private long drainedCount;
+
+    /**
+     * Count of records skipped because of the retention.
+     */
+    private long expiredCount;
+
+    /**
+     * Count of records lost because of the max disk usage or being larger than a segment.
+     */
+    private long droppedCount;
+
+    /**
+     * Constructs a spool with the specified arguments, recovers the spooled records left by the last run.
+     *
+     * @param dir the specified spool directory
+     * @param segmentBytes the specified segment size in bytes
+     * @param maxBytes the specified max disk usage in bytes
+     * @param retention the specified retention in milliseconds
+     * @throws IOException if opens failed
+     */
+    public ForumSpool(final String dir, final int segmentBytes, final long maxBytes, final long retention)
+            throws IOException {
+        this.dir = new File(dir);
+        if (!this.dir.isDirectory() && !this.dir.mkdirs()) {
+            throw new IOException("Creates spool directory [" + this.dir.getAbsolutePath() + "] failed");
+        }
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = (int) Math.max(1, maxBytes / segmentBytes);
+        this.retention = retention;
+
+        cursorFile = new RandomAccessFile(new File(this.dir, "cursor"), "rw");
+        cursor = cursorFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, 8 + 4);
+        recover();
+    }
+
+    /**
+     * Appends the specified message.
+     *
+     * @param msg the specified message
+     * @param user the specified user
+     * @param time the specified message time
+     * @return {@code true} if appended, returns {@code false} if it is larger than a segment or appends failed
+     */
+    public synchronized boolean append(final String msg, final String user, final long time) {
+        final byte[] msgBytes = msg.getBytes(UTF8);
+        final byte[] userBytes = user.getBytes(UTF8);
+        final int length = HEADER_LENGTH + msgBytes.length + userBytes.length;
+        if (4 + length > segmentBytes) {
+            droppedCount++;
+
+            return false;
+        }
+
+        try {
+            Segment segment = segments.peekLast();
+            if (null == segment || segment.writeOffset + 4 + length > segmentBytes) {
+                segment = roll();
+            }
+
+            final int offset = segment.writeOffset;
+            final ByteBuffer buffer = segment.buffer.duplicate();
+            buffer.position(offset + 4);
+            buffer.putLong(time);
+            buffer.putInt(msgBytes.length);
+            buffer.put(msgBytes);
+            buffer.put(userBytes);
+            segment.buffer.putInt(offset, length); // Publishes the record
+
+            segment.writeOffset = offset + 4 + length;
+            segment.records++;
+            spooledCount++;
+
+            return true;
+        } catch (final IOException e) {
+            LOGGER.log(Level.ERROR, "Spools forum message failed", e);
+            droppedCount++;
+
+            return false;
+        }
+    }
+
+    /**
+     * Gets the next record without removing it, records beyond the retention are skipped. The same record is returned
+     * until it is removed by {@link #commit()}.
+     *
+     * @return record, returns {@code null} if the spool is empty
+     */
+    public synchronized Record peek() {
+        final long expireTime = System.currentTimeMillis() - retention;
+        while (true) {
+            final Segment head = segments.peekFirst();
+            if (null == head) {
+                return null;
+            }
+
+            if (readOffset < head.writeOffset) {
+                final Record ret = read(head, readOffset);
+                if (ret.time >= expireTime) {
+                    peekedLength = 4 + head.buffer.getInt(readOffset);
+
+                    return ret;
+                }
+
+                advance(4 + head.buffer.getInt(readOffset));
+                expiredCount++;
+
+                continue;
+            }
+
+            if (head == segments.peekLast()) {
+                return null;
+            }
+
+            removeHead();
+        }
+    }
+
+    /**
+     * Removes the record returned by the latest {@link #peek()}.
+     */
+    public synchronized void commit() {
+        if (0 == peekedLength) {
+            return;
+        }
+
+        advance(peekedLength);
+        drainedCount++;
+    }
+
+    /**
+     * Whether there are spooled records which have not been drained.
+     *
+     * @return {@code true} if there are pending records
+     */
+    public synchronized boolean hasPending() {
+        final Segment head = segments.peekFirst();
+
+        return null != head && (readOffset < head.writeOffset || 1 < segments.size());
+    }
+
+    /**
+     * Flushes the segments and closes this spool.
+     */
+    public synchronized void close() {
+        for (final Segment segment : segments) {
+            segment.buffer.force();
+            closeQuietly(segment.file);
+        }
+        segments.clear();
+        for (final Segment spare : spares) {
+            closeQuietly(spare.file);
+        }
+        spares.clear();
+        cursor.force();
+        closeQuietly(cursorFile);
+    }
+
+    /**
+     * Gets the statistic of this spool.
+     *
+     * @return statistic, for example,
+     * <pre>
+     * {
+     *     "pending": long,
+     *     "segments": int,
+     *     "spares": int,
+     *     "diskBytes": long,
+     *     "spooled": long,
+     *     "drained": long,
+     *     "expired": long,
+     *     "dropped": long
+     * }
+     * </pre>
+     */
+    public synchronized JSONObject getStat() {
+        long pending = -readRecords;
+        for (final Segment segment : segments) {
+            pending += segment.records;
+        }
+
+        final JSONObject ret = new JSONObject();
+        ret.put("pending", pending);
+        ret.put("segments", segments.size());
+        ret.put("spares", spares.size());
+        ret.put("diskBytes", (long) (segments.size() + spares.size()) * segmentBytes);
+        ret.put("spooled", spooledCount);
+        ret.put("drained", drainedCount);
+        ret.put("expired", expiredCount);
+        ret.put("dropped", droppedCount);
+
+        return ret;
+    }
+
+    /**
+     * Opens the segments and spares left by the last run, recycles the segments before the cursor.
+     *
+     * @throws IOException if opens failed
+     */
+    private void recover() throws IOException {
+        final List<Long> ids = new ArrayList<>();
+        final List<Long> spareIds = new ArrayList<>();
+        final File[] files = dir.listFiles();
+        if (null != files) {
+            for (final File file : files) {
+                final String name = file.getName();
+                try {
+                    if (name.endsWith(SEGMENT_SUFFIX)) {
+                        ids.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+                    } else if (name.endsWith(SPARE_SUFFIX)) {
+                        spareIds.add(Long.parseLong(name.substring(0, name.length() - SPARE_SUFFIX.length())));
+                    }
+                } catch (final NumberFormatException e) {
+                    LOGGER.log(Level.WARN, "Ignores unknown file [" + name + "] in the spool directory");
+                }
+            }
+        }
+        Collections.sort(ids);
+
+        final long cursorId = cursor.getLong(0);
+        final int cursorOffset = cursor.getInt(8);
+        nextSegmentId = cursorId;
+        for (final long id : ids) {
+            nextSegmentId = Math.max(nextSegmentId, id);
+        }
+        for (final long id : spareIds) {
+            nextSegmentId = Math.max(nextSegmentId, id);
+        }
+        nextSegmentId++;
+        for (final long id : ids) {
+            if (id < cursorId) {
+                if (segmentFile(id).renameTo(spareFile(id))) {
+                    spareIds.add(id);
+                } else {
+                    delete(segmentFile(id));
+                }
+
+                continue;
+            }
+
+            final Segment segment = open(segmentFile(id), id);
+            int offset = 0;
+            while (offset + 4 <= segmentBytes) {
+                final int length = segment.buffer.getInt(offset);
+                if (HEADER_LENGTH > length || offset + 4 + length > segmentBytes) {
+                    break; // End of the segment or a torn record
+                }
+
+                if (id == cursorId && offset < cursorOffset) {
+                    readRecords++;
+                }
+                segment.records++;
+                offset += 4 + length;
+            }
+            segment.writeOffset = offset;
+            segments.addLast(segment);
+        }
+
+        for (final long id : spareIds) {
+            if (segments.size() + spares.size() < maxSegments) {
+                spares.addLast(open(spareFile(id), id));
+            } else {
+                delete(spareFile(id)); // The max disk usage has been lowered, not mapped yet so the space is freed
+            }
+        }
+
+        final Segment head = segments.peekFirst();
+        if (null != head && head.id == cursorId) {
+            readOffset = Math.min(cursorOffset, head.writeOffset);
+        } else {
+            readRecords = 0;
+        }
+        saveCursor();
+
+        if (hasPending()) {
+            LOGGER.log(Level.INFO, "Recovered forum spool " + getStat());
+        }
+    }
+
+    /**
+     * Starts a new segment to write, recycles a spare if any, drops the oldest segments beyond the max segment count.
+     *
+     * @return the new segment
+     * @throws IOException if creates failed
+     */
+    private Segment roll() throws IOException {
+        final Segment last = segments.peekLast();
+        if (null != last) {
+            last.buffer.force();
+        }
+
+        while (!segments.isEmpty() && segments.size() >= maxSegments) {
+            final Segment head = segments.peekFirst();
+            final int lost = head.records - readRecords;
+            droppedCount += lost;
+            LOGGER.log(Level.WARN, "Forum spool is full, dropped [" + lost + "] messages of segment ["
+                    + head.id + "]");
+            removeHead();
+        }
+
+        final long id = nextSegmentId++;
+        final Segment ret;
+        final Segment spare = spares.pollFirst();
+        if (null == spare) {
+            ret = open(segmentFile(id), id);
+        } else {
+            final ByteBuffer buffer = spare.buffer.duplicate();
+            buffer.clear();
+            while (8 <= buffer.remaining()) {
+                buffer.putLong(0L);
+            }
+            while (buffer.hasRemaining()) {
+                buffer.put((byte) 0);
+            }
+            if (!spareFile(spare.id).renameTo(segmentFile(id))) {
+                closeQuietly(spare.file);
+                delete(spareFile(spare.id));
+
+                throw new IOException("Renames spool spare [" + spare.id + "] to segment [" + id + "] failed");
+            }
+            ret = new Segment(id, spare.file, spare.buffer);
+        }
+        segments.addLast(ret);
+        if (1 == segments.size()) {
+            saveCursor();
+        }
+
+        return ret;
+    }
+
+    /**
+     * Turns the head segment into a spare, moves the cursor to the start of the next segment.
+     */
+    private void removeHead() {
+        final Segment head = segments.pollFirst();
+        if (segmentFile(head.id).renameTo(spareFile(head.id))) {
+            spares.addLast(head);
+        } else {
+            LOGGER.log(Level.WARN, "Renames spool segment [" + head.id + "] to a spare failed");
+            closeQuietly(head.file);
+            delete(segmentFile(head.id));
+        }
+
+        readOffset = 0;
+        readRecords = 0;
+        peekedLength = 0;
+        saveCursor();
+    }
+
+    /**
+     * Moves the cursor forward by the specified length.
+     *
+     * @param length the specified length
+     */
+    private void advance(final int length) {
+        readOffset += length;
+        readRecords++;
+        peekedLength = 0;
+        saveCursor();
+    }
+
+    /**
+     * Writes the read position to the cursor file.
+     */
+    private void saveCursor() {
+        final Segment head = segments.peekFirst();
+        cursor.putLong(0, null == head ? 0 : head.id);
+        cursor.putInt(8, readOffset);
+    }
+
+    /**
+     * Reads the record at the specified offset of the specified segment.
+     *
+     * @param segment the specified segment
+     * @param offset the specified offset
+     * @return record
+     */
+    private static Record read(final Segment segment, final int offset) {
+        final ByteBuffer buffer = segment.buffer.duplicate();
+        buffer.position(offset);
+        final int length = buffer.getInt();
+        final long time = buffer.getLong();
+        final int msgLength = buffer.getInt();
+        final byte[] msgBytes = new byte[msgLength];
+        buffer.get(msgBytes);
+        final byte[] userBytes = new byte[length - HEADER_LENGTH - msgLength];
+        buffer.get(userBytes);
+
+        return new Record(new String(msgBytes, UTF8), new String(userBytes, UTF8), time);
+    }
+
+    /**
+     * Opens or creates the specified segment file.
+     *
+     * @param path the specified segment file
+     * @param id the specified id
+     * @return segment
+     * @throws IOException if opens failed
+     */
+    private Segment open(final File path, final long id) throws IOException {
+        final RandomAccessFile file = new RandomAccessFile(path, "rw");
+        try {
+            return new Segment(id, file, file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes));
+        } catch (final IOException e) {
+            closeQuietly(file);
+
+            throw e;
+        }
+    }
+
+    /**
+     * Deletes the specified segment file.
+     *
+     * @param file the specified segment file
+     */
+    private static void delete(final File file) {
+        if (!file.delete()) {
+            LOGGER.log(Level.WARN, "Deletes spool segment [" + file.getAbsolutePath() + "] failed");
+        }
+    }
+
+    /**
+     * Gets the segment file of the specified id.
+     *
+     * @param id the specified id
+     * @return segment file
+     */
+    private File segmentFile(final long id) {
+        return new File(dir, String.format("%020d", id) + SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Gets the spare file of the specified id.
+     *
+     * @param id the specified id
+     * @return spare file
+     */
+    private File spareFile(final long id) {
+        return new File(dir, String.format("%020d", id) + SPARE_SUFFIX);
+    }
+
+    /**
+     * Closes the specified file quietly.
+     *
+     * @param file the specified file
+     */
+    private static void closeQuietly(final RandomAccessFile file) {
+        try {
+            file.close();
+        } catch (final IOException e) {
+            LOGGER.log(Level.WARN, "Closes spool file failed", e);
+        }
+    }
+
+    /**
+     * Spooled record.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.0.0, Oct 18, 2026
+     * @since 2.2.0
+     */
+    public static final class Record {
+
+        /**
+         * Message.
+         */
+        private final String msg;
+
+        /**
+         * User.
+         */
+        private final String user;
+
+        /**
+         * Message time.
+         */
+        private final long time;
+
+        /**
+         * Constructs a record with the specified arguments.
+         *
+         * @param msg the specified message
+         * @param user the specified user
+         * @param time the specified message time
+         */
+        private Record(final String msg, final String user, final long time) {
+            this.msg = msg;
+            this.user = user;
+            this.time = time;
+        }
+
+        /**
+         * Gets the message.
+         *
+         * @return message
+         */
+        public String getMsg() {
+            return msg;
+        }
+
+        /**
+         * Gets the user.
+         *
+         * @return user
+         */
+        public String getUser() {
+            return user;
+        }
+
+        /**
+         * Gets the message time.
+         *
+         * @return message time
+         */
+        public long getTime() {
+            return time;
+        }
+    }
+
+    /**
+     * Memory-mapped segment.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.0.0, Oct 18, 2026
+     * @since 2.2.0
+     */
+    private static final class Segment {
+
+        /**
+         * Segment id.
+         */
+        private final long id;
+
+        /**
+         * Segment file.
+         */
+        private final RandomAccessFile file;
+
+        /**
+         * Mapped buffer of the whole segment.
+         */
+        private final MappedByteBuffer buffer;
+
+        /**
+         * Offset of the next record to write.
+         */
+        private int writeOffset;
+
+        /**
+         * Record count.
+         */
+        private int records;
+
+        /**
+         * Constructs a segment with the specified arguments.
+         *
+         * @param id the specified id
+         * @param file the specified segment file
+         * @param buffer the specified mapped buffer
+         */
+        private Segment(final long id, final RandomAccessFile file, final MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.buffer = buffer;
+        }
+    }
+}
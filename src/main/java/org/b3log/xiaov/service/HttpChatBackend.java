@@ -0,0 +1,340 @@
+/*
+ * Copyright (c) 2012-2016, b3log.org & hacpai.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.xiaov.service;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+import org.b3log.xiaov.util.Bulkhead;
+import org.b3log.xiaov.util.CircuitBreaker;
+
+/**
+ * Chat backend over HTTP.
+ *
+ * <p>
+ * Subclasses build the request of a question and parse the response body. Calls run on the executor of
+ * {@link ChatBackends} with the shared connection pool, the connect and read timeouts of a call are bounded by its
+ * remaining time, a call still queued when its time is up fails without being sent, and cancelling a call aborts its
+ * request so the worker thread is released at once.
+ * </p>
+ *
+ * <p>
+ * Every backend has its own bulkhead capping its pending calls, so a hung backend can not take the whole executor,
+ * and its own circuit breaker, so a failing backend fails fast. A call rejected by either fails with a
+ * {@link RejectedExecutionException}. Failed and timed out calls count as failures of the breaker, calls cancelled
+ * before their time is up (the other backend of a hedged question answered first) and calls which timed out in the
+ * queue without being sent do not count.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.3.0.0, Oct 18, 2026
+ * @since 2.2.0
+ */
+public abstract class HttpChatBackend implements ChatBackend {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(HttpChatBackend.class.getName());
+
+    /**
+     * Executor of calls.
+     */
+    private Executor executor;
+
+    /**
+     * HTTP client.
+     */
+    private CloseableHttpClient client;
+
+    /**
+     * Max connect timeout in milliseconds.
+     */
+    private int connectTimeout;
+
+    /**
+     * Circuit breaker.
+     */
+    private CircuitBreaker breaker;
+
+    /**
+     * Bulkhead.
+     */
+    private Bulkhead bulkhead;
+
+    /**
+     * Sets the transport of this backend, invoked by {@link ChatBackends} on registration.
+     *
+     * @param executor the specified executor of calls
+     * @param client the specified HTTP client
+     * @param connectTimeout the specified max connect timeout in milliseconds
+     * @param breaker the specified circuit breaker
+     * @param bulkhead the specified bulkhead
+     */
+    void init(final Executor executor, final CloseableHttpClient client, final int connectTimeout,
+            final CircuitBreaker breaker, final Bulkhead bulkhead) {
+        this.executor = executor;
+        this.client = client;
+        this.connectTimeout = connectTimeout;
+        this.breaker = breaker;
+        this.bulkhead = bulkhead;
+    }
+
+    /**
+     * Gets the circuit breaker.
+     *
+     * @return circuit breaker
+     */
+    CircuitBreaker getBreaker() {
+        return breaker;
+    }
+
+    /**
+     * Gets the bulkhead.
+     *
+     * @return bulkhead
+     */
+    Bulkhead getBulkhead() {
+        return bulkhead;
+    }
+
+    @Override
+    public Future<String> chat(final String userName, final ChatMessage msg, final long timeout,
+            final Callback callback) {
+        final HttpRequestBase request;
+        try {
+            request = newRequest(userName, msg);
+        } catch (final Exception e) {
+            return Call.failed(e, callback);
+        }
+
+        if (null == request) {
+            return Call.answered(null, callback);
+        }
+
+        if (!bulkhead.tryAcquire()) {
+            return Call.failed(new RejectedExecutionException("Bulkhead of [" + getName() + "] is full"), callback);
+        }
+        if (!breaker.tryAcquire()) {
+            bulkhead.release();
+
+            return Call.failed(new RejectedExecutionException("Circuit of [" + getName() + "] is open"), callback);
+        }
+
+        final long deadline = System.currentTimeMillis() + timeout;
+        final int millis = (int) Math.min(Integer.MAX_VALUE, Math.max(1, timeout));
+        request.setConfig(RequestConfig.custom().setConnectTimeout(Math.min(millis, connectTimeout))
+                .setConnectionRequestTimeout(millis).setSocketTimeout(millis).build());
+
+        final AtomicBoolean sent = new AtomicBoolean();
+        final Call ret = new Call(request, deadline, sent, breaker, bulkhead, callback, new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                if (System.currentTimeMillis() >= deadline) {
+                    throw new TimeoutException("Timed out in queue");
+                }
+
+                sent.set(true);
+                try (final CloseableHttpResponse response = client.execute(request)) {
+                    final String body = EntityUtils.toString(response.getEntity(), "UTF-8");
+                    final int sc = response.getStatusLine().getStatusCode();
+                    if (200 != sc) {
+                        throw new IOException("Status code is [" + sc + "]");
+                    }
+
+                    return parse(body);
+                }
+            }
+        });
+
+        try {
+            executor.execute(ret);
+        } catch (final RejectedExecutionException e) {
+            breaker.onIgnored();
+            bulkhead.release();
+
+            return Call.failed(e, callback);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Builds the request of the specified message.
+     *
+     * @param userName the specified asker
+     * @param msg the specified message
+     * @return request, returns {@code null} if the question should not be asked, then the answer is {@code null}
+     * @throws Exception if builds failed
+     */
+    protected abstract HttpRequestBase newRequest(final String userName, final ChatMessage msg) throws Exception;
+
+    /**
+     * Parses the answer from the specified response body.
+     *
+     * @param body the specified response body
+     * @return answer, {@code null} if no answer
+     * @throws Exception if parses failed
+     */
+    protected abstract String parse(final String body) throws Exception;
+
+    /**
+     * Chat call, cancelling it aborts its request. Reports its outcome to the circuit breaker, releases the bulkhead
+     * and invokes its callback when done.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.1.0.0, Oct 18, 2026
+     * @since 2.2.0
+     */
+    private static final class Call extends FutureTask<String> {
+
+        /**
+         * Request, {@code null} if the call is already done.
+         */
+        private final HttpRequestBase request;
+
+        /**
+         * Deadline.
+         */
+        private final long deadline;
+
+        /**
+         * Whether the request has been sent, {@code null} if the call is already done.
+         */
+        private final AtomicBoolean sent;
+
+        /**
+         * Circuit breaker, {@code null} if the call is already done.
+         */
+        private final CircuitBreaker breaker;
+
+        /**
+         * Bulkhead, {@code null} if the call is already done.
+         */
+        private final Bulkhead bulkhead;
+
+        /**
+         * Callback.
+         */
+        private final Callback callback;
+
+        /**
+         * Constructs a call with the specified arguments.
+         *
+         * @param request the specified request
+         * @param deadline the specified deadline
+         * @param sent the specified flag set once the request is sent
+         * @param breaker the specified circuit breaker
+         * @param bulkhead the specified bulkhead
+         * @param callback the specified callback
+         * @param task the specified task
+         */
+        private Call(final HttpRequestBase request, final long deadline, final AtomicBoolean sent,
+                final CircuitBreaker breaker, final Bulkhead bulkhead, final Callback callback,
+                final Callable<String> task) {
+            super(task);
+            this.request = request;
+            this.deadline = deadline;
+            this.sent = sent;
+            this.breaker = breaker;
+            this.bulkhead = bulkhead;
+            this.callback = callback;
+        }
+
+        /**
+         * Creates a done call with the specified answer.
+         *
+         * @param answer the specified answer
+         * @param callback the specified callback, invoked before returning
+         * @return call
+         */
+        private static Call answered(final String answer, final Callback callback) {
+            final Call ret = new Call(null, 0, null, null, null, callback, new Callable<String>() {
+                @Override
+                public String call() {
+                    return answer;
+                }
+            });
+            ret.run();
+
+            return ret;
+        }
+
+        /**
+         * Creates a failed call with the specified error.
+         *
+         * @param error the specified error
+         * @param callback the specified callback, invoked before returning
+         * @return call
+         */
+        private static Call failed(final Exception error, final Callback callback) {
+            final Call ret = new Call(null, 0, null, null, null, callback, new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    throw error;
+                }
+            });
+            ret.run();
+
+            return ret;
+        }
+
+        @Override
+        public boolean cancel(final boolean mayInterruptIfRunning) {
+            final boolean ret = super.cancel(mayInterruptIfRunning);
+            if (ret && null != request) {
+                request.abort();
+            }
+
+            return ret;
+        }
+
+        @Override
+        protected void done() {
+            if (null != breaker) {
+                bulkhead.release();
+                if (!sent.get() || (isCancelled() && System.currentTimeMillis() < deadline)) {
+                    breaker.onIgnored();
+                } else {
+                    try {
+                        get();
+                        breaker.onSuccess();
+                    } catch (final Exception e) {
+                        breaker.onFailure();
+                    }
+                }
+            }
+
+            try {
+                callback.done(this);
+            } catch (final Exception e) {
+                LOGGER.log(Level.ERROR, "Chat callback failed", e);
+            }
+        }
+    }
+}
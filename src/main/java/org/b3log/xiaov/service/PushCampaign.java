@@ -0,0 +1,444 @@
+/*
+ * Copyright (c) 2012-2016, b3log.org & hacpai.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.xiaov.service;
+
+import com.scienjus.smartqq.model.Group;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Push campaign, one admin push to a ranked list of groups.
+ *
+ * <p>
+ * Targets are handed out to senders in rank order through a cursor, each target moves from {@link Status#PENDING}
+ * to {@link Status#SENT} or {@link Status#FAILED}, and a sent target becomes {@link Status#ACKED} once XiaoV's
+ * listener receives the message in that group.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.1.0, Oct 18, 2026
+ * @since 2.2.0
+ */
+public class PushCampaign {
+
+    /**
+     * Campaign id.
+     */
+    private final long id;
+
+    /**
+     * Message to push.
+     */
+    private final String msg;
+
+    /**
+     * Whether targets of this campaign count as pushed in the current rotation of all groups.
+     */
+    private final boolean rotation;
+
+    /**
+     * Targets in rank order.
+     */
+    private final List<Target> targets;
+
+    /**
+     * Targets by group id.
+     *
+     * &lt;groupId, target&gt;
+     */
+    private final Map<Long, Target> targetsByGroupId;
+
+    /**
+     * Index of the next target to send.
+     */
+    private final AtomicInteger cursor = new AtomicInteger();
+
+    /**
+     * Count of targets whose send has completed, successfully or not.
+     */
+    private final AtomicInteger completed = new AtomicInteger();
+
+    /**
+     * Start time.
+     */
+    private final long startTime = System.currentTimeMillis();
+
+    /**
+     * Finish time, {@code 0} if the campaign is still running.
+     */
+    private volatile long finishTime;
+
+    /**
+     * Constructs a campaign with the specified arguments.
+     *
+     * <p>
+     * Targets which are not {@link Status#PENDING} (restored from the push journal) are skipped and count as
+     * completed.
+     * </p>
+     *
+     * @param id the specified id
+     * @param msg the specified message
+     * @param rotation whether targets of this campaign count as pushed in the current rotation of all groups
+     * @param targets the specified targets in rank order
+     */
+    public PushCampaign(final long id, final String msg, final boolean rotation, final List<Target> targets) {
+        this.id = id;
+        this.msg = msg;
+        this.rotation = rotation;
+        this.targets = Collections.unmodifiableList(new ArrayList<>(targets));
+        this.targetsByGroupId = new HashMap<>(targets.size() * 4 / 3 + 1);
+        for (final Target target : targets) {
+            targetsByGroupId.put(target.group.getId(), target);
+            if (Status.PENDING != target.status) {
+                completed.incrementAndGet();
+            }
+        }
+        if (isFinished()) {
+            finishTime = startTime;
+        }
+    }
+
+    /**
+     * Gets the id.
+     *
+     * @return id
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Gets the message.
+     *
+     * @return message
+     */
+    public String getMsg() {
+        return msg;
+    }
+
+    /**
+     * Whether targets of this campaign count as pushed in the current rotation of all groups.
+     *
+     * @return {@code true} if it is a rotation campaign
+     */
+    public boolean isRotation() {
+        return rotation;
+    }
+
+    /**
+     * Gets the targets in rank order.
+     *
+     * @return targets
+     */
+    public List<Target> getTargets() {
+        return targets;
+    }
+
+    /**
+     * Gets the target of the specified group.
+     *
+     * @param groupId the specified group id
+     * @return target, returns {@code null} if not found
+     */
+    public Target getTarget(final long groupId) {
+        return targetsByGroupId.get(groupId);
+    }
+
+    /**
+     * Gets the next target to send.
+     *
+     * @return target, returns {@code null} if all targets have been handed out
+     */
+    public Target next() {
+        int index;
+        while ((index = cursor.getAndIncrement()) < targets.size()) {
+            final Target ret = targets.get(index);
+            if (Status.PENDING == ret.getStatus()) {
+                return ret;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Marks the specified target with the specified send result.
+     *
+     * @param target the specified target
+     * @param status the specified status, {@link Status#SENT}, {@link Status#FAILED} or {@link Status#UNKNOWN}
+     * @param error the specified error message, {@code null} if sent
+     * @return {@code true} if this is the last target to complete
+     */
+    public boolean complete(final Target target, final Status status, final String error) {
+        synchronized (target) {
+            if (Status.ACKED != target.status) { // The listener may receive the message before the send result
+                target.status = status;
+            }
+            target.error = error;
+            target.sendTime = System.currentTimeMillis();
+        }
+
+        if (completed.incrementAndGet() == targets.size()) {
+            finishTime = System.currentTimeMillis();
+
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Marks the target of the specified group acked if the specified content is this campaign's message.
+     *
+     * @param groupId the specified group id
+     * @param content the specified received content
+     * @return {@code true} if acked
+     */
+    public boolean ack(final long groupId, final String content) {
+        if (!msg.equals(content)) {
+            return false;
+        }
+
+        final Target target = targetsByGroupId.get(groupId);
+        if (null == target) {
+            return false;
+        }
+
+        synchronized (target) {
+            if (Status.ACKED == target.status) {
+                return false;
+            }
+
+            target.status = Status.ACKED;
+        }
+
+        return true;
+    }
+
+    /**
+     * Whether all targets have completed.
+     *
+     * @return {@code true} if finished
+     */
+    public boolean isFinished() {
+        return completed.get() >= targets.size();
+    }
+
+    /**
+     * Gets the statistic of this campaign.
+     *
+     * @param withTargets whether to include the status of every target
+     * @return statistic, for example,
+     * <pre>
+     * {
+     *     "id": long,
+     *     "msg": "",
+     *     "total": int,
+     *     "pending": int,
+     *     "sent": int,
+     *     "failed": int,
+     *     "acked": int,
+     *     "unknown": int,
+     *     "progress": double, // [0, 1]
+     *     "users": int, // member count of sent and acked groups
+     *     "elapsedMillis": long,
+     *     "throughput": double, // completed targets per second
+     *     "finished": boolean,
+     *     "targets": [{"groupId": long, "name": "", "memberCount": int, "status": "SENT", "sendTime": long, "error": ""}, ....]
+     * }
+     * </pre>
+     */
+    public JSONObject getStat(final boolean withTargets) {
+        final int[] counts = new int[Status.values().length];
+        int users = 0;
+        final JSONArray targetStats = new JSONArray();
+        for (final Target target : targets) {
+            final Status status;
+            final String error;
+            final long sendTime;
+            synchronized (target) {
+                status = target.status;
+                error = target.error;
+                sendTime = target.sendTime;
+            }
+            counts[status.ordinal()]++;
+            if (Status.SENT == status || Status.ACKED == status) {
+                users += target.memberCount;
+            }
+
+            if (withTargets) {
+                final JSONObject targetStat = new JSONObject();
+                targetStat.put("groupId", target.group.getId());
+                targetStat.put("name", target.group.getName());
+                targetStat.put("memberCount", target.memberCount);
+                targetStat.put("status", status.name());
+                if (0 != sendTime) {
+                    targetStat.put("sendTime", sendTime);
+                }
+                if (null != error) {
+                    targetStat.put("error", error);
+                }
+                targetStats.put(targetStat);
+            }
+        }
+
+        final long end = 0 == finishTime ? System.currentTimeMillis() : finishTime;
+        final long elapsed = end - startTime;
+        final int done = completed.get();
+
+        final JSONObject ret = new JSONObject();
+        ret.put("id", id);
+        ret.put("msg", msg);
+        ret.put("total", targets.size());
+        ret.put("pending", counts[Status.PENDING.ordinal()]);
+        ret.put("sent", counts[Status.SENT.ordinal()]);
+        ret.put("failed", counts[Status.FAILED.ordinal()]);
+        ret.put("acked", counts[Status.ACKED.ordinal()]);
+        ret.put("unknown", counts[Status.UNKNOWN.ordinal()]);
+        ret.put("progress", targets.isEmpty() ? 1D : (double) done / targets.size());
+        ret.put("users", users);
+        ret.put("elapsedMillis", elapsed);
+        ret.put("throughput", 0 == elapsed ? 0D : done * 1000D / elapsed);
+        ret.put("finished", isFinished());
+        if (withTargets) {
+            ret.put("targets", targetStats);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Target status.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.1.0, Oct 18, 2026
+     * @since 2.2.0
+     */
+    public enum Status {
+
+        /**
+         * Not sent yet.
+         */
+        PENDING,
+        /**
+         * Sent, not received by the listener yet.
+         */
+        SENT,
+        /**
+         * Send failed.
+         */
+        FAILED,
+        /**
+         * Received by the listener.
+         */
+        ACKED,
+        /**
+         * Send timed out after it had started, the message may or may not have been sent.
+         */
+        UNKNOWN
+    }
+
+    /**
+     * Push target.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.0.0, Oct 18, 2026
+     * @since 2.2.0
+     */
+    public static final class Target {
+
+        /**
+         * Group.
+         */
+        private final Group group;
+
+        /**
+         * Member count.
+         */
+        private final int memberCount;
+
+        /**
+         * Status.
+         */
+        private Status status = Status.PENDING;
+
+        /**
+         * Error message of the latest failure.
+         */
+        private String error;
+
+        /**
+         * Send completion time.
+         */
+        private long sendTime;
+
+        /**
+         * Constructs a pending target with the specified group and member count.
+         *
+         * @param group the specified group
+         * @param memberCount the specified member count
+         */
+        public Target(final Group group, final int memberCount) {
+            this(group, memberCount, Status.PENDING);
+        }
+
+        /**
+         * Constructs a target with the specified arguments.
+         *
+         * @param group the specified group
+         * @param memberCount the specified member count
+         * @param status the specified status
+         */
+        public Target(final Group group, final int memberCount, final Status status) {
+            this.group = group;
+            this.memberCount = memberCount;
+            this.status = status;
+        }
+
+        /**
+         * Gets the group.
+         *
+         * @return group
+         */
+        public Group getGroup() {
+            return group;
+        }
+
+        /**
+         * Gets the member count.
+         *
+         * @return member count
+         */
+        public int getMemberCount() {
+            return memberCount;
+        }
+
+        /**
+         * Gets the status.
+         *
+         * @return status
+         */
+        public synchronized Status getStatus() {
+            return status;
+        }
+    }
+}
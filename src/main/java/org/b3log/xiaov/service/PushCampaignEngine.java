@@ -0,0 +1,432 @@
+/*
+ * Copyright (c) 2012-2016, b3log.org & hacpai.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.xiaov.service;
+
+import com.scienjus.smartqq.client.TokenBucket;
+import com.scienjus.smartqq.model.Group;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+import org.b3log.xiaov.util.BoundedExecutor;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Push campaign engine.
+ *
+ * <p>
+ * Ranks the target groups by member count and sends to them with a fixed number of workers, each worker takes the
+ * next target of the campaign, waits for a token of the global push rate limit and then waits for the send result.
+ * The worker count bounds the pushes in flight, so replies queued by the client are never stuck behind a whole
+ * campaign, see <i>qq.bot.push.*</i> in xiaov.properties.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.1.0, Oct 18, 2026
+ * @since 2.2.0
+ */
+public class PushCampaignEngine {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(PushCampaignEngine.class.getName());
+
+    /**
+     * Group sender.
+     */
+    private final Sender sender;
+
+    /**
+     * Workers.
+     */
+    private final BoundedExecutor workers;
+
+    /**
+     * Worker count of a campaign.
+     */
+    private final int parallelism;
+
+    /**
+     * Global push rate limit.
+     */
+    private final TokenBucket rateLimit;
+
+    /**
+     * Timeout of a send in milliseconds.
+     */
+    private final long sendTimeout;
+
+    /**
+     * Max finished campaigns kept for status queries.
+     */
+    private final int historySize;
+
+    /**
+     * Push journal, {@code null} if disabled.
+     */
+    private final PushJournal journal;
+
+    /**
+     * Campaigns, the latest first.
+     */
+    private final ConcurrentLinkedDeque<PushCampaign> campaigns = new ConcurrentLinkedDeque<>();
+
+    /**
+     * Campaign id generator.
+     */
+    private final AtomicLong idGenerator = new AtomicLong();
+
+    /**
+     * Sent count of all campaigns.
+     */
+    private final AtomicLong sentCount = new AtomicLong();
+
+    /**
+     * Failed count of all campaigns.
+     */
+    private final AtomicLong failedCount = new AtomicLong();
+
+    /**
+     * Acked count of all campaigns.
+     */
+    private final AtomicLong ackedCount = new AtomicLong();
+
+    /**
+     * Count of sends of all campaigns which timed out after they had started.
+     */
+    private final AtomicLong unknownCount = new AtomicLong();
+
+    /**
+     * Constructs a push campaign engine with the specified arguments.
+     *
+     * @param sender the specified group sender
+     * @param parallelism the specified worker count of a campaign
+     * @param rate the specified global push rate limit, pushes per second
+     * @param burst the specified burst size of the global push rate limit
+     * @param sendTimeout the specified timeout of a send in milliseconds
+     * @param historySize the specified max finished campaigns kept for status queries
+     * @param journal the specified push journal, {@code null} to disable journaling
+     */
+    public PushCampaignEngine(final Sender sender, final int parallelism, final double rate, final int burst,
+            final long sendTimeout, final int historySize, final PushJournal journal) {
+        this.sender = sender;
+        this.journal = journal;
+        if (null != journal) {
+            idGenerator.set(journal.getReplay().getMaxCampaignId());
+        }
+        this.parallelism = Math.max(1, parallelism);
+        this.rateLimit = new TokenBucket(rate, burst);
+        this.sendTimeout = sendTimeout;
+        this.historySize = historySize;
+        this.workers = new BoundedExecutor("xiaov-push", this.parallelism, this.parallelism, 1024, "abort");
+    }
+
+    /**
+     * Ranks the specified targets by member count descending and starts a campaign to the top ones.
+     *
+     * @param msg the specified message
+     * @param targets the specified targets
+     * @param maxTargets the specified max target count, {@code 0} means all
+     * @param rotation whether targets of the campaign count as pushed in the current rotation of all groups
+     * @return campaign
+     */
+    public PushCampaign start(final String msg, final List<PushCampaign.Target> targets, final int maxTargets,
+            final boolean rotation) {
+        List<PushCampaign.Target> ranked = new ArrayList<>(targets);
+        Collections.sort(ranked, new Comparator<PushCampaign.Target>() {
+            @Override
+            public int compare(final PushCampaign.Target t1, final PushCampaign.Target t2) {
+                return Integer.compare(t2.getMemberCount(), t1.getMemberCount());
+            }
+        });
+        if (0 < maxTargets && maxTargets < ranked.size()) {
+            ranked = ranked.subList(0, maxTargets);
+        }
+
+        final PushCampaign ret = new PushCampaign(idGenerator.incrementAndGet(), msg, rotation, ranked);
+        if (null != journal) {
+            journal.started(ret);
+        }
+
+        LOGGER.info("开始推送 [campaign=" + ret.getId() + ", 群数=" + ranked.size() + "]");
+        run(ret);
+
+        return ret;
+    }
+
+    /**
+     * Resumes the specified campaign restored from the push journal, only its pending targets are sent.
+     *
+     * @param campaign the specified campaign
+     */
+    public void resume(final PushCampaign campaign) {
+        long id;
+        do {
+            id = idGenerator.get();
+        } while (id < campaign.getId() && !idGenerator.compareAndSet(id, campaign.getId()));
+
+        if (null != journal) { // Journals the targets again since group ids may have changed
+            journal.started(campaign);
+        }
+
+        LOGGER.info("继续推送 [campaign=" + campaign.getId() + ", 剩余群数="
+                + campaign.getStat(false).optInt("pending") + "]");
+        run(campaign);
+    }
+
+    /**
+     * Starts workers of the specified campaign.
+     *
+     * @param campaign the specified campaign
+     */
+    private void run(final PushCampaign campaign) {
+        campaigns.addFirst(campaign);
+        trimHistory();
+
+        final int workerCount = Math.min(parallelism, campaign.getTargets().size());
+        for (int i = 0; i < workerCount; i++) {
+            try {
+                workers.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        work(campaign);
+                    }
+                });
+            } catch (final RejectedExecutionException e) {
+                if (0 == i) { // No worker would ever hand out the targets, fails them so the campaign finishes
+                    LOGGER.log(Level.ERROR, "Push workers are busy, campaign [" + campaign.getId() + "] failed");
+                    PushCampaign.Target target;
+                    while (null != (target = campaign.next())) {
+                        complete(campaign, target, PushCampaign.Status.FAILED, "no worker");
+                    }
+                } else {
+                    LOGGER.log(Level.WARN, "Push workers are busy, campaign [" + campaign.getId() + "] runs with ["
+                            + i + "] workers");
+                }
+
+                break;
+            }
+        }
+    }
+
+    /**
+     * Acks the push of the specified content to the specified group.
+     *
+     * @param groupId the specified group id
+     * @param content the specified received content
+     */
+    public void ack(final long groupId, final String content) {
+        for (final PushCampaign campaign : campaigns) {
+            if (campaign.ack(groupId, content)) {
+                ackedCount.incrementAndGet();
+                if (null != journal) {
+                    journal.status(campaign, campaign.getTarget(groupId));
+                }
+
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gets the campaign of the specified id.
+     *
+     * @param id the specified id
+     * @return campaign, returns {@code null} if not found
+     */
+    public PushCampaign getCampaign(final long id) {
+        for (final PushCampaign campaign : campaigns) {
+            if (id == campaign.getId()) {
+                return campaign;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Shuts down the workers.
+     */
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    /**
+     * Gets the statistic of this engine.
+     *
+     * @return statistic, for example,
+     * <pre>
+     * {
+     *     "sent": long,
+     *     "failed": long,
+     *     "acked": long,
+     *     "unknown": long,
+     *     "rate": double,
+     *     "campaigns": [{
+     *         "id": long,
+     *         "total": int,
+     *         "progress": double,
+     *         ....
+     *     }, ....]
+     * }
+     * </pre>
+     */
+    public JSONObject getStat() {
+        final JSONObject ret = new JSONObject();
+
+        ret.put("sent", sentCount.get());
+        ret.put("failed", failedCount.get());
+        ret.put("acked", ackedCount.get());
+        ret.put("unknown", unknownCount.get());
+        ret.put("rate", rateLimit.getRate());
+        final JSONArray campaignStats = new JSONArray();
+        for (final PushCampaign campaign : campaigns) {
+            campaignStats.put(campaign.getStat(false));
+        }
+        ret.put("campaigns", campaignStats);
+
+        return ret;
+    }
+
+    /**
+     * Sends to the targets of the specified campaign until all targets have been handed out.
+     *
+     * @param campaign the specified campaign
+     */
+    private void work(final PushCampaign campaign) {
+        PushCampaign.Target target;
+        while (null != (target = campaign.next())) {
+            PushCampaign.Status status = PushCampaign.Status.FAILED;
+            String error = null;
+            Future<Boolean> result = null;
+            try {
+                rateLimit.acquire();
+
+                final Group group = target.getGroup();
+                LOGGER.info("群发 [" + campaign.getMsg() + "] 到 QQ 群 [" + group.getName() + ", 成员数="
+                        + target.getMemberCount() + "]");
+                result = sender.send(group, campaign.getMsg());
+                if (Boolean.TRUE.equals(result.get(sendTimeout, TimeUnit.MILLISECONDS))) {
+                    status = PushCampaign.Status.SENT;
+                } else {
+                    error = "rejected";
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                error = "interrupted";
+            } catch (final TimeoutException e) {
+                if (!result.cancel(false)) { // The sender has picked it up, it may still be delivered
+                    status = PushCampaign.Status.UNKNOWN;
+                }
+                error = "timeout";
+            } catch (final ExecutionException e) {
+                error = String.valueOf(e.getCause());
+            } catch (final Exception e) {
+                error = String.valueOf(e);
+            }
+
+            complete(campaign, target, status, error);
+
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Completes the specified target of the specified campaign, journals it and logs if the campaign finished.
+     *
+     * @param campaign the specified campaign
+     * @param target the specified target
+     * @param status the specified status
+     * @param error the specified error message, {@code null} if sent
+     */
+    private void complete(final PushCampaign campaign, final PushCampaign.Target target,
+            final PushCampaign.Status status, final String error) {
+        switch (status) {
+            case SENT:
+                sentCount.incrementAndGet();
+
+                break;
+            case UNKNOWN:
+                unknownCount.incrementAndGet();
+
+                break;
+            default:
+                failedCount.incrementAndGet();
+        }
+
+        final boolean finished = campaign.complete(target, status, error);
+        if (null != journal) {
+            journal.status(campaign, target);
+        }
+        if (finished) {
+            final JSONObject stat = campaign.getStat(false);
+            LOGGER.info("推送完毕 [campaign=" + campaign.getId() + ", 成功=" + stat.optInt("sent")
+                    + ", 失败=" + stat.optInt("failed") + ", 未知=" + stat.optInt("unknown") + ", 覆盖 QQ="
+                    + stat.optInt("users") + ", 耗时=" + stat.optLong("elapsedMillis") + "ms]");
+        }
+    }
+
+    /**
+     * Removes the oldest finished campaigns beyond the history size.
+     */
+    private void trimHistory() {
+        int kept = 0;
+        final Iterator<PushCampaign> iterator = campaigns.iterator();
+        while (iterator.hasNext()) {
+            final PushCampaign campaign = iterator.next();
+            if (!campaign.isFinished()) {
+                continue;
+            }
+
+            if (++kept > historySize) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Group sender.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.0.0, Oct 18, 2026
+     * @since 2.2.0
+     */
+    public interface Sender {
+
+        /**
+         * Sends the specified message to the specified group.
+         *
+         * @param group the specified group
+         * @param msg the specified message
+         * @return send result, {@code true} if sent
+         */
+        Future<Boolean> send(final Group group, final String msg);
+    }
+}
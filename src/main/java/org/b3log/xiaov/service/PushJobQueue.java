@@ -0,0 +1,537 @@
+/*
+ * Copyright (c) 2012-2016, b3log.org & hacpai.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.xiaov.service;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+import org.b3log.xiaov.util.BoundedExecutor;
+import org.json.JSONObject;
+
+/**
+ * Queue of push jobs submitted by the <i>/qq</i> endpoint.
+ *
+ * <p>
+ * A submission returns at once with a job id, the job prepares and starts the push campaign on a single background
+ * thread. Submissions are idempotent by message hash: submitting a message which has an active job, or a job started
+ * within the dedup window, returns that job instead of pushing again, so retried webhooks do not fan out twice.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 18, 2026
+ * @since 2.2.0
+ */
+public class PushJobQueue {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(PushJobQueue.class.getName());
+
+    /**
+     * Charset.
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Hex digits.
+     */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Push runner.
+     */
+    private final Runner runner;
+
+    /**
+     * Job executor.
+     */
+    private final BoundedExecutor executor;
+
+    /**
+     * Dedup window in milliseconds.
+     */
+    private final long dedupWindow;
+
+    /**
+     * Max jobs kept for status queries.
+     */
+    private final int historySize;
+
+    /**
+     * Jobs, guarded by this.
+     *
+     * &lt;jobId, job&gt;
+     */
+    private final LinkedHashMap<Long, Job> jobs = new LinkedHashMap<>();
+
+    /**
+     * The latest job of message hashes, guarded by this.
+     *
+     * &lt;hash, job&gt;
+     */
+    private final Map<String, Job> jobsByHash = new HashMap<>();
+
+    /**
+     * Job id generator.
+     */
+    private final AtomicLong idGenerator = new AtomicLong();
+
+    /**
+     * Submitted count.
+     */
+    private final AtomicLong submittedCount = new AtomicLong();
+
+    /**
+     * Duplicate submission count.
+     */
+    private final AtomicLong duplicateCount = new AtomicLong();
+
+    /**
+     * Rejected submission count.
+     */
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * Constructs a push job queue with the specified arguments.
+     *
+     * @param runner the specified push runner
+     * @param queueCapacity the specified max jobs waiting to run
+     * @param dedupWindow the specified dedup window in milliseconds
+     * @param historySize the specified max jobs kept for status queries
+     */
+    public PushJobQueue(final Runner runner, final int queueCapacity, final long dedupWindow,
+            final int historySize) {
+        this.runner = runner;
+        this.dedupWindow = dedupWindow;
+        this.historySize = Math.max(1, historySize);
+        this.executor = new BoundedExecutor("xiaov-push-job", 1, 1, queueCapacity, "abort");
+    }
+
+    /**
+     * Submits a push job of the specified message.
+     *
+     * @param msg the specified message
+     * @return job, {@link Job#isDuplicate()} tells whether it is an existing job of the same message
+     */
+    public synchronized Job submit(final String msg) {
+        final String hash = hash(msg);
+        final long now = System.currentTimeMillis();
+
+        final Job existing = jobsByHash.get(hash);
+        if (null != existing && Status.FAILED != existing.getStatus()
+                && (!existing.isFinished() || now - existing.submitTime < dedupWindow)) {
+            duplicateCount.incrementAndGet();
+            LOGGER.info("Push job [id=" + existing.id + ", hash=" + hash + "] exists, skips the duplicate submission");
+
+            return new Job(existing, true);
+        }
+
+        final Job ret = new Job(idGenerator.incrementAndGet(), hash, msg, now);
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    runJob(ret);
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            rejectedCount.incrementAndGet();
+            ret.fail("Push job queue is full");
+            LOGGER.log(Level.WARN, "Push job queue is full, rejects a job [hash=" + hash + "]");
+
+            return ret;
+        }
+
+        submittedCount.incrementAndGet();
+        jobsByHash.put(hash, ret);
+        jobs.put(ret.id, ret);
+        trim(now);
+
+        return ret;
+    }
+
+    /**
+     * Gets the job of the specified id.
+     *
+     * @param id the specified id
+     * @return job, returns {@code null} if not found or expired
+     */
+    public synchronized Job getJob(final long id) {
+        return jobs.get(id);
+    }
+
+    /**
+     * Shuts down the job executor.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Gets the statistic of this queue.
+     *
+     * @return statistic, for example,
+     * <pre>
+     * {
+     *     "queueSize": int,
+     *     "jobs": int,
+     *     "submitted": long,
+     *     "duplicates": long,
+     *     "rejected": long
+     * }
+     * </pre>
+     */
+    public JSONObject getStat() {
+        final JSONObject ret = new JSONObject();
+
+        ret.put("queueSize", executor.getQueueSize());
+        synchronized (this) {
+            ret.put("jobs", jobs.size());
+        }
+        ret.put("submitted", submittedCount.get());
+        ret.put("duplicates", duplicateCount.get());
+        ret.put("rejected", rejectedCount.get());
+
+        return ret;
+    }
+
+    /**
+     * Runs the specified job.
+     *
+     * @param job the specified job
+     */
+    private void runJob(final Job job) {
+        job.status = Status.RUNNING;
+        job.startTime = System.currentTimeMillis();
+        try {
+            final PushCampaign campaign = runner.run(job.msg);
+            if (null == campaign) {
+                job.fail("No campaign started, see the log for details");
+
+                return;
+            }
+
+            job.campaign = campaign;
+        } catch (final Exception e) {
+            LOGGER.log(Level.ERROR, "Runs push job [id=" + job.id + "] failed", e);
+            job.fail(e.getMessage());
+        }
+    }
+
+    /**
+     * Removes the oldest finished jobs beyond the history size and the expired hashes.
+     *
+     * @param now the specified current time
+     */
+    private void trim(final long now) {
+        final Iterator<Job> iterator = jobs.values().iterator();
+        while (jobs.size() > historySize && iterator.hasNext()) {
+            if (iterator.next().isFinished()) {
+                iterator.remove();
+            }
+        }
+
+        final Iterator<Job> hashIterator = jobsByHash.values().iterator();
+        while (hashIterator.hasNext()) {
+            final Job job = hashIterator.next();
+            if (job.isFinished() && now - job.submitTime >= dedupWindow) {
+                hashIterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Gets the SHA-256 hex of the specified message.
+     *
+     * @param msg the specified message
+     * @return hash
+     */
+    private static String hash(final String msg) {
+        final byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(msg.getBytes(UTF_8));
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        final char[] ret = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            ret[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+            ret[i * 2 + 1] = HEX[digest[i] & 0xF];
+        }
+
+        return new String(ret);
+    }
+
+    /**
+     * Push runner.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.0.0, Oct 18, 2026
+     * @since 2.2.0
+     */
+    public interface Runner {
+
+        /**
+         * Prepares and starts a push campaign of the specified message.
+         *
+         * @param msg the specified message
+         * @return campaign, returns {@code null} if no campaign started
+         * @throws Exception exception
+         */
+        PushCampaign run(final String msg) throws Exception;
+    }
+
+    /**
+     * Job status.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.0.0, Oct 18, 2026
+     * @since 2.2.0
+     */
+    public enum Status {
+
+        /**
+         * Waiting to run.
+         */
+        QUEUED,
+        /**
+         * Preparing targets or pushing.
+         */
+        RUNNING,
+        /**
+         * Campaign finished.
+         */
+        DONE,
+        /**
+         * Failed before the campaign started.
+         */
+        FAILED
+    }
+
+    /**
+     * Push job.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.0.0, Oct 18, 2026
+     * @since 2.2.0
+     */
+    public static final class Job {
+
+        /**
+         * Job id.
+         */
+        private final long id;
+
+        /**
+         * Message hash.
+         */
+        private final String hash;
+
+        /**
+         * Message.
+         */
+        private final String msg;
+
+        /**
+         * Submit time.
+         */
+        private final long submitTime;
+
+        /**
+         * Whether this is a view of an existing job returned to a duplicate submission.
+         */
+        private final boolean duplicate;
+
+        /**
+         * The original job of a duplicate view, this job otherwise.
+         */
+        private final Job origin;
+
+        /**
+         * Status.
+         */
+        private volatile Status status = Status.QUEUED;
+
+        /**
+         * Start time.
+         */
+        private volatile long startTime;
+
+        /**
+         * Campaign, {@code null} if not started.
+         */
+        private volatile PushCampaign campaign;
+
+        /**
+         * Error message.
+         */
+        private volatile String error;
+
+        /**
+         * Constructs a queued job with the specified arguments.
+         *
+         * @param id the specified id
+         * @param hash the specified message hash
+         * @param msg the specified message
+         * @param submitTime the specified submit time
+         */
+        private Job(final long id, final String hash, final String msg, final long submitTime) {
+            this.id = id;
+            this.hash = hash;
+            this.msg = msg;
+            this.submitTime = submitTime;
+            this.duplicate = false;
+            this.origin = this;
+        }
+
+        /**
+         * Constructs a view of the specified job.
+         *
+         * @param origin the specified job
+         * @param duplicate whether the view is returned to a duplicate submission
+         */
+        private Job(final Job origin, final boolean duplicate) {
+            this.id = origin.id;
+            this.hash = origin.hash;
+            this.msg = origin.msg;
+            this.submitTime = origin.submitTime;
+            this.duplicate = duplicate;
+            this.origin = origin;
+        }
+
+        /**
+         * Gets the id.
+         *
+         * @return id
+         */
+        public long getId() {
+            return id;
+        }
+
+        /**
+         * Gets the message hash.
+         *
+         * @return message hash
+         */
+        public String getHash() {
+            return hash;
+        }
+
+        /**
+         * Whether this job was returned to a duplicate submission.
+         *
+         * @return {@code true} if duplicate
+         */
+        public boolean isDuplicate() {
+            return duplicate;
+        }
+
+        /**
+         * Gets the status.
+         *
+         * @return status
+         */
+        public Status getStatus() {
+            final Status ret = origin.status;
+            final PushCampaign c = origin.campaign;
+            if (Status.RUNNING == ret && null != c && c.isFinished()) {
+                return Status.DONE;
+            }
+
+            return ret;
+        }
+
+        /**
+         * Whether this job has finished or failed.
+         *
+         * @return {@code true} if finished
+         */
+        public boolean isFinished() {
+            final Status s = getStatus();
+
+            return Status.DONE == s || Status.FAILED == s;
+        }
+
+        /**
+         * Gets the campaign.
+         *
+         * @return campaign, returns {@code null} if not started
+         */
+        public PushCampaign getCampaign() {
+            return origin.campaign;
+        }
+
+        /**
+         * Converts this job to a JSON object.
+         *
+         * @param withTargets whether to include the status of every push target
+         * @return JSON object, for example,
+         * <pre>
+         * {
+         *     "jobId": long,
+         *     "hash": "",
+         *     "duplicate": boolean,
+         *     "status": "RUNNING",
+         *     "submitTime": long,
+         *     "startTime": long,
+         *     "error": "",
+         *     "campaign": {....} // see PushCampaign#getStat(boolean)
+         * }
+         * </pre>
+         */
+        public JSONObject toJSONObject(final boolean withTargets) {
+            final JSONObject ret = new JSONObject();
+
+            ret.put("jobId", id);
+            ret.put("hash", hash);
+            ret.put("duplicate", duplicate);
+            ret.put("status", getStatus().name());
+            ret.put("submitTime", submitTime);
+            if (0 != origin.startTime) {
+                ret.put("startTime", origin.startTime);
+            }
+            if (null != origin.error) {
+                ret.put("error", origin.error);
+            }
+            final PushCampaign c = origin.campaign;
+            if (null != c) {
+                ret.put("campaign", c.getStat(withTargets));
+            }
+
+            return ret;
+        }
+
+        /**
+         * Marks this job failed with the specified error.
+         *
+         * @param error the specified error message
+         */
+        private void fail(final String error) {
+            this.error = error;
+            this.status = Status.FAILED;
+        }
+    }
+}
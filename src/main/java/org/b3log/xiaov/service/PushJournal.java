@@ -0,0 +1,882 @@
+/*
+ * Copyright (c) 2012-2016, b3log.org & hacpai.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.xiaov.service;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Append-only journal of push progress.
+ *
+ * <p>
+ * Every campaign start, target status change and rotation reset is appended as one JSON line. Appending only offers
+ * the record to a queue, so it is cheap enough for the send path. A writer thread drains the queue in batches, writes
+ * each batch with one flush and forces the file to disk at most once per fsync interval. Records which have not been
+ * forced are lost on a crash, a resumed campaign may then push those groups again.
+ * </p>
+ *
+ * <p>
+ * The writer thread keeps the live state (unfinished campaigns and groups pushed in the current rotation) by applying
+ * the records it writes. When the file grows beyond the compaction threshold, the live state is written to a new file
+ * which atomically replaces the journal. On startup the journal is replayed into {@link #getReplay()}, a torn last
+ * line is skipped.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.1, Oct 18, 2026
+ * @since 2.2.0
+ */
+public class PushJournal {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(PushJournal.class.getName());
+
+    /**
+     * Charset.
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Record type of campaign start.
+     */
+    private static final String TYPE_CAMPAIGN = "campaign";
+
+    /**
+     * Record type of target status change.
+     */
+    private static final String TYPE_STATUS = "status";
+
+    /**
+     * Record type of rotation reset.
+     */
+    private static final String TYPE_ROTATION = "rotation";
+
+    /**
+     * Record type of checkpoint (max campaign id and groups pushed in the current rotation), written by compaction
+     * only.
+     */
+    private static final String TYPE_CHECKPOINT = "checkpoint";
+
+    /**
+     * Max records written in one batch.
+     */
+    private static final int MAX_BATCH = 512;
+
+    /**
+     * Journal file.
+     */
+    private final File file;
+
+    /**
+     * Fsync interval in milliseconds.
+     */
+    private final long fsyncInterval;
+
+    /**
+     * Compaction threshold in bytes.
+     */
+    private final long compactThreshold;
+
+    /**
+     * Records to write.
+     */
+    private final BlockingQueue<JSONObject> queue;
+
+    /**
+     * Replayed state on startup.
+     */
+    private final Replay replay;
+
+    /**
+     * Live campaigns, accessed by the writer thread only.
+     *
+     * &lt;campaignId, campaign&gt;
+     */
+    private final Map<Long, CampaignState> campaigns = new LinkedHashMap<>();
+
+    /**
+     * Groups pushed in the current rotation, accessed by the writer thread only.
+     *
+     * &lt;groupId, groupName&gt;
+     */
+    private final Map<Long, String> rotationPushed = new LinkedHashMap<>();
+
+    /**
+     * Max journaled campaign id, accessed by the writer thread only.
+     */
+    private long maxCampaignId;
+
+    /**
+     * Writer thread.
+     */
+    private final Thread writerThread;
+
+    /**
+     * Output stream of the journal file.
+     */
+    private FileOutputStream out;
+
+    /**
+     * Writer of the journal file.
+     */
+    private Writer writer;
+
+    /**
+     * File size after the latest compaction.
+     */
+    private long compactedSize;
+
+    /**
+     * Running flag.
+     */
+    private volatile boolean running = true;
+
+    /**
+     * Appended record count.
+     */
+    private final AtomicLong appendedCount = new AtomicLong();
+
+    /**
+     * Dropped record count.
+     */
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /**
+     * Written batch count.
+     */
+    private final AtomicLong batchCount = new AtomicLong();
+
+    /**
+     * Fsync count.
+     */
+    private final AtomicLong fsyncCount = new AtomicLong();
+
+    /**
+     * Compaction count.
+     */
+    private final AtomicLong compactionCount = new AtomicLong();
+
+    /**
+     * Write failure count.
+     */
+    private final AtomicLong failureCount = new AtomicLong();
+
+    /**
+     * Journal file size.
+     */
+    private volatile long fileSize;
+
+    /**
+     * Opens the journal of the specified path, replays it and starts the writer thread.
+     *
+     * @param path the specified journal file path
+     * @param fsyncInterval the specified fsync interval in milliseconds
+     * @param compactThreshold the specified compaction threshold in bytes
+     * @param queueCapacity the specified max records waiting to be written
+     * @throws IOException if opens failed
+     */
+    public PushJournal(final String path, final long fsyncInterval, final long compactThreshold,
+            final int queueCapacity) throws IOException {
+        this.file = new File(path).getCanonicalFile();
+        this.fsyncInterval = fsyncInterval;
+        this.compactThreshold = compactThreshold;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        load();
+        replay = new Replay(campaigns.values(), rotationPushed, maxCampaignId);
+        compact(); // Starts from a compacted file, drops the torn tail if any
+
+        writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        }, "xiaov-push-journal");
+        writerThread.setDaemon(true);
+        writerThread.start();
+
+        LOGGER.info("Opened push journal [" + file + ", unfinishedCampaigns=" + replay.getCampaigns().size()
+                + ", rotationPushed=" + replay.getRotationPushed().size() + "]");
+    }
+
+    /**
+     * Gets the state replayed on startup.
+     *
+     * @return replayed state
+     */
+    public Replay getReplay() {
+        return replay;
+    }
+
+    /**
+     * Appends the start of the specified campaign.
+     *
+     * @param campaign the specified campaign
+     */
+    public void started(final PushCampaign campaign) {
+        final JSONObject record = new JSONObject();
+        record.put("type", TYPE_CAMPAIGN);
+        record.put("id", campaign.getId());
+        record.put("msg", campaign.getMsg());
+        record.put("rotation", campaign.isRotation());
+        record.put("time", System.currentTimeMillis());
+        final JSONArray targets = new JSONArray();
+        for (final PushCampaign.Target target : campaign.getTargets()) {
+            final JSONObject t = new JSONObject();
+            t.put("groupId", target.getGroup().getId());
+            t.put("name", target.getGroup().getName());
+            t.put("memberCount", target.getMemberCount());
+            t.put("status", target.getStatus().name());
+            targets.put(t);
+        }
+        record.put("targets", targets);
+
+        append(record);
+    }
+
+    /**
+     * Appends the status of the specified target.
+     *
+     * @param campaign the specified campaign
+     * @param target the specified target
+     */
+    public void status(final PushCampaign campaign, final PushCampaign.Target target) {
+        final JSONObject record = new JSONObject();
+        record.put("type", TYPE_STATUS);
+        record.put("id", campaign.getId());
+        record.put("groupId", target.getGroup().getId());
+        record.put("status", target.getStatus().name());
+        record.put("time", System.currentTimeMillis());
+
+        append(record);
+    }
+
+    /**
+     * Appends a rotation reset, all groups become unpushed.
+     */
+    public void rotationReset() {
+        final JSONObject record = new JSONObject();
+        record.put("type", TYPE_ROTATION);
+        record.put("time", System.currentTimeMillis());
+
+        append(record);
+    }
+
+    /**
+     * Writes the pending records, forces them to disk and closes the journal.
+     *
+     * <p>
+     * The writer thread is not interrupted, an interrupt during {@code FileChannel.force} closes the channel and loses
+     * the last records. It sees the running flag within one poll timeout (the fsync interval) instead.
+     * </p>
+     */
+    public void close() {
+        running = false;
+        try {
+            writerThread.join(fsyncInterval + TimeUnit.SECONDS.toMillis(5));
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gets the statistic of this journal.
+     *
+     * @return statistic, for example,
+     * <pre>
+     * {
+     *     "file": "",
+     *     "fileBytes": long,
+     *     "queueSize": int,
+     *     "appended": long,
+     *     "dropped": long,
+     *     "batches": long,
+     *     "avgBatch": double,
+     *     "fsyncs": long,
+     *     "compactions": long,
+     *     "failures": long
+     * }
+     * </pre>
+     */
+    public JSONObject getStat() {
+        final JSONObject ret = new JSONObject();
+        final long batches = batchCount.get();
+        final long appended = appendedCount.get();
+
+        ret.put("file", file.getPath());
+        ret.put("fileBytes", fileSize);
+        ret.put("queueSize", queue.size());
+        ret.put("appended", appended);
+        ret.put("dropped", droppedCount.get());
+        ret.put("batches", batches);
+        ret.put("avgBatch", 0 == batches ? 0 : (double) (appended - queue.size()) / batches);
+        ret.put("fsyncs", fsyncCount.get());
+        ret.put("compactions", compactionCount.get());
+        ret.put("failures", failureCount.get());
+
+        return ret;
+    }
+
+    /**
+     * Offers the specified record to the writer thread.
+     *
+     * @param record the specified record
+     */
+    private void append(final JSONObject record) {
+        if (!running || !queue.offer(record)) {
+            droppedCount.incrementAndGet();
+            LOGGER.log(Level.WARN, "Push journal is full or closed, drops a record [queueSize=" + queue.size() + "]");
+
+            return;
+        }
+
+        appendedCount.incrementAndGet();
+    }
+
+    /**
+     * Writer loop.
+     */
+    private void write() {
+        final List<JSONObject> batch = new ArrayList<>(MAX_BATCH);
+        long lastSync = System.nanoTime();
+        boolean dirty = false;
+
+        while (true) {
+            final boolean stopping = !running; // Read before draining, records appended before close are written
+            try {
+                final JSONObject record = stopping ? queue.poll() : queue.poll(fsyncInterval, TimeUnit.MILLISECONDS);
+                if (null != record) {
+                    batch.add(record);
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                }
+            } catch (final InterruptedException e) {
+                queue.drainTo(batch, MAX_BATCH);
+            }
+
+            try {
+                if (null == writer) { // Compaction failed last time
+                    open();
+                }
+
+                if (!batch.isEmpty()) {
+                    for (final JSONObject record : batch) {
+                        apply(record);
+                        writer.write(record.toString());
+                        writer.write('\n');
+                    }
+                    writer.flush();
+                    batchCount.incrementAndGet();
+                    batch.clear();
+                    dirty = true;
+                }
+
+                if (dirty && (System.nanoTime() - lastSync >= TimeUnit.MILLISECONDS.toNanos(fsyncInterval)
+                        || stopping)) {
+                    out.getChannel().force(false);
+                    fsyncCount.incrementAndGet();
+                    lastSync = System.nanoTime();
+                    dirty = false;
+
+                    fileSize = out.getChannel().size();
+                    if (fileSize > compactThreshold && fileSize > 2 * compactedSize) {
+                        compact();
+                    }
+                }
+            } catch (final IOException e) {
+                failureCount.incrementAndGet();
+                droppedCount.addAndGet(batch.size());
+                LOGGER.log(Level.ERROR, "Writes push journal failed, drops [" + batch.size() + "] records", e);
+                batch.clear();
+                closeQuietly(); // Reopened by the next round
+            }
+
+            if (stopping && queue.isEmpty()) {
+                break;
+            }
+        }
+
+        closeQuietly();
+    }
+
+    /**
+     * Loads the journal file into the live state.
+     *
+     * @throws IOException if reads failed
+     */
+    private void load() throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+
+        try (final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8))) {
+            String line;
+            int lineNum = 0;
+            while (null != (line = reader.readLine())) {
+                lineNum++;
+                if (line.isEmpty()) {
+                    continue;
+                }
+
+                try {
+                    apply(new JSONObject(line));
+                } catch (final JSONException e) {
+                    LOGGER.log(Level.WARN, "Skips a broken record of push journal [line=" + lineNum + "]");
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies the specified record to the live state.
+     *
+     * @param record the specified record
+     */
+    private void apply(final JSONObject record) {
+        switch (record.optString("type")) {
+            case TYPE_CAMPAIGN:
+                final CampaignState campaign = new CampaignState(record);
+                maxCampaignId = Math.max(maxCampaignId, campaign.id);
+                if (campaign.isFinished()) {
+                    return;
+                }
+
+                campaigns.put(campaign.id, campaign);
+                if (record.optBoolean("rotation")) {
+                    for (final TargetState target : campaign.targets.values()) {
+                        rotationPushed.put(target.groupId, target.name);
+                    }
+                }
+
+                break;
+            case TYPE_STATUS:
+                final CampaignState state = campaigns.get(record.getLong("id"));
+                if (null == state) {
+                    return;
+                }
+
+                final TargetState target = state.targets.get(record.getLong("groupId"));
+                if (null != target) {
+                    target.status = record.getString("status");
+                }
+                if (state.isFinished()) {
+                    campaigns.remove(state.id);
+                }
+
+                break;
+            case TYPE_ROTATION:
+                rotationPushed.clear();
+
+                break;
+            case TYPE_CHECKPOINT:
+                maxCampaignId = Math.max(maxCampaignId, record.optLong("maxCampaignId"));
+                final JSONArray groups = record.getJSONArray("groups");
+                for (int i = 0; i < groups.length(); i++) {
+                    final JSONObject group = groups.getJSONObject(i);
+                    rotationPushed.put(group.getLong("groupId"), group.optString("name"));
+                }
+
+                break;
+            default:
+                LOGGER.log(Level.WARN, "Unknown push journal record [" + record + "]");
+        }
+    }
+
+    /**
+     * Writes the live state to a new file which replaces the journal, and reopens it for appending.
+     *
+     * @throws IOException if writes failed
+     */
+    private void compact() throws IOException {
+        closeQuietly();
+
+        final File tmp = new File(file.getPath() + ".compact");
+        try (final FileOutputStream tmpOut = new FileOutputStream(tmp)) {
+            final Writer tmpWriter = new OutputStreamWriter(tmpOut, UTF_8);
+            final JSONObject checkpoint = new JSONObject();
+            checkpoint.put("type", TYPE_CHECKPOINT);
+            checkpoint.put("maxCampaignId", maxCampaignId);
+            final JSONArray groups = new JSONArray();
+            for (final Map.Entry<Long, String> entry : rotationPushed.entrySet()) {
+                final JSONObject group = new JSONObject();
+                group.put("groupId", entry.getKey());
+                group.put("name", entry.getValue());
+                groups.put(group);
+            }
+            checkpoint.put("groups", groups);
+            tmpWriter.write(checkpoint.toString());
+            tmpWriter.write('\n');
+            for (final CampaignState campaign : campaigns.values()) {
+                tmpWriter.write(campaign.toRecord().toString());
+                tmpWriter.write('\n');
+            }
+            tmpWriter.flush();
+            tmpOut.getChannel().force(false);
+        }
+
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        open();
+        compactedSize = fileSize;
+        compactionCount.incrementAndGet();
+    }
+
+    /**
+     * Opens the journal file for appending.
+     *
+     * @throws IOException if opens failed
+     */
+    private void open() throws IOException {
+        out = new FileOutputStream(file, true);
+        writer = new OutputStreamWriter(out, UTF_8);
+        fileSize = out.getChannel().size();
+    }
+
+    /**
+     * Closes the journal file quietly.
+     */
+    private void closeQuietly() {
+        if (null == writer) {
+            return;
+        }
+
+        try {
+            writer.close();
+        } catch (final IOException e) {
+            LOGGER.log(Level.WARN, "Closes push journal failed: " + e.getMessage());
+        }
+        writer = null;
+        out = null;
+    }
+
+    /**
+     * State replayed on startup.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.0.0, Oct 18, 2026
+     * @since 2.2.0
+     */
+    public static final class Replay {
+
+        /**
+         * Unfinished campaigns.
+         */
+        private final List<CampaignState> campaigns;
+
+        /**
+         * Groups pushed in the current rotation.
+         *
+         * &lt;groupId, groupName&gt;
+         */
+        private final Map<Long, String> rotationPushed;
+
+        /**
+         * Max campaign id.
+         */
+        private final long maxCampaignId;
+
+        /**
+         * Constructs a replay with copies of the specified state.
+         *
+         * @param campaigns the specified unfinished campaigns
+         * @param rotationPushed the specified groups pushed in the current rotation
+         * @param maxCampaignId the specified max journaled campaign id
+         */
+        private Replay(final Iterable<CampaignState> campaigns, final Map<Long, String> rotationPushed,
+                final long maxCampaignId) {
+            final List<CampaignState> list = new ArrayList<>();
+            for (final CampaignState campaign : campaigns) {
+                list.add(campaign.copy());
+            }
+            this.campaigns = Collections.unmodifiableList(list);
+            this.rotationPushed = Collections.unmodifiableMap(new LinkedHashMap<>(rotationPushed));
+            this.maxCampaignId = maxCampaignId;
+        }
+
+        /**
+         * Gets the unfinished campaigns.
+         *
+         * @return unfinished campaigns
+         */
+        public List<CampaignState> getCampaigns() {
+            return campaigns;
+        }
+
+        /**
+         * Gets the groups pushed in the current rotation.
+         *
+         * @return &lt;groupId, groupName&gt;
+         */
+        public Map<Long, String> getRotationPushed() {
+            return rotationPushed;
+        }
+
+        /**
+         * Gets the max journaled campaign id.
+         *
+         * @return max campaign id, {@code 0} if no campaign has been journaled
+         */
+        public long getMaxCampaignId() {
+            return maxCampaignId;
+        }
+    }
+
+    /**
+     * Journaled campaign.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.0.0, Oct 18, 2026
+     * @since 2.2.0
+     */
+    public static final class CampaignState {
+
+        /**
+         * Campaign id.
+         */
+        private final long id;
+
+        /**
+         * Message.
+         */
+        private final String msg;
+
+        /**
+         * Start time.
+         */
+        private final long time;
+
+        /**
+         * Targets in rank order.
+         *
+         * &lt;groupId, target&gt;
+         */
+        private final Map<Long, TargetState> targets = new LinkedHashMap<>();
+
+        /**
+         * Constructs a campaign state with the specified campaign record.
+         *
+         * @param record the specified campaign record
+         */
+        private CampaignState(final JSONObject record) {
+            id = record.getLong("id");
+            msg = record.getString("msg");
+            time = record.optLong("time");
+            final JSONArray array = record.getJSONArray("targets");
+            for (int i = 0; i < array.length(); i++) {
+                final JSONObject t = array.getJSONObject(i);
+                final TargetState target = new TargetState(t.getLong("groupId"), t.optString("name"),
+                        t.optInt("memberCount"), t.optString("status", PushCampaign.Status.PENDING.name()));
+                targets.put(target.groupId, target);
+            }
+        }
+
+        /**
+         * Creates a deep copy of this state.
+         *
+         * @return copy
+         */
+        private CampaignState copy() {
+            return new CampaignState(toRecord());
+        }
+
+        /**
+         * Whether no target is pending.
+         *
+         * @return {@code true} if finished
+         */
+        private boolean isFinished() {
+            for (final TargetState target : targets.values()) {
+                if (PushCampaign.Status.PENDING.name().equals(target.status)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Converts this state to a campaign record, rotation is left out since compaction journals it separately.
+         *
+         * @return campaign record
+         */
+        private JSONObject toRecord() {
+            final JSONObject ret = new JSONObject();
+            ret.put("type", TYPE_CAMPAIGN);
+            ret.put("id", id);
+            ret.put("msg", msg);
+            ret.put("time", time);
+            final JSONArray array = new JSONArray();
+            for (final TargetState target : targets.values()) {
+                final JSONObject t = new JSONObject();
+                t.put("groupId", target.groupId);
+                t.put("name", target.name);
+                t.put("memberCount", target.memberCount);
+                t.put("status", target.status);
+                array.put(t);
+            }
+            ret.put("targets", array);
+
+            return ret;
+        }
+
+        /**
+         * Gets the id.
+         *
+         * @return id
+         */
+        public long getId() {
+            return id;
+        }
+
+        /**
+         * Gets the message.
+         *
+         * @return message
+         */
+        public String getMsg() {
+            return msg;
+        }
+
+        /**
+         * Gets the start time.
+         *
+         * @return start time
+         */
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * Gets the targets in rank order.
+         *
+         * @return targets
+         */
+        public Iterable<TargetState> getTargets() {
+            return new Iterable<TargetState>() {
+                @Override
+                public Iterator<TargetState> iterator() {
+                    return Collections.unmodifiableCollection(targets.values()).iterator();
+                }
+            };
+        }
+    }
+
+    /**
+     * Journaled target.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.0.0, Oct 18, 2026
+     * @since 2.2.0
+     */
+    public static final class TargetState {
+
+        /**
+         * Group id.
+         */
+        private final long groupId;
+
+        /**
+         * Group name.
+         */
+        private final String name;
+
+        /**
+         * Member count.
+         */
+        private final int memberCount;
+
+        /**
+         * Status, see {@link PushCampaign.Status}.
+         */
+        private String status;
+
+        /**
+         * Constructs a target state with the specified arguments.
+         *
+         * @param groupId the specified group id
+         * @param name the specified group name
+         * @param memberCount the specified member count
+         * @param status the specified status
+         */
+        private TargetState(final long groupId, final String name, final int memberCount, final String status) {
+            this.groupId = groupId;
+            this.name = name;
+            this.memberCount = memberCount;
+            this.status = status;
+        }
+
+        /**
+         * Gets the group id.
+         *
+         * @return group id
+         */
+        public long getGroupId() {
+            return groupId;
+        }
+
+        /**
+         * Gets the group name.
+         *
+         * @return group name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the member count.
+         *
+         * @return member count
+         */
+        public int getMemberCount() {
+            return memberCount;
+        }
+
+        /**
+         * Gets the status.
+         *
+         * @return status
+         */
+        public PushCampaign.Status getStatus() {
+            return PushCampaign.Status.valueOf(status);
+        }
+    }
+}
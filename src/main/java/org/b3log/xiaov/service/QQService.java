@@ -15,45 +15,50 @@
  */
 package org.b3log.xiaov.service;
 
-import java.net.URL;
 import java.net.URLEncoder;
 import java.util.List;
 import java.util.Map;
-import javax.inject.Inject;
-import javax.servlet.http.HttpServletResponse;
 import org.apache.commons.lang.StringUtils;
 import org.b3log.latke.logging.Level;
 import org.b3log.latke.logging.Logger;
 import org.b3log.latke.service.annotation.Service;
-import org.b3log.latke.servlet.HTTPRequestMethod;
-import org.b3log.latke.urlfetch.HTTPRequest;
-import org.b3log.latke.urlfetch.HTTPResponse;
-import org.b3log.latke.urlfetch.URLFetchService;
-import org.b3log.latke.urlfetch.URLFetchServiceFactory;
 import org.b3log.latke.util.Strings;
+import org.b3log.xiaov.util.BoundedExecutor;
+import org.b3log.xiaov.util.CircuitBreaker;
+import org.b3log.xiaov.util.HashedTimerWheel;
+import org.b3log.xiaov.util.ShardedExecutor;
 import org.b3log.xiaov.util.XiaoVs;
 import com.scienjus.smartqq.callback.MessageCallback;
+import com.scienjus.smartqq.client.ClientOptions;
+import com.scienjus.smartqq.client.HttpTransport;
+import com.scienjus.smartqq.client.SendPriority;
 import com.scienjus.smartqq.client.SmartQQClient;
 import com.scienjus.smartqq.model.Discuss;
 import com.scienjus.smartqq.model.DiscussMessage;
 import com.scienjus.smartqq.model.Group;
-import com.scienjus.smartqq.model.GroupInfo;
 import com.scienjus.smartqq.model.GroupMessage;
 import com.scienjus.smartqq.model.Message;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import org.apache.commons.lang.math.RandomUtils;
+import org.json.JSONObject;
 
 /**
  * QQ service.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.4.3.9, Aug 28, 2016
+ * @version 1.7.0.2, Oct 18, 2026
  * @since 1.0.0
  */
 @Service
@@ -66,10 +71,38 @@ public class QQService {
 
     /**
      * QQ groups.
-     *
-     * &lt;groupId, group&gt;
      */
-    private final Map<Long, Group> QQ_GROUPS = new ConcurrentHashMap<>();
+    private final ConversationRegistry<Group> QQ_GROUPS = new ConversationRegistry<>("group",
+            new ConversationRegistry.Accessor<Group>() {
+        @Override
+        public List<Group> load() {
+            return xiaoV.getGroupList();
+        }
+
+        @Override
+        public long getId(final Group group) {
+            return group.getId();
+        }
+
+        @Override
+        public String getName(final Group group) {
+            return group.getName();
+        }
+
+        @Override
+        public void onReloaded(final ConversationRegistry.Diff<Group> diff) {
+            for (final Group group : diff.getAdded()) {
+                UNPUSH_GROUPS.add(group.getId());
+            }
+            for (final Group group : diff.getRemoved()) {
+                GROUP_AD_TIME.remove(group.getId());
+                UNPUSH_GROUPS.remove(group.getId());
+                if (null != rosterCache) {
+                    rosterCache.invalidateGroup(group.getCode());
+                }
+            }
+        }
+    }, XiaoVs.getLong("qq.bot.roster.minReloadIntervalMillis"));
 
     /**
      * The latest group ad time.
@@ -80,10 +113,34 @@ public class QQService {
 
     /**
      * QQ discusses.
-     *
-     * &lt;discussId, discuss&gt;
      */
-    private final Map<Long, Discuss> QQ_DISCUSSES = new ConcurrentHashMap<>();
+    private final ConversationRegistry<Discuss> QQ_DISCUSSES = new ConversationRegistry<>("discuss",
+            new ConversationRegistry.Accessor<Discuss>() {
+        @Override
+        public List<Discuss> load() {
+            return xiaoV.getDiscussList();
+        }
+
+        @Override
+        public long getId(final Discuss discuss) {
+            return discuss.getId();
+        }
+
+        @Override
+        public String getName(final Discuss discuss) {
+            return discuss.getName();
+        }
+
+        @Override
+        public void onReloaded(final ConversationRegistry.Diff<Discuss> diff) {
+            for (final Discuss discuss : diff.getRemoved()) {
+                DISCUSS_AD_TIME.remove(discuss.getId());
+                if (null != rosterCache) {
+                    rosterCache.invalidateDiscuss(discuss.getId());
+                }
+            }
+        }
+    }, XiaoVs.getLong("qq.bot.roster.minReloadIntervalMillis"));
 
     /**
      * The latest discuss ad time.
@@ -108,32 +165,160 @@ public class QQService {
     private SmartQQClient xiaoVListener;
 
     /**
-     * Group sent messages.
+     * HTTP transport shared by QQ client and QQ client listener, see <i>qq.client.*</i> in xiaov.properties.
      */
-    private final List<String> GROUP_SENT_MSGS = new CopyOnWriteArrayList<>();
+    private HttpTransport transport;
 
     /**
-     * Discuss sent messages.
+     * Group and discuss roster cache of QQ client, see <i>qq.bot.roster.*</i> in xiaov.properties.
      */
-    private final List<String> DISCUSS_SENT_MSGS = new CopyOnWriteArrayList<>();
+    private RosterCache rosterCache;
 
     /**
-     * Turing query service.
+     * Off-lane work dispatcher.
+     *
+     * <p>
+     * Runs the blocking work that must not hold up a conversation lane or the timer: resends of the {@link AckTracker}
+     * and group or discuss reloads for replies to conversations not in the cache, see
+     * {@link #reloadOffLane(int, long, Runnable)}. Bounded instead of spawning a thread per task, see
+     * <i>qq.bot.dispatch.*</i> in xiaov.properties.
+     * </p>
      */
-    @Inject
-    private TuringQueryService turingQueryService;
+    private final BoundedExecutor dispatcher = new BoundedExecutor("xiaov-dispatch",
+            XiaoVs.getInt("qq.bot.dispatch.coreThreads"), XiaoVs.getInt("qq.bot.dispatch.maxThreads"),
+            XiaoVs.getInt("qq.bot.dispatch.queueCapacity"), XiaoVs.getString("qq.bot.dispatch.rejectPolicy"));
 
     /**
-     * Baidu bot query service.
+     * Conversation lanes.
+     *
+     * <p>
+     * Messages of one conversation (group, discuss or friend) are processed strictly in order on the same lane while
+     * different conversations run in parallel, see <i>qq.bot.lanes.*</i> in xiaov.properties. Lanes are sized for
+     * CPU work and only keep the order, a lane task must not block: admin pushes are handed to the {@link #pushJobs},
+     * chat answers are posted back onto the lane by the {@link #chatHedger} callback, and a reply to an unknown group
+     * or discuss is posted back once the {@link #dispatcher} has reloaded them.
+     * </p>
      */
-    @Inject
-    private BaiduQueryService baiduQueryService;
+    private final ShardedExecutor lanes = new ShardedExecutor("xiaov-lane",
+            XiaoVs.getInt("qq.bot.lanes.count"), XiaoVs.getInt("qq.bot.lanes.queueCapacity"));
 
     /**
-     * ITPK query service.
+     * Reply timer.
+     *
+     * <p>
+     * Holds the humanized reply delays, ack retries, chat hedge delays and chat timeouts as timer entries. Expired
+     * entries are handed off to the {@link #lanes} or the {@link #dispatcher}, or start and cancel chat calls, directly
+     * on the ticker thread, which keeps the fire order.
+     * </p>
+     */
+    private final HashedTimerWheel timer = new HashedTimerWheel("xiaov-timer",
+            XiaoVs.getLong("qq.bot.timer.tickMillis"), XiaoVs.getInt("qq.bot.timer.wheelSize"),
+            XiaoVs.getInt("qq.bot.timer.maxPending"), new Executor() {
+        @Override
+        public void execute(final Runnable handoff) {
+            handoff.run();
+        }
+    });
+
+    /**
+     * Delivery ack tracker of sent group and discuss messages.
+     */
+    private final AckTracker ackTracker = new AckTracker(timer, dispatcher, ACK_CHECK_INTERVAL, ACK_MAX_RETRIES,
+            XiaoVs.getInt("qq.bot.ack.maxPending"));
+
+    /**
+     * Push journal, {@code null} if disabled, see <i>qq.bot.push.journal.*</i> in xiaov.properties.
+     */
+    private final PushJournal pushJournal = openPushJournal();
+
+    /**
+     * Push campaign engine, see <i>qq.bot.push.*</i> in xiaov.properties.
+     */
+    private final PushCampaignEngine pushCampaigns = new PushCampaignEngine(new PushCampaignEngine.Sender() {
+        @Override
+        public Future<Boolean> send(final Group group, final String msg) {
+            return xiaoV.sendMessageToGroupAsync(group.getId(), msg, SendPriority.PUSH); // Without retry
+        }
+    }, XiaoVs.getInt("qq.bot.push.parallelism"), XiaoVs.getFloat("qq.bot.push.rate"),
+            XiaoVs.getInt("qq.bot.push.burst"), XiaoVs.getLong("qq.bot.push.sendTimeoutMillis"),
+            XiaoVs.getInt("qq.bot.push.history"), pushJournal);
+
+    /**
+     * Push jobs submitted by the <i>/qq</i> endpoint, see <i>qq.bot.push.job.*</i> in xiaov.properties.
+     */
+    private final PushJobQueue pushJobs = new PushJobQueue(new PushJobQueue.Runner() {
+        @Override
+        public PushCampaign run(final String msg) {
+            return sendToPushQQGroups(msg);
+        }
+    }, XiaoVs.getInt("qq.bot.push.job.queueCapacity"), XiaoVs.getLong("qq.bot.push.job.dedupWindowMillis"),
+            XiaoVs.getInt("qq.bot.push.job.history"));
+
+    /**
+     * Forum forwarder of group and discuss messages, see <i>forum.*</i> in xiaov.properties.
+     */
+    private final ForumForwarder forumForwarder = new ForumForwarder(XiaoVs.getString("forum.api"),
+            XiaoVs.getString("forum.key"), XiaoVs.getInt("forum.queueCapacity"), XiaoVs.getInt("forum.batchSize"),
+            XiaoVs.getLong("forum.lingerMillis"), XiaoVs.getString("forum.overloadPolicy"),
+            XiaoVs.getFloat("forum.sampleRatio"), XiaoVs.getInt("forum.connectTimeoutMillis"),
+            XiaoVs.getInt("forum.readTimeoutMillis"), XiaoVs.getLong("forum.keepAliveMillis"), openForumSpool(),
+            XiaoVs.getLong("forum.spool.retryIntervalMillis"), new CircuitBreaker("forum",
+                    XiaoVs.getInt("forum.breaker.windowSize"), XiaoVs.getInt("forum.breaker.minCalls"),
+                    XiaoVs.getFloat("forum.breaker.failureRateThreshold"), XiaoVs.getLong("forum.breaker.openMillis"),
+                    XiaoVs.getInt("forum.breaker.halfOpenCalls")));
+
+    /**
+     * Answer cache of chat backends, see <i>qq.bot.answer.cache.*</i> in xiaov.properties.
+     */
+    private final AnswerCache answerCache = new AnswerCache(XiaoVs.getLong("qq.bot.answer.cache.maxWeight"),
+            XiaoVs.getLong("qq.bot.answer.cache.ttlMillis"), XiaoVs.getString("qq.bot.answer.cache.contextWords"),
+            XiaoVs.getString("qq.bot.answer.cache.snapshot"));
+
+    /**
+     * The latest scheduled reply time of conversations.
+     *
+     * &lt;conversation, time&gt;
      */
-    @Inject
-    private ItpkQueryService itpkQueryService;
+    private final ConcurrentMap<Long, Long> REPLY_DUE_TIME = new ConcurrentHashMap<>();
+
+    /**
+     * Chat backends, see <i>qq.bot.chat.*</i> in xiaov.properties.
+     */
+    private final ChatBackends chatBackends = new ChatBackends(XiaoVs.getInt("qq.bot.chat.threads"),
+            XiaoVs.getInt("qq.bot.chat.queueCapacity"), XiaoVs.getInt("qq.bot.chat.maxConnections"),
+            XiaoVs.getInt("qq.bot.chat.connectTimeoutMillis"), XiaoVs.getInt("qq.bot.chat.bulkhead.maxConcurrent"),
+            XiaoVs.getInt("qq.bot.chat.breaker.windowSize"), XiaoVs.getInt("qq.bot.chat.breaker.minCalls"),
+            XiaoVs.getFloat("qq.bot.chat.breaker.failureRateThreshold"),
+            XiaoVs.getLong("qq.bot.chat.breaker.openMillis"), XiaoVs.getInt("qq.bot.chat.breaker.halfOpenCalls"));
+
+    /**
+     * Chat backend answering questions.
+     */
+    private final ChatBackend chatBackend = chatBackend();
+
+    /**
+     * Chat backend hedging the slow or failed questions of {@link #chatBackend}, {@code null} if hedging is disabled.
+     */
+    private final ChatBackend hedgeBackend = hedgeBackend();
+
+    /**
+     * Keywords followed, see <i>bot.follow.*</i> in xiaov.properties.
+     */
+    private final FollowKeywords followKeywords = new FollowKeywords(XiaoVs.getString("bot.follow.keywords"),
+            XiaoVs.getString("bot.follow.keywordsFile"), XiaoVs.getLong("bot.follow.keywordsCheckMillis"));
+
+    /**
+     * Router of questions across chat backends, {@code null} if routing is disabled, see <i>qq.bot.router.*</i> in
+     * xiaov.properties.
+     */
+    private final ChatRouter chatRouter = chatRouter();
+
+    /**
+     * Hedger of questions, see <i>qq.bot.hedge.*</i> in xiaov.properties.
+     */
+    private final ChatHedger chatHedger = new ChatHedger(timer, CHAT_TIMEOUT,
+            XiaoVs.getFloat("qq.bot.hedge.percentile"), XiaoVs.getLong("qq.bot.hedge.initialDelayMillis"),
+            XiaoVs.getLong("qq.bot.hedge.minDelayMillis"), XiaoVs.getFloat("qq.bot.hedge.budgetRatio"), chatRouter);
 
     /**
      * Bot type.
@@ -141,14 +326,19 @@ public class QQService {
     private static final int QQ_BOT_TYPE = XiaoVs.getInt("qq.bot.type");
 
     /**
-     * Advertisements.
+     * Names of the built-in chat backends by bot type.
      */
-    private static final List<String> ADS = new ArrayList<>();
+    private static final String[] QQ_BOT_TYPE_BACKENDS = {null, "turing", "baidu", "itpk"};
+
+    /**
+     * 智能回复的超时时间（毫秒）.
+     */
+    private static final long CHAT_TIMEOUT = XiaoVs.getLong("qq.bot.chat.timeoutMillis");
 
     /**
-     * URL fetch service.
+     * Advertisements.
      */
-    private static final URLFetchService URL_FETCH_SVC = URLFetchServiceFactory.getURLFetchService();
+    private static final List<String> ADS = new ArrayList<>();
 
     /**
      * XiaoV self intro. Built-in advertisement.
@@ -176,9 +366,39 @@ public class QQService {
     private static final Set<Long> UNPUSH_GROUPS = new CopyOnWriteArraySet<>();
 
     /**
-     * 一次群推操作最多只推送 {@value #PUSH_GROUP_COUNT} 个群（为了尽量保证成功率）.
+     * 一次群推操作最多推送的群数，0 表示推送所有符合条件的群.
+     */
+    private static final int PUSH_MAX_GROUPS = XiaoVs.getInt("qq.bot.push.maxGroups");
+
+    /**
+     * 消息送达确认的检查间隔（毫秒）.
+     */
+    private static final long ACK_CHECK_INTERVAL = 3500;
+
+    /**
+     * 消息送达确认的最大重发次数.
+     */
+    private static final int ACK_MAX_RETRIES = 3;
+
+    /**
+     * 关闭时等待转发论坛消息的最长时间（毫秒）.
+     */
+    private static final long FORUM_SHUTDOWN_TIMEOUT = 5000;
+
+    /**
+     * Conversation type friend.
+     */
+    private static final int CONVERSATION_USER = 0;
+
+    /**
+     * Conversation type group.
+     */
+    private static final int CONVERSATION_GROUP = 1;
+
+    /**
+     * Conversation type discuss.
      */
-    private static final int PUSH_GROUP_COUNT = 5;
+    private static final int CONVERSATION_DISCUSS = 2;
 
     static {
         String adConf = XiaoVs.getString("ads");
@@ -198,70 +418,72 @@ public class QQService {
     public void initQQClient() {
         LOGGER.info("开始初始化小薇");
 
+        final ClientOptions clientOptions = newClientOptions();
+        transport = new HttpTransport(clientOptions);
+
         xiaoV = new SmartQQClient(new MessageCallback() {
             @Override
             public void onMessage(final Message message) {
-                new Thread(new Runnable() {
+                delayInOrder(new Runnable() {
                     @Override
                     public void run() {
                         try {
-                            Thread.sleep(500 + RandomUtils.nextInt(1000));
-
                             final String content = message.getContent();
                             final String key = XiaoVs.getString("qq.bot.key");
                             if (!StringUtils.startsWith(content, key)) { // 不是管理命令，只是普通的私聊
                                 // 让小薇进行自我介绍
-                                xiaoV.sendMessageToFriend(message.getUserId(), XIAO_V_INTRO);
+                                xiaoV.sendMessageToFriendAsync(message.getUserId(), XIAO_V_INTRO, SendPriority.REPLY);
 
                                 return;
                             }
 
                             final String msg = StringUtils.substringAfter(content, key);
                             LOGGER.info("Received admin message: " + msg);
-                            sendToPushQQGroups(msg);
+                            submitPush(msg); // Loads rosters, never on the lane
                         } catch (final Exception e) {
                             LOGGER.log(Level.ERROR, "XiaoV on group message error", e);
                         }
                     }
-                }).start();
+                }, conversation(CONVERSATION_USER, message.getUserId()), humanDelay());
             }
 
             @Override
             public void onGroupMessage(final GroupMessage message) {
-                new Thread(new Runnable() {
+                delayInOrder(new Runnable() {
                     @Override
                     public void run() {
                         try {
-                            Thread.sleep(500 + RandomUtils.nextInt(1000));
-
                             onQQGroupMessage(message);
                         } catch (final Exception e) {
                             LOGGER.log(Level.ERROR, "XiaoV on group message error", e);
                         }
                     }
-                }).start();
+                }, conversation(CONVERSATION_GROUP, message.getGroupId()), humanDelay());
             }
 
             @Override
             public void onDiscussMessage(final DiscussMessage message) {
-                new Thread(new Runnable() {
+                delayInOrder(new Runnable() {
                     @Override
                     public void run() {
                         try {
-                            Thread.sleep(500 + RandomUtils.nextInt(1000));
-
                             onQQDiscussMessage(message);
                         } catch (final Exception e) {
                             LOGGER.log(Level.ERROR, "XiaoV on group message error", e);
                         }
                     }
-                }).start();
+                }, conversation(CONVERSATION_DISCUSS, message.getDiscussId()), humanDelay());
             }
-        });
+        }, clientOptions, transport);
+
+        rosterCache = new RosterCache(xiaoV, XiaoVs.getLong("qq.bot.roster.ttlMillis"),
+                XiaoVs.getLong("qq.bot.roster.maxStaleMillis"), XiaoVs.getInt("qq.bot.roster.refreshThreads"),
+                XiaoVs.getInt("qq.bot.roster.maxSize"));
 
         // Load groups & disscusses
-        reloadGroups();
-        reloadDiscusses();
+        QQ_GROUPS.reload();
+        QQ_DISCUSSES.reload();
+        resumePushes();
 
         LOGGER.info("小薇初始化完毕");
 
@@ -271,43 +493,40 @@ public class QQService {
             xiaoVListener = new SmartQQClient(new MessageCallback() {
                 @Override
                 public void onMessage(final Message message) {
-                    try {
-                        Thread.sleep(500 + RandomUtils.nextInt(1000));
-                        final String content = message.getContent();
-                        final String key = XiaoVs.getString("qq.bot.key");
-                        if (!StringUtils.startsWith(content, key)) { // 不是管理命令
-                            // 让小薇的守护进行自我介绍
-                            xiaoVListener.sendMessageToFriend(message.getUserId(), XIAO_V_LISTENER_INTRO);
-
-                            return;
+                    delayInOrder(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                final String content = message.getContent();
+                                final String key = XiaoVs.getString("qq.bot.key");
+                                if (!StringUtils.startsWith(content, key)) { // 不是管理命令
+                                    // 让小薇的守护进行自我介绍
+                                    xiaoVListener.sendMessageToFriendAsync(message.getUserId(), XIAO_V_LISTENER_INTRO, SendPriority.REPLY);
+
+                                    return;
+                                }
+
+                                final String msg = StringUtils.substringAfter(content, key);
+                                LOGGER.info("Received admin message: " + msg);
+                                submitPush(msg); // Loads rosters, never on the lane
+                            } catch (final Exception e) {
+                                LOGGER.log(Level.ERROR, "XiaoV on group message error", e);
+                            }
                         }
-
-                        final String msg = StringUtils.substringAfter(content, key);
-                        LOGGER.info("Received admin message: " + msg);
-                        sendToPushQQGroups(msg);
-                    } catch (final Exception e) {
-                        LOGGER.log(Level.ERROR, "XiaoV on group message error", e);
-                    }
+                    }, conversation(CONVERSATION_USER, message.getUserId()), humanDelay());
                 }
 
                 @Override
                 public void onGroupMessage(final GroupMessage message) {
-                    final String content = message.getContent();
-
-                    if (GROUP_SENT_MSGS.contains(content)) { // indicates message received
-                        GROUP_SENT_MSGS.remove(content);
-                    }
+                    ackTracker.ack(conversation(CONVERSATION_GROUP, message.getGroupId()), message.getContent());
+                    pushCampaigns.ack(message.getGroupId(), message.getContent());
                 }
 
                 @Override
                 public void onDiscussMessage(final DiscussMessage message) {
-                    final String content = message.getContent();
-
-                    if (DISCUSS_SENT_MSGS.contains(content)) { // indicates message received
-                        DISCUSS_SENT_MSGS.remove(content);
-                    }
+                    ackTracker.ack(conversation(CONVERSATION_DISCUSS, message.getDiscussId()), message.getContent());
                 }
-            });
+            }, clientOptions, transport);
 
             LOGGER.info("小薇的守护初始化完毕");
         }
@@ -315,142 +534,611 @@ public class QQService {
         LOGGER.info("小薇 QQ 机器人服务开始工作！");
     }
 
-    private void sendToForum(final String msg, final String user) {
-        final String forumAPI = XiaoVs.getString("forum.api");
-        final String forumKey = XiaoVs.getString("forum.key");
-
-        final HTTPRequest request = new HTTPRequest();
-        request.setRequestMethod(HTTPRequestMethod.POST);
-
-        try {
-            request.setURL(new URL(forumAPI));
+    /**
+     * Closes QQ client.
+     */
+    public void closeQQClient() {
+        timer.stop();
+        lanes.shutdown();
+        dispatcher.shutdown();
+        pushJobs.shutdown();
+        pushCampaigns.shutdown();
+        forumForwarder.shutdown(FORUM_SHUTDOWN_TIMEOUT);
+        answerCache.save();
+        followKeywords.shutdown();
+        chatBackends.shutdown();
+        if (null != pushJournal) {
+            pushJournal.close();
+        }
+        if (null != rosterCache) {
+            rosterCache.shutdown();
+        }
 
-            final String body = "key=" + URLEncoder.encode(forumKey, "UTF-8")
-                    + "&msg=" + URLEncoder.encode(msg, "UTF-8")
-                    + "&user=" + URLEncoder.encode(user, "UTF-8");
-            request.setPayload(body.getBytes("UTF-8"));
+        for (final SmartQQClient client : new SmartQQClient[]{xiaoV, xiaoVListener}) {
+            if (null == client) {
+                continue;
+            }
 
-            final HTTPResponse response = URL_FETCH_SVC.fetch(request);
-            final int sc = response.getResponseCode();
-            if (HttpServletResponse.SC_OK != sc) {
-                LOGGER.warn("Sends message to Forum status code is [" + sc + "]");
+            try {
+                client.close();
+            } catch (final Exception e) {
+                LOGGER.log(Level.ERROR, "Closes QQ client failed", e);
             }
-        } catch (final Exception e) {
-            LOGGER.log(Level.ERROR, "Sends message to Forum failed: " + e.getMessage());
+        }
+
+        if (null != transport) {
+            transport.close();
         }
     }
 
     /**
-     * Closes QQ client.
+     * Creates QQ client options with configurations.
+     *
+     * @return client options
      */
-    public void closeQQClient() {
-        if (null == xiaoV) {
-            return;
+    private static ClientOptions newClientOptions() {
+        final ClientOptions ret = new ClientOptions();
+        ret.setSendRate(XiaoVs.getFloat("qq.client.sendRate"));
+        ret.setSendBurst(XiaoVs.getInt("qq.client.sendBurst"));
+        ret.setTargetSendRate(XiaoVs.getFloat("qq.client.targetSendRate"));
+        ret.setTargetSendBurst(XiaoVs.getInt("qq.client.targetSendBurst"));
+        ret.setMinSendRate(XiaoVs.getFloat("qq.client.minSendRate"));
+        ret.setMaxSendRate(XiaoVs.getFloat("qq.client.maxSendRate"));
+        ret.setRetryBaseBackoffMillis(XiaoVs.getLong("qq.client.retryBaseBackoffMillis"));
+        ret.setRetryMaxBackoffMillis(XiaoVs.getLong("qq.client.retryMaxBackoffMillis"));
+        ret.setSendAwaitTimeoutMillis(XiaoVs.getLong("qq.client.sendAwaitTimeoutMillis"));
+        ret.setConnectTimeoutMillis(XiaoVs.getInt("qq.client.connectTimeoutMillis"));
+        ret.setPollReadTimeoutMillis(XiaoVs.getInt("qq.client.pollReadTimeoutMillis"));
+        ret.setPollBaseBackoffMillis(XiaoVs.getLong("qq.client.pollBaseBackoffMillis"));
+        ret.setPollMaxBackoffMillis(XiaoVs.getLong("qq.client.pollMaxBackoffMillis"));
+        ret.setPollDegradedThreshold(XiaoVs.getInt("qq.client.pollDegradedThreshold"));
+        ret.setMaxTotal(XiaoVs.getInt("qq.client.http.maxTotal"));
+        ret.setMaxPerRoute(XiaoVs.getInt("qq.client.http.maxPerRoute"));
+        ret.setRequestReadTimeoutMillis(XiaoVs.getInt("qq.client.http.readTimeoutMillis"));
+        ret.setPollMaxTotal(XiaoVs.getInt("qq.client.http.pollMaxTotal"));
+        ret.setKeepAliveMillis(XiaoVs.getLong("qq.client.http.keepAliveMillis"));
+        ret.setConnectionTimeToLiveMillis(XiaoVs.getLong("qq.client.http.timeToLiveMillis"));
+        ret.setIdleTimeoutMillis(XiaoVs.getLong("qq.client.http.idleTimeoutMillis"));
+        ret.setEvictIntervalMillis(XiaoVs.getLong("qq.client.http.evictIntervalMillis"));
+        ret.setValidateAfterInactivityMillis(XiaoVs.getInt("qq.client.http.validateAfterInactivityMillis"));
+
+        return ret;
+    }
+
+    /**
+     * Gets the runtime statistic of this service.
+     *
+     * @return statistic, for example,
+     * <pre>
+     * {
+     *     "dispatcher": {
+     *         "queueSize": int,
+     *         "rejected": long,
+     *         ....
+     *     },
+     *     "timer": {
+     *         "pending": long,
+     *         ....
+     *     },
+     *     "lanes": [{
+     *         "queueSize": int,
+     *         "avgWaitMillis": double,
+     *         ....
+     *     }, ....],
+     *     "sender": {
+     *         "pendingREPLY": int,
+     *         "sent": long,
+     *         ....
+     *     },
+     *     "poll": {
+     *         "health": "HEALTHY",
+     *         "polls": long,
+     *         ....
+     *     },
+     *     "listenerPoll": {....},
+     *     "http": {
+     *         "request": {
+     *             "leased": int,
+     *             "pending": int,
+     *             "available": int,
+     *             "max": int,
+     *             "routes": {"d1.web2.qq.com": {....}, ....}
+     *         },
+     *         "poll": {....}
+     *     },
+     *     "roster": {
+     *         "group": {
+     *             "size": int,
+     *             "hits": long,
+     *             "staleHits": long,
+     *             ....
+     *         },
+     *         "discuss": {....},
+     *         "refresher": {....}
+     *     },
+     *     "groups": {
+     *         "size": int,
+     *         "reloads": long,
+     *         "coalesced": long,
+     *         "throttled": long,
+     *         ....
+     *     },
+     *     "discusses": {....},
+     *     "push": {
+     *         "sent": long,
+     *         "failed": long,
+     *         "acked": long,
+     *         "campaigns": [{
+     *             "id": long,
+     *             "progress": double,
+     *             "throughput": double,
+     *             ....
+     *         }, ....]
+     *     },
+     *     "pushJobs": {
+     *         "queueSize": int,
+     *         "submitted": long,
+     *         "duplicates": long,
+     *         ....
+     *     },
+     *     "pushJournal": {
+     *         "fileBytes": long,
+     *         "queueSize": int,
+     *         "fsyncs": long,
+     *         ....
+     *     },
+     *     "forum": {
+     *         "queueSize": int,
+     *         "sent": long,
+     *         "batches": long,
+     *         "dropped": long,
+     *         "avgPostMillis": double,
+     *         ....
+     *         "spool": {
+     *             "pending": long,
+     *             "diskBytes": long,
+     *             ....
+     *         }
+     *     },
+     *     "answerCache": {
+     *         "size": int,
+     *         "weight": long,
+     *         "hits": long,
+     *         "misses": long,
+     *         "evictions": long,
+     *         ....
+     *     },
+     *     "chat": {
+     *         "backends": ["turing", "baidu", "itpk"],
+     *         "executor": {....},
+     *         "connections": {....}
+     *     },
+     *     "hedge": {
+     *         "backend": "baidu",
+     *         "budget": double,
+     *         "backends": {
+     *             "turing": {"calls": long, "hedgeRate": double, "winRate": double, "p95": long, ....},
+     *             ....
+     *         }
+     *     },
+     *     "router": {
+     *         "turing": {"inRotation": boolean, "reason": "ok", "weight": double, "remaining": long, ....},
+     *         ....
+     *     },
+     *     "followKeywords": {"keywords": int, "file": "", "fileModified": long, "reloads": long}
+     * }
+     * </pre>
+     */
+    public JSONObject getStat() {
+        final JSONObject ret = new JSONObject();
+
+        ret.put("dispatcher", dispatcher.getStat());
+        ret.put("timer", timer.getStat());
+        ret.put("lanes", lanes.getStat());
+        if (null != xiaoV) {
+            ret.put("sender", new JSONObject(xiaoV.getSendStat()));
+            ret.put("poll", new JSONObject(xiaoV.getPollStat()));
+        }
+        if (null != xiaoVListener) {
+            ret.put("listenerPoll", new JSONObject(xiaoVListener.getPollStat()));
+        }
+        if (null != transport) {
+            ret.put("http", new JSONObject(transport.getStat()));
         }
+        if (null != rosterCache) {
+            ret.put("roster", rosterCache.getStat());
+        }
+        ret.put("groups", QQ_GROUPS.getStat());
+        ret.put("discusses", QQ_DISCUSSES.getStat());
+        ret.put("push", pushCampaigns.getStat());
+        ret.put("pushJobs", pushJobs.getStat());
+        if (null != pushJournal) {
+            ret.put("pushJournal", pushJournal.getStat());
+        }
+        ret.put("forum", forumForwarder.getStat());
+        ret.put("answerCache", answerCache.getStat());
+        ret.put("chat", chatBackends.getStat());
+        final JSONObject hedge = chatHedger.getStat();
+        hedge.put("backend", null == hedgeBackend ? JSONObject.NULL : hedgeBackend.getName());
+        ret.put("hedge", hedge);
+        if (null != chatRouter) {
+            ret.put("router", chatRouter.getStat());
+        }
+        ret.put("followKeywords", followKeywords.getStat());
+        if (MSG_ACK_ENABLED) {
+            ret.put("ack", ackTracker.getStat());
+        }
+
+        return ret;
+    }
 
+    /**
+     * Schedules the specified task to be executed on the lane of the specified conversation after the specified
+     * delay.
+     *
+     * <p>
+     * The fire time of a conversation never goes backwards, so tasks of one conversation are executed in the order
+     * they are scheduled even if a later one gets a shorter random delay.
+     * </p>
+     *
+     * @param task the specified task
+     * @param conversation the specified conversation, see {@link #conversation(int, long)}
+     * @param delayMillis the specified delay in milliseconds
+     */
+    private void delayInOrder(final Runnable task, final long conversation, final long delayMillis) {
+        final long now = System.currentTimeMillis();
+
+        Long latest;
+        long due;
+        do {
+            latest = REPLY_DUE_TIME.get(conversation);
+            due = null == latest ? now + delayMillis : Math.max(now + delayMillis, latest + 1);
+        } while (null == latest ? null != REPLY_DUE_TIME.putIfAbsent(conversation, due)
+                : !REPLY_DUE_TIME.replace(conversation, latest, due));
+
+        final long dueTime = due;
         try {
-            xiaoV.close();
-        } catch (final Exception e) {
-            LOGGER.log(Level.ERROR, "Closes QQ client failed", e);
+            timer.newTimeout(new Runnable() {
+                @Override
+                public void run() {
+                    REPLY_DUE_TIME.remove(conversation, dueTime);
+
+                    try {
+                        lanes.execute(conversation, task);
+                    } catch (final RejectedExecutionException e) {
+                        LOGGER.log(Level.WARN, "Lane is full, drops a message [conversation=" + conversation + "]");
+                    }
+                }
+            }, due - now, TimeUnit.MILLISECONDS);
+        } catch (final RejectedExecutionException e) {
+            REPLY_DUE_TIME.remove(conversation, dueTime);
+
+            LOGGER.log(Level.WARN, "Timer is full, drops a message [pending=" + timer.getPendingCount() + "]");
         }
     }
 
+    /**
+     * Gets the conversation key of the specified type and id.
+     *
+     * @param type the specified type, {@link #CONVERSATION_USER}/{@link #CONVERSATION_GROUP}/{@link #CONVERSATION_DISCUSS}
+     * @param id the specified user id, group id or discuss id
+     * @return conversation key
+     */
+    private static long conversation(final int type, final long id) {
+        return id << 2 | type;
+    }
+
+    /**
+     * Gets a random "human" reply delay.
+     *
+     * @return delay in milliseconds, [500, 1500)
+     */
+    private static long humanDelay() {
+        return 500 + RandomUtils.nextInt(1000);
+    }
+
+    /**
+     * Submits a push job of the specified message, returns at once.
+     *
+     * <p>
+     * Submissions are idempotent by message hash, see {@link PushJobQueue}.
+     * </p>
+     *
+     * @param msg the specified message
+     * @return job
+     */
+    public PushJobQueue.Job submitPush(final String msg) {
+        return pushJobs.submit(msg);
+    }
+
+    /**
+     * Gets the push job of the specified id.
+     *
+     * @param jobId the specified job id
+     * @return job, returns {@code null} if not found
+     */
+    public PushJobQueue.Job getPushJob(final long jobId) {
+        return pushJobs.getJob(jobId);
+    }
+
     /**
      * Sends the specified article to QQ groups.
      *
      * @param msg the specified message
+     * @return campaign, returns {@code null} if no campaign started
      */
-    public void sendToPushQQGroups(final String msg) {
+    public PushCampaign sendToPushQQGroups(final String msg) {
         try {
             final String pushGroupsConf = XiaoVs.getString("qq.bot.pushGroups");
             if (StringUtils.isBlank(pushGroupsConf)) {
-                return;
+                return null;
             }
 
             // Push to all groups
             if (StringUtils.equals(pushGroupsConf, "*")) {
-                int totalUserCount = 0;
-                int groupCount = 0;
-
                 if (UNPUSH_GROUPS.isEmpty()) { // 如果没有可供推送的群（群都推送过了）
-                    reloadGroups();
+                    QQ_GROUPS.reload();
+                    for (final Group group : QQ_GROUPS.values()) { // 开始新一轮推送
+                        UNPUSH_GROUPS.add(group.getId());
+                    }
+                    if (null != pushJournal) {
+                        pushJournal.rotationReset();
+                    }
                 }
 
-                for (final Map.Entry<Long, Group> entry : QQ_GROUPS.entrySet()) {
-                    long groupId = 0;
-                    int userCount = 0;
-
-                    try {
-                        final Group group = entry.getValue();
-                        groupId = group.getId();
+                final List<Group> pushGroups = new ArrayList<>();
+                for (final Group group : QQ_GROUPS.values()) {
+                    if (UNPUSH_GROUPS.contains(group.getId())) { // 如果该群已经被推送过则跳过本次推送
+                        pushGroups.add(group);
+                    }
+                }
 
-                        final GroupInfo groupInfo = xiaoV.getGroupInfo(group.getCode());
-                        userCount = groupInfo.getUsers().size();
-                        if (userCount < PUSH_GROUP_USER_COUNT) {
-                            // 把人不多的群过滤掉
-                            UNPUSH_GROUPS.remove(groupId);
+                final List<PushCampaign.Target> targets = pushTargets(pushGroups, PUSH_GROUP_USER_COUNT);
+                final PushCampaign ret = startCampaign(msg, targets, PUSH_MAX_GROUPS, true);
 
-                            continue;
-                        }
+                // 把人不多的群和本次推送的群从未推送中移除，超出本次推送数量的群留到下次推送
+                final Set<Long> pushedGroupIds = new HashSet<>();
+                for (final PushCampaign.Target target : ret.getTargets()) {
+                    pushedGroupIds.add(target.getGroup().getId());
+                }
+                for (final Group group : pushGroups) {
+                    UNPUSH_GROUPS.remove(group.getId());
+                }
+                for (final PushCampaign.Target target : targets) {
+                    if (!pushedGroupIds.contains(target.getGroup().getId())) {
+                        UNPUSH_GROUPS.add(target.getGroup().getId());
+                    }
+                }
 
-                        if (!UNPUSH_GROUPS.contains(groupId)) {
-                            // 如果该群已经被推送过则跳过本次推送
-                            continue;
-                        }
+                return ret;
+            }
 
-                        if (groupCount >= PUSH_GROUP_COUNT) { // 如果本次群推操作已推送群数大于设定的阈值
-                            break;
-                        }
+            // Push to the specified groups
+            final String[] groups = pushGroupsConf.split(",");
+            final List<Group> pushGroups = new ArrayList<>();
+            for (final Group group : QQ_GROUPS.values()) {
+                if (Strings.contains(group.getName(), groups)) {
+                    pushGroups.add(group);
+                }
+            }
 
-                        LOGGER.info("群发 [" + msg + "] 到 QQ 群 [" + group.getName() + ", 成员数=" + userCount + "]");
-                        xiaoV.sendMessageToGroup(groupId, msg); // Without retry
+            return startCampaign(msg, pushTargets(pushGroups, 100), 0, false);
+        } catch (final Exception e) {
+            LOGGER.log(Level.ERROR, "Push message [" + msg + "] to groups failed", e);
 
-                        UNPUSH_GROUPS.remove(groupId); // 从未推送中移除（说明已经推送过）
+            return null;
+        }
+    }
 
-                        totalUserCount += userCount;
-                        groupCount++;
+    /**
+     * Gets the push targets of the specified groups, groups with fewer members than the specified min member count
+     * are filtered out.
+     *
+     * <p>
+     * The rosters are prefetched first, so rosters missed by the loop are already being loaded in parallel when it
+     * gets there.
+     * </p>
+     *
+     * @param groups the specified groups
+     * @param minMemberCount the specified min member count
+     * @return push targets
+     */
+    private List<PushCampaign.Target> pushTargets(final List<Group> groups, final int minMemberCount) {
+        final List<Long> groupCodes = new ArrayList<>(groups.size());
+        for (final Group group : groups) {
+            groupCodes.add(group.getCode());
+        }
+        rosterCache.prefetchGroups(groupCodes);
 
-                        Thread.sleep(1000 * 10);
-                    } catch (final Exception e) {
-                        LOGGER.log(Level.ERROR, "群发异常", e);
-                    }
+        final List<PushCampaign.Target> ret = new ArrayList<>(groups.size());
+        for (final Group group : groups) {
+            try {
+                final int memberCount = rosterCache.getGroupMemberCount(group.getCode());
+                if (memberCount >= minMemberCount) {
+                    ret.add(new PushCampaign.Target(group, memberCount));
                 }
+            } catch (final Exception e) {
+                LOGGER.log(Level.ERROR, "Gets member count of group [" + group.getName() + "] failed", e);
+            }
+        }
 
-                LOGGER.info("一共推送了 [" + groupCount + "] 个群，覆盖 [" + totalUserCount + "] 个 QQ");
+        return ret;
+    }
+
+    /**
+     * Starts a push campaign to the specified targets.
+     *
+     * @param msg the specified message
+     * @param targets the specified targets
+     * @param maxTargets the specified max target count, {@code 0} means all
+     * @param rotation whether targets of the campaign count as pushed in the current rotation of all groups
+     * @return campaign
+     */
+    private PushCampaign startCampaign(final String msg, final List<PushCampaign.Target> targets,
+            final int maxTargets, final boolean rotation) {
+        final PushCampaign ret = pushCampaigns.start(msg, targets, maxTargets, rotation);
 
-                return;
+        int userCount = 0;
+        for (final PushCampaign.Target target : ret.getTargets()) {
+            userCount += target.getMemberCount();
+        }
+        LOGGER.info("一共安排推送 [" + ret.getTargets().size() + "] 个群，覆盖 [" + userCount + "] 个 QQ");
+
+        return ret;
+    }
+
+    /**
+     * Restores the push rotation and resumes unfinished campaigns from the push journal.
+     *
+     * <p>
+     * Group ids may change between WebQQ sessions, so journaled groups are matched by id and then by name. Pending
+     * targets whose group is gone are marked failed.
+     * </p>
+     */
+    private void resumePushes() {
+        if (null == pushJournal) {
+            return;
+        }
+
+        final PushJournal.Replay replay = pushJournal.getReplay();
+        for (final Map.Entry<Long, String> pushed : replay.getRotationPushed().entrySet()) {
+            final Group group = findGroup(pushed.getKey(), pushed.getValue());
+            if (null != group) {
+                UNPUSH_GROUPS.remove(group.getId());
             }
+        }
 
-            // Push to the specified groups
-            final String[] groups = pushGroupsConf.split(",");
-            for (final Map.Entry<Long, Group> entry : QQ_GROUPS.entrySet()) {
-                final Group group = entry.getValue();
-                final String name = group.getName();
-
-                if (Strings.contains(name, groups)) {
-                    final GroupInfo groupInfo = xiaoV.getGroupInfo(group.getCode());
-                    final int userCount = groupInfo.getUsers().size();
-                    if (userCount < 100) {
-                        continue;
+        for (final PushJournal.CampaignState state : replay.getCampaigns()) {
+            final List<PushCampaign.Target> targets = new ArrayList<>();
+            for (final PushJournal.TargetState targetState : state.getTargets()) {
+                PushCampaign.Status status = targetState.getStatus();
+                Group group = findGroup(targetState.getGroupId(), targetState.getName());
+                if (null == group) {
+                    group = new Group();
+                    group.setId(targetState.getGroupId());
+                    group.setName(targetState.getName());
+                    if (PushCampaign.Status.PENDING == status) {
+                        status = PushCampaign.Status.FAILED;
                     }
+                }
+                targets.add(new PushCampaign.Target(group, targetState.getMemberCount(), status));
+            }
 
-                    LOGGER.info("Pushing [msg=" + msg + "] to QQ qun [" + group.getName() + "]");
-                    xiaoV.sendMessageToGroup(group.getId(), msg); // Without retry
+            pushCampaigns.resume(new PushCampaign(state.getId(), state.getMsg(), false, targets));
+        }
+    }
 
-                    Thread.sleep(1000 * 10);
-                }
+    /**
+     * Finds the group of the specified id and name.
+     *
+     * @param groupId the specified group id
+     * @param name the specified group name
+     * @return group, returns {@code null} if not found
+     */
+    private Group findGroup(final long groupId, final String name) {
+        final Group ret = QQ_GROUPS.get(groupId);
+        if (null != ret && StringUtils.equals(ret.getName(), name)) {
+            return ret;
+        }
+
+        for (final Group group : QQ_GROUPS.values()) {
+            if (StringUtils.equals(group.getName(), name)) {
+                return group;
             }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Opens the push journal with configurations.
+     *
+     * @return push journal, returns {@code null} if disabled or opens failed
+     */
+    private static PushJournal openPushJournal() {
+        final String path = XiaoVs.getString("qq.bot.push.journal.path");
+        if (StringUtils.isBlank(path)) {
+            return null;
+        }
+
+        try {
+            return new PushJournal(path, XiaoVs.getLong("qq.bot.push.journal.fsyncIntervalMillis"),
+                    XiaoVs.getLong("qq.bot.push.journal.compactThresholdBytes"),
+                    XiaoVs.getInt("qq.bot.push.journal.queueCapacity"));
         } catch (final Exception e) {
-            LOGGER.log(Level.ERROR, "Push message [" + msg + "] to groups failed", e);
+            LOGGER.log(Level.ERROR, "Opens push journal [" + path + "] failed, push progress will not survive restarts",
+                    e);
+
+            return null;
         }
     }
 
-    private void sendMessageToGroup(final Long groupId, final String msg) {
-        Group group = QQ_GROUPS.get(groupId);
-        if (null == group) {
-            reloadGroups();
+    /**
+     * Opens the forum spool with configurations.
+     *
+     * @return forum spool, returns {@code null} if disabled or opens failed
+     */
+    private static ForumSpool openForumSpool() {
+        final String dir = XiaoVs.getString("forum.spool.dir");
+        if (StringUtils.isBlank(dir)) {
+            return null;
+        }
+
+        try {
+            return new ForumSpool(dir, XiaoVs.getInt("forum.spool.segmentBytes"),
+                    XiaoVs.getLong("forum.spool.maxBytes"), XiaoVs.getLong("forum.spool.retentionMillis"));
+        } catch (final Exception e) {
+            LOGGER.log(Level.ERROR, "Opens forum spool [" + dir + "] failed, forum messages will be dropped when the "
+                    + "forum is down", e);
+
+            return null;
+        }
+    }
+
+    /**
+     * Reloads the groups or discusses off the lanes since the specified conversation is unknown, then runs the
+     * specified send on the lane of the conversation again.
+     *
+     * @param type the specified conversation type, {@link #CONVERSATION_GROUP}/{@link #CONVERSATION_DISCUSS}
+     * @param id the specified group id or discuss id
+     * @param send the specified send
+     */
+    private void reloadOffLane(final int type, final long id, final Runnable send) {
+        final long conversation = conversation(type, id);
+        try {
+            dispatcher.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (CONVERSATION_GROUP == type) {
+                        QQ_GROUPS.getOrReload(id);
+                    } else {
+                        QQ_DISCUSSES.getOrReload(id);
+                    }
+
+                    try {
+                        lanes.execute(conversation, send);
+                    } catch (final RejectedExecutionException e) {
+                        LOGGER.log(Level.WARN, "Lane is full, drops a reply [conversation=" + conversation + "]");
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            LOGGER.log(Level.WARN, "Dispatcher is full, drops a reply [conversation=" + conversation + "]");
+        }
+    }
+
+    private void sendMessageToGroup(final Long groupId, final String msg, final boolean reloaded) {
+        final Group group = QQ_GROUPS.get(groupId); // Never reloads on the lane
+
+        if (null == group && !reloaded) {
+            reloadOffLane(CONVERSATION_GROUP, groupId, new Runnable() {
+                @Override
+                public void run() {
+                    sendMessageToGroup(groupId, msg, true);
+                }
+            });
 
-            group = QQ_GROUPS.get(groupId);
+            return;
         }
 
         if (null == group) {
@@ -462,49 +1150,38 @@ public class QQService {
         }
 
         LOGGER.info("Pushing [msg=" + msg + "] to QQ qun [" + group.getName() + "]");
-        xiaoV.sendMessageToGroup(groupId, msg);
+        xiaoV.sendMessageToGroupAsync(groupId, msg, SendPriority.REPLY);
 
         if (MSG_ACK_ENABLED) { // 如果启用了消息送达确认
             // 进行消息重发
-
-            GROUP_SENT_MSGS.add(msg);
-
-            if (GROUP_SENT_MSGS.size() > QQ_GROUPS.size() * 5) {
-                GROUP_SENT_MSGS.remove(0);
-            }
-
-            final int maxRetries = 3;
-            int retries = 0;
-            int sentTries = 0;
-            while (retries < maxRetries) {
-                retries++;
-
-                try {
-                    Thread.sleep(3500);
-                } catch (final Exception e) {
-                    continue;
-                }
-
-                if (GROUP_SENT_MSGS.contains(msg)) {
+            ackTracker.track(conversation(CONVERSATION_GROUP, groupId), msg, new AckTracker.Delivery() {
+                @Override
+                public void resend(final int retries) {
                     LOGGER.info("Pushing [msg=" + msg + "] to QQ qun [" + group.getName() + "] with retries [" + retries + "]");
-                    xiaoV.sendMessageToGroup(groupId, msg);
-                    sentTries++;
+                    xiaoV.sendMessageToGroupAsync(groupId, msg, SendPriority.REPLY);
                 }
-            }
 
-            if (maxRetries == sentTries) {
-                LOGGER.info("Pushing [msg=" + msg + "] to QQ qun [" + group.getName() + "]");
-                xiaoV.sendMessageToGroup(groupId, NO_LISTENER);
-            }
+                @Override
+                public void giveUp() {
+                    LOGGER.info("Pushing [msg=" + msg + "] to QQ qun [" + group.getName() + "]");
+                    xiaoV.sendMessageToGroupAsync(groupId, NO_LISTENER, SendPriority.AD);
+                }
+            });
         }
     }
 
-    private void sendMessageToDiscuss(final Long discussId, final String msg) {
-        Discuss discuss = QQ_DISCUSSES.get(discussId);
-        if (null == discuss) {
-            reloadDiscusses();
+    private void sendMessageToDiscuss(final Long discussId, final String msg, final boolean reloaded) {
+        final Discuss discuss = QQ_DISCUSSES.get(discussId); // Never reloads on the lane
+
+        if (null == discuss && !reloaded) {
+            reloadOffLane(CONVERSATION_DISCUSS, discussId, new Runnable() {
+                @Override
+                public void run() {
+                    sendMessageToDiscuss(discussId, msg, true);
+                }
+            });
 
-            discuss = QQ_DISCUSSES.get(discussId);
+            return;
         }
 
         if (null == discuss) {
@@ -516,109 +1193,143 @@ public class QQService {
         }
 
         LOGGER.info("Pushing [msg=" + msg + "] to QQ discuss [" + discuss.getName() + "]");
-        xiaoV.sendMessageToDiscuss(discussId, msg);
+        xiaoV.sendMessageToDiscussAsync(discussId, msg, SendPriority.REPLY);
 
         if (MSG_ACK_ENABLED) { // 如果启用了消息送达确认
             // 进行消息重发
-
-            DISCUSS_SENT_MSGS.add(msg);
-
-            if (DISCUSS_SENT_MSGS.size() > QQ_DISCUSSES.size() * 5) {
-                DISCUSS_SENT_MSGS.remove(0);
-            }
-
-            final int maxRetries = 3;
-            int retries = 0;
-            int sentTries = 0;
-            while (retries < maxRetries) {
-                retries++;
-
-                try {
-                    Thread.sleep(3500);
-                } catch (final Exception e) {
-                    continue;
-                }
-
-                if (GROUP_SENT_MSGS.contains(msg)) {
+            ackTracker.track(conversation(CONVERSATION_DISCUSS, discussId), msg, new AckTracker.Delivery() {
+                @Override
+                public void resend(final int retries) {
                     LOGGER.info("Pushing [msg=" + msg + "] to QQ discuss [" + discuss.getName() + "] with retries [" + retries + "]");
-                    xiaoV.sendMessageToDiscuss(discussId, msg);
-                    sentTries++;
+                    xiaoV.sendMessageToDiscussAsync(discussId, msg, SendPriority.REPLY);
                 }
-            }
 
-            if (maxRetries == sentTries) {
-                LOGGER.info("Pushing [msg=" + msg + "] to QQ discuss [" + discuss.getName() + "]");
-                xiaoV.sendMessageToDiscuss(discussId, NO_LISTENER);
-            }
+                @Override
+                public void giveUp() {
+                    LOGGER.info("Pushing [msg=" + msg + "] to QQ discuss [" + discuss.getName() + "]");
+                    xiaoV.sendMessageToDiscussAsync(discussId, NO_LISTENER, SendPriority.AD);
+                }
+            });
         }
     }
 
     public void onQQGroupMessage(final GroupMessage message) {
-        final long groupId = message.getGroupId();
-
-        final String content = message.getContent();
+        final ChatMessage chatMessage = ChatMessage.of(message.getSegments());
         final String userName = Long.toHexString(message.getUserId());
         // Push to forum
-        String qqMsg = content.replaceAll("\\[\"face\",[0-9]+\\]", "");
-        if (StringUtils.isNotBlank(qqMsg)) {
-            qqMsg = "<p>" + qqMsg + "</p>";
-            sendToForum(qqMsg, userName);
+        if (StringUtils.isNotBlank(chatMessage.getText())) {
+            forumForwarder.forward("<p>" + chatMessage.getText() + "</p>", userName);
         }
 
-        String msg = "";
-        if (StringUtils.contains(content, XiaoVs.QQ_BOT_NAME)
-                || (StringUtils.length(content) > 6
-                && (StringUtils.contains(content, "?") || StringUtils.contains(content, "？") || StringUtils.contains(content, "问")))) {
-            msg = answer(content, userName);
+        if (chatMessage.isTrigger()) {
+            answer(chatMessage, userName, CONVERSATION_GROUP, message.getGroupId());
         }
+    }
 
-        if (StringUtils.isBlank(msg)) {
-            return;
+    public void onQQDiscussMessage(final DiscussMessage message) {
+        final ChatMessage chatMessage = ChatMessage.of(message.getSegments());
+        final String userName = Long.toHexString(message.getUserId());
+        // Push to forum
+        if (StringUtils.isNotBlank(chatMessage.getText())) {
+            forumForwarder.forward("<p>" + chatMessage.getText() + "</p>", userName);
         }
 
-        if (RandomUtils.nextFloat() >= 0.9) {
-            Long latestAdTime = GROUP_AD_TIME.get(groupId);
-            if (null == latestAdTime) {
-                latestAdTime = 0L;
-            }
-
-            final long now = System.currentTimeMillis();
+        if (chatMessage.isTrigger()) {
+            answer(chatMessage, userName, CONVERSATION_DISCUSS, message.getDiscussId());
+        }
+    }
 
-            if (now - latestAdTime > 1000 * 60 * 30) {
-                msg = msg + "\n\n（" + ADS.get(RandomUtils.nextInt(ADS.size())) + "）";
+    /**
+     * Answers the specified message on the lane of the specified conversation.
+     *
+     * <p>
+     * A keyword or cached answer is replied at once. A question to the chat backends never blocks the lane, its answer
+     * is replied by a task posted back onto the lane.
+     * </p>
+     *
+     * @param chatMessage the specified message
+     * @param userName the specified asker
+     * @param type the specified conversation type, {@link #CONVERSATION_GROUP}/{@link #CONVERSATION_DISCUSS}
+     * @param id the specified group id or discuss id
+     */
+    private void answer(final ChatMessage chatMessage, final String userName, final int type, final long id) {
+        final String question = chatMessage.getQuestion();
+        final String keyword = followKeywords.match(question);
 
-                GROUP_AD_TIME.put(groupId, now);
+        if (StringUtils.isNotBlank(keyword)) {
+            try {
+                String ret = XiaoVs.getString("bot.follow.keywordAnswer");
+                ret = StringUtils.replace(ret, "{keyword}",
+                        URLEncoder.encode(keyword, "UTF-8"));
+                reply(type, id, ret);
+            } catch (final UnsupportedEncodingException e) {
+                LOGGER.log(Level.ERROR, "Search key encoding failed", e);
             }
-        }
 
-        sendMessageToGroup(groupId, msg);
-    }
+            return;
+        }
 
-    public void onQQDiscussMessage(final DiscussMessage message) {
-        final long discussId = message.getDiscussId();
+        if (!chatMessage.isMentioned()) {
+            return;
+        }
 
-        final String content = message.getContent();
-        final String userName = Long.toHexString(message.getUserId());
-        // Push to forum
-        String qqMsg = content.replaceAll("\\[\"face\",[0-9]+\\]", "");
-        if (StringUtils.isNotBlank(qqMsg)) {
-            qqMsg = "<p>" + qqMsg + "</p>";
-            sendToForum(qqMsg, userName);
+        final ChatRouter.Route route = null == chatRouter
+                ? new ChatRouter.Route(chatBackend, hedgeBackend) : chatRouter.route();
+        String cached = answerCache.get(route.getPrimary().getName(), question);
+        if (null == cached && null != route.getHedge()) {
+            cached = answerCache.get(route.getHedge().getName(), question);
         }
+        if (null != cached) {
+            reply(type, id, StringUtils.isBlank(cached) ? "嗯~" : cached);
 
-        String msg = "";
-        if (StringUtils.contains(content, XiaoVs.QQ_BOT_NAME)
-                || (StringUtils.length(content) > 6
-                && (StringUtils.contains(content, "?") || StringUtils.contains(content, "？") || StringUtils.contains(content, "问")))) {
-            msg = answer(content, userName);
+            return;
         }
 
+        final long conversation = conversation(type, id);
+        chatHedger.chat(route.getPrimary(), route.getHedge(), userName, chatMessage, new ChatHedger.Callback() {
+            @Override
+            public void onAnswer(final ChatHedger.Answer answer) {
+                String text = null;
+                if (null != answer) {
+                    text = answer.getText();
+                    answerCache.put(answer.getBackend(), question, text);
+                }
+                final String msg = StringUtils.isBlank(text) ? "嗯~" : text;
+
+                try {
+                    lanes.execute(conversation, new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                reply(type, id, msg);
+                            } catch (final Exception e) {
+                                LOGGER.log(Level.ERROR, "XiaoV reply error", e);
+                            }
+                        }
+                    });
+                } catch (final RejectedExecutionException e) {
+                    LOGGER.log(Level.WARN, "Lane is full, drops a reply [conversation=" + conversation + "]");
+                }
+            }
+        });
+    }
+
+    /**
+     * Replies the specified message to the specified conversation, sometimes with an ad.
+     *
+     * @param type the specified conversation type, {@link #CONVERSATION_GROUP}/{@link #CONVERSATION_DISCUSS}
+     * @param id the specified group id or discuss id
+     * @param msg the specified message
+     */
+    private void reply(final int type, final long id, final String msg) {
         if (StringUtils.isBlank(msg)) {
             return;
         }
 
+        final Map<Long, Long> adTimes = CONVERSATION_GROUP == type ? GROUP_AD_TIME : DISCUSS_AD_TIME;
+        String ret = msg;
         if (RandomUtils.nextFloat() >= 0.9) {
-            Long latestAdTime = DISCUSS_AD_TIME.get(discussId);
+            Long latestAdTime = adTimes.get(id);
             if (null == latestAdTime) {
                 latestAdTime = 0L;
             }
@@ -626,90 +1337,78 @@ public class QQService {
             final long now = System.currentTimeMillis();
 
             if (now - latestAdTime > 1000 * 60 * 30) {
-                msg = msg + "\n\n（" + ADS.get(RandomUtils.nextInt(ADS.size())) + "）";
+                ret = ret + "\n\n（" + ADS.get(RandomUtils.nextInt(ADS.size())) + "）";
 
-                DISCUSS_AD_TIME.put(discussId, now);
+                adTimes.put(id, now);
             }
         }
 
-        sendMessageToDiscuss(discussId, msg);
+        if (CONVERSATION_GROUP == type) {
+            sendMessageToGroup(id, ret, false);
+        } else {
+            sendMessageToDiscuss(id, ret, false);
+        }
     }
 
-    private String answer(final String content, final String userName) {
-        String keyword = "";
-        String[] keywords = StringUtils.split(XiaoVs.getString("bot.follow.keywords"), ",");
-        keywords = Strings.trimAll(keywords);
-        for (final String kw : keywords) {
-            if (StringUtils.containsIgnoreCase(content, kw)) {
-                keyword = kw;
-
-                break;
-            }
+    private ChatBackend chatBackend() {
+        String name = XiaoVs.getString("qq.bot.backend");
+        if (StringUtils.isBlank(name) && 0 < QQ_BOT_TYPE && QQ_BOT_TYPE < QQ_BOT_TYPE_BACKENDS.length) {
+            name = QQ_BOT_TYPE_BACKENDS[QQ_BOT_TYPE];
         }
 
-        String ret = "";
-        if (StringUtils.isNotBlank(keyword)) {
-            try {
-                ret = XiaoVs.getString("bot.follow.keywordAnswer");
-                ret = StringUtils.replace(ret, "{keyword}",
-                        URLEncoder.encode(keyword, "UTF-8"));
-            } catch (final UnsupportedEncodingException e) {
-                LOGGER.log(Level.ERROR, "Search key encoding failed", e);
-            }
-        } else if (StringUtils.contains(content, XiaoVs.QQ_BOT_NAME)) {
-            if (1 == QQ_BOT_TYPE) {
-                ret = turingQueryService.chat(userName, content);
-                ret = StringUtils.replace(ret, "图灵机器人", XiaoVs.QQ_BOT_NAME + "机器人");
-                ret = StringUtils.replace(ret, "默认机器人", XiaoVs.QQ_BOT_NAME + "机器人");
-
-                ret = StringUtils.replace(ret, "<br>", "\n");
-            } else if (2 == QQ_BOT_TYPE) {
-                ret = baiduQueryService.chat(content);
-            } else if (3 == QQ_BOT_TYPE) {
-                ret = itpkQueryService.chat(content);
-            }
-
-            if (StringUtils.isBlank(ret)) {
-                ret = "嗯~";
-            }
+        final ChatBackend ret = chatBackends.get(StringUtils.trim(name));
+        if (null == ret) {
+            throw new IllegalStateException("Unknown chat backend [" + name + "], available chat backends are "
+                    + chatBackends.getStat().optJSONArray("backends"));
         }
 
         return ret;
     }
 
-    private void reloadGroups() {
-        final List<Group> groups = xiaoV.getGroupList();
-        QQ_GROUPS.clear();
-        GROUP_AD_TIME.clear();
-        UNPUSH_GROUPS.clear();
+    private ChatBackend hedgeBackend() {
+        final String name = StringUtils.trim(XiaoVs.getString("qq.bot.hedge.backend"));
+        if (StringUtils.isBlank(name)) {
+            return null;
+        }
 
-        final StringBuilder msgBuilder = new StringBuilder();
-        msgBuilder.append("Reloaded groups: \n");
-        for (final Group g : groups) {
-            QQ_GROUPS.put(g.getId(), g);
-            GROUP_AD_TIME.put(g.getId(), 0L);
-            UNPUSH_GROUPS.add(g.getId());
+        final ChatBackend ret = chatBackends.get(name);
+        if (null == ret) {
+            throw new IllegalStateException("Unknown hedge chat backend [" + name + "], available chat backends are "
+                    + chatBackends.getStat().optJSONArray("backends"));
+        }
+        if (ret == chatBackend) {
+            LOGGER.log(Level.WARN, "Hedge chat backend [" + name + "] is the chat backend, hedging is disabled");
 
-            msgBuilder.append("    ").append(g.getName()).append(": ").append(g.getId()).append("\n");
+            return null;
         }
 
-        LOGGER.log(Level.INFO, msgBuilder.toString());
+        return ret;
     }
 
-    private void reloadDiscusses() {
-        final List<Discuss> discusses = xiaoV.getDiscussList();
-        QQ_DISCUSSES.clear();
-        DISCUSS_AD_TIME.clear();
+    private ChatRouter chatRouter() {
+        final String[] names = Strings.trimAll(StringUtils.split(XiaoVs.getString("qq.bot.router.backends"), ","));
+        if (null == names || 0 == names.length) {
+            return null;
+        }
 
-        final StringBuilder msgBuilder = new StringBuilder();
-        msgBuilder.append("Reloaded discusses: \n");
-        for (final Discuss d : discusses) {
-            QQ_DISCUSSES.put(d.getId(), d);
-            DISCUSS_AD_TIME.put(d.getId(), 0L);
+        final List<ChatBackend> backends = new ArrayList<>(names.length);
+        for (final String name : names) {
+            final ChatBackend backend = chatBackends.get(name);
+            if (null == backend) {
+                throw new IllegalStateException("Unknown routed chat backend [" + name + "], available chat backends "
+                        + "are " + chatBackends.getStat().optJSONArray("backends"));
+            }
+            backends.add(backend);
+        }
 
-            msgBuilder.append("    ").append(d.getName()).append(": ").append(d.getId()).append("\n");
+        final Map<String, Long> quotas = new HashMap<>();
+        for (final String quota : StringUtils.split(XiaoVs.getString("qq.bot.router.quotas"), ",")) {
+            final String name = StringUtils.trim(StringUtils.substringBefore(quota, ":"));
+            quotas.put(name, Long.valueOf(StringUtils.trim(StringUtils.substringAfter(quota, ":"))));
         }
 
-        LOGGER.log(Level.INFO, msgBuilder.toString());
+        return new ChatRouter(backends, quotas, XiaoVs.getFloat("qq.bot.router.ewmaAlpha"),
+                XiaoVs.getFloat("qq.bot.router.errorRateThreshold"), XiaoVs.getLong("qq.bot.router.ejectMillis"),
+                XiaoVs.getFloat("qq.bot.router.quotaReserve"), XiaoVs.getBoolean("qq.bot.router.hedge"));
     }
 }
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2012-2016, b3log.org & hacpai.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.xiaov.service;
+
+import com.scienjus.smartqq.client.SmartQQClient;
+import com.scienjus.smartqq.model.DiscussInfo;
+import com.scienjus.smartqq.model.GroupInfo;
+import java.util.concurrent.TimeUnit;
+import org.b3log.xiaov.util.BoundedExecutor;
+import org.b3log.xiaov.util.RefreshingCache;
+import org.json.JSONObject;
+
+/**
+ * Group and discuss roster cache.
+ *
+ * <p>
+ * Sits in front of {@link SmartQQClient#getGroupInfo(long)} and {@link SmartQQClient#getDiscussInfo(long)}, each of
+ * which is a full round trip parsing every member. Stale rosters are served while being refreshed in background by a
+ * small pool, so pushes and other lookups hit memory instead of WebQQ, see <i>qq.bot.roster.*</i> in xiaov.properties.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 18, 2026
+ * @since 2.2.0
+ */
+public class RosterCache {
+
+    /**
+     * Background refresher, bounds the refresh parallelism.
+     */
+    private final BoundedExecutor refresher;
+
+    /**
+     * Group rosters.
+     *
+     * &lt;groupCode, groupInfo&gt;
+     */
+    private final RefreshingCache<Long, GroupInfo> groups;
+
+    /**
+     * Discuss rosters.
+     *
+     * &lt;discussId, discussInfo&gt;
+     */
+    private final RefreshingCache<Long, DiscussInfo> discusses;
+
+    /**
+     * Constructs a roster cache with the specified arguments.
+     *
+     * @param client the specified QQ client
+     * @param ttlMillis the specified TTL in milliseconds
+     * @param maxStaleMillis the specified max stale age in milliseconds
+     * @param refreshThreads the specified max background refresh parallelism
+     * @param maxSize the specified max roster count of groups and discusses respectively
+     */
+    public RosterCache(final SmartQQClient client, final long ttlMillis, final long maxStaleMillis,
+            final int refreshThreads, final int maxSize) {
+        refresher = new BoundedExecutor("xiaov-roster", refreshThreads, refreshThreads, maxSize, "abort");
+        groups = new RefreshingCache<>("group", new RefreshingCache.Loader<Long, GroupInfo>() {
+            @Override
+            public GroupInfo load(final Long groupCode) throws Exception {
+                return client.getGroupInfo(groupCode);
+            }
+        }, refresher, ttlMillis, maxStaleMillis, TimeUnit.MILLISECONDS, maxSize);
+        discusses = new RefreshingCache<>("discuss", new RefreshingCache.Loader<Long, DiscussInfo>() {
+            @Override
+            public DiscussInfo load(final Long discussId) throws Exception {
+                return client.getDiscussInfo(discussId);
+            }
+        }, refresher, ttlMillis, maxStaleMillis, TimeUnit.MILLISECONDS, maxSize);
+    }
+
+    /**
+     * Gets the roster of the specified group.
+     *
+     * @param groupCode the specified group code
+     * @return group info
+     * @throws Exception if loads failed
+     */
+    public GroupInfo getGroupInfo(final long groupCode) throws Exception {
+        return groups.get(groupCode);
+    }
+
+    /**
+     * Gets the member count of the specified group.
+     *
+     * @param groupCode the specified group code
+     * @return member count, returns {@code 0} if the roster is unavailable
+     * @throws Exception if loads failed
+     */
+    public int getGroupMemberCount(final long groupCode) throws Exception {
+        final GroupInfo groupInfo = groups.get(groupCode);
+
+        return null == groupInfo ? 0 : groupInfo.getUsers().size();
+    }
+
+    /**
+     * Gets the roster of the specified discuss.
+     *
+     * @param discussId the specified discuss id
+     * @return discuss info
+     * @throws Exception if loads failed
+     */
+    public DiscussInfo getDiscussInfo(final long discussId) throws Exception {
+        return discusses.get(discussId);
+    }
+
+    /**
+     * Refreshes the rosters of the specified groups in background, fresh ones are skipped.
+     *
+     * @param groupCodes the specified group codes
+     */
+    public void prefetchGroups(final Iterable<Long> groupCodes) {
+        groups.prefetch(groupCodes);
+    }
+
+    /**
+     * Invalidates the roster of the specified group.
+     *
+     * @param groupCode the specified group code
+     */
+    public void invalidateGroup(final long groupCode) {
+        groups.invalidate(groupCode);
+    }
+
+    /**
+     * Invalidates the roster of the specified discuss.
+     *
+     * @param discussId the specified discuss id
+     */
+    public void invalidateDiscuss(final long discussId) {
+        discusses.invalidate(discussId);
+    }
+
+    /**
+     * Shuts down the background refresher.
+     */
+    public void shutdown() {
+        refresher.shutdown();
+    }
+
+    /**
+     * Gets the statistic of this cache.
+     *
+     * @return statistic, for example,
+     * <pre>
+     * {
+     *     "group": {
+     *         "size": int,
+     *         "hits": long,
+     *         ....
+     *     },
+     *     "discuss": {....},
+     *     "refresher": {....}
+     * }
+     * </pre>
+     */
+    public JSONObject getStat() {
+        final JSONObject ret = new JSONObject();
+
+        ret.put("group", groups.getStat());
+        ret.put("discuss", discusses.getStat());
+        ret.put("refresher", refresher.getStat());
+
+        return ret;
+    }
+}
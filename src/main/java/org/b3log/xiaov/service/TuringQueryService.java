@@ -15,17 +15,15 @@
  */
 package org.b3log.xiaov.service;
 
-import java.net.URL;
-import java.net.URLEncoder;
+import java.util.Arrays;
 import org.apache.commons.lang.StringUtils;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.message.BasicNameValuePair;
 import org.b3log.latke.logging.Level;
 import org.b3log.latke.logging.Logger;
-import org.b3log.latke.service.annotation.Service;
-import org.b3log.latke.servlet.HTTPRequestMethod;
-import org.b3log.latke.urlfetch.HTTPRequest;
-import org.b3log.latke.urlfetch.HTTPResponse;
-import org.b3log.latke.urlfetch.URLFetchService;
-import org.b3log.latke.urlfetch.URLFetchServiceFactory;
 import org.b3log.xiaov.util.XiaoVs;
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -34,11 +32,10 @@ import org.json.JSONObject;
  * Turing query service.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.0.0.0, May 29, 2016
+ * @version 1.2.0.0, Oct 18, 2026
  * @since 1.0.0
  */
-@Service
-public class TuringQueryService {
+public class TuringQueryService extends HttpChatBackend {
 
     /**
      * Logger.
@@ -56,94 +53,86 @@ public class TuringQueryService {
     private static final String TURING_KEY = XiaoVs.getString("turing.key");
 
     /**
-     * URL fetch service.
+     * Answer of Turing Robot when the daily quota is exhausted.
      */
-    private static final URLFetchService URL_FETCH_SVC = URLFetchServiceFactory.getURLFetchService();
+    public static final String QUOTA_EXCEEDED_ANSWER = "聊累了，明天请早吧~";
 
-    /**
-     * Chat with Turing Robot.
-     *
-     * @param userName the specified user name
-     * @param msg the specified message
-     * @return robot returned message, return {@code null} if not found
-     */
-    public String chat(final String userName, String msg) {
-        if (StringUtils.isBlank(msg)) {
+    @Override
+    public String getName() {
+        return "turing";
+    }
+
+    @Override
+    protected HttpRequestBase newRequest(final String userName, final ChatMessage msg) throws Exception {
+        final String info = msg.getQuestion();
+        if (StringUtils.isBlank(userName) || StringUtils.isBlank(info)) {
             return null;
         }
 
-        if (msg.startsWith(XiaoVs.QQ_BOT_NAME + " ")) {
-            msg = msg.replace(XiaoVs.QQ_BOT_NAME + " ", "");
-        }
-        if (msg.startsWith(XiaoVs.QQ_BOT_NAME + "，")) {
-            msg = msg.replace(XiaoVs.QQ_BOT_NAME + "，", "");
-        }
-        if (msg.startsWith(XiaoVs.QQ_BOT_NAME + ",")) {
-            msg = msg.replace(XiaoVs.QQ_BOT_NAME + ",", "");
-        }
-        if (msg.startsWith(XiaoVs.QQ_BOT_NAME)) {
-            msg = msg.replace(XiaoVs.QQ_BOT_NAME, "");
-        }
+        final HttpPost ret = new HttpPost(TURING_API);
+        ret.setEntity(new UrlEncodedFormEntity(Arrays.<NameValuePair>asList(
+                new BasicNameValuePair("key", TURING_KEY),
+                new BasicNameValuePair("info", info),
+                new BasicNameValuePair("userid", userName)), "UTF-8"));
 
-        if (StringUtils.isBlank(userName) || StringUtils.isBlank(msg)) {
-            return null;
-        }
+        return ret;
+    }
 
-        final HTTPRequest request = new HTTPRequest();
-        request.setRequestMethod(HTTPRequestMethod.POST);
-
-        try {
-            request.setURL(new URL(TURING_API));
-
-            final String body = "key=" + URLEncoder.encode(TURING_KEY, "UTF-8")
-                    + "&info=" + URLEncoder.encode(msg, "UTF-8")
-                    + "&userid=" + URLEncoder.encode(userName, "UTF-8");
-            request.setPayload(body.getBytes("UTF-8"));
-
-            final HTTPResponse response = URL_FETCH_SVC.fetch(request);
-            final JSONObject data = new JSONObject(new String(response.getContent(), "UTF-8"));
-            final int code = data.optInt("code");
-
-            switch (code) {
-                case 40001:
-                case 40002:
-                case 40007:
-                    LOGGER.log(Level.ERROR, data.optString("text"));
-
-                    return null;
-                case 40004:
-                    return "聊累了，明天请早吧~";
-                case 100000:
-                    return data.optString("text");
-                case 200000:
-                    return data.optString("text") + " " + data.optString("url");
-                case 302000:
-                    String ret302000 = data.optString("text") + " ";
-                    final JSONArray list302000 = data.optJSONArray("list");
-                    final StringBuilder builder302000 = new StringBuilder();
-                    for (int i = 0; i < list302000.length(); i++) {
-                        final JSONObject news = list302000.optJSONObject(i);
-                        builder302000.append(news.optString("article")).append(news.optString("detailurl"))
-                                .append("\n\n");
-                    }
-
-                    return ret302000 + " " + builder302000.toString();
-                case 308000:
-                    String ret308000 = data.optString("text") + " ";
-                    final JSONArray list308000 = data.optJSONArray("list");
-                    final StringBuilder builder308000 = new StringBuilder();
-                    for (int i = 0; i < list308000.length(); i++) {
-                        final JSONObject news = list308000.optJSONObject(i);
-                        builder308000.append(news.optString("name")).append(news.optString("detailurl"))
-                                .append("\n\n");
-                    }
-
-                    return ret308000 + " " + builder308000.toString();
-                default:
-                    LOGGER.log(Level.WARN, "Turing Robot default return [" + data.toString(4) + "]");
-            }
-        } catch (final Exception e) {
-            LOGGER.log(Level.ERROR, "Chat with Turing Robot failed", e);
+    @Override
+    protected String parse(final String body) {
+        String ret = answer(new JSONObject(body));
+        ret = StringUtils.replace(ret, "图灵机器人", XiaoVs.QQ_BOT_NAME + "机器人");
+        ret = StringUtils.replace(ret, "默认机器人", XiaoVs.QQ_BOT_NAME + "机器人");
+
+        return StringUtils.replace(ret, "<br>", "\n");
+    }
+
+    /**
+     * Gets the answer of the specified Turing Robot response.
+     *
+     * @param data the specified response
+     * @return answer, returns {@code null} if not found
+     */
+    private static String answer(final JSONObject data) {
+        final int code = data.optInt("code");
+
+        switch (code) {
+            case 40001:
+            case 40002:
+            case 40007:
+                LOGGER.log(Level.ERROR, data.optString("text"));
+
+                return null;
+            case 40004:
+                return QUOTA_EXCEEDED_ANSWER;
+            case 100000:
+                return data.optString("text");
+            case 200000:
+                return data.optString("text") + " " + data.optString("url");
+            case 302000:
+                String ret302000 = data.optString("text") + " ";
+                final JSONArray list302000 = data.optJSONArray("list");
+                final StringBuilder builder302000 = new StringBuilder();
+                for (int i = 0; i < list302000.length(); i++) {
+                    final JSONObject news = list302000.optJSONObject(i);
+                    builder302000.append(news.optString("article")).append(news.optString("detailurl"))
+                            .append("\n\n");
+                }
+
+                return ret302000 + " " + builder302000.toString();
+            case 308000:
+                String ret308000 = data.optString("text") + " ";
+                final JSONArray list308000 = data.optJSONArray("list");
+                final StringBuilder builder308000 = new StringBuilder();
+                for (int i = 0; i < list308000.length(); i++) {
+                    final JSONObject news = list308000.optJSONObject(i);
+                    builder308000.append(news.optString("name")).append(news.optString("detailurl"))
+                            .append("\n\n");
+                }
+
+                return ret308000 + " " + builder308000.toString();
+            default:
+                LOGGER.log(Level.WARN, "Turing Robot default return [" + data.toString(4) + "]");
         }
 
         return null;
@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2012-2016, b3log.org & hacpai.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.xiaov.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Case-insensitive Aho–Corasick automaton of keywords, immutable once built.
+ *
+ * <p>
+ * Finds the keywords contained in a text in one pass over the text, however many keywords there are. Transitions of
+ * a state are kept in sorted arrays and looked up by binary search, and every state knows the longest keyword ending
+ * at it (its own or one of its failure chain), so a match costs no extra walk.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 18, 2026
+ * @since 2.2.0
+ */
+public final class AhoCorasick {
+
+    /**
+     * Keywords.
+     */
+    private final String[] keywords;
+
+    /**
+     * Transition chars of states, sorted.
+     */
+    private final char[][] chars;
+
+    /**
+     * Transition targets of states, in the order of their chars.
+     */
+    private final int[][] targets;
+
+    /**
+     * Failure links of states.
+     */
+    private final int[] failures;
+
+    /**
+     * Index of the longest keyword ending at states, {@code -1} if none.
+     */
+    private final int[] outputs;
+
+    /**
+     * Builds an automaton of the specified keywords, blank ones are skipped, duplicates (ignoring case) keep the
+     * first.
+     *
+     * @param keywords the specified keywords
+     */
+    public AhoCorasick(final Collection<String> keywords) {
+        final List<String> words = new ArrayList<>(keywords.size());
+        final List<Map<Character, Integer>> trie = new ArrayList<>();
+        final List<Integer> own = new ArrayList<>();
+        trie.add(new TreeMap<Character, Integer>());
+        own.add(-1);
+
+        for (final String keyword : keywords) {
+            final String word = null == keyword ? "" : keyword.trim();
+            if (word.isEmpty()) {
+                continue;
+            }
+
+            int state = 0;
+            for (int i = 0; i < word.length(); i++) {
+                final char c = fold(word.charAt(i));
+                Integer next = trie.get(state).get(c);
+                if (null == next) {
+                    next = trie.size();
+                    trie.get(state).put(c, next);
+                    trie.add(new TreeMap<Character, Integer>());
+                    own.add(-1);
+                }
+                state = next;
+            }
+            if (-1 == own.get(state)) {
+                own.set(state, words.size());
+                words.add(word);
+            }
+        }
+
+        final int size = trie.size();
+        this.keywords = words.toArray(new String[words.size()]);
+        this.chars = new char[size][];
+        this.targets = new int[size][];
+        this.failures = new int[size];
+        this.outputs = new int[size];
+        for (int state = 0; state < size; state++) {
+            final Map<Character, Integer> edges = trie.get(state);
+            chars[state] = new char[edges.size()];
+            targets[state] = new int[edges.size()];
+            int i = 0;
+            for (final Map.Entry<Character, Integer> edge : edges.entrySet()) {
+                chars[state][i] = edge.getKey();
+                targets[state][i] = edge.getValue();
+                i++;
+            }
+        }
+
+        // Breadth first, so the failure of a state is done before the state
+        outputs[0] = -1;
+        final Deque<Integer> queue = new ArrayDeque<>();
+        for (final int child : targets[0]) {
+            failures[child] = 0;
+            outputs[child] = own.get(child);
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            final int state = queue.poll();
+            for (int i = 0; i < chars[state].length; i++) {
+                final char c = chars[state][i];
+                final int child = targets[state][i];
+                int failure = failures[state];
+                while (0 != failure && 0 > next(failure, c)) {
+                    failure = failures[failure];
+                }
+                final int target = next(failure, c);
+                failures[child] = 0 <= target ? target : 0;
+                outputs[child] = -1 != own.get(child) ? own.get(child) : outputs[failures[child]];
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * Gets the count of keywords.
+     *
+     * @return count of keywords
+     */
+    public int size() {
+        return keywords.length;
+    }
+
+    /**
+     * Finds the first keyword in the specified text, the one which ends first (the longest of them if several end at
+     * the same char).
+     *
+     * @param text the specified text
+     * @return keyword as given, returns {@code null} if not found
+     */
+    public String first(final CharSequence text) {
+        if (0 == keywords.length || null == text) {
+            return null;
+        }
+
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = step(state, fold(text.charAt(i)));
+            if (-1 != outputs[state]) {
+                return keywords[outputs[state]];
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Finds the longest keyword in the specified text, the first found if several are the longest.
+     *
+     * @param text the specified text
+     * @return keyword as given, returns {@code null} if not found
+     */
+    public String longest(final CharSequence text) {
+        if (0 == keywords.length || null == text) {
+            return null;
+        }
+
+        int ret = -1;
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = step(state, fold(text.charAt(i)));
+            final int output = outputs[state];
+            if (-1 != output && (-1 == ret || keywords[output].length() > keywords[ret].length())) {
+                ret = output;
+            }
+        }
+
+        return -1 == ret ? null : keywords[ret];
+    }
+
+    /**
+     * Moves from the specified state by the specified char, following failure links.
+     *
+     * @param state the specified state
+     * @param c the specified char, folded
+     * @return next state
+     */
+    private int step(final int state, final char c) {
+        int current = state;
+        while (true) {
+            final int next = next(current, c);
+            if (0 <= next) {
+                return next;
+            }
+            if (0 == current) {
+                return 0;
+            }
+            current = failures[current];
+        }
+    }
+
+    /**
+     * Gets the transition of the specified state by the specified char.
+     *
+     * @param state the specified state
+     * @param c the specified char, folded
+     * @return next state, returns {@code -1} if no transition
+     */
+    private int next(final int state, final char c) {
+        final int i = Arrays.binarySearch(chars[state], c);
+
+        return 0 <= i ? targets[state][i] : -1;
+    }
+
+    /**
+     * Folds the case of the specified char.
+     *
+     * @param c the specified char
+     * @return folded char
+     */
+    private static char fold(final char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2012-2016, b3log.org & hacpai.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.xiaov.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.json.JSONObject;
+
+/**
+ * Bounded executor with a fixed capacity queue and rejection counting.
+ *
+ * <p>
+ * Rejection policies:
+ * <ul>
+ * <li>abort: throws {@link java.util.concurrent.RejectedExecutionException}</li>
+ * <li>callerRuns: runs the task in the submitting thread</li>
+ * <li>discard: drops the task silently</li>
+ * <li>discardOldest: drops the oldest queued task and retries (default)</li>
+ * </ul>
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 18, 2026
+ * @since 2.2.0
+ */
+public class BoundedExecutor implements Executor {
+
+    /**
+     * Executor name, used as the worker thread name prefix.
+     */
+    private final String name;
+
+    /**
+     * Underlying thread pool.
+     */
+    private final ThreadPoolExecutor pool;
+
+    /**
+     * Submitted task count.
+     */
+    private final AtomicLong submittedCount = new AtomicLong();
+
+    /**
+     * Rejected task count.
+     */
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * Constructs a bounded executor with the specified arguments.
+     *
+     * @param name the specified name
+     * @param coreThreads the specified core worker count
+     * @param maxThreads the specified max worker count
+     * @param queueCapacity the specified queue capacity
+     * @param rejectPolicy the specified rejection policy, abort/callerRuns/discard/discardOldest
+     */
+    public BoundedExecutor(final String name, final int coreThreads, final int maxThreads,
+            final int queueCapacity, final String rejectPolicy) {
+        this.name = name;
+
+        final RejectedExecutionHandler policy = newPolicy(rejectPolicy);
+        pool = new ThreadPoolExecutor(coreThreads, Math.max(coreThreads, maxThreads), 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), new NamedThreadFactory(name),
+                new RejectedExecutionHandler() {
+            @Override
+            public void rejectedExecution(final Runnable task, final ThreadPoolExecutor executor) {
+                rejectedCount.incrementAndGet();
+
+                policy.rejectedExecution(task, executor);
+            }
+        });
+    }
+
+    @Override
+    public void execute(final Runnable task) {
+        submittedCount.incrementAndGet();
+
+        pool.execute(task);
+    }
+
+    /**
+     * Shuts down this executor, queued tasks will still be executed.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Gets the name.
+     *
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the current queue depth.
+     *
+     * @return queue depth
+     */
+    public int getQueueSize() {
+        return pool.getQueue().size();
+    }
+
+    /**
+     * Gets the rejected task count.
+     *
+     * @return rejected task count
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Gets the statistic of this executor.
+     *
+     * @return statistic, for example,
+     * <pre>
+     * {
+     *     "name": "",
+     *     "poolSize": int,
+     *     "activeCount": int,
+     *     "largestPoolSize": int,
+     *     "queueSize": int,
+     *     "queueRemaining": int,
+     *     "submitted": long,
+     *     "completed": long,
+     *     "rejected": long
+     * }
+     * </pre>
+     */
+    public JSONObject getStat() {
+        final JSONObject ret = new JSONObject();
+
+        ret.put("name", name);
+        ret.put("poolSize", pool.getPoolSize());
+        ret.put("activeCount", pool.getActiveCount());
+        ret.put("largestPoolSize", pool.getLargestPoolSize());
+        ret.put("queueSize", pool.getQueue().size());
+        ret.put("queueRemaining", pool.getQueue().remainingCapacity());
+        ret.put("submitted", submittedCount.get());
+        ret.put("completed", pool.getCompletedTaskCount());
+        ret.put("rejected", rejectedCount.get());
+
+        return ret;
+    }
+
+    /**
+     * Creates a rejection handler with the specified policy name.
+     *
+     * @param rejectPolicy the specified policy name
+     * @return rejection handler, returns discard oldest policy if the specified name is unknown
+     */
+    private static RejectedExecutionHandler newPolicy(final String rejectPolicy) {
+        switch (String.valueOf(rejectPolicy)) {
+            case "abort":
+                return new ThreadPoolExecutor.AbortPolicy();
+            case "callerRuns":
+                return new ThreadPoolExecutor.CallerRunsPolicy();
+            case "discard":
+                return new ThreadPoolExecutor.DiscardPolicy();
+            default:
+                return new ThreadPoolExecutor.DiscardOldestPolicy();
+        }
+    }
+
+    /**
+     * Daemon thread factory with named threads.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.0.0, Oct 18, 2026
+     * @since 2.2.0
+     */
+    public static final class NamedThreadFactory implements ThreadFactory {
+
+        /**
+         * Thread name prefix.
+         */
+        private final String prefix;
+
+        /**
+         * Thread sequence.
+         */
+        private final AtomicInteger seq = new AtomicInteger();
+
+        /**
+         * Constructs a thread factory with the specified thread name prefix.
+         *
+         * @param prefix the specified thread name prefix
+         */
+        public NamedThreadFactory(final String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread ret = new Thread(runnable, prefix + "-" + seq.incrementAndGet());
+            ret.setDaemon(true);
+
+            return ret;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2012-2016, b3log.org & hacpai.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.xiaov.util;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import org.json.JSONObject;
+
+/**
+ * Bulkhead of a dependency, caps its concurrent calls so a hung dependency can not hold all shared threads. Calls
+ * beyond the cap are rejected at once instead of waiting.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 18, 2026
+ * @since 2.2.0
+ */
+public class Bulkhead {
+
+    /**
+     * Max concurrent calls.
+     */
+    private final int maxConcurrent;
+
+    /**
+     * Permits of calls.
+     */
+    private final Semaphore permits;
+
+    /**
+     * Count of calls rejected.
+     */
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * Constructs a bulkhead with the specified max concurrent calls.
+     *
+     * @param maxConcurrent the specified max concurrent calls
+     */
+    public Bulkhead(final int maxConcurrent) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.permits = new Semaphore(this.maxConcurrent);
+    }
+
+    /**
+     * Asks for a call, a permitted call must {@link #release()} when it ends.
+     *
+     * @return {@code true} if the call is permitted, returns {@code false} if the cap is reached
+     */
+    public boolean tryAcquire() {
+        if (permits.tryAcquire()) {
+            return true;
+        }
+
+        rejectedCount.incrementAndGet();
+
+        return false;
+    }
+
+    /**
+     * Ends a permitted call.
+     */
+    public void release() {
+        permits.release();
+    }
+
+    /**
+     * Gets the statistic of this bulkhead.
+     *
+     * @return statistic, for example,
+     * <pre>
+     * {
+     *     "maxConcurrent": int,
+     *     "inFlight": int,
+     *     "rejected": long
+     * }
+     * </pre>
+     */
+    public JSONObject getStat() {
+        final JSONObject ret = new JSONObject();
+
+        ret.put("maxConcurrent", maxConcurrent);
+        ret.put("inFlight", maxConcurrent - permits.availablePermits());
+        ret.put("rejected", rejectedCount.get());
+
+        return ret;
+    }
+}
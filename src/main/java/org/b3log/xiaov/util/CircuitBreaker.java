@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2012-2016, b3log.org & hacpai.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.xiaov.util;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Circuit breaker of a dependency.
+ *
+ * <p>
+ * Closed, outcomes of the latest calls are kept in a sliding window, the circuit opens when the window has at least
+ * the min calls and their failure rate reaches the threshold. Open, calls are rejected at once until the open time
+ * elapses, then the circuit is half-open and lets a few trial calls through; the circuit closes if they all succeed
+ * and opens again on the first failure. Transitions are logged and the latest ones are kept in the statistic.
+ * </p>
+ *
+ * <p>
+ * Every permitted call must report exactly one of {@link #onSuccess()}, {@link #onFailure()} and
+ * {@link #onIgnored()}.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 18, 2026
+ * @since 2.2.0
+ */
+public class CircuitBreaker {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(CircuitBreaker.class.getName());
+
+    /**
+     * Count of transitions kept in the statistic.
+     */
+    private static final int TRANSITION_HISTORY = 10;
+
+    /**
+     * Circuit state.
+     */
+    public enum State {
+
+        /**
+         * Calls pass.
+         */
+        CLOSED,
+        /**
+         * Calls are rejected.
+         */
+        OPEN,
+        /**
+         * Trial calls pass.
+         */
+        HALF_OPEN
+    }
+
+    /**
+     * Name of the dependency.
+     */
+    private final String name;
+
+    /**
+     * Outcomes of the latest calls, {@code true} if failed, a ring guarded by this breaker.
+     */
+    private final boolean[] window;
+
+    /**
+     * Min calls in the window to open the circuit.
+     */
+    private final int minCalls;
+
+    /**
+     * Failure rate opening the circuit.
+     */
+    private final double failureRateThreshold;
+
+    /**
+     * Time in milliseconds the circuit stays open.
+     */
+    private final long openTime;
+
+    /**
+     * Trial calls when half-open.
+     */
+    private final int halfOpenCalls;
+
+    /**
+     * State.
+     */
+    private State state = State.CLOSED;
+
+    /**
+     * Index of the next outcome in the window.
+     */
+    private int next;
+
+    /**
+     * Count of outcomes in the window.
+     */
+    private int calls;
+
+    /**
+     * Count of failures in the window.
+     */
+    private int failures;
+
+    /**
+     * Time the circuit opened.
+     */
+    private long openedTime;
+
+    /**
+     * Count of trial calls permitted in this half-open state.
+     */
+    private int trialCount;
+
+    /**
+     * Count of trial calls succeeded in this half-open state.
+     */
+    private int trialSuccessCount;
+
+    /**
+     * Count of calls rejected.
+     */
+    private long rejectedCount;
+
+    /**
+     * Count of times the circuit opened.
+     */
+    private long openCount;
+
+    /**
+     * Latest transitions.
+     */
+    private final Deque<JSONObject> transitions = new ArrayDeque<>(TRANSITION_HISTORY);
+
+    /**
+     * Constructs a circuit breaker with the specified arguments.
+     *
+     * @param name the specified name of the dependency
+     * @param windowSize the specified count of the latest calls in the sliding window
+     * @param minCalls the specified min calls in the window to open the circuit
+     * @param failureRateThreshold the specified failure rate opening the circuit, for example, {@code 0.5}
+     * @param openTime the specified time in milliseconds the circuit stays open
+     * @param halfOpenCalls the specified trial calls when half-open
+     */
+    public CircuitBreaker(final String name, final int windowSize, final int minCalls,
+            final double failureRateThreshold, final long openTime, final int halfOpenCalls) {
+        this.name = name;
+        this.window = new boolean[Math.max(1, windowSize)];
+        this.minCalls = Math.max(1, Math.min(minCalls, window.length));
+        this.failureRateThreshold = failureRateThreshold;
+        this.openTime = openTime;
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+    }
+
+    /**
+     * Asks for a call.
+     *
+     * @return {@code true} if the call is permitted, returns {@code false} if the circuit is open
+     */
+    public synchronized boolean tryAcquire() {
+        if (State.OPEN == state && System.currentTimeMillis() - openedTime >= openTime) {
+            transit(State.HALF_OPEN, "open for [" + openTime + "ms]");
+        }
+
+        switch (state) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                if (trialCount < halfOpenCalls) {
+                    trialCount++;
+
+                    return true;
+                }
+                break;
+            default:
+        }
+
+        rejectedCount++;
+
+        return false;
+    }
+
+    /**
+     * Reports a permitted call succeeded.
+     */
+    public synchronized void onSuccess() {
+        if (State.HALF_OPEN == state) {
+            trialSuccessCount++;
+            if (trialSuccessCount >= halfOpenCalls) {
+                transit(State.CLOSED, "[" + trialSuccessCount + "] trial calls succeeded");
+            }
+
+            return;
+        }
+
+        record(false);
+    }
+
+    /**
+     * Reports a permitted call failed.
+     */
+    public synchronized void onFailure() {
+        if (State.HALF_OPEN == state) {
+            transit(State.OPEN, "trial call failed");
+
+            return;
+        }
+
+        record(true);
+        if (State.CLOSED == state && calls >= minCalls && (double) failures / calls >= failureRateThreshold) {
+            transit(State.OPEN, "failure rate [" + failures + "/" + calls + "]");
+        }
+    }
+
+    /**
+     * Reports a permitted call ended without telling the health of the dependency, for example, it was cancelled.
+     */
+    public synchronized void onIgnored() {
+        if (State.HALF_OPEN == state && 0 < trialCount) {
+            trialCount--;
+        }
+    }
+
+    /**
+     * Gets the state.
+     *
+     * @return state
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Gets the statistic of this breaker.
+     *
+     * @return statistic, for example,
+     * <pre>
+     * {
+     *     "state": "CLOSED",
+     *     "calls": int, // in the window
+     *     "failureRate": double, // in the window
+     *     "rejected": long,
+     *     "opened": long,
+     *     "transitions": [{"time": long, "from": "CLOSED", "to": "OPEN", "reason": ""}, ....]
+     * }
+     * </pre>
+     */
+    public synchronized JSONObject getStat() {
+        final JSONObject ret = new JSONObject();
+
+        ret.put("state", state.name());
+        ret.put("calls", calls);
+        ret.put("failureRate", 0 == calls ? 0D : (double) failures / calls);
+        ret.put("rejected", rejectedCount);
+        ret.put("opened", openCount);
+        ret.put("transitions", new JSONArray(transitions));
+
+        return ret;
+    }
+
+    /**
+     * Records the specified outcome in the window.
+     *
+     * @param failed whether the call failed
+     */
+    private void record(final boolean failed) {
+        if (calls == window.length) {
+            if (window[next]) {
+                failures--;
+            }
+        } else {
+            calls++;
+        }
+
+        window[next] = failed;
+        if (failed) {
+            failures++;
+        }
+        next = (next + 1) % window.length;
+    }
+
+    /**
+     * Transits to the specified state.
+     *
+     * @param to the specified state
+     * @param reason the specified reason
+     */
+    private void transit(final State to, final String reason) {
+        final State from = state;
+        state = to;
+        trialCount = 0;
+        trialSuccessCount = 0;
+        if (State.OPEN == to) {
+            openedTime = System.currentTimeMillis();
+            openCount++;
+        } else if (State.CLOSED == to) {
+            calls = 0;
+            failures = 0;
+            next = 0;
+        }
+
+        final JSONObject transition = new JSONObject();
+        transition.put("time", System.currentTimeMillis());
+        transition.put("from", from.name());
+        transition.put("to", to.name());
+        transition.put("reason", reason);
+        if (transitions.size() == TRANSITION_HISTORY) {
+            transitions.removeFirst();
+        }
+        transitions.addLast(transition);
+
+        LOGGER.log(State.OPEN == to ? Level.WARN : Level.INFO, "Circuit of [" + name + "] transits from [" + from
+                + "] to [" + to + "] for [" + reason + "]");
+    }
+}
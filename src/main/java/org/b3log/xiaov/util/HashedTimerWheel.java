@@ -0,0 +1,424 @@
+/*
+ * Copyright (c) 2012-2016, b3log.org & hacpai.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.xiaov.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+import org.json.JSONObject;
+
+/**
+ * Hashed timer wheel.
+ *
+ * <p>
+ * Holds delayed tasks as cheap entries in a ring of buckets. A single ticker thread advances the wheel every
+ * {@code tickMillis} and hands expired tasks to the specified worker executor, so no thread is parked per pending
+ * task. The fire time precision is one tick.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.2, Oct 18, 2026
+ * @since 2.2.0
+ */
+public class HashedTimerWheel {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(HashedTimerWheel.class.getName());
+
+    /**
+     * Tick duration in nanoseconds.
+     */
+    private final long tickNanos;
+
+    /**
+     * Buckets, only accessed by the ticker thread.
+     */
+    private final List<List<Timeout>> wheel;
+
+    /**
+     * Wheel index mask.
+     */
+    private final int mask;
+
+    /**
+     * Max pending timeout count.
+     */
+    private final int maxPending;
+
+    /**
+     * Worker executor which runs expired tasks.
+     */
+    private final Executor worker;
+
+    /**
+     * Timeouts added but not transferred into buckets yet.
+     */
+    private final Queue<Timeout> newTimeouts = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Pending timeout count.
+     */
+    private final AtomicLong pendingCount = new AtomicLong();
+
+    /**
+     * Expired timeout count.
+     */
+    private final AtomicLong expiredCount = new AtomicLong();
+
+    /**
+     * Cancelled timeout count.
+     */
+    private final AtomicLong cancelledCount = new AtomicLong();
+
+    /**
+     * Start flag.
+     */
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    /**
+     * Ticker thread.
+     */
+    private final Thread ticker;
+
+    /**
+     * Counted down once {@link #startTime} is set.
+     */
+    private final CountDownLatch startLatch = new CountDownLatch(1);
+
+    /**
+     * Start time in nanoseconds, published by {@link #startLatch}.
+     */
+    private long startTime;
+
+    /**
+     * Current tick, only accessed by the ticker thread.
+     */
+    private long tick;
+
+    /**
+     * Constructs a timer wheel with the specified arguments.
+     *
+     * @param name the specified name, used as the ticker thread name
+     * @param tickMillis the specified tick duration in milliseconds
+     * @param wheelSize the specified bucket count, will be normalized to a power of 2
+     * @param maxPending the specified max pending timeout count
+     * @param worker the specified worker executor
+     */
+    public HashedTimerWheel(final String name, final long tickMillis, final int wheelSize, final int maxPending,
+            final Executor worker) {
+        int size = 1;
+        while (size < wheelSize) {
+            size <<= 1;
+        }
+
+        wheel = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            wheel.add(new ArrayList<Timeout>());
+        }
+        mask = size - 1;
+
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMillis));
+        this.maxPending = maxPending;
+        this.worker = worker;
+
+        ticker = new BoundedExecutor.NamedThreadFactory(name).newThread(new Runnable() {
+            @Override
+            public void run() {
+                work();
+            }
+        });
+    }
+
+    /**
+     * Schedules the specified task to run once after the specified delay.
+     *
+     * @param task the specified task
+     * @param delay the specified delay
+     * @param unit the specified time unit of delay
+     * @return a handle which can be used to cancel the task
+     * @throws RejectedExecutionException if the pending timeout count reaches the max
+     */
+    public Timeout newTimeout(final Runnable task, final long delay, final TimeUnit unit) {
+        if (pendingCount.incrementAndGet() > maxPending) {
+            pendingCount.decrementAndGet();
+
+            throw new RejectedExecutionException("Too many pending timeouts [max=" + maxPending + "]");
+        }
+
+        start();
+
+        final long deadline = System.nanoTime() + unit.toNanos(delay) - startTime;
+        final Timeout ret = new Timeout(task, deadline);
+        newTimeouts.add(ret);
+
+        return ret;
+    }
+
+    /**
+     * Stops this timer, pending timeouts will be discarded.
+     */
+    public void stop() {
+        ticker.interrupt();
+    }
+
+    /**
+     * Gets the pending timeout count.
+     *
+     * @return pending timeout count
+     */
+    public long getPendingCount() {
+        return pendingCount.get();
+    }
+
+    /**
+     * Gets the statistic of this timer.
+     *
+     * @return statistic, for example,
+     * <pre>
+     * {
+     *     "pending": long,
+     *     "expired": long,
+     *     "cancelled": long
+     * }
+     * </pre>
+     */
+    public JSONObject getStat() {
+        final JSONObject ret = new JSONObject();
+
+        ret.put("pending", pendingCount.get());
+        ret.put("expired", expiredCount.get());
+        ret.put("cancelled", cancelledCount.get());
+
+        return ret;
+    }
+
+    /**
+     * Starts the ticker thread lazily, callers losing the race wait until the start time is set.
+     */
+    private void start() {
+        if (started.compareAndSet(false, true)) {
+            startTime = System.nanoTime();
+            startLatch.countDown();
+            ticker.start();
+
+            return;
+        }
+
+        boolean interrupted = false;
+        while (true) {
+            try {
+                startLatch.await();
+
+                break;
+            } catch (final InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Ticker loop.
+     */
+    private void work() {
+        while (!Thread.currentThread().isInterrupted()) {
+            final long deadline = tickNanos * (tick + 1);
+            final long sleepNanos = deadline - (System.nanoTime() - startTime);
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (final InterruptedException e) {
+                    return;
+                }
+            }
+
+            transferTimeouts();
+            expireTimeouts(wheel.get((int) (tick & mask)));
+
+            tick++;
+        }
+    }
+
+    /**
+     * Moves newly added timeouts into buckets.
+     */
+    private void transferTimeouts() {
+        Timeout timeout;
+        while (null != (timeout = newTimeouts.poll())) {
+            if (timeout.isCancelled()) {
+                continue;
+            }
+
+            final long calculated = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (calculated - tick) / wheel.size();
+
+            final long ticks = Math.max(calculated, tick); // Ensures past deadlines fire on the current tick
+            wheel.get((int) (ticks & mask)).add(timeout);
+        }
+    }
+
+    /**
+     * Expires timeouts in the specified bucket.
+     *
+     * @param bucket the specified bucket
+     */
+    private void expireTimeouts(final List<Timeout> bucket) {
+        int kept = 0;
+        for (int i = 0; i < bucket.size(); i++) {
+            final Timeout timeout = bucket.get(i);
+            if (timeout.isCancelled()) {
+                continue;
+            }
+
+            if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+                bucket.set(kept++, timeout);
+
+                continue;
+            }
+
+            fire(timeout);
+        }
+
+        for (int i = bucket.size() - 1; i >= kept; i--) {
+            bucket.remove(i);
+        }
+    }
+
+    /**
+     * Hands the specified timeout's task to the worker executor.
+     *
+     * @param timeout the specified timeout
+     */
+    private void fire(final Timeout timeout) {
+        if (!timeout.state.compareAndSet(Timeout.ST_INIT, Timeout.ST_EXPIRED)) {
+            return;
+        }
+
+        pendingCount.decrementAndGet();
+        expiredCount.incrementAndGet();
+
+        try {
+            worker.execute(timeout.task);
+        } catch (final Exception e) {
+            LOGGER.log(Level.ERROR, "Runs timeout task failed", e);
+        }
+    }
+
+    /**
+     * Timeout handle.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.0.0, Oct 18, 2026
+     * @since 2.2.0
+     */
+    public final class Timeout {
+
+        /**
+         * State init.
+         */
+        private static final int ST_INIT = 0;
+
+        /**
+         * State cancelled.
+         */
+        private static final int ST_CANCELLED = 1;
+
+        /**
+         * State expired.
+         */
+        private static final int ST_EXPIRED = 2;
+
+        /**
+         * Task.
+         */
+        private final Runnable task;
+
+        /**
+         * Deadline in nanoseconds relative to the timer start time.
+         */
+        private final long deadline;
+
+        /**
+         * State.
+         */
+        private final AtomicInteger state = new AtomicInteger(ST_INIT);
+
+        /**
+         * Remaining wheel rounds, only accessed by the ticker thread.
+         */
+        private long remainingRounds;
+
+        /**
+         * Constructs a timeout with the specified task and deadline.
+         *
+         * @param task the specified task
+         * @param deadline the specified deadline
+         */
+        private Timeout(final Runnable task, final long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels this timeout.
+         *
+         * @return {@code true} if cancelled, returns {@code false} if it has been expired or cancelled
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+
+            pendingCount.decrementAndGet();
+            cancelledCount.incrementAndGet();
+
+            return true;
+        }
+
+        /**
+         * Is this timeout cancelled?
+         *
+         * @return {@code true} if it is cancelled, returns {@code false} otherwise
+         */
+        public boolean isCancelled() {
+            return ST_CANCELLED == state.get();
+        }
+
+        /**
+         * Is this timeout expired?
+         *
+         * @return {@code true} if it is expired, returns {@code false} otherwise
+         */
+        public boolean isExpired() {
+            return ST_EXPIRED == state.get();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2012-2016, b3log.org & hacpai.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.xiaov.util;
+
+import java.util.Arrays;
+
+/**
+ * Sliding window of the latest latency samples.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 18, 2026
+ * @since 2.2.0
+ */
+public class LatencyWindow {
+
+    /**
+     * Samples in milliseconds, a ring guarded by this window.
+     */
+    private final long[] samples;
+
+    /**
+     * Index of the next sample.
+     */
+    private int next;
+
+    /**
+     * Count of samples in the window.
+     */
+    private int size;
+
+    /**
+     * Constructs a window of the specified size.
+     *
+     * @param size the specified max count of samples
+     */
+    public LatencyWindow(final int size) {
+        this.samples = new long[size];
+    }
+
+    /**
+     * Records the specified latency, the eldest sample is dropped if the window is full.
+     *
+     * @param millis the specified latency in milliseconds
+     */
+    public synchronized void record(final long millis) {
+        samples[next] = millis;
+        next = (next + 1) % samples.length;
+        if (size < samples.length) {
+            size++;
+        }
+    }
+
+    /**
+     * Gets the count of samples in this window.
+     *
+     * @return count of samples
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Gets the specified percentile of the samples in this window.
+     *
+     * @param percentile the specified percentile, for example, {@code 0.95}
+     * @return latency in milliseconds, returns {@code -1} if no sample
+     */
+    public long percentile(final double percentile) {
+        final long[] sorted;
+        synchronized (this) {
+            if (0 == size) {
+                return -1;
+            }
+
+            sorted = Arrays.copyOf(samples, size);
+        }
+        Arrays.sort(sorted);
+        final int index = (int) Math.ceil(percentile * sorted.length) - 1;
+
+        return sorted[Math.min(sorted.length - 1, Math.max(0, index))];
+    }
+}
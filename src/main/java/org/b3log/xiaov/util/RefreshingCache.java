@@ -0,0 +1,423 @@
+/*
+ * Copyright (c) 2012-2016, b3log.org & hacpai.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.xiaov.util;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+import org.json.JSONObject;
+
+/**
+ * Cache with per-entry TTL and stale-while-revalidate refresh.
+ *
+ * <p>
+ * An entry younger than the TTL is returned as is. An entry older than the TTL but younger than the max stale age is
+ * returned immediately and refreshed in background on the specified executor, so the executor bounds the refresh
+ * parallelism. A missing entry, or one older than the max stale age, is loaded in the calling thread. Concurrent
+ * loads and refreshes of the same key are coalesced into one.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.1, Oct 18, 2026
+ * @since 2.2.0
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+public class RefreshingCache<K, V> {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(RefreshingCache.class.getName());
+
+    /**
+     * Cache name.
+     */
+    private final String name;
+
+    /**
+     * Loader.
+     */
+    private final Loader<K, V> loader;
+
+    /**
+     * Executor which runs background refreshes.
+     */
+    private final Executor refresher;
+
+    /**
+     * TTL in nanoseconds.
+     */
+    private final long ttlNanos;
+
+    /**
+     * Max stale age in nanoseconds.
+     */
+    private final long maxStaleNanos;
+
+    /**
+     * Max entry count.
+     */
+    private final int maxSize;
+
+    /**
+     * Entries.
+     */
+    private final ConcurrentMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+
+    /**
+     * In-flight loads and refreshes.
+     */
+    private final ConcurrentMap<K, FutureTask<V>> loading = new ConcurrentHashMap<>();
+
+    /**
+     * Fresh hit count.
+     */
+    private final AtomicLong hitCount = new AtomicLong();
+
+    /**
+     * Stale hit count.
+     */
+    private final AtomicLong staleHitCount = new AtomicLong();
+
+    /**
+     * Miss count.
+     */
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Load count, includes refreshes.
+     */
+    private final AtomicLong loadCount = new AtomicLong();
+
+    /**
+     * Load failure count.
+     */
+    private final AtomicLong loadFailureCount = new AtomicLong();
+
+    /**
+     * Eviction count.
+     */
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * Total load time in nanoseconds.
+     */
+    private final AtomicLong loadNanos = new AtomicLong();
+
+    /**
+     * Constructs a cache with the specified arguments.
+     *
+     * @param name the specified name
+     * @param loader the specified loader
+     * @param refresher the specified executor which runs background refreshes
+     * @param ttl the specified TTL
+     * @param maxStale the specified max stale age, stale entries older than it are loaded synchronously
+     * @param unit the time unit of the specified TTL and max stale age
+     * @param maxSize the specified max entry count
+     */
+    public RefreshingCache(final String name, final Loader<K, V> loader, final Executor refresher,
+            final long ttl, final long maxStale, final TimeUnit unit, final int maxSize) {
+        this.name = name;
+        this.loader = loader;
+        this.refresher = refresher;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.maxStaleNanos = Math.max(ttlNanos, unit.toNanos(maxStale));
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Gets the value of the specified key, loads it if missing or too stale.
+     *
+     * @param key the specified key
+     * @return value
+     * @throws Exception if the loader fails
+     */
+    public V get(final K key) throws Exception {
+        final Entry<V> entry = entries.get(key);
+        if (null != entry) {
+            final long age = System.nanoTime() - entry.loadTime;
+            if (age < ttlNanos) {
+                hitCount.incrementAndGet();
+
+                return entry.value;
+            }
+
+            if (age < maxStaleNanos) {
+                staleHitCount.incrementAndGet();
+                refresh(key);
+
+                return entry.value;
+            }
+        }
+
+        missCount.incrementAndGet();
+
+        return load(key);
+    }
+
+    /**
+     * Gets the value of the specified key without loading.
+     *
+     * @param key the specified key
+     * @return value, returns {@code null} if not cached
+     */
+    public V getIfPresent(final K key) {
+        final Entry<V> entry = entries.get(key);
+
+        return null == entry ? null : entry.value;
+    }
+
+    /**
+     * Refreshes the specified key in background if it is not being loaded.
+     *
+     * @param key the specified key
+     */
+    public void refresh(final K key) {
+        final FutureTask<V> task = newTask(key);
+        if (null != loading.putIfAbsent(key, task)) {
+            return;
+        }
+
+        try {
+            refresher.execute(task);
+        } catch (final RejectedExecutionException e) {
+            loading.remove(key, task);
+            LOGGER.log(Level.DEBUG, "Refresher of cache [" + name + "] is busy, skips refreshing [" + key + "]");
+        }
+    }
+
+    /**
+     * Refreshes the specified keys in background, keys which are fresh are skipped.
+     *
+     * @param keys the specified keys
+     */
+    public void prefetch(final Iterable<K> keys) {
+        final long now = System.nanoTime();
+        for (final K key : keys) {
+            final Entry<V> entry = entries.get(key);
+            if (null == entry || now - entry.loadTime >= ttlNanos) {
+                refresh(key);
+            }
+        }
+    }
+
+    /**
+     * Invalidates the specified key.
+     *
+     * @param key the specified key
+     */
+    public void invalidate(final K key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Invalidates all entries.
+     */
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    /**
+     * Gets the statistic of this cache.
+     *
+     * @return statistic, for example,
+     * <pre>
+     * {
+     *     "size": int,
+     *     "hits": long,
+     *     "staleHits": long,
+     *     "misses": long,
+     *     "loads": long,
+     *     "loadFailures": long,
+     *     "evictions": long,
+     *     "loading": int,
+     *     "avgLoadMillis": double
+     * }
+     * </pre>
+     */
+    public JSONObject getStat() {
+        final JSONObject ret = new JSONObject();
+        final long loads = loadCount.get();
+
+        ret.put("size", entries.size());
+        ret.put("hits", hitCount.get());
+        ret.put("staleHits", staleHitCount.get());
+        ret.put("misses", missCount.get());
+        ret.put("loads", loads);
+        ret.put("loadFailures", loadFailureCount.get());
+        ret.put("evictions", evictionCount.get());
+        ret.put("loading", loading.size());
+        ret.put("avgLoadMillis", 0 == loads ? 0 : loadNanos.get() / 1000000D / loads);
+
+        return ret;
+    }
+
+    /**
+     * Loads the specified key in the calling thread, joins the in-flight load if there is one.
+     *
+     * @param key the specified key
+     * @return value
+     * @throws Exception if the loader fails
+     */
+    private V load(final K key) throws Exception {
+        FutureTask<V> task = newTask(key);
+        final FutureTask<V> running = loading.putIfAbsent(key, task);
+        if (null != running) {
+            task = running;
+        } else {
+            task.run();
+        }
+
+        try {
+            return task.get();
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+
+            throw e;
+        }
+    }
+
+    /**
+     * Creates a load task of the specified key, the task stores the loaded value and clears the in-flight mark.
+     *
+     * @param key the specified key
+     * @return load task
+     */
+    private FutureTask<V> newTask(final K key) {
+        final AtomicReference<FutureTask<V>> self = new AtomicReference<>();
+        self.set(new FutureTask<>(new Callable<V>() {
+            @Override
+            public V call() throws Exception {
+                final long start = System.nanoTime();
+                loadCount.incrementAndGet();
+                try {
+                    final V value = loader.load(key);
+                    put(key, value);
+
+                    return value;
+                } catch (final Exception e) {
+                    loadFailureCount.incrementAndGet();
+                    LOGGER.log(Level.WARN, "Loads [" + key + "] of cache [" + name + "] failed: " + e.getMessage());
+
+                    throw e;
+                } finally {
+                    loadNanos.addAndGet(System.nanoTime() - start);
+                    loading.remove(key, self.get());
+                }
+            }
+        }));
+
+        return self.get();
+    }
+
+    /**
+     * Puts the specified value, evicts the oldest entry if the cache is full.
+     *
+     * @param key the specified key
+     * @param value the specified value
+     */
+    private void put(final K key, final V value) {
+        if (null == value) {
+            entries.remove(key);
+
+            return;
+        }
+
+        if (!entries.containsKey(key) && entries.size() >= maxSize) {
+            K oldestKey = null;
+            long oldestTime = Long.MAX_VALUE;
+            for (final Map.Entry<K, Entry<V>> e : entries.entrySet()) {
+                if (e.getValue().loadTime < oldestTime) {
+                    oldestTime = e.getValue().loadTime;
+                    oldestKey = e.getKey();
+                }
+            }
+
+            if (null != oldestKey && null != entries.remove(oldestKey)) {
+                evictionCount.incrementAndGet();
+            }
+        }
+
+        entries.put(key, new Entry<>(value, System.nanoTime()));
+    }
+
+    /**
+     * Value loader.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.0.0, Oct 18, 2026
+     * @since 2.2.0
+     * @param <K> the type of keys
+     * @param <V> the type of values
+     */
+    public interface Loader<K, V> {
+
+        /**
+         * Loads the value of the specified key.
+         *
+         * @param key the specified key
+         * @return value, {@code null} is not cached
+         * @throws Exception if loads failed
+         */
+        V load(final K key) throws Exception;
+    }
+
+    /**
+     * Cache entry.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.0.0, Oct 18, 2026
+     * @since 2.2.0
+     * @param <V> the type of values
+     */
+    private static final class Entry<V> {
+
+        /**
+         * Value.
+         */
+        private final V value;
+
+        /**
+         * Load time in nanoseconds.
+         */
+        private final long loadTime;
+
+        /**
+         * Constructs an entry with the specified value and load time.
+         *
+         * @param value the specified value
+         * @param loadTime the specified load time
+         */
+        private Entry(final V value, final long loadTime) {
+            this.value = value;
+            this.loadTime = loadTime;
+        }
+    }
+}
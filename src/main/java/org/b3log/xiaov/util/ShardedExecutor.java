@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2012-2016, b3log.org & hacpai.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.xiaov.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Sharded executor.
+ *
+ * <p>
+ * Hashes a key onto one of N single-threaded lanes, tasks with the same key are executed strictly in submission
+ * order while tasks with different keys run in parallel across lanes.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 18, 2026
+ * @since 2.2.0
+ */
+public class ShardedExecutor {
+
+    /**
+     * Lanes.
+     */
+    private final Lane[] lanes;
+
+    /**
+     * Constructs a sharded executor with the specified arguments.
+     *
+     * @param name the specified name, used as the lane thread name prefix
+     * @param laneCount the specified lane count, uses the available processor count if it is not positive
+     * @param laneQueueCapacity the specified queue capacity of each lane
+     */
+    public ShardedExecutor(final String name, final int laneCount, final int laneQueueCapacity) {
+        final int count = laneCount > 0 ? laneCount : Runtime.getRuntime().availableProcessors();
+
+        lanes = new Lane[count];
+        for (int i = 0; i < count; i++) {
+            lanes[i] = new Lane(name + "-" + i, laneQueueCapacity);
+        }
+    }
+
+    /**
+     * Executes the specified task on the lane of the specified key.
+     *
+     * @param key the specified key
+     * @param task the specified task
+     * @throws RejectedExecutionException if the lane queue is full
+     */
+    public void execute(final long key, final Runnable task) {
+        lanes[index(key)].execute(task);
+    }
+
+    /**
+     * Shuts down all lanes, queued tasks will still be executed.
+     */
+    public void shutdown() {
+        for (final Lane lane : lanes) {
+            lane.pool.shutdown();
+        }
+    }
+
+    /**
+     * Gets the lane count.
+     *
+     * @return lane count
+     */
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    /**
+     * Gets the statistic of all lanes.
+     *
+     * @return statistic, for example,
+     * <pre>
+     * [{
+     *     "name": "",
+     *     "queueSize": int,
+     *     "submitted": long,
+     *     "completed": long,
+     *     "rejected": long,
+     *     "avgWaitMillis": double,
+     *     "maxWaitMillis": long,
+     *     "avgRunMillis": double
+     * }, ....]
+     * </pre>
+     */
+    public JSONArray getStat() {
+        final JSONArray ret = new JSONArray();
+        for (final Lane lane : lanes) {
+            ret.put(lane.getStat());
+        }
+
+        return ret;
+    }
+
+    /**
+     * Gets the lane index of the specified key.
+     *
+     * @param key the specified key
+     * @return lane index
+     */
+    private int index(final long key) {
+        // Mixes the bits (MurmurHash3 fmix64) so sequential ids spread evenly
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+
+        return (int) ((h & Long.MAX_VALUE) % lanes.length);
+    }
+
+    /**
+     * Single-threaded lane.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.0.0, Oct 18, 2026
+     * @since 2.2.0
+     */
+    private static final class Lane {
+
+        /**
+         * Lane name.
+         */
+        private final String name;
+
+        /**
+         * Underlying single thread pool.
+         */
+        private final ThreadPoolExecutor pool;
+
+        /**
+         * Submitted task count.
+         */
+        private final AtomicLong submittedCount = new AtomicLong();
+
+        /**
+         * Rejected task count.
+         */
+        private final AtomicLong rejectedCount = new AtomicLong();
+
+        /**
+         * Completed task count.
+         */
+        private final AtomicLong completedCount = new AtomicLong();
+
+        /**
+         * Total queue wait time in nanoseconds.
+         */
+        private final AtomicLong waitNanos = new AtomicLong();
+
+        /**
+         * Max queue wait time in nanoseconds.
+         */
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+
+        /**
+         * Total run time in nanoseconds.
+         */
+        private final AtomicLong runNanos = new AtomicLong();
+
+        /**
+         * Constructs a lane with the specified name and queue capacity.
+         *
+         * @param name the specified name
+         * @param queueCapacity the specified queue capacity
+         */
+        private Lane(final String name, final int queueCapacity) {
+            this.name = name;
+
+            pool = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<Runnable>(queueCapacity), new BoundedExecutor.NamedThreadFactory(name));
+        }
+
+        /**
+         * Executes the specified task.
+         *
+         * @param task the specified task
+         */
+        private void execute(final Runnable task) {
+            final long enqueued = System.nanoTime();
+
+            try {
+                pool.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        final long started = System.nanoTime();
+                        final long wait = started - enqueued;
+                        waitNanos.addAndGet(wait);
+                        long max;
+                        while (wait > (max = maxWaitNanos.get()) && !maxWaitNanos.compareAndSet(max, wait)) {
+                            // retry
+                        }
+
+                        try {
+                            task.run();
+                        } finally {
+                            runNanos.addAndGet(System.nanoTime() - started);
+                            completedCount.incrementAndGet();
+                        }
+                    }
+                });
+            } catch (final RejectedExecutionException e) {
+                rejectedCount.incrementAndGet();
+
+                throw e;
+            }
+
+            submittedCount.incrementAndGet();
+        }
+
+        /**
+         * Gets the statistic of this lane.
+         *
+         * @return statistic
+         */
+        private JSONObject getStat() {
+            final JSONObject ret = new JSONObject();
+            final long completed = completedCount.get();
+
+            ret.put("name", name);
+            ret.put("queueSize", pool.getQueue().size());
+            ret.put("submitted", submittedCount.get());
+            ret.put("completed", completed);
+            ret.put("rejected", rejectedCount.get());
+            ret.put("avgWaitMillis", 0 == completed ? 0 : waitNanos.get() / 1000000D / completed);
+            ret.put("maxWaitMillis", TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()));
+            ret.put("avgRunMillis", 0 == completed ? 0 : runNanos.get() / 1000000D / completed);
+
+            return ret;
+        }
+    }
+}
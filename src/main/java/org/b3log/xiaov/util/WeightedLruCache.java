@@ -0,0 +1,376 @@
+/*
+ * Copyright (c) 2012-2016, b3log.org & hacpai.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.xiaov.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.json.JSONObject;
+
+/**
+ * Cache bounded by the total weight of its entries, with per-entry expire time and LRU eviction.
+ *
+ * <p>
+ * Entries are kept in access order, a put evicts the least recently used entries until the total weight fits the max
+ * weight. Expired entries are removed when they are looked up or reached by an eviction.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 18, 2026
+ * @since 2.2.0
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+public class WeightedLruCache<K, V> {
+
+    /**
+     * Max total weight.
+     */
+    private final long maxWeight;
+
+    /**
+     * TTL in milliseconds.
+     */
+    private final long ttl;
+
+    /**
+     * Weigher.
+     */
+    private final Weigher<K, V> weigher;
+
+    /**
+     * Entries in access order, guarded by this cache.
+     */
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75F, true);
+
+    /**
+     * Total weight.
+     */
+    private long weight;
+
+    /**
+     * Hit count.
+     */
+    private long hitCount;
+
+    /**
+     * Miss count.
+     */
+    private long missCount;
+
+    /**
+     * Put count.
+     */
+    private long putCount;
+
+    /**
+     * Count of entries evicted for weight.
+     */
+    private long evictionCount;
+
+    /**
+     * Count of entries removed because of expiration.
+     */
+    private long expirationCount;
+
+    /**
+     * Constructs a cache with the specified arguments.
+     *
+     * @param maxWeight the specified max total weight
+     * @param ttl the specified TTL in milliseconds
+     * @param weigher the specified weigher
+     */
+    public WeightedLruCache(final long maxWeight, final long ttl, final Weigher<K, V> weigher) {
+        this.maxWeight = maxWeight;
+        this.ttl = ttl;
+        this.weigher = weigher;
+    }
+
+    /**
+     * Gets the value of the specified key.
+     *
+     * @param key the specified key
+     * @return value, returns {@code null} if not found or expired
+     */
+    public synchronized V get(final K key) {
+        final Entry<V> entry = entries.get(key);
+        if (null == entry) {
+            missCount++;
+
+            return null;
+        }
+
+        if (entry.expireTime <= System.currentTimeMillis()) {
+            remove(key, entry);
+            expirationCount++;
+            missCount++;
+
+            return null;
+        }
+
+        hitCount++;
+
+        return entry.value;
+    }
+
+    /**
+     * Puts the specified value which expires after the TTL.
+     *
+     * @param key the specified key
+     * @param value the specified value
+     */
+    public void put(final K key, final V value) {
+        put(key, value, System.currentTimeMillis() + ttl);
+    }
+
+    /**
+     * Puts the specified value which expires at the specified time, evicts the least recently used entries beyond
+     * the max weight. A value heavier than the max weight is not cached.
+     *
+     * @param key the specified key
+     * @param value the specified value
+     * @param expireTime the specified expire time
+     */
+    public synchronized void put(final K key, final V value, final long expireTime) {
+        final long now = System.currentTimeMillis();
+        final int entryWeight = weigher.weigh(key, value);
+        if (entryWeight > maxWeight || expireTime <= now) {
+            return;
+        }
+
+        final Entry<V> previous = entries.remove(key);
+        if (null != previous) {
+            weight -= previous.weight;
+        }
+
+        final Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+        while (weight + entryWeight > maxWeight && iterator.hasNext()) {
+            final Entry<V> eldest = iterator.next().getValue();
+            iterator.remove();
+            weight -= eldest.weight;
+            if (eldest.expireTime <= now) {
+                expirationCount++;
+            } else {
+                evictionCount++;
+            }
+        }
+
+        entries.put(key, new Entry<>(value, expireTime, entryWeight));
+        weight += entryWeight;
+        putCount++;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+        weight = 0;
+    }
+
+    /**
+     * Gets the entries which have not expired, the least recently used first.
+     *
+     * @return entries
+     */
+    public synchronized List<Snapshot<K, V>> snapshot() {
+        final long now = System.currentTimeMillis();
+        final List<Snapshot<K, V>> ret = new ArrayList<>(entries.size());
+        for (final Map.Entry<K, Entry<V>> e : entries.entrySet()) {
+            final Entry<V> entry = e.getValue();
+            if (entry.expireTime > now) {
+                ret.add(new Snapshot<>(e.getKey(), entry.value, entry.expireTime));
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Gets the statistic of this cache.
+     *
+     * @return statistic, for example,
+     * <pre>
+     * {
+     *     "size": int,
+     *     "weight": long,
+     *     "maxWeight": long,
+     *     "hits": long,
+     *     "misses": long,
+     *     "hitRate": double,
+     *     "puts": long,
+     *     "evictions": long,
+     *     "expirations": long
+     * }
+     * </pre>
+     */
+    public synchronized JSONObject getStat() {
+        final JSONObject ret = new JSONObject();
+        final long lookups = hitCount + missCount;
+
+        ret.put("size", entries.size());
+        ret.put("weight", weight);
+        ret.put("maxWeight", maxWeight);
+        ret.put("hits", hitCount);
+        ret.put("misses", missCount);
+        ret.put("hitRate", 0 == lookups ? 0D : (double) hitCount / lookups);
+        ret.put("puts", putCount);
+        ret.put("evictions", evictionCount);
+        ret.put("expirations", expirationCount);
+
+        return ret;
+    }
+
+    /**
+     * Removes the specified entry of the specified key.
+     *
+     * @param key the specified key
+     * @param entry the specified entry
+     */
+    private void remove(final K key, final Entry<V> entry) {
+        entries.remove(key);
+        weight -= entry.weight;
+    }
+
+    /**
+     * Entry weigher.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.0.0, Oct 18, 2026
+     * @since 2.2.0
+     * @param <K> the type of keys
+     * @param <V> the type of values
+     */
+    public interface Weigher<K, V> {
+
+        /**
+         * Weighs the entry of the specified key and value.
+         *
+         * @param key the specified key
+         * @param value the specified value
+         * @return weight, positive
+         */
+        int weigh(final K key, final V value);
+    }
+
+    /**
+     * Entry snapshot.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.0.0, Oct 18, 2026
+     * @since 2.2.0
+     * @param <K> the type of keys
+     * @param <V> the type of values
+     */
+    public static final class Snapshot<K, V> {
+
+        /**
+         * Key.
+         */
+        private final K key;
+
+        /**
+         * Value.
+         */
+        private final V value;
+
+        /**
+         * Expire time.
+         */
+        private final long expireTime;
+
+        /**
+         * Constructs a snapshot with the specified arguments.
+         *
+         * @param key the specified key
+         * @param value the specified value
+         * @param expireTime the specified expire time
+         */
+        private Snapshot(final K key, final V value, final long expireTime) {
+            this.key = key;
+            this.value = value;
+            this.expireTime = expireTime;
+        }
+
+        /**
+         * Gets the key.
+         *
+         * @return key
+         */
+        public K getKey() {
+            return key;
+        }
+
+        /**
+         * Gets the value.
+         *
+         * @return value
+         */
+        public V getValue() {
+            return value;
+        }
+
+        /**
+         * Gets the expire time.
+         *
+         * @return expire time
+         */
+        public long getExpireTime() {
+            return expireTime;
+        }
+    }
+
+    /**
+     * Cache entry.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.0.0, Oct 18, 2026
+     * @since 2.2.0
+     * @param <V> the type of values
+     */
+    private static final class Entry<V> {
+
+        /**
+         * Value.
+         */
+        private final V value;
+
+        /**
+         * Expire time.
+         */
+        private final long expireTime;
+
+        /**
+         * Weight.
+         */
+        private final int weight;
+
+        /**
+         * Constructs an entry with the specified arguments.
+         *
+         * @param value the specified value
+         * @param expireTime the specified expire time
+         * @param weight the specified weight
+         */
+        private Entry(final V value, final long expireTime, final int weight) {
+            this.value = value;
+            this.expireTime = expireTime;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.scienjus.smartqq.client;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.scienjus.smartqq.model.DiscussMessage;
+import com.scienjus.smartqq.model.Font;
+import com.scienjus.smartqq.model.GroupMessage;
+import com.scienjus.smartqq.model.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 拉取消息解析的基准测试，{@link PollResponseHandler} 对比原来的 String -> JSONObject -> 消息对象.
+ *
+ * <p>
+ * 响应体由固定种子生成，包含好友、群和讨论组消息，每条消息带字体、文本和表情片段。每次调用解析整个响应体，
+ * 结果按消息数归一，配合 {@code -prof gc} 时 {@code gc.alloc.rate.norm} 即每条消息的分配字节数。运行
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.scienjus.smartqq.client.PollResponseBenchmark}，已带上 GC 分析。
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @date 2026/10/18.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PollResponseBenchmark {
+
+    //一次拉取返回的消息数
+    private static final int MESSAGE_COUNT = 50;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String[] POLL_TYPES = {"message", "group_message", "discu_message"};
+
+    private static final String[] WORDS = {"小薇", "你好", "今天", "吃饭", "了吗", "hello", "world", "?", "哈哈", "下班"};
+
+    private final PollResponseHandler handler = new PollResponseHandler();
+
+    //响应体
+    private byte[] body;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(88250);
+        JSONArray result = new JSONArray();
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            JSONObject font = new JSONObject();
+            font.put("size", 10);
+            font.put("color", "000000");
+            font.put("style", new JSONArray(Arrays.<Object>asList(0, 0, 0)));
+            font.put("name", "宋体");
+
+            JSONArray content = new JSONArray();
+            content.add(new JSONArray(Arrays.<Object>asList("font", font)));
+            StringBuilder text = new StringBuilder();
+            for (int j = 3 + random.nextInt(10); j > 0; j--) {
+                text.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            content.add(text.toString());
+            content.add(new JSONArray(Arrays.<Object>asList("face", random.nextInt(100))));
+
+            JSONObject value = new JSONObject();
+            value.put("msg_id", random.nextInt(100000));
+            value.put("from_uin", 1000000000L + random.nextInt(1000000));
+            value.put("to_uin", 2000000000L);
+            value.put("msg_type", 43);
+            value.put("group_code", 3000000000L + random.nextInt(100));
+            value.put("did", 4000000000L + random.nextInt(100));
+            value.put("send_uin", 5000000000L + random.nextInt(1000000));
+            value.put("time", 1476000000L + i);
+            value.put("content", content);
+
+            JSONObject item = new JSONObject();
+            item.put("poll_type", POLL_TYPES[i % POLL_TYPES.length]);
+            item.put("value", value);
+            result.add(item);
+        }
+
+        JSONObject json = new JSONObject();
+        json.put("retcode", 0);
+        json.put("result", result);
+        body = json.toJSONString().getBytes(UTF_8);
+    }
+
+    /**
+     * 流式解析成消息
+     */
+    @Benchmark
+    @OperationsPerInvocation(MESSAGE_COUNT)
+    public void handler(Blackhole blackhole) throws IOException {
+        PollResponseHandler.Result result = handler.handle(200, null, new ByteArrayInputStream(body));
+        for (Object message : result.getMessages()) {
+            blackhole.consume(message);
+        }
+    }
+
+    /**
+     * 流式解析成消息，并取出拼接后的内容，原来的消息对象在构造时就拼好内容
+     */
+    @Benchmark
+    @OperationsPerInvocation(MESSAGE_COUNT)
+    public void handlerWithContent(Blackhole blackhole) throws IOException {
+        PollResponseHandler.Result result = handler.handle(200, null, new ByteArrayInputStream(body));
+        for (Object message : result.getMessages()) {
+            if (message instanceof Message) {
+                blackhole.consume(((Message) message).getContent());
+            } else if (message instanceof GroupMessage) {
+                blackhole.consume(((GroupMessage) message).getContent());
+            } else if (message instanceof DiscussMessage) {
+                blackhole.consume(((DiscussMessage) message).getContent());
+            }
+        }
+    }
+
+    /**
+     * 原来的解析：读成字符串，解析成 JSONObject 树，再由消息构造方法遍历一遍
+     */
+    @Benchmark
+    @OperationsPerInvocation(MESSAGE_COUNT)
+    public void jsonTree(Blackhole blackhole) {
+        JSONObject json = JSON.parseObject(new String(body, UTF_8));
+        Integer retCode = json.getInteger("retcode");
+        if (retCode == null || retCode != 0) {
+            throw new IllegalStateException("retcode " + retCode);
+        }
+        JSONArray array = json.getJSONArray("result");
+        for (int i = 0; array != null && i < array.size(); i++) {
+            JSONObject message = array.getJSONObject(i);
+            String type = message.getString("poll_type");
+            if ("message".equals(type) || "group_message".equals(type) || "discu_message".equals(type)) {
+                blackhole.consume(new LegacyMessage(type, message.getJSONObject("value")));
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PollResponseBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class).build()).run();
+    }
+
+    //原来的 Message、GroupMessage、DiscussMessage 的 JSONObject 构造方法
+    private static final class LegacyMessage {
+
+        private final Font font;
+
+        private final String content;
+
+        private final long time;
+
+        private final long userId;
+
+        private final long conversationId;
+
+        private LegacyMessage(String type, JSONObject json) {
+            JSONArray cont = json.getJSONArray("content");
+            this.font = cont.getJSONArray(0).getObject(1, Font.class);
+            if ("discu_message".equals(type)) {
+                this.content = cont.getString(1);
+            } else {
+                final int size = cont.size();
+                final StringBuilder contentBuilder = new StringBuilder();
+                for (int i = 1; i < size; i++) {
+                    contentBuilder.append(cont.getString(i));
+                }
+                this.content = contentBuilder.toString();
+            }
+            this.time = json.getLongValue("time");
+            if ("message".equals(type)) {
+                this.userId = json.getLongValue("from_uin");
+                this.conversationId = 0;
+            } else {
+                this.userId = json.getLongValue("send_uin");
+                this.conversationId = json.getLongValue("group_message".equals(type) ? "group_code" : "did");
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2012-2016, b3log.org & hacpai.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.xiaov.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang.StringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Benchmark of follow keyword matching, {@link AhoCorasick} against the scan of every keyword with
+ * {@link StringUtils#containsIgnoreCase(String, String)} it replaces.
+ *
+ * <p>
+ * Keywords and messages are generated from a fixed seed, messages are group chat sized and about one in four contains
+ * a keyword. Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.b3log.xiaov.util.AhoCorasickBenchmark}.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 18, 2026
+ * @since 2.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AhoCorasickBenchmark {
+
+    /**
+     * Count of messages matched in turn.
+     */
+    private static final int MESSAGE_COUNT = 1024;
+
+    /**
+     * Chars keywords and messages are made of.
+     */
+    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz的是不了人我在有他这中大来上国个到说们为子和你地出道也时年";
+
+    /**
+     * Count of keywords.
+     */
+    @Param({"10", "1000", "10000"})
+    private int keywordCount;
+
+    /**
+     * Keywords.
+     */
+    private String[] keywords;
+
+    /**
+     * Automaton of the keywords.
+     */
+    private AhoCorasick automaton;
+
+    /**
+     * Messages.
+     */
+    private String[] messages;
+
+    /**
+     * Index of the next message.
+     */
+    private int next;
+
+    /**
+     * Generates keywords and messages, compiles the automaton.
+     */
+    @Setup
+    public void setup() {
+        final Random random = new Random(88250);
+        final List<String> words = new ArrayList<>(keywordCount);
+        for (int i = 0; i < keywordCount; i++) {
+            words.add(randomText(random, 3 + random.nextInt(6)));
+        }
+        keywords = words.toArray(new String[words.size()]);
+        automaton = new AhoCorasick(words);
+
+        messages = new String[MESSAGE_COUNT];
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            final String text = randomText(random, 20 + random.nextInt(60));
+            if (0 == random.nextInt(4)) {
+                final int at = random.nextInt(text.length());
+                messages[i] = text.substring(0, at) + keywords[random.nextInt(keywords.length)].toUpperCase()
+                        + text.substring(at);
+            } else {
+                messages[i] = text;
+            }
+        }
+    }
+
+    /**
+     * Matches a message with the automaton.
+     *
+     * @return keyword
+     */
+    @Benchmark
+    public String ahoCorasick() {
+        return automaton.longest(message());
+    }
+
+    /**
+     * Matches a message by scanning every keyword.
+     *
+     * @return keyword
+     */
+    @Benchmark
+    public String scan() {
+        final String message = message();
+        for (final String keyword : keywords) {
+            if (StringUtils.containsIgnoreCase(message, keyword)) {
+                return keyword;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Compiles the automaton, the cost of a keyword file reload.
+     *
+     * @return automaton
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public AhoCorasick compile() {
+        final List<String> words = new ArrayList<>(keywords.length);
+        for (final String keyword : keywords) {
+            words.add(keyword);
+        }
+
+        return new AhoCorasick(words);
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the specified arguments, unused
+     * @throws RunnerException if the benchmark fails
+     */
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(AhoCorasickBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    /**
+     * Gets the next message.
+     *
+     * @return message
+     */
+    private String message() {
+        final String ret = messages[next];
+        next = (next + 1) % MESSAGE_COUNT;
+
+        return ret;
+    }
+
+    /**
+     * Generates a text of the specified length.
+     *
+     * @param random the specified random
+     * @param length the specified length
+     * @return text
+     */
+    private static String randomText(final Random random, final int length) {
+        final StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+
+        return builder.toString();
+    }
+}